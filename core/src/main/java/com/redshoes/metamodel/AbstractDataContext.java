@@ -20,7 +20,9 @@ package com.redshoes.metamodel;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -34,8 +36,12 @@ import com.redshoes.metamodel.query.builder.InitFromBuilderImpl;
 import com.redshoes.metamodel.query.parser.QueryParser;
 import com.redshoes.metamodel.schema.Column;
 import com.redshoes.metamodel.schema.Schema;
+import com.redshoes.metamodel.schema.SchemaSnapshot;
 import com.redshoes.metamodel.schema.Table;
 import com.redshoes.metamodel.schema.TableType;
+import com.redshoes.metamodel.util.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Abstract implementation of the DataContext interface. Provides convenient implementations of all trivial and
@@ -44,10 +50,25 @@ import com.redshoes.metamodel.schema.TableType;
 @InterfaceStability.Evolving
 public abstract class AbstractDataContext implements DataContext {
 
+    /**
+     * System property that defines the maximum number of parsed queries that are cached per DataContext, see
+     * {@link #parseQuery(String)}. A size of 0 disables the cache.
+     */
+    public static final String SYSTEM_PROPERTY_PARSED_QUERY_CACHE_SIZE = "metamodel.query.parse.cache.size";
+
+    private static final int DEFAULT_PARSED_QUERY_CACHE_SIZE = 256;
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractDataContext.class);
+
     private static final String NULL_SCHEMA_NAME_TOKEN = "<metamodel.schema.name.null>";
     private final ConcurrentMap<String, Schema> _schemaCache = new ConcurrentHashMap<String, Schema>();
     private final Comparator<? super String> _schemaNameComparator = SchemaNameComparator.getInstance();
+    private final Map<String, Query> _parsedQueryCache = createParsedQueryCache();
     private List<String> _schemaNameCache;
+    private int _parsedQueryCacheGeneration;
+    private volatile Resource _schemaSnapshotResource;
+    private volatile SchemaSnapshot _schemaSnapshot;
+    private volatile boolean _schemaSnapshotLoaded;
 
     /**
      * {@inheritDoc}
@@ -56,10 +77,30 @@ public abstract class AbstractDataContext implements DataContext {
     public final DataContext refreshSchemas() {
         _schemaCache.clear();
         _schemaNameCache = null;
+        // an explicit refresh means that the schemas should be discovered
+        // live, not restored from the snapshot
+        _schemaSnapshot = null;
+        _schemaSnapshotLoaded = true;
+        // parsed queries refer to the tables and columns of the old schemas
+        clearParsedQueryCache();
         onSchemaCacheRefreshed();
         return this;
     }
 
+    /**
+     * Clears the queries cached by {@link #parseQuery(String)}. Updateable subclasses should invoke this when an update
+     * is done, since the update may have created or dropped tables that cached queries refer to.
+     */
+    protected final void clearParsedQueryCache() {
+        if (_parsedQueryCache != null) {
+            synchronized (_parsedQueryCache) {
+                _parsedQueryCache.clear();
+                // queries being parsed right now are not cached either
+                _parsedQueryCacheGeneration++;
+            }
+        }
+    }
+
     /**
      * Method invoked when schemas have been refreshed using {@link #refreshSchemas()}. Can be overridden to add
      * callback functionality in subclasses.
@@ -67,6 +108,127 @@ public abstract class AbstractDataContext implements DataContext {
     protected void onSchemaCacheRefreshed() {
     }
 
+    /**
+     * Sets a resource that holds a {@link SchemaSnapshot} of this DataContext. When set, schemas are lazily restored
+     * from the snapshot instead of being discovered from the datastore, provided that the fingerprint of the snapshot
+     * matches {@link #getSchemaSnapshotFingerprint()}. Missing, unreadable or stale snapshots fall back to live
+     * discovery. Use {@link #writeSchemaSnapshot()} to write the snapshot.
+     * 
+     * @param resource the snapshot resource, or null to not use a snapshot
+     */
+    public final void setSchemaSnapshotResource(Resource resource) {
+        _schemaSnapshotResource = resource;
+        _schemaSnapshot = null;
+        _schemaSnapshotLoaded = false;
+    }
+
+    public final Resource getSchemaSnapshotResource() {
+        return _schemaSnapshotResource;
+    }
+
+    /**
+     * Discovers all schemas of this DataContext and writes them as a {@link SchemaSnapshot} to the resource set with
+     * {@link #setSchemaSnapshotResource(Resource)}. The schemas are always discovered from the datastore, never taken
+     * from an existing snapshot.
+     * 
+     * @throws IllegalStateException if no snapshot resource has been set
+     * @throws UnsupportedOperationException if this DataContext does not support schema snapshots
+     */
+    public final void writeSchemaSnapshot() throws MetaModelException {
+        final Resource resource = _schemaSnapshotResource;
+        if (resource == null) {
+            throw new IllegalStateException("No schema snapshot resource set");
+        }
+        final String fingerprint = getSchemaSnapshotFingerprint();
+        if (fingerprint == null) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support schema snapshots");
+        }
+        // discover live, the cached schemas may have been restored from the
+        // (possibly outdated) snapshot that is about to be replaced
+        final List<String> schemaNames = getSchemaNamesInternal();
+        final List<Schema> schemas = new ArrayList<>(schemaNames.size());
+        for (final String name : schemaNames) {
+            final Schema schema = getSchemaByNameInternal(name);
+            if (schema == null) {
+                throw new MetaModelException("Declared schema does not exist: " + name);
+            }
+            schemas.add(schema);
+        }
+        new SchemaSnapshot(fingerprint, schemaNames, schemas).write(resource);
+
+        // schemas that are not resolved yet are restored from the new snapshot
+        _schemaSnapshot = null;
+        _schemaSnapshotLoaded = false;
+    }
+
+    /**
+     * Gets a fingerprint of the datastore that this DataContext represents, used to validate schema snapshots. The
+     * fingerprint should change whenever a snapshot taken earlier would no longer be correct, for instance because the
+     * datastore's location or configuration changed. The default implementation returns null, meaning that snapshots
+     * are not supported.
+     * 
+     * @return a fingerprint, or null if snapshots are not supported
+     */
+    protected String getSchemaSnapshotFingerprint() {
+        return null;
+    }
+
+    /**
+     * Restores a schema of a {@link SchemaSnapshot}. The default implementation uses the (immutable) snapshot schema
+     * as-is. Subclasses that rely on their own schema, table or column types should override this method.
+     * 
+     * @param schema the schema of the snapshot
+     * @return the schema to use in this DataContext
+     */
+    protected Schema restoreSchemaSnapshot(Schema schema) {
+        return schema;
+    }
+
+    private SchemaSnapshot getSchemaSnapshot() {
+        if (!_schemaSnapshotLoaded) {
+            synchronized (_schemaCache) {
+                if (!_schemaSnapshotLoaded) {
+                    _schemaSnapshot = loadSchemaSnapshot(_schemaSnapshotResource);
+                    _schemaSnapshotLoaded = true;
+                }
+            }
+        }
+        return _schemaSnapshot;
+    }
+
+    private SchemaSnapshot loadSchemaSnapshot(Resource resource) {
+        if (resource == null) {
+            return null;
+        }
+        final String fingerprint = getSchemaSnapshotFingerprint();
+        if (fingerprint == null) {
+            return null;
+        }
+        final SchemaSnapshot snapshot;
+        try {
+            snapshot = SchemaSnapshot.read(resource);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to read schema snapshot from {}, falling back to schema discovery", resource, e);
+            return null;
+        }
+        if (snapshot != null && !fingerprint.equals(snapshot.getFingerprint())) {
+            logger.info("Schema snapshot {} is stale, falling back to schema discovery", resource);
+            return null;
+        }
+        return snapshot;
+    }
+
+    private Schema getSchemaByNameFromSnapshotOrInternal(String name) {
+        final SchemaSnapshot snapshot = getSchemaSnapshot();
+        if (snapshot != null) {
+            final Schema schema = snapshot.getSchemaByName(name);
+            if (schema != null) {
+                return restoreSchemaSnapshot(schema);
+            }
+        }
+        return getSchemaByNameInternal(name);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -77,7 +239,7 @@ public abstract class AbstractDataContext implements DataContext {
         for (final String name : schemaNames) {
             final Schema schema = _schemaCache.get(getSchemaCacheKey(name));
             if (schema == null) {
-                final Schema newSchema = getSchemaByNameInternal(name);
+                final Schema newSchema = getSchemaByNameFromSnapshotOrInternal(name);
                 if (newSchema == null) {
                     throw new MetaModelException("Declared schema does not exist: " + name);
                 }
@@ -107,7 +269,12 @@ public abstract class AbstractDataContext implements DataContext {
     @Override
     public final List<String> getSchemaNames() throws MetaModelException {
         if (_schemaNameCache == null) {
-            _schemaNameCache = getSchemaNamesInternal();
+            final SchemaSnapshot snapshot = getSchemaSnapshot();
+            if (snapshot == null) {
+                _schemaNameCache = getSchemaNamesInternal();
+            } else {
+                _schemaNameCache = new ArrayList<>(snapshot.getSchemaNames());
+            }
         }
         List<String> schemaNames = new ArrayList<>(_schemaNameCache);
         schemaNames.sort(_schemaNameComparator);
@@ -156,14 +323,61 @@ public abstract class AbstractDataContext implements DataContext {
 
     /**
      * {@inheritDoc}
+     * 
+     * Parsed queries are cached by their query string, until the schemas are refreshed (see {@link #refreshSchemas()})
+     * or an update is executed (see {@link #clearParsedQueryCache()}).
+     * Each call returns a clone of the cached query, so the returned query can be modified freely.
      */
     @Override
     public Query parseQuery(final String queryString) throws MetaModelException {
+        if (_parsedQueryCache == null || queryString == null) {
+            return parseQueryInternal(queryString);
+        }
+
+        final int generation;
+        synchronized (_parsedQueryCache) {
+            final Query cachedQuery = _parsedQueryCache.get(queryString);
+            if (cachedQuery != null) {
+                return cachedQuery.clone();
+            }
+            generation = _parsedQueryCacheGeneration;
+        }
+
+        // parsing is done outside of the lock, so concurrent parsing of the
+        // same query string may happen, but will yield equal queries
+        final Query query = parseQueryInternal(queryString);
+        synchronized (_parsedQueryCache) {
+            if (generation == _parsedQueryCacheGeneration) {
+                _parsedQueryCache.put(queryString, query.clone());
+            }
+        }
+        return query;
+    }
+
+    private Query parseQueryInternal(final String queryString) throws MetaModelException {
         final QueryParser parser = new QueryParser(this, queryString);
         final Query query = parser.parse();
         return query;
     }
 
+    private static Map<String, Query> createParsedQueryCache() {
+        final Integer value = Integer.getInteger(SYSTEM_PROPERTY_PARSED_QUERY_CACHE_SIZE);
+        final int maxSize = (value == null || value.intValue() < 0 ? DEFAULT_PARSED_QUERY_CACHE_SIZE : value.intValue());
+        if (maxSize == 0) {
+            return null;
+        }
+        // an access ordered map, which evicts the least recently used query
+        return new LinkedHashMap<String, Query>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
     @Override
     public CompiledQuery compileQuery(final Query query) throws MetaModelException {
         return new DefaultCompiledQuery(query);
@@ -197,12 +411,12 @@ public abstract class AbstractDataContext implements DataContext {
         Schema schema = _schemaCache.get(getSchemaCacheKey(name));
         if (schema == null) {
             if (name == null) {
-                schema = getSchemaByNameInternal(null);
+                schema = getSchemaByNameFromSnapshotOrInternal(null);
             } else {
                 List<String> schemaNames = getSchemaNames();
                 for (String schemaName : schemaNames) {
                     if (name.equalsIgnoreCase(schemaName)) {
-                        schema = getSchemaByNameInternal(name);
+                        schema = getSchemaByNameFromSnapshotOrInternal(name);
                         break;
                     }
                 }
@@ -211,7 +425,7 @@ public abstract class AbstractDataContext implements DataContext {
                         if (name.equalsIgnoreCase(schemaName)) {
                             // try again with "schemaName" as param instead of
                             // "name".
-                            schema = getSchemaByNameInternal(schemaName);
+                            schema = getSchemaByNameFromSnapshotOrInternal(schemaName);
                             break;
                         }
                     }
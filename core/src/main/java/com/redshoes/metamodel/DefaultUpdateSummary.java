@@ -42,13 +42,20 @@ public class DefaultUpdateSummary implements UpdateSummary {
     private final Integer _updatedRows;
     private final Integer _deletedRows;
     private final Iterable<Object> _generatedKeys;
+    private final Double _rowsPerSecond;
 
     public DefaultUpdateSummary(Integer insertedRows, Integer updatedRows, Integer deletedRows,
             Iterable<Object> generatedKeys) {
+        this(insertedRows, updatedRows, deletedRows, generatedKeys, null);
+    }
+
+    public DefaultUpdateSummary(Integer insertedRows, Integer updatedRows, Integer deletedRows,
+            Iterable<Object> generatedKeys, Double rowsPerSecond) {
         _insertedRows = insertedRows;
         _updatedRows = updatedRows;
         _deletedRows = deletedRows;
         _generatedKeys = generatedKeys;
+        _rowsPerSecond = rowsPerSecond;
     }
 
     @Override
@@ -71,4 +78,9 @@ public class DefaultUpdateSummary implements UpdateSummary {
         return Optional.ofNullable(_generatedKeys);
     }
 
+    @Override
+    public Optional<Double> getRowsPerSecond() {
+        return Optional.ofNullable(_rowsPerSecond);
+    }
+
 }
@@ -18,6 +18,7 @@
  */
 package com.redshoes.metamodel;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -26,10 +27,16 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -37,23 +44,35 @@ import java.util.stream.StreamSupport;
 import com.redshoes.metamodel.query.parser.QueryParser;
 import com.redshoes.metamodel.util.AggregateBuilder;
 import com.redshoes.metamodel.util.CollectionUtils;
-import com.redshoes.metamodel.util.ObjectComparator;
+import com.redshoes.metamodel.util.ColumnTypeComparator;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 import com.redshoes.metamodel.data.CachingDataSetHeader;
+import com.redshoes.metamodel.data.ColumnarRowList;
 import com.redshoes.metamodel.data.DataSet;
 import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.DefaultRow;
+import com.redshoes.metamodel.data.DistinctDataSet;
 import com.redshoes.metamodel.data.EmptyDataSet;
 import com.redshoes.metamodel.data.FilteredDataSet;
 import com.redshoes.metamodel.data.FirstRowDataSet;
+import com.redshoes.metamodel.data.HashJoinDataSet;
+import com.redshoes.metamodel.data.HashJoinIndex;
 import com.redshoes.metamodel.data.InMemoryDataSet;
 import com.redshoes.metamodel.data.MaxRowsDataSet;
 import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
 import com.redshoes.metamodel.data.ScalarFunctionDataSet;
 import com.redshoes.metamodel.data.SimpleDataSetHeader;
+import com.redshoes.metamodel.data.SortedRunsDataSet;
 import com.redshoes.metamodel.data.SubSelectionDataSet;
+import com.redshoes.metamodel.data.TopNDataSet;
+import com.redshoes.metamodel.query.CompiledFilterItem;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.query.FromItem;
+import com.redshoes.metamodel.query.FunctionType;
 import com.redshoes.metamodel.query.GroupByItem;
+import com.redshoes.metamodel.query.JoinType;
+import com.redshoes.metamodel.query.OperatorType;
 import com.redshoes.metamodel.query.OrderByItem;
 import com.redshoes.metamodel.query.Query;
 import com.redshoes.metamodel.query.ScalarFunction;
@@ -85,6 +104,14 @@ public final class MetaModelHelper {
 
     private final static Logger logger = LoggerFactory.getLogger(MetaModelHelper.class);
 
+    /**
+     * System property that defines the maximum number of rows to hold in memory when ordering a dataset. Beyond this
+     * number of rows, sorted runs of rows are written to temporary files.
+     */
+    public static final String SYSTEM_PROPERTY_SORT_MAX_ROWS_IN_MEMORY = "metamodel.sort.max.rows.in.memory";
+
+    private static final int DEFAULT_SORT_MAX_ROWS_IN_MEMORY = 100000;
+
     private MetaModelHelper() {
         // Prevent instantiation
     }
@@ -188,20 +215,139 @@ public final class MetaModelHelper {
         if (fromDataSets.length == 1) {
             return getFiltered(fromDataSets[0], whereItems);
         }
-        // do a nested loop join, no matter what
+        final List<FilterItem> filters = new ArrayList<>();
+        for (FilterItem fi : whereItems) {
+            filters.add(fi);
+        }
+
+        // join the datasets one at a time. Hash joins are used when there are
+        // equality conditions between the datasets, nested loop joins otherwise
         Iterator<DataSet> dsIter = Arrays.asList(fromDataSets).iterator();
 
         DataSet joined = dsIter.next();
 
         while (dsIter.hasNext()) {
-            joined = nestedLoopJoin(dsIter.next(), joined, (whereItems));
-
+            joined = hashJoin(dsIter.next(), joined, filters);
         }
 
         return joined;
 
     }
 
+    /**
+     * Executes a hash join. The build side of the join (the side that will be copied into an in-memory hash index) is
+     * the inner dataset, unless the outer dataset is estimated to be smaller. The rows of the other side are streamed
+     * through the index as the returned dataset is iterated. The join keys are taken from
+     * {@link OperatorType#EQUALS_TO} filter items that compare a select item of one dataset with a select item of the
+     * other. If no such filter items exist, every row of the build side is a candidate for a match, like in a nested
+     * loop join.
+     *
+     * @param innerLoopDs
+     * @param outerLoopDs
+     * @param filtersIterable
+     * @return
+     */
+    public static DataSet hashJoin(DataSet innerLoopDs, DataSet outerLoopDs, Iterable<FilterItem> filtersIterable) {
+        final List<FilterItem> filters = new ArrayList<>();
+        for (FilterItem fi : filtersIterable) {
+            filters.add(fi);
+        }
+
+        final List<SelectItem> outerItems = outerLoopDs.getSelectItems();
+        final List<SelectItem> allItems = new ArrayList<>(outerItems);
+        allItems.addAll(innerLoopDs.getSelectItems());
+
+        final Set<FilterItem> applicableFilters = applicableFilters(filters, allItems);
+        final DataSetHeader jointHeader = new CachingDataSetHeader(allItems);
+
+        int[][] keyIndexes = getEquiJoinKeyIndexes(applicableFilters, jointHeader, outerItems.size());
+        if (keyIndexes == null) {
+            // no equality conditions, every row will be a candidate for a match
+            keyIndexes = new int[2][0];
+        }
+
+        // without keys, the inner dataset is always the build side, to keep the
+        // order of a nested loop join
+        final boolean buildOnOuter = keyIndexes[0].length > 0 && isSmaller(outerLoopDs, innerLoopDs);
+        final DataSet buildDs = buildOnOuter ? outerLoopDs : innerLoopDs;
+        final DataSet probeDs = buildOnOuter ? innerLoopDs : outerLoopDs;
+        final int[] buildKeyIndexes = buildOnOuter ? keyIndexes[0] : keyIndexes[1];
+        final int[] probeKeyIndexes = buildOnOuter ? keyIndexes[1] : keyIndexes[0];
+
+        final HashJoinIndex index = HashJoinIndex.build(buildDs, buildKeyIndexes);
+        if (!index.isHashable() && buildKeyIndexes.length > 0) {
+            logger.debug("Join keys could not be hashed, the hash join will scan all rows like a nested loop join");
+        }
+        if (index.size() == 0) {
+            probeDs.close();
+            return new EmptyDataSet(jointHeader);
+        }
+
+        return new HashJoinDataSet(jointHeader, JoinType.INNER, probeDs, !buildOnOuter, index, probeKeyIndexes,
+                CompiledFilterItem.compile(applicableFilters, jointHeader));
+    }
+
+    /**
+     * Finds the equi-join keys of a join, ie. the {@link OperatorType#EQUALS_TO} filter items that compare a value from
+     * the left (outer) side of the join with a value from the right (inner) side of the join.
+     *
+     * @param filters the filters of the join
+     * @param jointHeader the header of the joined rows
+     * @param leftSize the amount of select items from the left side of the join, at the beginning of the joint header
+     * @return a two-element array with the key indexes of the left rows and the right rows respectively, or null if
+     *         there are no equi-join keys.
+     */
+    private static int[][] getEquiJoinKeyIndexes(Collection<FilterItem> filters, DataSetHeader jointHeader,
+            int leftSize) {
+        final List<int[]> keys = new ArrayList<>();
+        for (FilterItem filterItem : filters) {
+            if (filterItem.isCompoundFilter() || filterItem.getExpression() != null
+                    || !OperatorType.EQUALS_TO.equals(filterItem.getOperator())
+                    || !(filterItem.getOperand() instanceof SelectItem)) {
+                continue;
+            }
+            final int index1 = jointHeader.indexOf(filterItem.getSelectItem());
+            final int index2 = jointHeader.indexOf((SelectItem) filterItem.getOperand());
+            if (index1 == -1 || index2 == -1) {
+                continue;
+            }
+            if (index1 < leftSize && index2 >= leftSize) {
+                keys.add(new int[] { index1, index2 - leftSize });
+            } else if (index2 < leftSize && index1 >= leftSize) {
+                keys.add(new int[] { index2, index1 - leftSize });
+            }
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+        final int[][] result = new int[2][keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            result[0][i] = keys.get(i)[0];
+            result[1][i] = keys.get(i)[1];
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a dataset is known to be smaller than another dataset. Only datasets that hold their rows in
+     * memory can be estimated, so for any other datasets this method will return false.
+     */
+    private static boolean isSmaller(DataSet dataSet, DataSet otherDataSet) {
+        final int size = estimateRowCount(dataSet);
+        final int otherSize = estimateRowCount(otherDataSet);
+        return size != -1 && otherSize != -1 && size < otherSize;
+    }
+
+    private static int estimateRowCount(DataSet dataSet) {
+        if (dataSet instanceof InMemoryDataSet) {
+            return ((InMemoryDataSet) dataSet).size();
+        }
+        if (dataSet instanceof EmptyDataSet) {
+            return 0;
+        }
+        return -1;
+    }
+
     /**
      * Executes a simple nested loop join. The innerLoopDs will be copied in an in-memory dataset.
      *
@@ -222,6 +368,8 @@ public final class MetaModelHelper {
 
         DataSetHeader jointHeader = new CachingDataSetHeader(allItems);
 
+        List<CompiledFilterItem> compiledFilters = CompiledFilterItem.compile(applicableFilters, jointHeader);
+
         List<Row> resultRows = new ArrayList<>();
         for (Row outerRow : outerLoopDs) {
             for (Row innerRow : innerRows) {
@@ -234,7 +382,7 @@ public final class MetaModelHelper {
 
                 Row joinedRow = new DefaultRow(jointHeader, joinedRowObjects);
 
-                if (applicableFilters.isEmpty() || applicableFilters.stream().allMatch(fi -> fi.accept(joinedRow))) {
+                if (compiledFilters.stream().allMatch(fi -> fi.accept(joinedRow))) {
                     resultRows.add(joinedRow);
                 }
             }
@@ -301,7 +449,9 @@ public final class MetaModelHelper {
             // scalar functions are needed in evaluation of the filters
             dataSet = new ScalarFunctionDataSet(scalarFunctionSelectItems, dataSet);
         }
-        final FilteredDataSet filteredDataSet = new FilteredDataSet(dataSet, filterItems);
+        final DataSetHeader header = new SimpleDataSetHeader(dataSet.getSelectItems());
+        final FilteredDataSet filteredDataSet =
+                new FilteredDataSet(dataSet, CompiledFilterItem.compile(filterItems, header));
         if (calculateScalarFunctions) {
             return getSelection(selectItemsOnOutput, filteredDataSet);
         } else {
@@ -344,101 +494,426 @@ public final class MetaModelHelper {
 
     public static DataSet getGrouped(List<SelectItem> selectItems, DataSet dataSet,
             Collection<GroupByItem> groupByItems) {
-        DataSet result = dataSet;
-        if (groupByItems != null && groupByItems.size() > 0) {
-            Map<Row, Map<SelectItem, List<Object>>> uniqueRows = new HashMap<Row, Map<SelectItem, List<Object>>>();
+        if (groupByItems == null || groupByItems.isEmpty()) {
+            return getSelection(selectItems, dataSet);
+        }
+        final List<SelectItem> groupBySelects =
+                groupByItems.stream().map(gbi -> gbi.getSelectItem()).collect(Collectors.toList());
+        final List<SelectItem> functionItems = getAggregateFunctionSelectItems(selectItems);
+        final Map<GroupKey, AggregateBuilder<?>[]> groups = aggregateGroups(functionItems, dataSet, groupBySelects);
+        return getGroupedResult(selectItems, functionItems, groupBySelects, groups);
+    }
 
-            final List<SelectItem> groupBySelects =
-                    groupByItems.stream().map(gbi -> gbi.getSelectItem()).collect(Collectors.toList());
-            final DataSetHeader groupByHeader = new CachingDataSetHeader(groupBySelects);
+    /**
+     * Groups a number of partitions of a dataset, like
+     * {@link #getGrouped(List, DataSet, Collection)} does for the whole dataset. The partitions are partially
+     * aggregated concurrently, and the partial aggregates are then merged in partition order, so groups appear in the
+     * same order as if the partitions were grouped one after the other.
+     * 
+     * This requires that the aggregate functions of the select items are mergeable, see
+     * {@link #isPartiallyAggregatable(List)}.
+     * 
+     * @param selectItems
+     * @param partitions
+     * @param groupByItems
+     * @param executor the executor to aggregate the partitions with
+     * @return
+     */
+    public static DataSet getGrouped(List<SelectItem> selectItems, List<DataSet> partitions,
+            Collection<GroupByItem> groupByItems, ExecutorService executor) {
+        return getGrouped(selectItems, partitions, groupByItems, executor, true);
+    }
 
-            // Creates a list of SelectItems that have aggregate functions
-            List<SelectItem> functionItems = getAggregateFunctionSelectItems(selectItems);
+    /**
+     * Groups a number of partitions of a dataset, like {@link #getGrouped(List, List, Collection, ExecutorService)},
+     * but optionally merges the partial aggregates of the partitions in the order that the partitions finish. That
+     * way no partition waits for the ones before it, but the order of the groups and the results of order sensitive
+     * aggregates (such as {@link FunctionType#FIRST}) are not deterministic.
+     * 
+     * @param selectItems
+     * @param partitions
+     * @param groupByItems
+     * @param executor the executor to aggregate the partitions with
+     * @param ordered whether to merge the partial aggregates in partition order
+     * @return
+     */
+    public static DataSet getGrouped(List<SelectItem> selectItems, List<DataSet> partitions,
+            Collection<GroupByItem> groupByItems, ExecutorService executor, boolean ordered) {
+        final List<SelectItem> groupBySelects =
+                groupByItems.stream().map(gbi -> gbi.getSelectItem()).collect(Collectors.toList());
+        final List<SelectItem> functionItems = getAggregateFunctionSelectItems(selectItems);
+        final Map<GroupKey, AggregateBuilder<?>[]> groups =
+                aggregateGroups(functionItems, partitions, groupBySelects, executor, ordered);
+        return getGroupedResult(selectItems, functionItems, groupBySelects, groups);
+    }
 
-            // Loop through the dataset and identify groups
-            while (dataSet.next()) {
-                Row row = dataSet.getRow();
-
-                // Subselect a row prototype with only the unique values that
-                // define the group
-                Row uniqueRow = row.getSubSelection(groupByHeader);
-
-                // function input is the values used for calculating aggregate
-                // functions in the group
-                Map<SelectItem, List<Object>> functionInput;
-                if (!uniqueRows.containsKey(uniqueRow)) {
-                    // If this group already exist, use an existing function
-                    // input
-                    functionInput = new HashMap<SelectItem, List<Object>>();
-                    for (SelectItem item : functionItems) {
-                        functionInput.put(item, new ArrayList<Object>());
-                    }
-                    uniqueRows.put(uniqueRow, functionInput);
+    /**
+     * Aggregates a number of partitions of a dataset, like {@link #getAggregated(List, DataSet)} does for the whole
+     * dataset, but only for select items that all have aggregate functions. The partitions are partially aggregated
+     * concurrently, and the partial aggregates are then merged in partition order.
+     * 
+     * This requires that the aggregate functions of the select items are mergeable, see
+     * {@link #isPartiallyAggregatable(List)}.
+     * 
+     * @param workSelectItems select items that all have aggregate functions
+     * @param partitions
+     * @param executor the executor to aggregate the partitions with
+     * @return
+     */
+    public static DataSet getAggregated(List<SelectItem> workSelectItems, List<DataSet> partitions,
+            ExecutorService executor) {
+        return getAggregated(workSelectItems, partitions, executor, true);
+    }
+
+    /**
+     * Aggregates a number of partitions of a dataset, like {@link #getAggregated(List, List, ExecutorService)}, but
+     * optionally merges the partial aggregates of the partitions in the order that the partitions finish, see
+     * {@link #getGrouped(List, List, Collection, ExecutorService, boolean)}.
+     * 
+     * @param workSelectItems select items that all have aggregate functions
+     * @param partitions
+     * @param executor the executor to aggregate the partitions with
+     * @param ordered whether to merge the partial aggregates in partition order
+     * @return
+     */
+    public static DataSet getAggregated(List<SelectItem> workSelectItems, List<DataSet> partitions,
+            ExecutorService executor, boolean ordered) {
+        final List<SelectItem> functionItems = getAggregateFunctionSelectItems(workSelectItems);
+        if (functionItems.size() != workSelectItems.size()) {
+            throw new IllegalArgumentException("Only aggregate function select items can be partially aggregated: "
+                    + workSelectItems);
+        }
+
+        final Map<GroupKey, AggregateBuilder<?>[]> groups =
+                aggregateGroups(functionItems, partitions, Collections.emptyList(), executor, ordered);
+
+        // if there are no matching records at all, we still need to return a
+        // record with the aggregates
+        AggregateBuilder<?>[] aggregateBuilders = groups.get(new GroupKey(new Object[0]));
+        if (aggregateBuilders == null) {
+            aggregateBuilders = createAggregateBuilders(functionItems);
+        }
+
+        final DataSetHeader header = new SimpleDataSetHeader(workSelectItems);
+        final Object[] values = new Object[header.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = aggregateBuilders[i].getAggregate();
+        }
+        return new InMemoryDataSet(header, new DefaultRow(header, values));
+    }
+
+    /**
+     * Determines if the aggregate functions of some select items can be partially aggregated in partitions, ie. if
+     * their aggregate builders are {@link MergeableAggregateBuilder}s.
+     * 
+     * @param selectItems
+     * @return
+     */
+    public static boolean isPartiallyAggregatable(List<SelectItem> selectItems) {
+        for (SelectItem item : getAggregateFunctionSelectItems(selectItems)) {
+            if (item.getColumn() == null && !SelectItem.isCountAllItem(item)) {
+                return false;
+            }
+            if (!(item.getAggregateFunction().createAggregateBuilder() instanceof MergeableAggregateBuilder)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loops through a dataset and aggregates the values of each group incrementally, so that only one set of
+     * aggregate builders per group is kept in memory.
+     */
+    private static Map<GroupKey, AggregateBuilder<?>[]> aggregateGroups(List<SelectItem> functionItems,
+            DataSet dataSet, List<SelectItem> groupBySelects) {
+        try {
+            // resolve the positions of the group by values in the input rows
+            final int groupBySize = groupBySelects.size();
+            final int[] groupByIndexes = new int[groupBySize];
+            final int[] groupByFallbackIndexes = new int[groupBySize];
+            for (int i = 0; i < groupBySize; i++) {
+                final SelectItem groupBySelect = groupBySelects.get(i);
+                final SelectItem subQuerySelectItem = groupBySelect.getSubQuerySelectItem();
+                if (subQuerySelectItem == null) {
+                    groupByIndexes[i] = dataSet.indexOf(groupBySelect);
+                    groupByFallbackIndexes[i] = -1;
                 } else {
-                    // If this is a new group, create a new function input
-                    functionInput = uniqueRows.get(uniqueRow);
+                    groupByIndexes[i] = dataSet.indexOf(subQuerySelectItem);
+                    groupByFallbackIndexes[i] = dataSet.indexOf(groupBySelect);
                 }
+            }
 
-                // Loop through aggregate functions to check for validity
-                for (SelectItem item : functionItems) {
-                    List<Object> objects = functionInput.get(item);
-                    Column column = item.getColumn();
-                    if (column != null) {
-                        Object value = row.getValue(new SelectItem(column));
-                        objects.add(value);
-                    } else if (SelectItem.isCountAllItem(item)) {
-                        // Just use the empty string, since COUNT(*) don't
-                        // evaluate values (but null values should be prevented)
-                        objects.add("");
-                    } else {
-                        throw new IllegalArgumentException("Expression function not supported: " + item);
+            final int[] functionInputIndexes = getAggregateInputIndexes(functionItems, dataSet);
+
+            final Map<GroupKey, AggregateBuilder<?>[]> groups = new LinkedHashMap<>();
+            final Object[] probeValues = new Object[groupBySize];
+            final GroupKey probeKey = new GroupKey(probeValues);
+            final RowBatch batch = new RowBatch(dataSet.getSelectItems());
+            while (dataSet.nextBatch(batch)) {
+                final int batchSize = batch.size();
+                for (int rowIndex = 0; rowIndex < batchSize; rowIndex++) {
+                    for (int i = 0; i < groupBySize; i++) {
+                        Object value = groupByIndexes[i] == -1 ? null : batch.getValue(rowIndex, groupByIndexes[i]);
+                        if (value == null && groupByFallbackIndexes[i] != -1) {
+                            value = batch.getValue(rowIndex, groupByFallbackIndexes[i]);
+                        }
+                        probeValues[i] = value;
                     }
+                    probeKey.rehash();
+
+                    AggregateBuilder<?>[] aggregateBuilders = groups.get(probeKey);
+                    if (aggregateBuilders == null) {
+                        aggregateBuilders = createAggregateBuilders(functionItems);
+                        groups.put(new GroupKey(probeValues.clone()), aggregateBuilders);
+                    }
+
+                    addAggregateInput(batch, rowIndex, functionInputIndexes, aggregateBuilders);
                 }
             }
-
+            return groups;
+        } finally {
             dataSet.close();
-            final List<Row> resultData = new ArrayList<Row>();
-            final DataSetHeader resultHeader = new CachingDataSetHeader(selectItems);
+        }
+    }
 
-            // Loop through the groups to generate aggregates
-            for (Entry<Row, Map<SelectItem, List<Object>>> entry : uniqueRows.entrySet()) {
-                Row row = entry.getKey();
-                Map<SelectItem, List<Object>> functionInput = entry.getValue();
-                Object[] resultRow = new Object[selectItems.size()];
-                // Loop through select items to generate a row
-                int i = 0;
-                for (SelectItem item : selectItems) {
-                    int uniqueRowIndex = row.indexOf(item);
-                    if (uniqueRowIndex != -1) {
-                        // If there's already a value for the select item in the
-                        // row, keep it (it's one of the grouped by columns)
-                        resultRow[i] = row.getValue(uniqueRowIndex);
+    /**
+     * Aggregates the groups of a number of partitions concurrently, and merges the partial aggregates in partition
+     * order, or in the order that the partitions finish.
+     */
+    private static Map<GroupKey, AggregateBuilder<?>[]> aggregateGroups(List<SelectItem> functionItems,
+            List<DataSet> partitions, List<SelectItem> groupBySelects, ExecutorService executor, boolean ordered) {
+        final CompletionService<Map<GroupKey, AggregateBuilder<?>[]>> completionService =
+                new ExecutorCompletionService<>(executor);
+        final List<Future<Map<GroupKey, AggregateBuilder<?>[]>>> futures = new ArrayList<>(partitions.size());
+        for (DataSet partition : partitions) {
+            futures.add(completionService.submit(() -> aggregateGroups(functionItems, partition, groupBySelects)));
+        }
+
+        final Map<GroupKey, AggregateBuilder<?>[]> groups = new LinkedHashMap<>();
+        try {
+            for (int partitionIndex = 0; partitionIndex < futures.size(); partitionIndex++) {
+                final Future<Map<GroupKey, AggregateBuilder<?>[]>> future;
+                if (ordered) {
+                    future = futures.get(partitionIndex);
+                } else {
+                    future = takePartitionResult(completionService);
+                }
+                final Map<GroupKey, AggregateBuilder<?>[]> partitionGroups = getPartitionResult(future);
+                for (Entry<GroupKey, AggregateBuilder<?>[]> entry : partitionGroups.entrySet()) {
+                    final AggregateBuilder<?>[] aggregateBuilders = groups.get(entry.getKey());
+                    if (aggregateBuilders == null) {
+                        groups.put(entry.getKey(), entry.getValue());
                     } else {
-                        // Use the function input to calculate the aggregate
-                        // value
-                        List<Object> objects = functionInput.get(item);
-                        if (objects != null) {
-                            Object functionResult = item.getAggregateFunction().evaluate(objects.toArray());
-                            resultRow[i] = functionResult;
-                        } else {
-                            if (item.getAggregateFunction() != null) {
-                                logger.error("No function input found for SelectItem: {}", item);
-                            }
+                        final AggregateBuilder<?>[] partitionBuilders = entry.getValue();
+                        for (int i = 0; i < aggregateBuilders.length; i++) {
+                            ((MergeableAggregateBuilder<?>) aggregateBuilders[i]).merge(partitionBuilders[i]);
                         }
                     }
-                    i++;
+                }
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return groups;
+    }
+
+    private static <E> Future<E> takePartitionResult(CompletionService<E> completionService) {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetaModelException("Interrupted while aggregating partitions", e);
+        }
+    }
+
+    private static <E> E getPartitionResult(Future<E> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetaModelException("Interrupted while aggregating partitions", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MetaModelException("Failed to aggregate partition", e);
+        }
+    }
+
+    private static DataSet getGroupedResult(List<SelectItem> selectItems, List<SelectItem> functionItems,
+            List<SelectItem> groupBySelects, Map<GroupKey, AggregateBuilder<?>[]> groups) {
+        final DataSet result;
+        if (groups.isEmpty()) {
+            result = new EmptyDataSet(selectItems);
+        } else {
+            // resolve where the values of each select item come from
+            final DataSetHeader groupByHeader = new CachingDataSetHeader(groupBySelects);
+            final int[] resultGroupByIndexes = new int[selectItems.size()];
+            final int[] resultFunctionIndexes = new int[selectItems.size()];
+            for (int i = 0; i < selectItems.size(); i++) {
+                final SelectItem item = selectItems.get(i);
+                resultGroupByIndexes[i] = groupByHeader.indexOf(item);
+                resultFunctionIndexes[i] = functionItems.indexOf(item);
+                if (resultGroupByIndexes[i] == -1 && resultFunctionIndexes[i] == -1
+                        && item.getAggregateFunction() != null) {
+                    logger.error("No function input found for SelectItem: {}", item);
+                }
+            }
+
+            final List<Row> resultData = new ArrayList<Row>(groups.size());
+            final DataSetHeader resultHeader = new CachingDataSetHeader(selectItems);
+            for (Entry<GroupKey, AggregateBuilder<?>[]> entry : groups.entrySet()) {
+                final Object[] groupValues = entry.getKey().getValues();
+                final AggregateBuilder<?>[] aggregateBuilders = entry.getValue();
+                final Object[] resultRow = new Object[selectItems.size()];
+                for (int i = 0; i < resultRow.length; i++) {
+                    if (resultGroupByIndexes[i] != -1) {
+                        // If there's already a value for the select item in
+                        // the group, keep it (it's one of the grouped by
+                        // columns)
+                        resultRow[i] = groupValues[resultGroupByIndexes[i]];
+                    } else if (resultFunctionIndexes[i] != -1) {
+                        resultRow[i] = aggregateBuilders[resultFunctionIndexes[i]].getAggregate();
+                    }
                 }
                 resultData.add(new DefaultRow(resultHeader, resultRow, null));
             }
+            result = new InMemoryDataSet(resultHeader, resultData);
+        }
+        return getSelection(selectItems, result);
+    }
 
-            if (resultData.isEmpty()) {
-                result = new EmptyDataSet(selectItems);
+    /**
+     * A compact key of the group by values of a row. For cheap lookups, a single probe key can be reused by updating
+     * its values and invoking {@link #rehash()}.
+     */
+    private static final class GroupKey {
+
+        private final Object[] _values;
+        private int _hashCode;
+
+        public GroupKey(Object[] values) {
+            _values = values;
+            rehash();
+        }
+
+        public void rehash() {
+            _hashCode = Arrays.hashCode(_values);
+        }
+
+        public Object[] getValues() {
+            return _values;
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof GroupKey)) {
+                return false;
+            }
+            final GroupKey other = (GroupKey) obj;
+            return _hashCode == other._hashCode && Arrays.equals(_values, other._values);
+        }
+    }
+
+    // input index of COUNT(*) items, which do not read a value
+    private static final int COUNT_ALL_INPUT_INDEX = -2;
+
+    /**
+     * Resolves the indexes of the values in a dataset that are the input of some aggregate functions. COUNT(*) items
+     * will be resolved to {@link #COUNT_ALL_INPUT_INDEX}.
+     */
+    private static int[] getAggregateInputIndexes(List<SelectItem> functionItems, DataSet dataSet) {
+        final int[] indexes = new int[functionItems.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            final SelectItem item = functionItems.get(i);
+            final Column column = item.getColumn();
+            if (column != null) {
+                indexes[i] = dataSet.indexOf(new SelectItem(column));
+            } else if (SelectItem.isCountAllItem(item)) {
+                indexes[i] = COUNT_ALL_INPUT_INDEX;
             } else {
-                result = new InMemoryDataSet(resultHeader, resultData);
+                throw new IllegalArgumentException("Expression function not supported: " + item);
+            }
+        }
+        return indexes;
+    }
+
+    private static AggregateBuilder<?>[] createAggregateBuilders(List<SelectItem> functionItems) {
+        final AggregateBuilder<?>[] aggregateBuilders = new AggregateBuilder<?>[functionItems.size()];
+        for (int i = 0; i < aggregateBuilders.length; i++) {
+            aggregateBuilders[i] = functionItems.get(i).getAggregateFunction().createAggregateBuilder();
+        }
+        return aggregateBuilders;
+    }
+
+    private static void addAggregateInput(Row row, int[] inputIndexes, AggregateBuilder<?>[] aggregateBuilders) {
+        for (int i = 0; i < aggregateBuilders.length; i++) {
+            final int inputIndex = inputIndexes[i];
+            if (inputIndex == COUNT_ALL_INPUT_INDEX) {
+                // Just use the empty string, since COUNT(*) don't
+                // evaluate values (but null values should be prevented)
+                aggregateBuilders[i].add("");
+            } else if (inputIndex == -1) {
+                aggregateBuilders[i].add(null);
+            } else {
+                aggregateBuilders[i].add(row.getValue(inputIndex));
+            }
+        }
+    }
+
+    private static void addAggregateInput(RowBatch batch, int rowIndex, int[] inputIndexes,
+            AggregateBuilder<?>[] aggregateBuilders) {
+        for (int i = 0; i < aggregateBuilders.length; i++) {
+            final int inputIndex = inputIndexes[i];
+            if (inputIndex == COUNT_ALL_INPUT_INDEX) {
+                aggregateBuilders[i].add("");
+            } else if (inputIndex == -1) {
+                aggregateBuilders[i].add(null);
+            } else {
+                aggregateBuilders[i].add(batch.getValue(rowIndex, inputIndex));
+            }
+        }
+    }
+
+    /**
+     * Adds the input values of a batch of rows to some aggregate builders, one column at a time.
+     */
+    private static void addAggregateInput(RowBatch batch, int[] inputIndexes,
+            AggregateBuilder<?>[] aggregateBuilders) {
+        final int batchSize = batch.size();
+        for (int i = 0; i < aggregateBuilders.length; i++) {
+            final AggregateBuilder<?> aggregateBuilder = aggregateBuilders[i];
+            final int inputIndex = inputIndexes[i];
+            if (inputIndex == COUNT_ALL_INPUT_INDEX) {
+                for (int rowIndex = 0; rowIndex < batchSize; rowIndex++) {
+                    aggregateBuilder.add("");
+                }
+            } else if (inputIndex == -1) {
+                for (int rowIndex = 0; rowIndex < batchSize; rowIndex++) {
+                    aggregateBuilder.add(null);
+                }
+            } else {
+                final Object[] values = batch.getColumn(inputIndex);
+                for (int rowIndex = 0; rowIndex < batchSize; rowIndex++) {
+                    aggregateBuilder.add(values[rowIndex]);
+                }
             }
         }
-        result = getSelection(selectItems, result);
-        return result;
     }
 
     /**
@@ -455,10 +930,8 @@ public final class MetaModelHelper {
             return dataSet;
         }
 
-        final Map<SelectItem, AggregateBuilder<?>> aggregateBuilders = new HashMap<SelectItem, AggregateBuilder<?>>();
-        for (SelectItem item : functionItems) {
-            aggregateBuilders.put(item, item.getAggregateFunction().createAggregateBuilder());
-        }
+        final AggregateBuilder<?>[] aggregateBuilders = createAggregateBuilders(functionItems);
+        final int[] functionInputIndexes = getAggregateInputIndexes(functionItems, dataSet);
 
         final DataSetHeader header;
         final boolean onlyAggregates;
@@ -471,26 +944,20 @@ public final class MetaModelHelper {
         }
 
         final List<Row> resultRows = new ArrayList<Row>();
-        while (dataSet.next()) {
-            final Row inputRow = dataSet.getRow();
-            for (SelectItem item : functionItems) {
-                final AggregateBuilder<?> aggregateBuilder = aggregateBuilders.get(item);
-                final Column column = item.getColumn();
-                if (column != null) {
-                    Object value = inputRow.getValue(new SelectItem(column));
-                    aggregateBuilder.add(value);
-                } else if (SelectItem.isCountAllItem(item)) {
-                    // Just use the empty string, since COUNT(*) don't
-                    // evaluate values (but null values should be prevented)
-                    aggregateBuilder.add("");
-                } else {
-                    throw new IllegalArgumentException("Expression function not supported: " + item);
-                }
+        if (onlyAggregates) {
+            // no rows are kept, so the input can be aggregated a batch at a
+            // time
+            final RowBatch batch = new RowBatch(dataSet.getSelectItems());
+            while (dataSet.nextBatch(batch)) {
+                addAggregateInput(batch, functionInputIndexes, aggregateBuilders);
             }
+        } else {
+            while (dataSet.next()) {
+                final Row inputRow = dataSet.getRow();
+                addAggregateInput(inputRow, functionInputIndexes, aggregateBuilders);
 
-            // If the result should also contain non-aggregated values, we
-            // will keep those in the rows list
-            if (!onlyAggregates) {
+                // If the result should also contain non-aggregated values, we
+                // will keep those in the rows list
                 final Object[] values = new Object[header.size()];
                 for (int i = 0; i < header.size(); i++) {
                     final Object value = inputRow.getValue(header.getSelectItem(i));
@@ -505,10 +972,8 @@ public final class MetaModelHelper {
 
         // Collect the aggregates
         Map<SelectItem, Object> functionResult = new HashMap<SelectItem, Object>();
-        for (SelectItem item : functionItems) {
-            AggregateBuilder<?> aggregateBuilder = aggregateBuilders.get(item);
-            Object result = aggregateBuilder.getAggregate();
-            functionResult.put(item, result);
+        for (int i = 0; i < functionItems.size(); i++) {
+            functionResult.put(functionItems.get(i), aggregateBuilders[i].getAggregate());
         }
 
         // if there are no result rows (no matching records at all), we still
@@ -569,61 +1034,163 @@ public final class MetaModelHelper {
     }
 
     public static DataSet getOrdered(DataSet dataSet, List<OrderByItem> orderByItems) {
-        return getOrdered(dataSet, orderByItems.toArray(new OrderByItem[orderByItems.size()]));
+        return getOrdered(dataSet, orderByItems, -1);
     }
 
     public static DataSet getOrdered(DataSet dataSet, final OrderByItem... orderByItems) {
-        if (orderByItems != null && orderByItems.length != 0) {
-            final int[] sortIndexes = new int[orderByItems.length];
-            for (int i = 0; i < orderByItems.length; i++) {
-                OrderByItem item = orderByItems[i];
-                int indexOf = dataSet.indexOf(item.getSelectItem());
-                sortIndexes[i] = indexOf;
-            }
+        if (orderByItems == null) {
+            return dataSet;
+        }
+        return getOrdered(dataSet, Arrays.asList(orderByItems), -1);
+    }
 
+    /**
+     * Orders a dataset, optionally only keeping the first rows of the ordering. The amount of rows held in memory is
+     * limited by the {@link #SYSTEM_PROPERTY_SORT_MAX_ROWS_IN_MEMORY} system property.
+     * 
+     * @param dataSet the dataset to order
+     * @param orderByItems the items to order by
+     * @param maxRows the number of rows from the start of the ordering to return, or -1 if all rows should be
+     *            returned
+     * @return the ordered dataset
+     */
+    public static DataSet getOrdered(DataSet dataSet, List<OrderByItem> orderByItems, int maxRows) {
+        return getOrdered(dataSet, orderByItems, maxRows, getSortMaxRowsInMemory());
+    }
+
+    /**
+     * Orders a dataset, optionally only keeping the first rows of the ordering.
+     * 
+     * If only the first rows of the ordering are requested, and they fit within the memory budget, they are found
+     * using a {@link TopNDataSet} in a single pass. Otherwise the dataset is sorted using an external merge sort: whenever
+     * the memory budget is exceeded, the buffered rows are sorted and written to a temporary file, and the sorted runs
+     * are merged lazily while the returned dataset is being iterated. Writing the rows to a file requires their values
+     * to be serializable.
+     * 
+     * @param dataSet the dataset to order
+     * @param orderByItems the items to order by
+     * @param maxRows the number of rows from the start of the ordering to return, or -1 if all rows should be
+     *            returned
+     * @param maxRowsInMemory the maximum number of rows to hold in memory while sorting
+     * @return the ordered dataset
+     * @throws MetaModelException if the rows do not fit in memory and cannot be written to a temporary file, eg.
+     *             because they contain values that are not serializable
+     */
+    public static DataSet getOrdered(DataSet dataSet, List<OrderByItem> orderByItems, int maxRows,
+            int maxRowsInMemory) {
+        if (orderByItems == null || orderByItems.isEmpty()) {
+            return dataSet;
+        }
+        if (maxRowsInMemory < 1) {
+            throw new IllegalArgumentException("Max rows in memory must be a positive number: " + maxRowsInMemory);
+        }
+
+        final Comparator<Row> comparator = createRowComparator(dataSet, orderByItems);
+
+        if (dataSet instanceof InMemoryDataSet) {
+            // the rows are already in memory, so there's no point in spilling
+            // them to disk
             final List<Row> data = readDataSetFull(dataSet);
             if (data.isEmpty()) {
                 return new EmptyDataSet(dataSet.getSelectItems());
             }
+            Collections.sort(data, comparator);
+            return getPaged(new InMemoryDataSet(data), 1, maxRows);
+        }
 
-            final Comparator<Object> valueComparator = ObjectComparator.getComparator();
-
-            // create a comparator for doing the actual sorting/ordering
-            final Comparator<Row> comparator = new Comparator<Row>() {
-                public int compare(Row o1, Row o2) {
-                    for (int i = 0; i < sortIndexes.length; i++) {
-                        int sortIndex = sortIndexes[i];
-                        Object sortObj1 = o1.getValue(sortIndex);
-                        Object sortObj2 = o2.getValue(sortIndex);
-                        int compare = valueComparator.compare(sortObj1, sortObj2);
-                        if (compare != 0) {
-                            OrderByItem orderByItem = orderByItems[i];
-                            boolean ascending = orderByItem.isAscending();
-                            if (ascending) {
-                                return compare;
-                            } else {
-                                return compare * -1;
-                            }
-                        }
-                    }
-                    return 0;
+        if (maxRows > 0 && maxRows <= maxRowsInMemory) {
+            return new TopNDataSet(dataSet, comparator, maxRows);
+        }
+
+        // the rows are buffered in columnar form, which takes much less
+        // memory than the rows themselves
+        final DataSetHeader header = new CachingDataSetHeader(dataSet.getSelectItems());
+        final List<File> runFiles = new ArrayList<File>();
+        List<Row> buffer = new ColumnarRowList(header);
+        try {
+            while (dataSet.next()) {
+                buffer.add(dataSet.getRow());
+                if (buffer.size() >= maxRowsInMemory) {
+                    Collections.sort(buffer, comparator);
+                    runFiles.add(SortedRunsDataSet.writeRun(buffer));
+                    buffer = new ColumnarRowList(header);
                 }
-            };
+            }
+        } catch (RuntimeException e) {
+            for (File runFile : runFiles) {
+                runFile.delete();
+            }
+            throw e;
+        } finally {
+            dataSet.close();
+        }
 
-            Collections.sort(data, comparator);
+        Collections.sort(buffer, comparator);
 
-            dataSet = new InMemoryDataSet(data);
+        final DataSet result;
+        if (!runFiles.isEmpty()) {
+            result = new SortedRunsDataSet(header, runFiles, buffer, comparator);
+        } else if (buffer.isEmpty()) {
+            return new EmptyDataSet(dataSet.getSelectItems());
+        } else {
+            result = new InMemoryDataSet(header, buffer);
         }
-        return dataSet;
+        return getPaged(result, 1, maxRows);
+    }
+
+    private static int getSortMaxRowsInMemory() {
+        final Integer value = Integer.getInteger(SYSTEM_PROPERTY_SORT_MAX_ROWS_IN_MEMORY);
+        if (value == null || value.intValue() < 1) {
+            return DEFAULT_SORT_MAX_ROWS_IN_MEMORY;
+        }
+        return value.intValue();
+    }
+
+    private static Comparator<Row> createRowComparator(DataSet dataSet, List<OrderByItem> orderByItems) {
+        final int[] sortIndexes = new int[orderByItems.size()];
+        final boolean[] ascending = new boolean[sortIndexes.length];
+        // the value comparators are bound once per column, by column type
+        @SuppressWarnings("unchecked")
+        final Comparator<Object>[] valueComparators = new Comparator[sortIndexes.length];
+        for (int i = 0; i < sortIndexes.length; i++) {
+            final OrderByItem item = orderByItems.get(i);
+            sortIndexes[i] = dataSet.indexOf(item.getSelectItem());
+            ascending[i] = item.isAscending();
+            valueComparators[i] = ColumnTypeComparator.getComparator(item.getSelectItem().getExpectedColumnType());
+        }
+
+        // create a comparator for doing the actual sorting/ordering
+        return new Comparator<Row>() {
+            public int compare(Row o1, Row o2) {
+                for (int i = 0; i < sortIndexes.length; i++) {
+                    int sortIndex = sortIndexes[i];
+                    Object sortObj1 = o1.getValue(sortIndex);
+                    Object sortObj2 = o2.getValue(sortIndex);
+                    int compare = valueComparators[i].compare(sortObj1, sortObj2);
+                    if (compare != 0) {
+                        if (ascending[i]) {
+                            return compare;
+                        } else {
+                            return compare * -1;
+                        }
+                    }
+                }
+                return 0;
+            }
+        };
     }
 
     public static List<Row> readDataSetFull(DataSet dataSet) {
         final List<Row> result;
         if (dataSet instanceof InMemoryDataSet) {
             // if dataset is an in memory dataset we have a shortcut to avoid
-            // creating a new list
-            result = ((InMemoryDataSet) dataSet).getRows();
+            // creating a new list, unless it is a (read-only) ColumnarRowList,
+            // eg. the rows of an ordered dataset
+            final List<Row> rows = ((InMemoryDataSet) dataSet).getRows();
+            result = rows instanceof ColumnarRowList ? new ArrayList<Row>(rows) : rows;
         } else {
+            // callers may modify the result, so it is not a (read-only)
+            // ColumnarRowList, see ColumnarRowList.read(DataSet) for that
             result = new ArrayList<Row>();
             while (dataSet.next()) {
                 result.add(dataSet.getRow());
@@ -701,53 +1268,7 @@ public final class MetaModelHelper {
      * @return the left joined result dataset
      */
     public static DataSet getLeftJoin(DataSet ds1, DataSet ds2, FilterItem[] onConditions) {
-        if (ds1 == null) {
-            throw new IllegalArgumentException("Left DataSet cannot be null");
-        }
-        if (ds2 == null) {
-            throw new IllegalArgumentException("Right DataSet cannot be null");
-        }
-        List<SelectItem> si1 = ds1.getSelectItems();
-        List<SelectItem> si2 = ds2.getSelectItems();
-        List<SelectItem> selectItems = Stream.concat(si1.stream(), si2.stream()).collect(Collectors.toList());
-        List<Row> resultRows = new ArrayList<Row>();
-        List<Row> ds2data = readDataSetFull(ds2);
-        if (ds2data.isEmpty()) {
-            // no need to join, simply return a new view (with null values) on
-            // the previous dataset.
-            return getSelection(selectItems, ds1);
-        }
-
-        final DataSetHeader header = new CachingDataSetHeader(selectItems);
-
-        while (ds1.next()) {
-
-            // Construct a single-row dataset for making a carthesian product
-            // against ds2
-            Row ds1row = ds1.getRow();
-            List<Row> ds1rows = new ArrayList<Row>();
-            ds1rows.add(ds1row);
-
-            DataSet carthesianProduct =
-                    getCarthesianProduct(new DataSet[] { new InMemoryDataSet(new CachingDataSetHeader(si1), ds1rows),
-                            new InMemoryDataSet(new CachingDataSetHeader(si2), ds2data) }, onConditions);
-            List<Row> carthesianRows = readDataSetFull(carthesianProduct);
-            if (carthesianRows.size() > 0) {
-                resultRows.addAll(carthesianRows);
-            } else {
-                Object[] values = ds1row.getValues();
-                Object[] row = new Object[selectItems.size()];
-                System.arraycopy(values, 0, row, 0, values.length);
-                resultRows.add(new DefaultRow(header, row));
-            }
-        }
-        ds1.close();
-
-        if (resultRows.isEmpty()) {
-            return new EmptyDataSet(selectItems);
-        }
-
-        return new InMemoryDataSet(header, resultRows);
+        return getOuterJoin(JoinType.LEFT, ds1, ds2, onConditions);
     }
 
     /**
@@ -759,18 +1280,59 @@ public final class MetaModelHelper {
      * @return the right joined result dataset
      */
     public static DataSet getRightJoin(DataSet ds1, DataSet ds2, FilterItem[] onConditions) {
-        List<SelectItem> ds1selects = ds1.getSelectItems();
-        List<SelectItem> ds2selects = ds2.getSelectItems();
-        List<SelectItem> leftOrderedSelects = new ArrayList<>();
-        leftOrderedSelects.addAll(ds1selects);
-        leftOrderedSelects.addAll(ds2selects);
+        return getOuterJoin(JoinType.RIGHT, ds1, ds2, onConditions);
+    }
 
-        // We will reuse the left join algorithm (but switch the datasets
-        // around)
-        DataSet dataSet = getLeftJoin(ds2, ds1, onConditions);
+    /**
+     * Performs a full join (aka full outer join) operation on two datasets.
+     * 
+     * @param ds1 the left dataset
+     * @param ds2 the right dataset
+     * @param onConditions the conditions to join by
+     * @return the full joined result dataset
+     */
+    public static DataSet getFullJoin(DataSet ds1, DataSet ds2, FilterItem[] onConditions) {
+        return getOuterJoin(JoinType.FULL, ds1, ds2, onConditions);
+    }
 
-        dataSet = getSelection(leftOrderedSelects, dataSet);
-        return dataSet;
+    /**
+     * Performs an outer join by building a hash index of one side of the join (the right side, except for right
+     * joins) and streaming the rows of the other side through it.
+     */
+    private static DataSet getOuterJoin(JoinType joinType, DataSet ds1, DataSet ds2, FilterItem[] onConditions) {
+        if (ds1 == null) {
+            throw new IllegalArgumentException("Left DataSet cannot be null");
+        }
+        if (ds2 == null) {
+            throw new IllegalArgumentException("Right DataSet cannot be null");
+        }
+        final List<SelectItem> si1 = ds1.getSelectItems();
+        final List<SelectItem> si2 = ds2.getSelectItems();
+        final List<SelectItem> selectItems = Stream.concat(si1.stream(), si2.stream()).collect(Collectors.toList());
+        final DataSetHeader header = new CachingDataSetHeader(selectItems);
+
+        final Set<FilterItem> applicableFilters = applicableFilters(Arrays.asList(onConditions), selectItems);
+        int[][] keyIndexes = getEquiJoinKeyIndexes(applicableFilters, header, si1.size());
+        if (keyIndexes == null) {
+            // no equality conditions, every row will be a candidate for a match
+            keyIndexes = new int[2][0];
+        }
+
+        final boolean probeIsLeft = joinType != JoinType.RIGHT;
+        final DataSet buildDs = probeIsLeft ? ds2 : ds1;
+        final DataSet probeDs = probeIsLeft ? ds1 : ds2;
+        final int[] buildKeyIndexes = probeIsLeft ? keyIndexes[1] : keyIndexes[0];
+        final int[] probeKeyIndexes = probeIsLeft ? keyIndexes[0] : keyIndexes[1];
+
+        final HashJoinIndex index = HashJoinIndex.build(buildDs, buildKeyIndexes);
+        if (index.size() == 0 && joinType != JoinType.FULL) {
+            // no need to join, simply return a new view (with null values) on
+            // the outer dataset.
+            return getSelection(selectItems, probeDs);
+        }
+
+        return new HashJoinDataSet(header, joinType, probeDs, probeIsLeft, index, probeKeyIndexes,
+                CompiledFilterItem.compile(applicableFilters, header));
     }
 
     public static SelectItem[] createSelectItems(Column... columns) {
@@ -782,10 +1344,7 @@ public final class MetaModelHelper {
     }
 
     public static DataSet getDistinct(DataSet dataSet) {
-        List<SelectItem> selectItems = dataSet.getSelectItems();
-        List<GroupByItem> groupByItems = selectItems.stream().map(GroupByItem::new).collect(Collectors.toList());
-
-        return getGrouped(selectItems, dataSet, groupByItems);
+        return new DistinctDataSet(dataSet);
     }
 
     public static Table[] getTables(Column[] columns) {
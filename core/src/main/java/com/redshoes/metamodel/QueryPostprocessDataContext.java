@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.redshoes.metamodel.annotations.InterfaceStability;
@@ -33,16 +35,23 @@ import com.redshoes.metamodel.convert.Converters;
 import com.redshoes.metamodel.convert.HasReadTypeConverters;
 import com.redshoes.metamodel.convert.TypeConverter;
 import com.redshoes.metamodel.util.CollectionUtils;
+import com.redshoes.metamodel.util.SharedExecutorService;
 import com.redshoes.metamodel.data.DataSet;
 import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.DefaultRow;
 import com.redshoes.metamodel.data.EmptyDataSet;
 import com.redshoes.metamodel.data.FirstRowDataSet;
 import com.redshoes.metamodel.data.InMemoryDataSet;
+import com.redshoes.metamodel.data.PartitionedDataSet;
+import com.redshoes.metamodel.data.ReusableRowDataSet;
 import com.redshoes.metamodel.data.Row;
 import com.redshoes.metamodel.data.SimpleDataSetHeader;
+import com.redshoes.metamodel.query.AggregateFunction;
+import com.redshoes.metamodel.query.CompiledQuery;
+import com.redshoes.metamodel.query.DefaultCompiledQuery;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.query.FromItem;
+import com.redshoes.metamodel.query.FunctionType;
 import com.redshoes.metamodel.query.GroupByItem;
 import com.redshoes.metamodel.query.JoinType;
 import com.redshoes.metamodel.query.OperatorType;
@@ -81,6 +90,8 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
 
     private final Map<Column, TypeConverter<?, ?>> converters;
     private final boolean singleTableDatastore;
+    private volatile int parallelism;
+    private volatile boolean reusableRows;
 
     public QueryPostprocessDataContext() {
         this(true);
@@ -98,139 +109,406 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         super();
         this.singleTableDatastore = singleTableDatastore;
         this.converters = new HashMap<Column, TypeConverter<?, ?>>();
+        this.parallelism = 1;
+    }
+
+    /**
+     * Gets the degree of parallelism that queries are executed with.
+     * 
+     * @return the maximum number of partitions of a table that are processed concurrently
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the degree of parallelism that queries are executed with. The default parallelism is 1, meaning that
+     * queries are executed on the calling thread only.
+     * 
+     * With a higher parallelism, queries on a single table are executed by materializing partitions of the table
+     * concurrently, if the subclass supports it (see {@link #materializeMainSchemaTablePartitions(Table, List, int)}).
+     * Filtering, evaluation of scalar functions and (partial) aggregation is then done per partition, and the results
+     * of the partitions are merged in partition order. Partial aggregates are merged in the order that the partitions
+     * finish instead, if the result of the query does not depend on it, ie. unless the query has FIRST or LAST
+     * aggregates, or groups without an ORDER BY clause. The partitions are processed by the shared executor named
+     * {@link SharedExecutorService#EXECUTOR_QUERY}.
+     * 
+     * Note that partial sums and averages of floating point numbers are merged in a different order than when
+     * aggregating on a single thread, so such aggregates may differ in the least significant digits.
+     * 
+     * @param parallelism the maximum number of partitions of a table to process concurrently
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be a positive number: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Determines if simple scans return the same {@link Row} instance for every row, see
+     * {@link #setReusableRows(boolean)}.
+     * 
+     * @return true if simple scans reuse their rows
+     */
+    public boolean isReusableRows() {
+        return reusableRows;
+    }
+
+    /**
+     * Sets whether simple scans, ie. queries that select columns of a single table without grouping or ordering, read
+     * the table in batches and return the same {@link Row} instance for every row (see {@link ReusableRowDataSet}).
+     * This avoids allocating a row per scanned row, but only works for consumers that do not retain rows: a row is only
+     * valid until the next call to {@link DataSet#next()}, so rows that are kept must be copied, eg. using
+     * {@link Row#getValues()}. {@link DataSet#toRows()} copies the rows, and the results of sub-queries in the FROM
+     * clause never reuse their rows. Rows are not reused by default.
+     * 
+     * @param reusableRows whether simple scans should reuse their rows
+     */
+    public void setReusableRows(boolean reusableRows) {
+        this.reusableRows = reusableRows;
     }
 
     @Override
     public DataSet executeQuery(final Query query) {
-        final List<SelectItem> selectItems = query.getSelectClause().getItems();
-        final List<FromItem> fromItems = query.getFromClause().getItems();
-        final List<FilterItem> whereItems = query.getWhereClause().getItems();
-        final List<SelectItem> whereSelectItems = query.getWhereClause().getEvaluatedSelectItems();
-        final List<GroupByItem> groupByItems = query.getGroupByClause().getItems();
-        final List<SelectItem> groupBySelectItems = query.getGroupByClause().getEvaluatedSelectItems();
-        final List<SelectItem> havingSelectItems = query.getHavingClause().getEvaluatedSelectItems();
-        final List<SelectItem> orderBySelectItems = query.getOrderByClause().getEvaluatedSelectItems();
+        final QueryPlan plan = new QueryPlan(query);
+        return plan.execute(query.getWhereClause().getItems());
+    }
 
-        final List<FilterItem> havingItems = query.getHavingClause().getItems();
-        final List<OrderByItem> orderByItems = query.getOrderByClause().getItems();
+    /**
+     * Compiles a query into a {@link QueryPlan}, so that repeated executions of the query only bind the values of the
+     * query parameters, without planning the query again. The plan is based on the structure of the query at the time
+     * of compilation.
+     * 
+     * Queries with sub-queries in the FROM clause are not planned in advance, since the sub-queries are planned when
+     * they are executed.
+     */
+    @Override
+    public CompiledQuery compileQuery(final Query query) throws MetaModelException {
+        for (FromItem fromItem : query.getFromClause().getItems()) {
+            if (fromItem.getSubQuery() != null) {
+                return super.compileQuery(query);
+            }
+        }
+        return new PlannedCompiledQuery(query, new QueryPlan(query));
+    }
 
-        final int firstRow = (query.getFirstRow() == null ? 1 : query.getFirstRow());
-        final int maxRows = (query.getMaxRows() == null ? -1 : query.getMaxRows());
+    @Override
+    public DataSet executeQuery(CompiledQuery compiledQuery, Object... values) {
+        if (compiledQuery instanceof PlannedCompiledQuery) {
+            final PlannedCompiledQuery plannedQuery = (PlannedCompiledQuery) compiledQuery;
+            return plannedQuery.getPlan().execute(plannedQuery.getWhereItemsWithParameterValues(values));
+        }
+        return super.executeQuery(compiledQuery, values);
+    }
 
-        if (maxRows == 0) {
-            // no rows requested - no reason to do anything
-            return new EmptyDataSet(selectItems);
+    /**
+     * The plan of how a query is executed. The plan covers everything that only depends on the structure of the query:
+     * the select items that need to be materialized, the shortcuts that apply (COUNT queries, primary key lookups,
+     * simple selects) and the order of the post processing steps. The WHERE items are only supplied when the plan is
+     * executed, so a plan can be executed repeatedly with different values of query parameters.
+     */
+    private final class QueryPlan {
+
+        private final List<SelectItem> selectItems;
+        private final List<FromItem> fromItems;
+        private final List<GroupByItem> groupByItems;
+        private final List<FilterItem> havingItems;
+        private final List<OrderByItem> orderByItems;
+        private final List<SelectItem> orderBySelectItems;
+        private final boolean distinct;
+        private final int firstRow;
+        private final int maxRows;
+        private final int orderedRows;
+
+        // the select items that are needed to execute the query (some may
+        // only be used as part of a filter, but not shown in result)
+        private final List<SelectItem> workSelectItems;
+
+        // the select items that are needed after the WHERE clause has been
+        // applied
+        private final List<SelectItem> postFilterSelectItems;
+
+        private final boolean singleFromItem;
+        private final boolean noGrouping;
+        private final Table table;
+        private final boolean simpleSelect;
+        private final boolean simpleOrderBy;
+        private final List<SelectItem> orderedSelectItems;
+
+        // the COUNT(*) item of a query that may be executed with
+        // executeCountQuery(...), or null
+        private final SelectItem countAllItem;
+
+        // the primary key column of a query that may be executed with
+        // executePrimaryKeyLookupQuery(...), or null
+        private final Column primaryKeyColumn;
+
+        public QueryPlan(Query query) {
+            selectItems = new ArrayList<>(query.getSelectClause().getItems());
+            fromItems = new ArrayList<>(query.getFromClause().getItems());
+            groupByItems = new ArrayList<>(query.getGroupByClause().getItems());
+            havingItems = new ArrayList<>(query.getHavingClause().getItems());
+            orderByItems = new ArrayList<>(query.getOrderByClause().getItems());
+            orderBySelectItems = query.getOrderByClause().getEvaluatedSelectItems();
+            distinct = query.getSelectClause().isDistinct();
+
+            firstRow = (query.getFirstRow() == null ? 1 : query.getFirstRow());
+            maxRows = (query.getMaxRows() == null ? -1 : query.getMaxRows());
+            orderedRows = getOrderedRows(firstRow, maxRows);
+
+            final List<FilterItem> whereItems = query.getWhereClause().getItems();
+            final List<SelectItem> whereSelectItems = query.getWhereClause().getEvaluatedSelectItems();
+            final List<SelectItem> groupBySelectItems = query.getGroupByClause().getEvaluatedSelectItems();
+            final List<SelectItem> havingSelectItems = query.getHavingClause().getEvaluatedSelectItems();
+
+            workSelectItems = CollectionUtils.concat(true, selectItems, whereSelectItems, groupBySelectItems,
+                    havingSelectItems, orderBySelectItems);
+
+            // we can exclude the select items imposed by the WHERE clause once
+            // it has been applied (and should, to make the aggregation process
+            // faster)
+            postFilterSelectItems =
+                    CollectionUtils.concat(true, selectItems, groupBySelectItems, havingSelectItems, orderBySelectItems);
+
+            // check certain common query types that can often be optimized by
+            // subclasses
+            singleFromItem = fromItems.size() == 1;
+            noGrouping = groupByItems.isEmpty() && havingItems.isEmpty();
+            if (singleFromItem && noGrouping) {
+                table = MetaModelHelper.resolveTable(fromItems.get(0));
+            } else {
+                table = null;
+            }
+            simpleSelect = table != null && isSimpleSelect(query.getSelectClause());
+            simpleOrderBy = simpleSelect && isSimpleOrderBy(orderBySelectItems);
+            orderedSelectItems = simpleOrderBy ? CollectionUtils.concat(true, selectItems, orderBySelectItems) : null;
+            countAllItem = getCountAllItem();
+            primaryKeyColumn = getPrimaryKeyColumn(whereItems);
         }
 
-        // check certain common query types that can often be optimized by
-        // subclasses
-        final boolean singleFromItem = fromItems.size() == 1;
-        final boolean noGrouping = groupByItems.isEmpty() && havingItems.isEmpty();
-        if (singleFromItem && noGrouping) {
+        /**
+         * Gets the COUNT(*) item of a SELECT COUNT(*) query on a main schema table.
+         */
+        private SelectItem getCountAllItem() {
+            if (table == null || selectItems.size() != 1) {
+                return null;
+            }
+            final SelectItem selectItem = selectItems.get(0);
+            if (SelectItem.isCountAllItem(selectItem) && isMainSchemaTable(table)) {
+                return selectItem;
+            }
+            return null;
+        }
 
-            final FromItem fromItem = query.getFromClause().getItem(0);
-            final Table table = MetaModelHelper.resolveTable(fromItem);
-            if (table != null) {
+        /**
+         * Gets the primary key column of a query that looks up a row of a main schema table by primary key.
+         */
+        private Column getPrimaryKeyColumn(List<FilterItem> whereItems) {
+            if (!simpleSelect || whereItems.size() != 1) {
+                return null;
+            }
+            final FilterItem whereItem = whereItems.get(0);
+            final SelectItem selectItem = whereItem.getSelectItem();
+            if (!whereItem.isCompoundFilter() && selectItem != null && !selectItem.hasFunction()
+                    && selectItem.getColumn() != null) {
+                final Column column = selectItem.getColumn();
+                if (column.isPrimaryKey() && OperatorType.EQUALS_TO.equals(whereItem.getOperator())
+                        && isMainSchemaTable(table)) {
+                    return column;
+                }
+            }
+            return null;
+        }
 
+        /**
+         * Executes the plan.
+         * 
+         * @param whereItems the WHERE items of the query, which have the same structure as the WHERE items of the
+         *            query that the plan was created for.
+         * @return
+         */
+        public DataSet execute(final List<FilterItem> whereItems) {
+            if (maxRows == 0) {
+                // no rows requested - no reason to do anything
+                return new EmptyDataSet(selectItems);
+            }
+
+            // filtered partitions of the table, if the query is executed in
+            // parallel
+            List<DataSet> partitions = null;
+
+            if (table != null) {
                 // check for SELECT COUNT(*) queries
-                if (selectItems.size() == 1) {
-                    final SelectItem selectItem = query.getSelectClause().getItem(0);
-                    if (SelectItem.isCountAllItem(selectItem)) {
-                        final boolean functionApproximationAllowed = selectItem.isFunctionApproximationAllowed();
-                        if (isMainSchemaTable(table)) {
-                            logger.debug("Query is a COUNT query with {} where items. Trying executeCountQuery(...)",
-                                    whereItems.size());
-                            final Number count = executeCountQuery(table, whereItems, functionApproximationAllowed);
-                            if (count == null) {
-                                logger.debug(
-                                        "DataContext did not return any count query results. Proceeding with manual counting.");
-                            } else {
-                                final List<Row> data = new ArrayList<Row>(1);
-                                final DataSetHeader header = new SimpleDataSetHeader(new SelectItem[] { selectItem });
-                                data.add(new DefaultRow(header, new Object[] { count }));
-                                return new InMemoryDataSet(header, data);
-                            }
-                        }
+                if (countAllItem != null) {
+                    logger.debug("Query is a COUNT query with {} where items. Trying executeCountQuery(...)",
+                            whereItems.size());
+                    final Number count =
+                            executeCountQuery(table, whereItems, countAllItem.isFunctionApproximationAllowed());
+                    if (count == null) {
+                        logger.debug(
+                                "DataContext did not return any count query results. Proceeding with manual counting.");
+                    } else {
+                        final List<Row> data = new ArrayList<Row>(1);
+                        final DataSetHeader header = new SimpleDataSetHeader(new SelectItem[] { countAllItem });
+                        data.add(new DefaultRow(header, new Object[] { count }));
+                        return new InMemoryDataSet(header, data);
                     }
                 }
 
-                final boolean isSimpleSelect = isSimpleSelect(query.getSelectClause());
-                if (isSimpleSelect) {
-                    // check for lookup query by primary key
-                    if (whereItems.size() == 1) {
-                        final FilterItem whereItem = whereItems.get(0);
-                        final SelectItem selectItem = whereItem.getSelectItem();
-                        if (!whereItem.isCompoundFilter() && selectItem != null && !selectItem.hasFunction()
-                                && selectItem.getColumn() != null) {
-                            final Column column = selectItem.getColumn();
-                            if (column.isPrimaryKey() && OperatorType.EQUALS_TO.equals(whereItem.getOperator())) {
-                                logger.debug(
-                                        "Query is a primary key lookup query. Trying executePrimaryKeyLookupQuery(...)");
-                                if (table != null) {
-                                    if (isMainSchemaTable(table)) {
-                                        final Object operand = whereItem.getOperand();
-                                        final Row row =
-                                                executePrimaryKeyLookupQuery(table, selectItems, column, operand);
-                                        if (row == null) {
-                                            logger.debug(
-                                                    "DataContext did not return any GET query results. Proceeding with manual lookup.");
-                                        } else {
-                                            final DataSetHeader header = new SimpleDataSetHeader(selectItems);
-                                            return new InMemoryDataSet(header, row);
-                                        }
-                                    }
-                                }
-                            }
-                        }
+                // check for lookup query by primary key
+                if (primaryKeyColumn != null) {
+                    logger.debug("Query is a primary key lookup query. Trying executePrimaryKeyLookupQuery(...)");
+                    final Object operand = whereItems.get(0).getOperand();
+                    final Row row = executePrimaryKeyLookupQuery(table, selectItems, primaryKeyColumn, operand);
+                    if (row == null) {
+                        logger.debug(
+                                "DataContext did not return any GET query results. Proceeding with manual lookup.");
+                    } else {
+                        final DataSetHeader header = new SimpleDataSetHeader(selectItems);
+                        return new InMemoryDataSet(header, row);
                     }
+                }
+
+                partitions = materializePartitions(fromItems.get(0), workSelectItems, whereItems);
 
+                if (simpleSelect && partitions == null) {
                     // check for simple queries with or without simple criteria
                     if (orderByItems.isEmpty()) {
                         final DataSet dataSet = materializeTable(table, selectItems, whereItems, firstRow, maxRows);
+                        if (reusableRows) {
+                            return new ReusableRowDataSet(dataSet);
+                        }
+                        return dataSet;
+                    }
+
+                    // check for simple queries that are ordered by simple
+                    // values, which only need to be materialized and ordered
+                    if (simpleOrderBy) {
+                        DataSet dataSet = materializeTable(table, orderedSelectItems, whereItems, 1, -1);
+                        dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems, orderedRows);
+                        dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+                        dataSet = MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
                         return dataSet;
                     }
                 }
+            } else if (singleFromItem && !noGrouping) {
+                partitions = materializePartitions(fromItems.get(0), workSelectItems, whereItems);
             }
-        }
 
-        // Creates a list for all select items that are needed to execute query
-        // (some may only be used as part of a filter, but not shown in result)
-        List<SelectItem> workSelectItems = CollectionUtils.concat(true, selectItems, whereSelectItems,
-                groupBySelectItems, havingSelectItems, orderBySelectItems);
+            DataSet dataSet = null;
+            if (partitions == null) {
+                // Materialize the tables in the from clause
+                final DataSet[] fromDataSets = new DataSet[fromItems.size()];
+                for (int i = 0; i < fromDataSets.length; i++) {
+                    FromItem fromItem = fromItems.get(i);
+                    fromDataSets[i] = materializeFromItem(fromItem, workSelectItems);
+                }
+
+                // Execute the query using the raw data
+                dataSet = MetaModelHelper.getCarthesianProduct(fromDataSets, whereItems);
+            }
 
-        // Materialize the tables in the from clause
-        final DataSet[] fromDataSets = new DataSet[fromItems.size()];
-        for (int i = 0; i < fromDataSets.length; i++) {
-            FromItem fromItem = fromItems.get(i);
-            fromDataSets[i] = materializeFromItem(fromItem, workSelectItems);
+            if (partitions != null && isPartiallyAggregatable(postFilterSelectItems, groupByItems)) {
+                // aggregate each partition concurrently and merge the results
+                final ExecutorService executor = SharedExecutorService.get(SharedExecutorService.EXECUTOR_QUERY);
+                final boolean ordered = isMergeOrderSensitive(postFilterSelectItems, groupByItems, orderByItems);
+                if (groupByItems.size() > 0) {
+                    dataSet = MetaModelHelper.getGrouped(postFilterSelectItems, partitions, groupByItems, executor,
+                            ordered);
+                } else {
+                    dataSet = MetaModelHelper.getAggregated(postFilterSelectItems, partitions, executor, ordered);
+                }
+            } else {
+                if (partitions != null) {
+                    // read the partitions concurrently, and in order
+                    dataSet = new PartitionedDataSet(partitions,
+                            SharedExecutorService.get(SharedExecutorService.EXECUTOR_QUERY));
+                }
+                if (groupByItems.size() > 0) {
+                    dataSet = MetaModelHelper.getGrouped(postFilterSelectItems, dataSet, groupByItems);
+                } else {
+                    dataSet = MetaModelHelper.getAggregated(postFilterSelectItems, dataSet);
+                }
+            }
+            dataSet = MetaModelHelper.getFiltered(dataSet, havingItems);
+
+            if (distinct) {
+                dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+                dataSet = MetaModelHelper.getDistinct(dataSet);
+                dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems, orderedRows);
+            } else {
+                dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems, orderedRows);
+                dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+            }
+
+            dataSet = MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+            return dataSet;
         }
+    }
 
-        // Execute the query using the raw data
-        DataSet dataSet = MetaModelHelper.getCarthesianProduct(fromDataSets, whereItems);
+    /**
+     * A {@link CompiledQuery} with a {@link QueryPlan}. Values of query parameters are bound by replacing the WHERE
+     * items that contain query parameters, while the rest of the query is left untouched.
+     */
+    private static final class PlannedCompiledQuery extends DefaultCompiledQuery {
 
-        // we can now exclude the select items imposed by the WHERE clause (and
-        // should, to make the aggregation process faster)
-        workSelectItems =
-                CollectionUtils.concat(true, selectItems, groupBySelectItems, havingSelectItems, orderBySelectItems);
+        private final QueryPlan _plan;
+        private final List<FilterItem> _whereItems;
+        private final boolean _parameterized;
 
-        if (groupByItems.size() > 0) {
-            dataSet = MetaModelHelper.getGrouped(workSelectItems, dataSet, groupByItems);
-        } else {
-            dataSet = MetaModelHelper.getAggregated(workSelectItems, dataSet);
+        public PlannedCompiledQuery(Query query, QueryPlan plan) {
+            super(query);
+            _plan = plan;
+            _whereItems = new ArrayList<>(query.getWhereClause().getItems());
+            _parameterized = !getParameters().isEmpty();
         }
-        dataSet = MetaModelHelper.getFiltered(dataSet, havingItems);
 
-        if (query.getSelectClause().isDistinct()) {
-            dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
-            dataSet = MetaModelHelper.getDistinct(dataSet);
-            dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems);
-        } else {
-            dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems);
-            dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+        public QueryPlan getPlan() {
+            return _plan;
         }
 
-        dataSet = MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
-        return dataSet;
+        public List<FilterItem> getWhereItemsWithParameterValues(Object[] values) {
+            if (!_parameterized) {
+                return _whereItems;
+            }
+            final AtomicInteger parameterIndex = new AtomicInteger(0);
+            final List<FilterItem> whereItems = new ArrayList<>(_whereItems.size());
+            for (FilterItem whereItem : _whereItems) {
+                whereItems.add(copyFilterItem(whereItem, values, parameterIndex));
+            }
+            return whereItems;
+        }
+    }
+
+    /**
+     * Determines if the items of an ORDER BY clause can be evaluated directly on the materialized rows of a table.
+     *
+     * @param orderBySelectItems
+     * @return
+     */
+    private boolean isSimpleOrderBy(List<SelectItem> orderBySelectItems) {
+        for (SelectItem item : orderBySelectItems) {
+            if (item.getAggregateFunction() != null || item.getExpression() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines how many rows from the start of an ordering are needed to produce a page of results. Only these rows
+     * need to be ordered, which allows ordering using a bounded amount of memory.
+     *
+     * @param firstRow
+     * @param maxRows
+     * @return the number of rows, or -1 if all rows are needed
+     */
+    private static int getOrderedRows(int firstRow, int maxRows) {
+        if (maxRows == -1) {
+            return -1;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (long) firstRow - 1 + maxRows);
     }
 
     /**
@@ -287,27 +565,7 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         if (fromItem.getTable() != null) {
             // We need to materialize a single table
             final Table table = MetaModelHelper.resolveTable(fromItem);
-            final List<SelectItem> selectItemsToMaterialize = new ArrayList<SelectItem>();
-            
-            for (final SelectItem selectItem : selectItems) {
-                final FromItem selectedFromItem = selectItem.getFromItem();
-                if (selectedFromItem != null) {
-                    if (selectedFromItem.equals(fromItem)) {
-                        selectItemsToMaterialize.add(selectItem.replaceFunction(null));
-                    }
-                } else {
-                    // the select item does not specify a specific
-                    // from-item
-                    final Column selectedColumn = selectItem.getColumn();
-                    if (selectedColumn != null) {
-                        // we assume that if the table matches, we will use the
-                        // column
-                        if (selectedColumn.getTable() != null && selectedColumn.getTable().equals(table)) {
-                            selectItemsToMaterialize.add(selectItem.replaceFunction(null));
-                        }
-                    }
-                }
-            }
+            final List<SelectItem> selectItemsToMaterialize = getSelectItemsToMaterialize(fromItem, table, selectItems);
 
             if (logger.isDebugEnabled()) {
                 logger.debug("calling materializeTable(" + table.getName() + "," + selectItemsToMaterialize + ",1,-1");
@@ -350,12 +608,20 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
             case RIGHT:
                 dataSet = MetaModelHelper.getRightJoin(fromItemDataSets[0], fromItemDataSets[1], onConditions);
                 break;
+            case FULL:
+                dataSet = MetaModelHelper.getFullJoin(fromItemDataSets[0], fromItemDataSets[1], onConditions);
+                break;
             default:
                 throw new IllegalArgumentException("FromItem type not supported: " + fromItem);
             }
         } else if (fromItem.getSubQuery() != null) {
             // We need to (recursively) materialize a subquery
             dataSet = executeQuery(fromItem.getSubQuery());
+            if (dataSet instanceof ReusableRowDataSet) {
+                // the outer query may keep the rows of the subquery, so only
+                // the result of the outer query reuses its rows
+                dataSet = ((ReusableRowDataSet) dataSet).getWrappedDataSet();
+            }
         } else {
             throw new IllegalArgumentException("FromItem type not supported: " + fromItem);
         }
@@ -366,6 +632,126 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         return dataSet;
     }
 
+    private List<SelectItem> getSelectItemsToMaterialize(final FromItem fromItem, final Table table,
+            final List<SelectItem> selectItems) {
+        final List<SelectItem> selectItemsToMaterialize = new ArrayList<SelectItem>();
+
+        for (final SelectItem selectItem : selectItems) {
+            final FromItem selectedFromItem = selectItem.getFromItem();
+            if (selectedFromItem != null) {
+                if (selectedFromItem.equals(fromItem)) {
+                    selectItemsToMaterialize.add(selectItem.replaceFunction(null));
+                }
+            } else {
+                // the select item does not specify a specific
+                // from-item
+                final Column selectedColumn = selectItem.getColumn();
+                if (selectedColumn != null) {
+                    // we assume that if the table matches, we will use the
+                    // column
+                    if (selectedColumn.getTable() != null && selectedColumn.getTable().equals(table)) {
+                        selectItemsToMaterialize.add(selectItem.replaceFunction(null));
+                    }
+                }
+            }
+        }
+        return selectItemsToMaterialize;
+    }
+
+    /**
+     * Materializes the partitions of a table for parallel execution of a query, if the parallelism of this
+     * DataContext allows it and the subclass supports it. The WHERE items are applied to each partition.
+     * 
+     * @param fromItem the single from item of the query
+     * @param selectItems the select items that are needed to execute the query
+     * @param whereItems the WHERE items of the query
+     * @return the filtered partitions, or null if the query should not be executed in parallel
+     */
+    private List<DataSet> materializePartitions(final FromItem fromItem, final List<SelectItem> selectItems,
+            final List<FilterItem> whereItems) {
+        if (parallelism < 2 || fromItem.getTable() == null) {
+            return null;
+        }
+        final Table table = MetaModelHelper.resolveTable(fromItem);
+        if (table == null || !isMainSchemaTable(table)) {
+            return null;
+        }
+
+        final List<SelectItem> selectItemsToMaterialize = getSelectItemsToMaterialize(fromItem, table, selectItems);
+        if (selectItemsToMaterialize.isEmpty()) {
+            // typically COUNT(*) queries, see materializeTable(...)
+            final List<Column> columns = table.getColumns();
+            if (columns.isEmpty()) {
+                return null;
+            }
+            selectItemsToMaterialize.add(new SelectItem(columns.get(0)));
+        }
+        final List<Column> columns =
+                selectItemsToMaterialize.stream().map(si -> si.getColumn()).collect(Collectors.toList());
+
+        final List<DataSet> tablePartitions = materializeMainSchemaTablePartitions(table, columns, parallelism);
+        if (tablePartitions == null || tablePartitions.size() < 2) {
+            if (tablePartitions != null) {
+                tablePartitions.forEach(DataSet::close);
+            }
+            return null;
+        }
+
+        logger.debug("Executing query in parallel on {} partitions of table {}", tablePartitions.size(), table);
+
+        final ConvertedDataSetInterceptor interceptor = new ConvertedDataSetInterceptor(converters);
+        final List<DataSet> partitions = new ArrayList<>(tablePartitions.size());
+        for (DataSet tablePartition : tablePartitions) {
+            DataSet partition = MetaModelHelper.getSelection(selectItemsToMaterialize, tablePartition);
+            partition = interceptor.intercept(partition);
+            partition = MetaModelHelper.getFiltered(partition, whereItems);
+            partitions.add(partition);
+        }
+        return partitions;
+    }
+
+    /**
+     * Determines if the aggregation of a query can be done per partition, followed by a merge of the partial
+     * aggregates.
+     * 
+     * @param workSelectItems
+     * @param groupByItems
+     * @return
+     */
+    private boolean isPartiallyAggregatable(List<SelectItem> workSelectItems, List<GroupByItem> groupByItems) {
+        final List<SelectItem> functionItems = MetaModelHelper.getAggregateFunctionSelectItems(workSelectItems);
+        if (groupByItems.isEmpty()) {
+            // aggregation without grouping is only done per partition if there
+            // are no other values than the aggregates
+            if (functionItems.isEmpty() || functionItems.size() != workSelectItems.size()) {
+                return false;
+            }
+        }
+        return MetaModelHelper.isPartiallyAggregatable(functionItems);
+    }
+
+    /**
+     * Determines if the partial aggregates of the partitions of a query must be merged in partition order, because
+     * the result of the query depends on it. Otherwise they are merged in the order that the partitions finish.
+     * 
+     * @param workSelectItems
+     * @param groupByItems
+     * @param orderByItems
+     * @return
+     */
+    private boolean isMergeOrderSensitive(List<SelectItem> workSelectItems, List<GroupByItem> groupByItems,
+            List<OrderByItem> orderByItems) {
+        for (SelectItem item : MetaModelHelper.getAggregateFunctionSelectItems(workSelectItems)) {
+            final AggregateFunction function = item.getAggregateFunction();
+            if (function == FunctionType.FIRST || function == FunctionType.LAST) {
+                return true;
+            }
+        }
+        // without an ORDER BY clause, groups are returned in the order that
+        // they are encountered
+        return !groupByItems.isEmpty() && orderByItems.isEmpty();
+    }
+
     protected DataSet materializeTable(final Table table, final List<SelectItem> selectItems,
             final List<FilterItem> whereItems, final int firstRow, final int maxRows) {
         if (table == null) {
@@ -646,6 +1032,24 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         return dataSet;
     }
 
+    /**
+     * Materializes a table in the main schema of the subclasses of this class as a number of partitions that can be
+     * read concurrently, for parallel execution of queries (see {@link #setParallelism(int)}). Each partition contains
+     * the values of the requested columns for a consecutive range of the rows of the table (eg. a byte range of a
+     * file), and the partitions together contain all the rows of the table, in order.
+     * 
+     * This default implementation returns null, meaning that the table cannot be partitioned.
+     * 
+     * @param table the table to materialize
+     * @param columns the columns of the table to materialize
+     * @param maxPartitions the maximum number of partitions to create
+     * @return the partitions of the table, in order, or null if the table cannot be partitioned
+     */
+    protected List<DataSet> materializeMainSchemaTablePartitions(Table table, List<Column> columns,
+            int maxPartitions) {
+        return null;
+    }
+
     /**
      * Executes a simple one-table query against a table in the main schema of the subclasses of this class. This
      * default implementation will delegate to {@link #materializeMainSchemaTable(Table, List, int, int)}.
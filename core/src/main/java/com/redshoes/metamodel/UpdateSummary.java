@@ -62,4 +62,14 @@ public interface UpdateSummary {
      * @return an optional collection of generated keys.
      */
     public Optional<Iterable<Object>> getGeneratedKeys();
+
+    /**
+     * Gets the number of inserted, updated and deleted rows per second of the
+     * update, or null if this number is unknown.
+     * 
+     * @return an optional throughput.
+     */
+    public default Optional<Double> getRowsPerSecond() {
+        return Optional.empty();
+    }
 }
@@ -21,6 +21,7 @@ package com.redshoes.metamodel;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A builder object for {@link UpdateSummary}.
@@ -31,6 +32,7 @@ public class UpdateSummaryBuilder {
     private int _updates;
     private int _deletes;
     private Set<Object> _generatedKeys;
+    private long _elapsedNanos = -1;
 
     public UpdateSummaryBuilder() {
     }
@@ -45,7 +47,34 @@ public class UpdateSummaryBuilder {
         } else {
             generatedKeys = null;
         }
-        return new DefaultUpdateSummary(insertedRows, updatedRows, deletedRows, generatedKeys);
+        return new DefaultUpdateSummary(insertedRows, updatedRows, deletedRows, generatedKeys, getRowsPerSecond());
+    }
+
+    private Double getRowsPerSecond() {
+        if (_elapsedNanos <= 0) {
+            return null;
+        }
+        if (_inserts == -1 && _updates == -1 && _deletes == -1) {
+            return null;
+        }
+        // unknown counts are left out of the throughput
+        final long rows = Math.max(_inserts, 0) + Math.max(_updates, 0) + Math.max(_deletes, 0);
+        return rows * (double) TimeUnit.SECONDS.toNanos(1) / _elapsedNanos;
+    }
+
+    /**
+     * Sets the time the update took, which makes the built summary report the
+     * number of rows per second.
+     * 
+     * @param elapsedTime
+     *            the duration of the update
+     * @param unit
+     *            the unit of the duration
+     * @return this builder
+     */
+    public UpdateSummaryBuilder setElapsedTime(long elapsedTime, TimeUnit unit) {
+        _elapsedNanos = unit.toNanos(elapsedTime);
+        return this;
     }
 
     public UpdateSummaryBuilder addInsert() {
@@ -32,8 +32,18 @@ final class ColumnTypeDetector {
 	private boolean _doublePossible = true;
 	private boolean _datePossible = true;
 
+	/**
+	 * Determines whether all types have been ruled out, in which case
+	 * registering more values will not change the outcome.
+	 * 
+	 * @return true if no type is possible anymore
+	 */
+	public boolean isExhausted() {
+		return !_booleanPossible && !_doublePossible && !_datePossible;
+	}
+
 	public void registerValue(String stringValue) {
-		if (stringValue == null || stringValue.length() == 0) {
+		if (stringValue == null || stringValue.length() == 0 || isExhausted()) {
 			return;
 		}
 		if (_booleanPossible) {
@@ -43,6 +53,7 @@ final class ColumnTypeDetector {
 				_booleanPossible = false;
 			}
 		}
+		boolean isInteger = false;
 		if (_doublePossible) {
 			try {
 				Double.parseDouble(stringValue);
@@ -55,12 +66,15 @@ final class ColumnTypeDetector {
 			if (_integerPossible) {
 				try {
 					Integer.parseInt(stringValue);
+					isInteger = true;
 				} catch (NumberFormatException e) {
 					_integerPossible = false;
 				}
 			}
 		}
-		if (_datePossible) {
+		// integers are always interpretable as dates (see TimeComparator), so
+		// the comparably expensive date parsing is only needed for other values
+		if (_datePossible && !isInteger) {
 			if (TimeComparator.toDate(stringValue) == null) {
 				_datePossible = false;
 			}
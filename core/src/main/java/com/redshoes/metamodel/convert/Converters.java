@@ -18,13 +18,15 @@
  */
 package com.redshoes.metamodel.convert;
 
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.redshoes.metamodel.intercept.InterceptableDataContext;
 import com.redshoes.metamodel.intercept.Interceptors;
@@ -32,6 +34,7 @@ import com.redshoes.metamodel.DataContext;
 import com.redshoes.metamodel.UpdateableDataContext;
 import com.redshoes.metamodel.data.DataSet;
 import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
 import com.redshoes.metamodel.data.RowBuilder;
 import com.redshoes.metamodel.data.Style;
 import com.redshoes.metamodel.query.Query;
@@ -140,15 +143,44 @@ public final class Converters {
      */
     public static Map<Column, TypeConverter<?, ?>> autoDetectConverters(DataContext dataContext, final List<Column> columns,
             int sampleSize) {
+        return autoDetectConverters(dataContext, columns, sampleSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Auto-detects / guesses the type converters to be applied on set of
+     * columns, like {@link #autoDetectConverters(DataContext, List, int)}, but
+     * limited by a time budget. Detection stops when the sample size or the
+     * time budget is exhausted, or as soon as every type has been ruled out
+     * for all columns.
+     * 
+     * @param dataContext
+     *            the DataContext that holds the data.
+     * @param columns
+     *            the columns to inspect to find type conversion candidates.
+     * @param sampleSize
+     *            the max amount of rows to query for doing auto-detection. Use
+     *            {@link Integer#MAX_VALUE} if no constraint should be put on
+     *            the number of records to sample.
+     * @param timeBudget
+     *            the max amount of time to spend on reading sample records
+     * @param timeUnit
+     *            the unit of the time budget
+     * @return a map of {@link Column}s and {@link TypeConverter}s which can be
+     *         used (eg. with the {@link #addTypeConverters(DataContext, Map)}
+     *         method) to decorate the DataContext with type converters.
+     */
+    public static Map<Column, TypeConverter<?, ?>> autoDetectConverters(DataContext dataContext,
+            final List<Column> columns, int sampleSize, long timeBudget, TimeUnit timeUnit) {
+        final long timeBudgetNanos = timeUnit.toNanos(timeBudget);
         final Map<Column, TypeConverter<?, ?>> result = new HashMap<Column, TypeConverter<?, ?>>();
         columns.stream()
                 .filter(col -> col.getType() != null)
                 .filter(col -> col.getType().getSuperType().equals(SuperColumnType.LITERAL_TYPE))
                 // group by table
-                .collect(Collectors.toMap(Column::getTable,Arrays::asList))
+                .collect(Collectors.groupingBy(Column::getTable, LinkedHashMap::new, Collectors.toList()))
                 //and detect it
                 .forEach((tab, cols) ->
-                    autoDetectConvertersInternally(dataContext,tab,cols,sampleSize,result));
+                    autoDetectConvertersInternally(dataContext, tab, cols, sampleSize, timeBudgetNanos, result));
 
         return result;
     }
@@ -176,49 +208,97 @@ public final class Converters {
      */
     public static Map<Column, TypeConverter<?, ?>> autoDetectConverters(DataContext dataContext, Table table,
             int sampleSize) {
+        return autoDetectConverters(dataContext, table, sampleSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Auto-detects / guesses the type converters to be applied on a table,
+     * like {@link #autoDetectConverters(DataContext, Table, int)}, but limited
+     * by a time budget. Detection stops when the sample size or the time
+     * budget is exhausted, or as soon as every type has been ruled out for all
+     * columns.
+     * 
+     * @param dataContext
+     *            the DataContext that holds the data.
+     * @param table
+     *            the table to inspect to find type conversion candidates. This
+     *            table will hold all columns of the result.
+     * @param sampleSize
+     *            the max amount of rows to query for doing auto-detection. Use
+     *            {@link Integer#MAX_VALUE} if no constraint should be put on
+     *            the number of records to sample.
+     * @param timeBudget
+     *            the max amount of time to spend on reading sample records
+     * @param timeUnit
+     *            the unit of the time budget
+     * @return a map of {@link Column}s and {@link TypeConverter}s which can be
+     *         used (eg. with the {@link #addTypeConverters(DataContext, Map)}
+     *         method) to decorate the DataContext with type converters.
+     */
+    public static Map<Column, TypeConverter<?, ?>> autoDetectConverters(DataContext dataContext, Table table,
+            int sampleSize, long timeBudget, TimeUnit timeUnit) {
         final Map<Column, TypeConverter<?, ?>> result = new HashMap<Column, TypeConverter<?, ?>>();
         List<Column> columns = table.getColumnsOfSuperType(SuperColumnType.LITERAL_TYPE);
-        autoDetectConvertersInternally(dataContext, table, columns, sampleSize, result);
+        autoDetectConvertersInternally(dataContext, table, columns, sampleSize, timeUnit.toNanos(timeBudget), result);
         return result;
     }
 
     private static void autoDetectConvertersInternally(DataContext dataContext, Table table, List<Column> columns,
-            int sampleSize, Map<Column, TypeConverter<?, ?>> result) {
+            int sampleSize, long timeBudgetNanos, Map<Column, TypeConverter<?, ?>> result) {
         if (columns == null || columns.size() == 0) {
             return;
         }
 
-        Map<Column, ColumnTypeDetector> detectors = new HashMap<Column, ColumnTypeDetector>();
-        for (Column column : columns) {
-            detectors.put(column, new ColumnTypeDetector());
+        final long startTime = System.nanoTime();
+        final ColumnTypeDetector[] detectors = new ColumnTypeDetector[columns.size()];
+        for (int i = 0; i < detectors.length; i++) {
+            detectors[i] = new ColumnTypeDetector();
         }
 
         Query query = dataContext.query().from(table).select(columns).toQuery();
         if (sampleSize > 0 && sampleSize != Integer.MAX_VALUE) {
             query.setMaxRows(sampleSize);
         }
-        DataSet dataSet = dataContext.executeQuery(query);
-        try {
-            while (dataSet.next()) {
-                Row row = dataSet.getRow();
-                for (Column column : columns) {
-                    String stringValue = (String) row.getValue(column);
-                    ColumnTypeDetector detector = detectors.get(column);
-                    detector.registerValue(stringValue);
+        try (DataSet dataSet = dataContext.executeQuery(query)) {
+            final RowBatch batch = new RowBatch(dataSet.getSelectItems());
+            while (dataSet.nextBatch(batch)) {
+                if (!registerValues(detectors, batch)) {
+                    logger.debug("All types ruled out for columns of {}, stopping auto-detection", table);
+                    break;
+                }
+                if (System.nanoTime() - startTime >= timeBudgetNanos) {
+                    logger.debug("Time budget exhausted while auto-detecting converters of {}", table);
+                    break;
                 }
             }
-        } finally {
-            dataSet.close();
         }
-        for (Column column : columns) {
-            ColumnTypeDetector detector = detectors.get(column);
-            TypeConverter<?, ?> converter = detector.createConverter();
+        for (int i = 0; i < detectors.length; i++) {
+            TypeConverter<?, ?> converter = detectors[i].createConverter();
             if (converter != null) {
-                result.put(column, converter);
+                result.put(columns.get(i), converter);
             }
         }
     }
 
+    /**
+     * Registers a batch of rows with the column type detectors. Columns are
+     * processed in parallel, and columns for which every type has been ruled
+     * out are skipped.
+     * 
+     * @return whether any of the detectors can still change its outcome
+     */
+    private static boolean registerValues(final ColumnTypeDetector[] detectors, final RowBatch batch) {
+        final int size = batch.size();
+        return IntStream.range(0, detectors.length).parallel().filter(i -> !detectors[i].isExhausted()).map(i -> {
+            final ColumnTypeDetector detector = detectors[i];
+            final Object[] values = batch.getColumn(i);
+            for (int j = 0; j < size && !detector.isExhausted(); j++) {
+                detector.registerValue((String) values[j]);
+            }
+            return detector.isExhausted() ? 0 : 1;
+        }).sum() > 0;
+    }
+
     private static InterceptableDataContext addTypeConvertersInternally(final DataContext dc,
                                                                         Map<Column, TypeConverter<?, ?>> converters) {
         if (converters == null) {
@@ -44,8 +44,10 @@ public class StringToDateConverter implements TypeConverter<String, Date> {
         _deserializeFunc = stringValue -> {
             return TimeComparator.toDate(stringValue);
         };
+        final ThreadLocal<DateFormat> dateFormat = ThreadLocal
+                .withInitial(() -> DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM));
         _serializeFunc = date -> {
-            return DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM).format(date);
+            return dateFormat.get().format(date);
         };
     }
 
@@ -73,15 +75,17 @@ public class StringToDateConverter implements TypeConverter<String, Date> {
         if (dateFormat == null) {
             throw new IllegalArgumentException("DateFormat cannot be null");
         }
+        // DateFormats are not thread-safe, so each thread uses its own copy
+        final ThreadLocal<DateFormat> threadDateFormat = ThreadLocal.withInitial(() -> (DateFormat) dateFormat.clone());
         _deserializeFunc = string -> {
             try {
-                return dateFormat.parse(string);
+                return threadDateFormat.get().parse(string);
             } catch (ParseException e) {
                 throw new IllegalArgumentException("Could not parse date string: " + string);
             }
         };
         _serializeFunc = date -> {
-            return dateFormat.format(date);
+            return threadDateFormat.get().format(date);
         };
     }
 
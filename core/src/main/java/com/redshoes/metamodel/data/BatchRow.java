@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.ObjectStreamException;
+
+/**
+ * A {@link Row} that is a view of a single row of a {@link RowBatch}. The row
+ * can be moved to another row of the batch, so that a single instance can be
+ * used for all the rows of a batch, see {@link ReusableRowDataSet}.
+ */
+final class BatchRow extends AbstractRow {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RowBatch _batch;
+    private int _rowIndex;
+
+    public BatchRow(RowBatch batch) {
+        _batch = batch;
+        _rowIndex = -1;
+    }
+
+    public void setRowIndex(int rowIndex) {
+        _rowIndex = rowIndex;
+    }
+
+    @Override
+    protected DataSetHeader getHeader() {
+        return _batch.getHeader();
+    }
+
+    @Override
+    public Object getValue(int index) throws IndexOutOfBoundsException {
+        return _batch.getValue(_rowIndex, index);
+    }
+
+    @Override
+    public Style getStyle(int index) throws IndexOutOfBoundsException {
+        return _batch.getStyle(_rowIndex, index);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        // rows are serialized on their own, without the batch
+        return new DefaultRow(getHeader(), getValues(), getStyles());
+    }
+}
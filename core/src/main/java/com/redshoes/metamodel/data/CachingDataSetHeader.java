@@ -18,9 +18,12 @@
  */
 package com.redshoes.metamodel.data;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import com.redshoes.metamodel.query.SelectItem;
 import com.redshoes.metamodel.schema.Column;
@@ -30,21 +33,82 @@ import com.redshoes.metamodel.schema.Column;
  * 'caching' in the sense that index values of selectitems are cached in a map
  * to provide quick access when looking up by {@link SelectItem} or
  * {@link Column}.
+ *
+ * The indexes of the header's own select items and of their columns are
+ * computed when the header is created. Lookups of other (equal) select items
+ * and columns are cached as they occur.
  */
 public final class CachingDataSetHeader extends SimpleDataSetHeader implements DataSetHeader {
 
     private static final long serialVersionUID = 1L;
 
-    // map of select item identity codes and indexes in the dataset
-    private transient Map<Integer, Integer> _selectItemIndexCache;
+    /**
+     * The max number of lookups of select items or columns that are not part
+     * of the header itself to cache.
+     */
+    private static final int MAX_OTHER_INDEX_SIZE = 64;
+
+    // indexes of the select items of the header
+    private transient IdentityIndex _selectItemIndex;
+
+    // indexes of the columns of the select items of the header
+    private transient IdentityIndex _columnIndex;
 
-    // map of column identity codes and indexes in the dataset
-    private transient Map<Integer, Integer> _columnIndexCache;
+    // indexes of other select items that have been looked up
+    private transient volatile IdentityIndex _otherSelectItemIndex;
+
+    // indexes of other columns that have been looked up
+    private transient volatile IdentityIndex _otherColumnIndex;
 
     public CachingDataSetHeader(List<SelectItem> items) {
         super(items);
+        buildIndexes();
     }
 
+    private void buildIndexes() {
+        final SelectItem[] items = getSelectItems().toArray(new SelectItem[size()]);
+        final int[] indexes = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            indexes[i] = i;
+        }
+        _selectItemIndex = new IdentityIndex(items, indexes);
+
+        // resolve the columns the same way as SimpleDataSetHeader does: first
+        // by the exact column, then by an equal column
+        final Map<Column, Integer> exactIndexes = new IdentityHashMap<>();
+        final Map<Column, Integer> equalIndexes = new HashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            final Column column = items[i].getColumn();
+            if (column != null) {
+                final SelectItem columnItem = new SelectItem(column);
+                if (columnItem.equalsIgnoreAlias(items[i], true)) {
+                    exactIndexes.putIfAbsent(column, i);
+                }
+                if (columnItem.equalsIgnoreAlias(items[i])) {
+                    equalIndexes.putIfAbsent(column, i);
+                }
+            }
+        }
+        final Column[] columns = new Column[items.length];
+        final int[] columnIndexes = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            final Column column = items[i].getColumn();
+            if (column != null) {
+                columns[i] = column;
+                final Integer exactIndex = exactIndexes.get(column);
+                columnIndexes[i] = exactIndex != null ? exactIndex : equalIndexes.getOrDefault(column, -1);
+            }
+        }
+        _columnIndex = new IdentityIndex(columns, columnIndexes);
+
+        _otherSelectItemIndex = IdentityIndex.EMPTY;
+        _otherColumnIndex = IdentityIndex.EMPTY;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        buildIndexes();
+    }
 
     @Override
     public int indexOf(Column column) {
@@ -52,17 +116,15 @@ public final class CachingDataSetHeader extends SimpleDataSetHeader implements D
             return -1;
         }
 
-        if (_columnIndexCache == null) {
-            _columnIndexCache = new ConcurrentHashMap<Integer, Integer>(super.size());
-        }
-
-        final int identityCode = System.identityHashCode(column);
-        Integer index = _columnIndexCache.get(identityCode);
-        if (index == null) {
-            index = super.indexOf(column);
-
-            if (index != -1) {
-                _columnIndexCache.put(identityCode, index);
+        int index = _columnIndex.get(column);
+        if (index == IdentityIndex.NOT_FOUND) {
+            final IdentityIndex otherColumnIndex = _otherColumnIndex;
+            index = otherColumnIndex.get(column);
+            if (index == IdentityIndex.NOT_FOUND) {
+                index = super.indexOf(column);
+                if (otherColumnIndex.size() < MAX_OTHER_INDEX_SIZE) {
+                    _otherColumnIndex = otherColumnIndex.with(column, index);
+                }
             }
         }
         return index;
@@ -74,17 +136,15 @@ public final class CachingDataSetHeader extends SimpleDataSetHeader implements D
             return -1;
         }
 
-        if (_selectItemIndexCache == null) {
-            _selectItemIndexCache = new ConcurrentHashMap<Integer, Integer>(super.size());
-        }
-
-        final int identityCode = System.identityHashCode(item);
-        Integer index = _selectItemIndexCache.get(identityCode);
-        if (index == null) {
-            index = super.indexOf(item);
-
-            if (index != -1) {
-                _selectItemIndexCache.put(identityCode, index);
+        int index = _selectItemIndex.get(item);
+        if (index == IdentityIndex.NOT_FOUND) {
+            final IdentityIndex otherSelectItemIndex = _otherSelectItemIndex;
+            index = otherSelectItemIndex.get(item);
+            if (index == IdentityIndex.NOT_FOUND) {
+                index = super.indexOf(item);
+                if (otherSelectItemIndex.size() < MAX_OTHER_INDEX_SIZE) {
+                    _otherSelectItemIndex = otherSelectItemIndex.with(item, index);
+                }
             }
         }
         return index;
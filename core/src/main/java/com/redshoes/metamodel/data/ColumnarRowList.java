@@ -0,0 +1,751 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A compact, column-oriented list of rows with a common header. Instead of
+ * keeping a {@link Row} with an array of boxed values per row, the values are
+ * stored column by column:
+ * 
+ * <ul>
+ * <li>Integer, Long, Double, Boolean and Date values as primitive arrays, with
+ * a bitmap of null values.</li>
+ * <li>String values as dictionary-encoded arrays, as long as the number of
+ * distinct values is moderate.</li>
+ * <li>Any other values, or columns with mixed kinds of values, as plain object
+ * arrays.</li>
+ * </ul>
+ * 
+ * The rows of the list are lightweight views that read the values from the
+ * columns. A view represents a position in the list, so views that are
+ * obtained before the list is sorted or cleared will not represent the same
+ * values afterwards.
+ * 
+ * The list can be used wherever a list of rows is buffered in memory, eg. with
+ * {@link InMemoryDataSet}.
+ */
+public final class ColumnarRowList extends AbstractList<Row> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum number of distinct values of a dictionary-encoded column.
+     * Columns with more distinct values are stored as plain object arrays.
+     */
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final DataSetHeader _header;
+    private ColumnVector[] _columns;
+    private Map<Integer, Style[]> _styles;
+    private int _capacity;
+    private int _size;
+
+    public ColumnarRowList(DataSetHeader header) {
+        _header = header;
+        _capacity = INITIAL_CAPACITY;
+        _columns = createColumns(header.size(), _capacity);
+        _size = 0;
+    }
+
+    /**
+     * Reads all rows of a {@link DataSet} into a {@link ColumnarRowList}. The
+     * {@link DataSet} will be closed afterwards.
+     * 
+     * @param dataSet
+     * @return
+     */
+    public static ColumnarRowList read(DataSet dataSet) {
+        final RowBatch batch = new RowBatch(dataSet.getSelectItems());
+        final ColumnarRowList rows = new ColumnarRowList(batch.getHeader());
+        try {
+            while (dataSet.nextBatch(batch)) {
+                rows.addAll(batch);
+            }
+        } finally {
+            dataSet.close();
+        }
+        return rows;
+    }
+
+    public DataSetHeader getHeader() {
+        return _header;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public Row get(int index) {
+        checkIndex(index);
+        return new ColumnarRow(this, index);
+    }
+
+    /**
+     * Gets a rough estimate of the number of bytes of memory that the values of
+     * the list take up.
+     * 
+     * @return
+     */
+    public long getEstimatedSize() {
+        long size = 0;
+        for (ColumnVector column : _columns) {
+            size += column.estimateSize(_size);
+        }
+        if (_styles != null) {
+            size += _styles.size() * (long) (64 + 4 * _columns.length);
+        }
+        return size;
+    }
+
+    public Object getValue(int rowIndex, int columnIndex) {
+        checkIndex(rowIndex);
+        return _columns[columnIndex].get(rowIndex);
+    }
+
+    public Style getStyle(int rowIndex, int columnIndex) {
+        checkIndex(rowIndex);
+        if (_styles != null) {
+            final Style[] styles = _styles.get(rowIndex);
+            if (styles != null && styles[columnIndex] != null) {
+                return styles[columnIndex];
+            }
+        }
+        return Style.NO_STYLE;
+    }
+
+    /**
+     * Adds a row to the list. The row is expected to have values in the order
+     * of the header of the list. The values are copied into the list, so no
+     * reference to the row itself is kept.
+     */
+    @Override
+    public boolean add(Row row) {
+        ensureCapacity(_size + 1);
+        final int columnCount = _columns.length;
+        Style[] styles = null;
+        for (int i = 0; i < columnCount; i++) {
+            _columns[i] = _columns[i].set(_size, row.getValue(i));
+            final Style style = row.getStyle(i);
+            if (style != null && style != Style.NO_STYLE) {
+                if (styles == null) {
+                    styles = new Style[columnCount];
+                }
+                styles[i] = style;
+            }
+        }
+        if (styles != null) {
+            // styles are rare, so they are only kept for the rows that have
+            // them
+            if (_styles == null) {
+                _styles = new HashMap<>();
+            }
+            _styles.put(_size, styles);
+        }
+        _size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Adds all rows of a {@link RowBatch} to the list, one column at a time.
+     * 
+     * @param batch
+     */
+    public void addAll(RowBatch batch) {
+        final int batchSize = batch.size();
+        ensureCapacity(_size + batchSize);
+        for (int i = 0; i < _columns.length; i++) {
+            final Object[] values = batch.getColumn(i);
+            ColumnVector column = _columns[i];
+            for (int j = 0; j < batchSize; j++) {
+                column = column.set(_size + j, values[j]);
+            }
+            _columns[i] = column;
+        }
+        for (int j = 0; j < batchSize; j++) {
+            for (int i = 0; i < _columns.length; i++) {
+                final Style style = batch.getStyle(j, i);
+                if (style != Style.NO_STYLE) {
+                    if (_styles == null) {
+                        _styles = new HashMap<>();
+                    }
+                    _styles.computeIfAbsent(_size + j, k -> new Style[_columns.length])[i] = style;
+                }
+            }
+        }
+        _size += batchSize;
+        modCount++;
+    }
+
+    /**
+     * Sorts the rows of the list. The sort is stable. Since rows are views of
+     * positions in the list, any rows obtained before sorting will represent
+     * the values at their position after sorting.
+     */
+    @Override
+    public void sort(Comparator<? super Row> comparator) {
+        final ColumnarRow[] rows = new ColumnarRow[_size];
+        for (int i = 0; i < _size; i++) {
+            rows[i] = new ColumnarRow(this, i);
+        }
+        Arrays.sort(rows, comparator);
+
+        final ColumnVector[] columns = createColumns(_columns.length, _capacity);
+        for (int i = 0; i < columns.length; i++) {
+            final ColumnVector source = _columns[i];
+            ColumnVector column = columns[i];
+            for (int j = 0; j < _size; j++) {
+                column = column.set(j, source.get(rows[j]._index));
+            }
+            columns[i] = column;
+        }
+
+        if (_styles != null) {
+            final Map<Integer, Style[]> styles = new HashMap<>();
+            for (int j = 0; j < _size; j++) {
+                final Style[] rowStyles = _styles.get(rows[j]._index);
+                if (rowStyles != null) {
+                    styles.put(j, rowStyles);
+                }
+            }
+            _styles = styles;
+        }
+        _columns = columns;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        _capacity = INITIAL_CAPACITY;
+        _columns = createColumns(_columns.length, _capacity);
+        _styles = null;
+        _size = 0;
+        modCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= _capacity) {
+            return;
+        }
+        int newCapacity = _capacity;
+        while (newCapacity < capacity) {
+            newCapacity = newCapacity + (newCapacity >> 1) + 1;
+        }
+        for (ColumnVector column : _columns) {
+            column.grow(newCapacity);
+        }
+        _capacity = newCapacity;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+    }
+
+    private static ColumnVector[] createColumns(int columnCount, int capacity) {
+        final ColumnVector[] columns = new ColumnVector[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = new NullVector(capacity);
+        }
+        return columns;
+    }
+
+    /**
+     * A lightweight row view of a position in a {@link ColumnarRowList}.
+     */
+    private static final class ColumnarRow extends AbstractRow {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ColumnarRowList _list;
+        private final int _index;
+
+        public ColumnarRow(ColumnarRowList list, int index) {
+            _list = list;
+            _index = index;
+        }
+
+        @Override
+        protected DataSetHeader getHeader() {
+            return _list._header;
+        }
+
+        @Override
+        public Object getValue(int index) throws IndexOutOfBoundsException {
+            return _list._columns[index].get(_index);
+        }
+
+        @Override
+        public Style getStyle(int index) throws IndexOutOfBoundsException {
+            return _list.getStyle(_index, index);
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            // rows are serialized on their own, without the list
+            return new DefaultRow(getHeader(), getValues(), getStyles());
+        }
+    }
+
+    /**
+     * Storage of the values of a column. Vectors only support appending values,
+     * and may replace themselves with a more general kind of vector when a
+     * value does not fit.
+     */
+    private abstract static class ColumnVector {
+
+        public abstract Object get(int index);
+
+        /**
+         * Sets the value at an index, which is the index after the last value
+         * that has been set.
+         * 
+         * @return the vector that holds the value, which is either this vector
+         *         or a replacement of it
+         */
+        public abstract ColumnVector set(int index, Object value);
+
+        public abstract void grow(int capacity);
+
+        protected abstract int capacity();
+
+        /**
+         * Estimates the number of bytes of memory that the vector takes up.
+         * 
+         * @param size
+         *            the number of values in the vector
+         */
+        public abstract long estimateSize(int size);
+
+        protected ColumnVector toObjectVector(int size) {
+            final Object[] values = new Object[capacity()];
+            for (int i = 0; i < size; i++) {
+                values[i] = get(i);
+            }
+            return new ObjectVector(values);
+        }
+    }
+
+    private static final class ObjectVector extends ColumnVector {
+
+        private Object[] _values;
+
+        public ObjectVector(Object[] values) {
+            _values = values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return _values[index];
+        }
+
+        @Override
+        public ColumnVector set(int index, Object value) {
+            _values[index] = value;
+            return this;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _values = Arrays.copyOf(_values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return _values.length;
+        }
+
+        @Override
+        public long estimateSize(int size) {
+            long result = 16 + 4L * _values.length;
+            for (int i = 0; i < size; i++) {
+                result += estimateValueSize(_values[i]);
+            }
+            return result;
+        }
+
+        private static long estimateValueSize(Object value) {
+            if (value == null) {
+                return 0;
+            }
+            if (value instanceof String) {
+                return 40 + 2L * ((String) value).length();
+            }
+            if (value instanceof byte[]) {
+                return 16 + ((byte[]) value).length;
+            }
+            return 24;
+        }
+    }
+
+    /**
+     * The initial vector of a column, which only holds null values. It is
+     * replaced with a vector that fits the first non-null value.
+     */
+    private static final class NullVector extends ColumnVector {
+
+        private int _capacity;
+
+        public NullVector(int capacity) {
+            _capacity = capacity;
+        }
+
+        @Override
+        public Object get(int index) {
+            return null;
+        }
+
+        @Override
+        public ColumnVector set(int index, Object value) {
+            if (value == null) {
+                return this;
+            }
+            final ColumnVector vector;
+            final Class<?> valueClass = value.getClass();
+            if (valueClass == Integer.class) {
+                vector = new IntVector(_capacity, index);
+            } else if (valueClass == Long.class) {
+                vector = new LongVector(_capacity, index, false);
+            } else if (valueClass == Date.class) {
+                vector = new LongVector(_capacity, index, true);
+            } else if (valueClass == Double.class) {
+                vector = new DoubleVector(_capacity, index);
+            } else if (valueClass == Boolean.class) {
+                vector = new BooleanVector(_capacity, index);
+            } else if (valueClass == String.class) {
+                vector = new StringVector(_capacity, index);
+            } else {
+                vector = new ObjectVector(new Object[_capacity]);
+            }
+            return vector.set(index, value);
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _capacity = capacity;
+        }
+
+        @Override
+        protected int capacity() {
+            return _capacity;
+        }
+
+        @Override
+        public long estimateSize(int size) {
+            return 16;
+        }
+    }
+
+    /**
+     * Base class for vectors of primitive values, with a bitmap of the null
+     * values.
+     */
+    private abstract static class PrimitiveVector extends ColumnVector {
+
+        private final BitSet _nulls;
+
+        public PrimitiveVector(int nullCount) {
+            _nulls = new BitSet();
+            _nulls.set(0, nullCount);
+        }
+
+        @Override
+        public final Object get(int index) {
+            if (_nulls.get(index)) {
+                return null;
+            }
+            return getNonNull(index);
+        }
+
+        @Override
+        public final ColumnVector set(int index, Object value) {
+            if (value == null) {
+                _nulls.set(index);
+                return this;
+            }
+            if (!setNonNull(index, value)) {
+                return toObjectVector(index).set(index, value);
+            }
+            return this;
+        }
+
+        @Override
+        public final long estimateSize(int size) {
+            return 32 + _nulls.size() / 8 + estimateValuesSize();
+        }
+
+        protected abstract long estimateValuesSize();
+
+        protected abstract Object getNonNull(int index);
+
+        /**
+         * @return false if the value does not fit in the vector
+         */
+        protected abstract boolean setNonNull(int index, Object value);
+    }
+
+    private static final class IntVector extends PrimitiveVector {
+
+        private int[] _values;
+
+        public IntVector(int capacity, int nullCount) {
+            super(nullCount);
+            _values = new int[capacity];
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return _values[index];
+        }
+
+        @Override
+        protected boolean setNonNull(int index, Object value) {
+            if (value.getClass() != Integer.class) {
+                return false;
+            }
+            _values[index] = (Integer) value;
+            return true;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _values = Arrays.copyOf(_values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return _values.length;
+        }
+
+        @Override
+        protected long estimateValuesSize() {
+            return 16 + 4L * _values.length;
+        }
+    }
+
+    /**
+     * Vector of long values, used for Long values or (as milliseconds) for
+     * plain Date values.
+     */
+    private static final class LongVector extends PrimitiveVector {
+
+        private final boolean _dates;
+        private long[] _values;
+
+        public LongVector(int capacity, int nullCount, boolean dates) {
+            super(nullCount);
+            _dates = dates;
+            _values = new long[capacity];
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            if (_dates) {
+                return new Date(_values[index]);
+            }
+            return _values[index];
+        }
+
+        @Override
+        protected boolean setNonNull(int index, Object value) {
+            if (_dates) {
+                if (value.getClass() != Date.class) {
+                    return false;
+                }
+                _values[index] = ((Date) value).getTime();
+            } else {
+                if (value.getClass() != Long.class) {
+                    return false;
+                }
+                _values[index] = (Long) value;
+            }
+            return true;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _values = Arrays.copyOf(_values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return _values.length;
+        }
+
+        @Override
+        protected long estimateValuesSize() {
+            return 16 + 8L * _values.length;
+        }
+    }
+
+    private static final class DoubleVector extends PrimitiveVector {
+
+        private double[] _values;
+
+        public DoubleVector(int capacity, int nullCount) {
+            super(nullCount);
+            _values = new double[capacity];
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return _values[index];
+        }
+
+        @Override
+        protected boolean setNonNull(int index, Object value) {
+            if (value.getClass() != Double.class) {
+                return false;
+            }
+            _values[index] = (Double) value;
+            return true;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _values = Arrays.copyOf(_values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return _values.length;
+        }
+
+        @Override
+        protected long estimateValuesSize() {
+            return 16 + 8L * _values.length;
+        }
+    }
+
+    private static final class BooleanVector extends PrimitiveVector {
+
+        private final BitSet _values;
+        private int _capacity;
+
+        public BooleanVector(int capacity, int nullCount) {
+            super(nullCount);
+            _values = new BitSet();
+            _capacity = capacity;
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return Boolean.valueOf(_values.get(index));
+        }
+
+        @Override
+        protected boolean setNonNull(int index, Object value) {
+            if (value.getClass() != Boolean.class) {
+                return false;
+            }
+            _values.set(index, ((Boolean) value).booleanValue());
+            return true;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _capacity = capacity;
+        }
+
+        @Override
+        protected int capacity() {
+            return _capacity;
+        }
+
+        @Override
+        protected long estimateValuesSize() {
+            return 32 + _values.size() / 8;
+        }
+    }
+
+    /**
+     * Dictionary-encoded vector of String values.
+     */
+    private static final class StringVector extends PrimitiveVector {
+
+        private final List<String> _dictionary;
+        private final Map<String, Integer> _codes;
+        private int[] _values;
+
+        public StringVector(int capacity, int nullCount) {
+            super(nullCount);
+            _dictionary = new ArrayList<>();
+            _codes = new HashMap<>();
+            _values = new int[capacity];
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return _dictionary.get(_values[index]);
+        }
+
+        @Override
+        protected boolean setNonNull(int index, Object value) {
+            if (value.getClass() != String.class) {
+                return false;
+            }
+            Integer code = _codes.get(value);
+            if (code == null) {
+                if (_dictionary.size() == MAX_DICTIONARY_SIZE) {
+                    // too many distinct values for a dictionary to pay off
+                    return false;
+                }
+                code = _dictionary.size();
+                _dictionary.add((String) value);
+                _codes.put((String) value, code);
+            }
+            _values[index] = code;
+            return true;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            _values = Arrays.copyOf(_values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return _values.length;
+        }
+
+        @Override
+        protected long estimateValuesSize() {
+            long result = 16 + 4L * _values.length;
+            for (String value : _dictionary) {
+                // the string, its entry in the dictionary and in the map of codes
+                result += 40 + 2L * value.length() + 48;
+            }
+            return result;
+        }
+    }
+}
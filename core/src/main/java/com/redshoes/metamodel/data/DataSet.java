@@ -58,6 +58,33 @@ public interface DataSet extends Closeable, Iterable<Row> {
      */
     public Row getRow();
 
+    /**
+     * Moves forward by a batch of rows, filling the given batch with the next
+     * rows of the DataSet. Any rows already in the batch are removed first.
+     * Reading rows in batches avoids the per-row overhead of {@link #next()}
+     * and {@link #getRow()}, and the batch can be reused for every call.
+     * 
+     * The current row (see {@link #getRow()}) is undefined after invoking this
+     * method.
+     * 
+     * The default implementation fills the batch row by row, using
+     * {@link #next()} and {@link #getRow()}. DataSets that can read rows more
+     * efficiently in bulk should override it.
+     * 
+     * @param batch
+     *            the batch to fill, created for the select items of this
+     *            DataSet
+     * @return true if any rows were added to the batch or false if there are no
+     *         more rows.
+     */
+    public default boolean nextBatch(RowBatch batch) {
+        batch.clear();
+        while (!batch.isFull() && next()) {
+            batch.addRow(getRow());
+        }
+        return !batch.isEmpty();
+    }
+
     /**
      * Closes the DataSet and any resources it may be holding.
      */
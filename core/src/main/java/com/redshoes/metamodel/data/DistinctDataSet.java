@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Wraps another DataSet and removes duplicate rows from it. Rows are streamed
+ * through one at a time, and only the values of the distinct rows seen so far
+ * are retained. The first occurrence of each distinct row is returned, in the
+ * order of the wrapped DataSet.
+ */
+public final class DistinctDataSet extends AbstractDataSet implements WrappingDataSet {
+
+    private final DataSet _dataSet;
+    private final Set<List<Object>> _seenValues;
+    private Row _row;
+
+    public DistinctDataSet(DataSet dataSet) {
+        super(dataSet);
+        _dataSet = dataSet;
+        _seenValues = new HashSet<>();
+    }
+
+    @Override
+    public DataSet getWrappedDataSet() {
+        return _dataSet;
+    }
+
+    @Override
+    public boolean next() {
+        while (_dataSet.next()) {
+            final Row row = _dataSet.getRow();
+            // copy the values, so that the retained key is not affected by
+            // any later changes to the row
+            final List<Object> values = Arrays.asList(row.getValues().clone());
+            if (_seenValues.add(values)) {
+                _row = row;
+                return true;
+            }
+        }
+        _row = null;
+        return false;
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        _dataSet.close();
+        _seenValues.clear();
+    }
+}
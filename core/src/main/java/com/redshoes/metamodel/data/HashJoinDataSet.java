@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.redshoes.metamodel.query.JoinType;
+
+/**
+ * {@link DataSet} that streams the rows of a "probe" {@link DataSet} and joins
+ * each of them with the matching rows of a {@link HashJoinIndex}. Rows are
+ * produced one at a time, so only the build side of the join is held in
+ * memory.
+ *
+ * The rows of the {@link DataSet} always contain the values of the left side
+ * of the join followed by the values of the right side, regardless of which
+ * side is the probe side. Unmatched rows of the outer side(s) of the join are
+ * padded with null values.
+ */
+public final class HashJoinDataSet extends AbstractDataSet {
+
+    private final JoinType _joinType;
+    private final DataSet _probeDataSet;
+    private final boolean _probeIsLeft;
+    private final HashJoinIndex _index;
+    private final int[] _probeKeyIndexes;
+    private final IRowFilter[] _conditions;
+    private final int _leftSize;
+    private final int _rightSize;
+    private final Set<Row> _matchedBuildRows;
+
+    private Row _probeRow;
+    private boolean _probeRowMatched;
+    private List<Row> _candidates;
+    private int _candidateIndex;
+    private Iterator<Row> _unmatchedBuildRows;
+    private Row _row;
+
+    /**
+     * Creates a {@link HashJoinDataSet}.
+     *
+     * @param header
+     *            the header of the joined rows, containing the select items of
+     *            the left side followed by those of the right side
+     * @param joinType
+     *            the type of join
+     * @param probeDataSet
+     *            the dataset to stream through
+     * @param probeIsLeft
+     *            whether the probe dataset is the left side of the join or not
+     * @param index
+     *            the index of the build side of the join
+     * @param probeKeyIndexes
+     *            the indexes of the join keys in the probe rows, corresponding
+     *            to the key indexes of the {@link HashJoinIndex}
+     * @param conditions
+     *            the join conditions that joined rows must satisfy
+     */
+    public HashJoinDataSet(DataSetHeader header, JoinType joinType, DataSet probeDataSet, boolean probeIsLeft,
+            HashJoinIndex index, int[] probeKeyIndexes, Collection<? extends IRowFilter> conditions) {
+        super(header);
+        _joinType = joinType;
+        _probeDataSet = probeDataSet;
+        _probeIsLeft = probeIsLeft;
+        _index = index;
+        _probeKeyIndexes = probeKeyIndexes;
+        _conditions = conditions.toArray(new IRowFilter[conditions.size()]);
+
+        final int probeSize = probeDataSet.getSelectItems().size();
+        if (probeIsLeft) {
+            _leftSize = probeSize;
+            _rightSize = header.size() - probeSize;
+        } else {
+            _leftSize = header.size() - probeSize;
+            _rightSize = probeSize;
+        }
+
+        if (isOuterOnBuildSide()) {
+            _matchedBuildRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        } else {
+            _matchedBuildRows = null;
+        }
+    }
+
+    private boolean isOuterOnProbeSide() {
+        switch (_joinType) {
+        case LEFT:
+            return _probeIsLeft;
+        case RIGHT:
+            return !_probeIsLeft;
+        case FULL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private boolean isOuterOnBuildSide() {
+        switch (_joinType) {
+        case LEFT:
+            return !_probeIsLeft;
+        case RIGHT:
+            return _probeIsLeft;
+        case FULL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public boolean next() {
+        while (true) {
+            if (_candidates != null) {
+                while (_candidateIndex < _candidates.size()) {
+                    final Row buildRow = _candidates.get(_candidateIndex++);
+                    final Row joinedRow = join(_probeRow, buildRow);
+                    if (accept(joinedRow)) {
+                        _probeRowMatched = true;
+                        if (_matchedBuildRows != null) {
+                            _matchedBuildRows.add(buildRow);
+                        }
+                        _row = joinedRow;
+                        return true;
+                    }
+                }
+                _candidates = null;
+                if (!_probeRowMatched && isOuterOnProbeSide()) {
+                    _row = join(_probeRow, null);
+                    return true;
+                }
+            }
+
+            if (_unmatchedBuildRows == null) {
+                if (_probeDataSet.next()) {
+                    _probeRow = _probeDataSet.getRow();
+                    _probeRowMatched = false;
+                    _candidates = _index.lookup(_probeRow, _probeKeyIndexes);
+                    _candidateIndex = 0;
+                    continue;
+                }
+                _probeRow = null;
+                if (_matchedBuildRows == null) {
+                    _row = null;
+                    return false;
+                }
+                _unmatchedBuildRows = _index.getRows().iterator();
+            }
+
+            while (_unmatchedBuildRows.hasNext()) {
+                final Row buildRow = _unmatchedBuildRows.next();
+                if (!_matchedBuildRows.contains(buildRow)) {
+                    _row = join(null, buildRow);
+                    return true;
+                }
+            }
+            _row = null;
+            return false;
+        }
+    }
+
+    private boolean accept(Row joinedRow) {
+        for (IRowFilter condition : _conditions) {
+            if (!condition.accept(joinedRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Row join(Row probeRow, Row buildRow) {
+        final Row leftRow = _probeIsLeft ? probeRow : buildRow;
+        final Row rightRow = _probeIsLeft ? buildRow : probeRow;
+        final Object[] values = new Object[_leftSize + _rightSize];
+        if (leftRow != null) {
+            System.arraycopy(leftRow.getValues(), 0, values, 0, _leftSize);
+        }
+        if (rightRow != null) {
+            System.arraycopy(rightRow.getValues(), 0, values, _leftSize, _rightSize);
+        }
+        return new DefaultRow(getHeader(), values);
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        _probeDataSet.close();
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.redshoes.metamodel.util.ObjectComparator;
+
+/**
+ * An in-memory hash index of the rows on the "build" side of a hash join. Rows
+ * are bucketed on the values of one or more equi-join key columns, so that a
+ * row on the "probe" side only needs to be compared with the rows that share
+ * its key.
+ *
+ * Key values are coerced to a common type, so that values which are equal
+ * according to the {@link ObjectComparator} (which is what filter evaluation
+ * uses) also end up in the same bucket. Numbers, booleans and strings that
+ * represent a number or a boolean all become doubles, so that eg. an Integer
+ * 42 from a database and a String "42" from a CSV file share a bucket. The
+ * coercion may be coarser than the comparator (eg. "1", "1.0" and true are
+ * all coerced to 1.0), so the candidates returned by
+ * {@link #lookup(Row, int[])} should always be confirmed by evaluating the
+ * actual join conditions.
+ *
+ * If a key column mixes dates with other kinds of values, or holds values
+ * that cannot safely be hashed, the index cannot narrow down the candidates
+ * and will return all rows from lookups, which is the same as a nested loop
+ * join.
+ */
+public final class HashJoinIndex {
+
+    private static final Object NULL_KEY = new Object();
+    private static final Double ONE = Double.valueOf(1);
+    private static final Double ZERO = Double.valueOf(0);
+
+    private final int[] _keyIndexes;
+    private final ColumnarRowList _storage;
+    private final List<Row> _rows;
+    private final Map<Object, List<Row>> _buckets;
+    private final Class<?>[] _keyKinds;
+    private boolean _hashable;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param keyIndexes
+     *            the indexes of the key values in the rows that will be added
+     *            to the index. If empty, the index will not be hashable and
+     *            all rows will be returned from lookups.
+     */
+    public HashJoinIndex(int[] keyIndexes) {
+        this(keyIndexes, null);
+    }
+
+    /**
+     * Creates an empty index that keeps the values of its rows in columnar
+     * form, see {@link ColumnarRowList}. The rows of the index will be views of
+     * the columnar values.
+     *
+     * @param header
+     *            the header of the rows that will be added to the index
+     * @param keyIndexes
+     *            the indexes of the key values in the rows that will be added
+     *            to the index
+     */
+    public HashJoinIndex(DataSetHeader header, int[] keyIndexes) {
+        this(keyIndexes, new ColumnarRowList(header));
+    }
+
+    private HashJoinIndex(int[] keyIndexes, ColumnarRowList storage) {
+        if (keyIndexes == null) {
+            throw new IllegalArgumentException("Key indexes cannot be null");
+        }
+        _keyIndexes = keyIndexes;
+        _storage = storage;
+        _rows = new ArrayList<>();
+        _buckets = new HashMap<>();
+        _keyKinds = new Class<?>[keyIndexes.length];
+        _hashable = keyIndexes.length > 0;
+    }
+
+    /**
+     * Creates an index and adds all rows of a {@link DataSet} to it. The
+     * {@link DataSet} will be closed afterwards.
+     *
+     * @param dataSet
+     * @param keyIndexes
+     * @return
+     */
+    public static HashJoinIndex build(DataSet dataSet, int[] keyIndexes) {
+        final HashJoinIndex index = new HashJoinIndex(new CachingDataSetHeader(dataSet.getSelectItems()),
+                keyIndexes);
+        try {
+            while (dataSet.next()) {
+                index.add(dataSet.getRow());
+            }
+        } finally {
+            dataSet.close();
+        }
+        return index;
+    }
+
+    public void add(Row row) {
+        if (_storage != null) {
+            // keep a view of the stored values rather than the row itself.
+            // The same view is used for all lookups, so that rows can be
+            // told apart by identity.
+            _storage.add(row);
+            row = _storage.get(_storage.size() - 1);
+        }
+        _rows.add(row);
+        if (!_hashable) {
+            return;
+        }
+
+        final Object[] keyValues = new Object[_keyIndexes.length];
+        for (int i = 0; i < _keyIndexes.length; i++) {
+            final Object key = normalize(row.getValue(_keyIndexes[i]));
+            if (key == null) {
+                // not safely hashable, fall back to scanning all rows
+                _hashable = false;
+                _buckets.clear();
+                return;
+            }
+            if (key != NULL_KEY) {
+                final Class<?> kind = getKind(key);
+                if (_keyKinds[i] == null) {
+                    _keyKinds[i] = kind;
+                } else if (_keyKinds[i] != kind) {
+                    // dates mixed with other kinds of values, which the
+                    // comparator may still consider equal
+                    _hashable = false;
+                    _buckets.clear();
+                    return;
+                }
+            }
+            keyValues[i] = key;
+        }
+
+        _buckets.computeIfAbsent(toKey(keyValues), k -> new ArrayList<>(2)).add(row);
+    }
+
+    /**
+     * Finds the candidate rows that may match a row from the probe side of the
+     * join.
+     *
+     * @param probeRow
+     *            the row to find matches for
+     * @param probeKeyIndexes
+     *            the indexes of the key values in the probe row, corresponding
+     *            to the key indexes of this index
+     * @return the rows that are candidates for joining with the probe row
+     */
+    public List<Row> lookup(Row probeRow, int[] probeKeyIndexes) {
+        if (!_hashable) {
+            return _rows;
+        }
+
+        final Object[] keyValues = new Object[probeKeyIndexes.length];
+        for (int i = 0; i < probeKeyIndexes.length; i++) {
+            final Object key = normalize(probeRow.getValue(probeKeyIndexes[i]));
+            if (key == null) {
+                return _rows;
+            }
+            if (key != NULL_KEY && _keyKinds[i] != null && _keyKinds[i] != getKind(key)) {
+                // the values are of a different kind than the indexed ones,
+                // so we cannot rely on hashing for this particular row
+                return _rows;
+            }
+            keyValues[i] = key;
+        }
+
+        final List<Row> bucket = _buckets.get(toKey(keyValues));
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket;
+    }
+
+    /**
+     * Determines if the index is able to narrow down lookups, or if all rows
+     * are returned as candidates.
+     *
+     * @return
+     */
+    public boolean isHashable() {
+        return _hashable;
+    }
+
+    /**
+     * @return all rows in the index, in the order they were added
+     */
+    public List<Row> getRows() {
+        return _rows;
+    }
+
+    public int size() {
+        return _rows.size();
+    }
+
+    private static Object toKey(Object[] keyValues) {
+        if (keyValues.length == 1) {
+            return keyValues[0];
+        }
+        return Arrays.asList(keyValues);
+    }
+
+    /**
+     * Gets the kind of a normalized key. Numbers and strings are of the same
+     * kind, since they are hashed to different buckets only when the
+     * comparator never considers them equal.
+     */
+    private static Class<?> getKind(Object key) {
+        if (key instanceof Date) {
+            return Date.class;
+        }
+        return Object.class;
+    }
+
+    /**
+     * Normalizes a value to a hashable key.
+     *
+     * @param value
+     * @return the normalized key, or null if the value cannot be safely hashed
+     */
+    private static Object normalize(Object value) {
+        if (value == null) {
+            return NULL_KEY;
+        }
+        if (value instanceof Number) {
+            return Double.valueOf(((Number) value).doubleValue());
+        }
+        if (value instanceof Boolean) {
+            // numbers compare to booleans as 1 and 0
+            return ((Boolean) value).booleanValue() ? ONE : ZERO;
+        }
+        if (value instanceof String) {
+            final String str = (String) value;
+            if ("true".equalsIgnoreCase(str)) {
+                return ONE;
+            }
+            if ("false".equalsIgnoreCase(str)) {
+                return ZERO;
+            }
+            // numbers compare to strings by parsing them
+            final Double number = parseNumber(str);
+            if (number != null) {
+                return number;
+            }
+            return str;
+        }
+        if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        }
+        if (value instanceof Calendar) {
+            return new Date(((Calendar) value).getTimeInMillis());
+        }
+        return null;
+    }
+
+    private static Double parseNumber(String str) {
+        final String trimmed = str.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        // avoid the cost of a failed parse for strings that are clearly not
+        // numbers. The letters are for NaN and Infinity.
+        final char firstChar = trimmed.charAt(0);
+        if (!Character.isDigit(firstChar) && firstChar != '-' && firstChar != '+' && firstChar != '.'
+                && firstChar != 'N' && firstChar != 'I') {
+            return null;
+        }
+        try {
+            return Double.valueOf(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
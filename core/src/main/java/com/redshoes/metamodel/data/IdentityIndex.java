@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+/**
+ * An immutable map from objects to int values, which compares its keys by identity. Keys are stored in an
+ * open-addressing table, so lookups neither box nor allocate, and distinct objects with the same identity hash code
+ * never collide.
+ */
+final class IdentityIndex {
+
+    /**
+     * Value returned by {@link #get(Object)} for keys that are not in the index.
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    public static final IdentityIndex EMPTY = new IdentityIndex(new Object[0], new int[0]);
+
+    private final Object[] _keys;
+    private final int[] _values;
+    private final int _mask;
+    private final int _size;
+
+    /**
+     * Creates an index of keys and values. If the same key occurs more than once, the first value is used. Null keys
+     * are ignored.
+     *
+     * @param keys the keys of the index
+     * @param values the values, in the same order as the keys
+     */
+    public IdentityIndex(Object[] keys, int[] values) {
+        int capacity = 2;
+        while (capacity < keys.length * 2) {
+            capacity <<= 1;
+        }
+        _keys = new Object[capacity];
+        _values = new int[capacity];
+        _mask = capacity - 1;
+
+        int size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && put(keys[i], values[i])) {
+                size++;
+            }
+        }
+        _size = size;
+    }
+
+    private boolean put(Object key, int value) {
+        int slot = slot(key);
+        while (_keys[slot] != null) {
+            if (_keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & _mask;
+        }
+        _keys[slot] = key;
+        _values[slot] = value;
+        return true;
+    }
+
+    private int slot(Object key) {
+        final int hash = System.identityHashCode(key);
+        return (hash ^ (hash >>> 16)) & _mask;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key the key to look up
+     * @return the value of the key, or {@link #NOT_FOUND} if the key is not in the index
+     */
+    public int get(Object key) {
+        int slot = slot(key);
+        Object candidate;
+        while ((candidate = _keys[slot]) != null) {
+            if (candidate == key) {
+                return _values[slot];
+            }
+            slot = (slot + 1) & _mask;
+        }
+        return NOT_FOUND;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Creates a copy of this index with an additional key.
+     *
+     * @param key the key to add
+     * @param value the value of the key
+     * @return a new index, or this index if it already contains the key
+     */
+    public IdentityIndex with(Object key, int value) {
+        if (get(key) != NOT_FOUND) {
+            return this;
+        }
+        final Object[] keys = new Object[_size + 1];
+        final int[] values = new int[_size + 1];
+        int i = 0;
+        for (int slot = 0; slot < _keys.length; slot++) {
+            if (_keys[slot] != null) {
+                keys[i] = _keys[slot];
+                values[i] = _values[slot];
+                i++;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        return new IdentityIndex(keys, values);
+    }
+}
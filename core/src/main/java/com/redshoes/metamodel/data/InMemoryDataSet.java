@@ -24,7 +24,8 @@ import java.util.List;
 import com.redshoes.metamodel.query.SelectItem;
 
 /**
- * DataSet implementation based on in-memory data.
+ * DataSet implementation based on in-memory data. To hold many rows
+ * compactly, use a {@link ColumnarRowList} as the list of rows.
  */
 public final class InMemoryDataSet extends AbstractDataSet {
 
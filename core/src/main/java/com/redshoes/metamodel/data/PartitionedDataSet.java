@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.redshoes.metamodel.MetaModelException;
+
+/**
+ * {@link DataSet} that reads a number of partitions (other {@link DataSet}s
+ * with the same select items) concurrently, and returns their rows in
+ * partition order. If the partitions are consecutive ranges of a source, the
+ * rows are returned in the same order as when reading the source from one end
+ * to the other.
+ *
+ * Each partition is read on a thread of an {@link ExecutorService}, so any
+ * lazy work of the partitions (such as parsing, filtering and evaluating
+ * scalar functions) is done concurrently. Rows are handed over in chunks
+ * through a bounded buffer per partition, so the memory usage is bounded
+ * regardless of the size of the partitions.
+ *
+ * The partitions are closed by the threads that read them, when they are
+ * exhausted or when this {@link DataSet} is closed.
+ */
+public final class PartitionedDataSet extends AbstractDataSet {
+
+    private static final int CHUNK_SIZE = 256;
+    private static final int CHUNKS_PER_PARTITION = 4;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final Object END_OF_PARTITION = new Object();
+
+    private final List<DataSet> _partitions;
+    private final ExecutorService _executor;
+    private final List<BlockingQueue<Object>> _queues;
+    private volatile boolean _closed;
+    private int _partitionIndex;
+    private List<Row> _chunk;
+    private int _chunkIndex;
+    private Row _row;
+
+    /**
+     * Creates a {@link PartitionedDataSet}.
+     *
+     * @param partitions
+     *            the partitions, in order. All partitions must have the same
+     *            select items.
+     * @param executor
+     *            the executor to read the partitions with
+     */
+    public PartitionedDataSet(List<DataSet> partitions, ExecutorService executor) {
+        super(partitions.get(0));
+        _partitions = partitions;
+        _executor = executor;
+        _queues = new ArrayList<>(partitions.size());
+    }
+
+    @Override
+    public boolean next() {
+        if (_closed) {
+            return false;
+        }
+        if (_queues.isEmpty()) {
+            start();
+        }
+
+        while (true) {
+            if (_chunk != null && _chunkIndex < _chunk.size()) {
+                _row = _chunk.get(_chunkIndex++);
+                return true;
+            }
+            _chunk = null;
+
+            if (_partitionIndex >= _queues.size()) {
+                _row = null;
+                return false;
+            }
+
+            final Object item = take(_queues.get(_partitionIndex));
+            if (item == END_OF_PARTITION) {
+                _partitionIndex++;
+            } else if (item instanceof RuntimeException) {
+                close();
+                throw (RuntimeException) item;
+            } else if (item instanceof Error) {
+                close();
+                throw (Error) item;
+            } else {
+                @SuppressWarnings("unchecked")
+                final List<Row> chunk = (List<Row>) item;
+                _chunk = chunk;
+                _chunkIndex = 0;
+            }
+        }
+    }
+
+    private void start() {
+        for (int i = 0; i < _partitions.size(); i++) {
+            _queues.add(new ArrayBlockingQueue<>(CHUNKS_PER_PARTITION));
+        }
+        for (int i = 0; i < _partitions.size(); i++) {
+            final DataSet partition = _partitions.get(i);
+            final BlockingQueue<Object> queue = _queues.get(i);
+            _executor.submit(() -> readPartition(partition, queue));
+        }
+    }
+
+    private void readPartition(DataSet partition, BlockingQueue<Object> queue) {
+        try {
+            List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (!_closed && partition.next()) {
+                chunk.add(partition.getRow());
+                if (chunk.size() == CHUNK_SIZE) {
+                    if (!offer(queue, chunk)) {
+                        return;
+                    }
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty() && !offer(queue, chunk)) {
+                return;
+            }
+            offer(queue, END_OF_PARTITION);
+        } catch (RuntimeException | Error e) {
+            offer(queue, e);
+        } finally {
+            partition.close();
+        }
+    }
+
+    /**
+     * Offers an item to a queue, waiting for space to become available unless
+     * this {@link DataSet} is closed in the meantime.
+     *
+     * @return true if the item was added to the queue
+     */
+    private boolean offer(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!_closed) {
+                if (queue.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private Object take(BlockingQueue<Object> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new MetaModelException("Interrupted while waiting for rows of partition " + _partitionIndex, e);
+        }
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        _row = null;
+        _chunk = null;
+        if (_queues.isEmpty()) {
+            // the partitions have not been handed to any threads
+            for (DataSet partition : _partitions) {
+                partition.close();
+            }
+        } else {
+            for (BlockingQueue<Object> queue : _queues) {
+                queue.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DataSet} wrapper for scanning rows without allocating a {@link Row}
+ * per row. The rows of the wrapped {@link DataSet} are read in batches (see
+ * {@link DataSet#nextBatch(RowBatch)}) into a single {@link RowBatch}, and
+ * {@link #getRow()} returns the same {@link Row} instance for every row, which
+ * is a view of the current row of the batch.
+ * 
+ * This is an opt-in mode for consumers that do not retain rows, such as simple
+ * projection scans. The contract is:
+ * <ul>
+ * <li>The {@link Row} returned by {@link #getRow()} is only valid until the next
+ * call to {@link #next()}, {@link #nextBatch(RowBatch)} or {@link #close()}.
+ * After that, it reflects another row of the data set, or no row at all.</li>
+ * <li>Consumers that need to keep a row must copy it, for instance using
+ * {@link Row#getValues()}. {@link #toRows()} copies the rows itself.</li>
+ * </ul>
+ */
+public final class ReusableRowDataSet extends AbstractDataSet implements WrappingDataSet {
+
+    private final DataSet _dataSet;
+    private final RowBatch _batch;
+    private final BatchRow _row;
+    private int _rowIndex;
+
+    public ReusableRowDataSet(DataSet dataSet) {
+        this(dataSet, RowBatch.DEFAULT_CAPACITY);
+    }
+
+    public ReusableRowDataSet(DataSet dataSet, int batchCapacity) {
+        super(dataSet);
+        _dataSet = dataSet;
+        _batch = new RowBatch(getHeader(), batchCapacity);
+        _row = new BatchRow(_batch);
+        _rowIndex = -1;
+    }
+
+    @Override
+    public DataSet getWrappedDataSet() {
+        return _dataSet;
+    }
+
+    @Override
+    public boolean next() {
+        _rowIndex++;
+        if (_rowIndex >= _batch.size()) {
+            if (!_dataSet.nextBatch(_batch)) {
+                _rowIndex = -1;
+                _row.setRowIndex(-1);
+                return false;
+            }
+            _rowIndex = 0;
+        }
+        _row.setRowIndex(_rowIndex);
+        return true;
+    }
+
+    /**
+     * Gets the current row. The same instance is returned for all rows of the
+     * data set, so it is only valid until the next call to {@link #next()}.
+     */
+    @Override
+    public Row getRow() {
+        if (_rowIndex == -1) {
+            return null;
+        }
+        return _row;
+    }
+
+    /**
+     * Gets the remaining rows of the data set as a list of copies of the
+     * rows, since the reused row is invalid once the data set is closed.
+     */
+    @Override
+    public List<Row> toRows() {
+        try {
+            final List<Row> result = new ArrayList<Row>();
+            while (next()) {
+                result.add(_batch.getRow(_rowIndex));
+            }
+            return result;
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public boolean nextBatch(RowBatch batch) {
+        if (_rowIndex != -1 && _rowIndex + 1 < _batch.size()) {
+            // the internal batch still has rows, so hand those out first
+            return super.nextBatch(batch);
+        }
+        _batch.clear();
+        _rowIndex = -1;
+        _row.setRowIndex(-1);
+        return _dataSet.nextBatch(batch);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        _batch.clear();
+        _rowIndex = -1;
+        _row.setRowIndex(-1);
+        _dataSet.close();
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+
+/**
+ * A batch of rows of a {@link DataSet}, stored column by column. Batches are
+ * filled by {@link DataSet#nextBatch(RowBatch)} and are meant to be reused for
+ * all the batches of a {@link DataSet}, so that reading a batch of rows costs a
+ * single call and no allocation per row.
+ * 
+ * The arrays returned by {@link #getColumn(int)} are the internal storage of
+ * the batch. Only the first {@link #size()} values of them are valid, and they
+ * are overwritten when the batch is filled again.
+ */
+public final class RowBatch {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final DataSetHeader _header;
+    private final Object[][] _columns;
+    private final int _capacity;
+    private Style[][] _styles;
+    private int _size;
+
+    public RowBatch(List<SelectItem> selectItems) {
+        this(selectItems, DEFAULT_CAPACITY);
+    }
+
+    public RowBatch(List<SelectItem> selectItems, int capacity) {
+        this(new CachingDataSetHeader(selectItems), capacity);
+    }
+
+    public RowBatch(DataSetHeader header, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be a positive number: " + capacity);
+        }
+        _header = header;
+        _capacity = capacity;
+        _columns = new Object[header.size()][capacity];
+        _size = 0;
+    }
+
+    public DataSetHeader getHeader() {
+        return _header;
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * @return the number of rows in the batch
+     */
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public boolean isFull() {
+        return _size == _capacity;
+    }
+
+    /**
+     * Gets the values of a column of the batch. Only the first {@link #size()}
+     * values are valid.
+     * 
+     * @param columnIndex
+     *            the index of the column, as in the header of the batch
+     * @return the internal array of values of the column
+     */
+    public Object[] getColumn(int columnIndex) {
+        return _columns[columnIndex];
+    }
+
+    public Object getValue(int rowIndex, int columnIndex) {
+        checkRowIndex(rowIndex);
+        return _columns[columnIndex][rowIndex];
+    }
+
+    public Style getStyle(int rowIndex, int columnIndex) {
+        checkRowIndex(rowIndex);
+        if (_styles == null) {
+            return Style.NO_STYLE;
+        }
+        final Style style = _styles[columnIndex][rowIndex];
+        return style == null ? Style.NO_STYLE : style;
+    }
+
+    /**
+     * Creates a {@link Row} with the values of a row of the batch.
+     * 
+     * @param rowIndex
+     * @return
+     */
+    public Row getRow(int rowIndex) {
+        checkRowIndex(rowIndex);
+        final int columnCount = _columns.length;
+        final Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = _columns[i][rowIndex];
+        }
+        Style[] styles = null;
+        if (_styles != null) {
+            styles = new Style[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                styles[i] = getStyle(rowIndex, i);
+            }
+        }
+        return new DefaultRow(_header, values, styles);
+    }
+
+    /**
+     * Adds a row to the batch. The values are copied into the batch, so the
+     * array can be reused by the caller.
+     * 
+     * @param values
+     *            the values of the row, in the order of the header of the batch
+     */
+    public void addRow(Object[] values) {
+        checkNotFull();
+        final int columnCount = _columns.length;
+        for (int i = 0; i < columnCount; i++) {
+            _columns[i][_size] = values[i];
+        }
+        _size++;
+    }
+
+    /**
+     * Adds a row to the batch, with styles. The values and styles are copied
+     * into the batch, so the arrays can be reused by the caller.
+     * 
+     * @param values
+     * @param styles
+     */
+    public void addRow(Object[] values, Style[] styles) {
+        checkNotFull();
+        if (styles != null) {
+            for (int i = 0; i < _columns.length; i++) {
+                setStyle(i, styles[i]);
+            }
+        }
+        addRow(values);
+    }
+
+    /**
+     * Adds a row to the batch. The row is expected to have values in the order
+     * of the header of the batch.
+     * 
+     * @param row
+     */
+    public void addRow(Row row) {
+        checkNotFull();
+        final int columnCount = _columns.length;
+        for (int i = 0; i < columnCount; i++) {
+            _columns[i][_size] = row.getValue(i);
+            setStyle(i, row.getStyle(i));
+        }
+        _size++;
+    }
+
+    private void setStyle(int columnIndex, Style style) {
+        if (_styles == null) {
+            if (style == null || style == Style.NO_STYLE) {
+                return;
+            }
+            // styles are rare, so only keep track of them once they occur
+            _styles = new Style[_columns.length][_capacity];
+        }
+        _styles[columnIndex][_size] = style;
+    }
+
+    /**
+     * Removes all rows from the batch.
+     */
+    public void clear() {
+        for (Object[] column : _columns) {
+            // release the values, so they can be garbage collected
+            Arrays.fill(column, 0, _size, null);
+        }
+        _styles = null;
+        _size = 0;
+    }
+
+    private void checkRowIndex(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= _size) {
+            throw new IndexOutOfBoundsException("Row index " + rowIndex + " is out of bounds, size is " + _size);
+        }
+    }
+
+    private void checkNotFull() {
+        if (_size == _capacity) {
+            throw new IllegalStateException("Batch is full, capacity is " + _capacity);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RowBatch[size=" + _size + ",capacity=" + _capacity + "]";
+    }
+}
@@ -66,7 +66,7 @@ public final class RowPublisherDataSet extends AbstractDataSet {
         super.close();
         _closed = true;
         if (_rowPublisher != null) {
-            _rowPublisher.finished();
+            _rowPublisher.close();
             _rowPublisher = null;
         }
         if (_closeables != null) {
@@ -86,24 +86,29 @@ public final class RowPublisherDataSet extends AbstractDataSet {
     public boolean next() {
         if (_rowPublisher == null) {
             // first time, create the publisher
-            _rowPublisher = new RowPublisherImpl(this);
+            final RowPublisherImpl rowPublisher = new RowPublisherImpl(this);
+            _rowPublisher = rowPublisher;
             logger.info("Starting separate thread for publishing action: {}", _publishAction);
             Runnable runnable = new Runnable() {
                 public void run() {
+                    // the publisher is referenced locally, since the field is
+                    // cleared if the dataset is closed while publishing
                     boolean successful = false;
                     try {
-                        _publishAction.run(_rowPublisher);
+                        _publishAction.run(rowPublisher);
                         logger.debug("Publishing action finished!");
                         successful = true;
-                    } catch (Exception e) {
-                        _rowPublisher.failed(e);
+                    } catch (Throwable e) {
+                        // errors are handed over as well, or the consumer
+                        // would wait forever
+                        rowPublisher.failed(e);
                     }
                     if (successful) {
-                        _rowPublisher.finished();
+                        rowPublisher.finished();
                     }
                 };
             };
-            SharedExecutorService.get().submit(runnable);
+            SharedExecutorService.get(SharedExecutorService.EXECUTOR_ROW_PUBLISHER).submit(runnable);
         }
         return _rowPublisher.next();
     }
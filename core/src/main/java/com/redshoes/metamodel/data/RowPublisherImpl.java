@@ -18,33 +18,52 @@
  */
 package com.redshoes.metamodel.data;
 
+import java.util.Arrays;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.redshoes.metamodel.MetaModelException;
 
 /**
  * Row publisher implementation used by {@link RowPublisherDataSet}.
+ * 
+ * Rows are handed over from the publishing thread to the consuming thread in
+ * chunks, through a bounded queue of chunks, so that the cost of the hand-off
+ * is paid once per chunk rather than once per row. A partial chunk is handed
+ * over right away if the consumer is waiting for rows, so slow publishers do
+ * not delay the consumer.
  */
 class RowPublisherImpl implements RowPublisher {
 
-	public static final int BUFFER_SIZE = 20;
+	public static final int CHUNK_SIZE = 64;
+	public static final int MAX_CHUNKS = 4;
+	public static final int BUFFER_SIZE = CHUNK_SIZE * MAX_CHUNKS;
+
+	private static final long WAIT_MILLIS = 100;
 
 	private final RowPublisherDataSet _dataSet;
-	private final BlockingQueue<Row> _queue;
+	private final BlockingQueue<Row[]> _queue;
 	private final AtomicBoolean _finished;
-	private final AtomicInteger _rowCount;
-	private volatile Row _currentRow;
-	private volatile Exception _error;
+	private volatile boolean _consumerWaiting;
+	private volatile Throwable _error;
+
+	// state of the publishing thread
+	private Row[] _pendingChunk;
+	private int _pendingCount;
+	private int _rowCount;
+
+	// state of the consuming thread
+	private Row[] _chunk;
+	private int _chunkIndex;
+	private Row _currentRow;
 
 	public RowPublisherImpl(RowPublisherDataSet dataSet) {
 		_dataSet = dataSet;
-		_queue = new ArrayBlockingQueue<Row>(BUFFER_SIZE);
+		_queue = new ArrayBlockingQueue<Row[]>(MAX_CHUNKS);
 		_finished = new AtomicBoolean(false);
-		_rowCount = new AtomicInteger();
+		_pendingChunk = new Row[CHUNK_SIZE];
 	}
 
 	@Override
@@ -52,27 +71,52 @@ class RowPublisherImpl implements RowPublisher {
 		if (_finished.get()) {
 			return false;
 		}
-		while (!offer(row)) {
-			if (_finished.get()) {
+		_pendingChunk[_pendingCount++] = row;
+		_rowCount++;
+
+		final boolean maxRowsReached = _dataSet.getMaxRows() > 0 && _rowCount >= _dataSet.getMaxRows();
+		if (_pendingCount == CHUNK_SIZE || maxRowsReached || _consumerWaiting) {
+			if (!flush()) {
 				return false;
 			}
-			// wait one more cycle
 		}
-		int rowCount = _rowCount.incrementAndGet();
-		if (_dataSet.getMaxRows() > 0 && rowCount >= _dataSet.getMaxRows()) {
+		if (maxRowsReached) {
 			finished();
 			return false;
 		}
 		return true;
 	}
 
-	private boolean offer(Row row) {
+	/**
+	 * Hands over the pending rows to the consumer, blocking while the queue of
+	 * chunks is full.
+	 * 
+	 * @return false if the consumer is no longer interested in rows
+	 */
+	private boolean flush() {
+		if (_pendingCount == 0) {
+			return true;
+		}
+		final Row[] chunk;
+		if (_pendingCount == CHUNK_SIZE) {
+			chunk = _pendingChunk;
+			_pendingChunk = new Row[CHUNK_SIZE];
+		} else {
+			chunk = Arrays.copyOf(_pendingChunk, _pendingCount);
+			Arrays.fill(_pendingChunk, 0, _pendingCount, null);
+		}
+		_pendingCount = 0;
+
 		try {
-			return _queue.offer(row, 1000, TimeUnit.MICROSECONDS);
+			while (!_finished.get()) {
+				if (_queue.offer(chunk, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
 		} catch (InterruptedException e) {
-			// do nothing
-			return false;
+			Thread.currentThread().interrupt();
 		}
+		return false;
 	}
 
 	@Override
@@ -87,38 +131,88 @@ class RowPublisherImpl implements RowPublisher {
 		return publish(row);
 	}
 
+	/**
+	 * Invoked by the publishing thread when no more rows will be published.
+	 * Any pending rows are handed over to the consumer first.
+	 */
 	@Override
 	public void finished() {
-		_finished.set(true);
+		if (!_finished.get()) {
+			flush();
+			_finished.set(true);
+		}
 	}
 
-	public boolean next() {
-		if (_queue.isEmpty() && _finished.get()) {
-			return false;
-		}
+	/**
+	 * Invoked by the publishing thread when publishing fails. Any pending rows
+	 * are handed over to the consumer before the error. The error is handed
+	 * over even if that fails, so that the consumer never waits forever.
+	 */
+	public void failed(Throwable error) {
 		try {
-			_currentRow = _queue.poll(1000, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			// do nothing
+			flush();
+		} finally {
+			_error = error;
 		}
-		if (_currentRow != null) {
-			return true;
-		}
-		if (_error != null) {
-			if (_error instanceof RuntimeException) {
-				throw (RuntimeException) _error;
+	}
+
+	/**
+	 * Invoked by the consuming thread when it is no longer interested in rows.
+	 */
+	public void close() {
+		_finished.set(true);
+		_queue.clear();
+		_chunk = null;
+		_currentRow = null;
+	}
+
+	public boolean next() {
+		while (true) {
+			if (_chunk != null && _chunkIndex < _chunk.length) {
+				_currentRow = _chunk[_chunkIndex++];
+				return true;
+			}
+			_chunk = null;
+			_currentRow = null;
+
+			// read the flags before polling, so that no chunk handed over
+			// before the flags were set can be missed
+			final Throwable error = _error;
+			final boolean finished = _finished.get();
+
+			Row[] chunk = _queue.poll();
+			if (chunk == null) {
+				if (error != null) {
+					if (error instanceof RuntimeException) {
+						throw (RuntimeException) error;
+					}
+					if (error instanceof Error) {
+						throw (Error) error;
+					}
+					throw new MetaModelException((Exception) error);
+				}
+				if (finished) {
+					return false;
+				}
+
+				_consumerWaiting = true;
+				try {
+					chunk = _queue.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MetaModelException("Interrupted while waiting for rows to be published", e);
+				} finally {
+					_consumerWaiting = false;
+				}
+			}
+			if (chunk != null) {
+				_chunk = chunk;
+				_chunkIndex = 0;
 			}
-			throw new MetaModelException(_error);
 		}
-		// "busy" (1 second) wait
-		return next();
 	}
 
 	public Row getRow() {
 		return _currentRow;
 	}
-
-	public void failed(Exception error) {
-		_error = error;
-	}
 }
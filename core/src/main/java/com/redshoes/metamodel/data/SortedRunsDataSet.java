@@ -0,0 +1,374 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.util.FileHelper;
+
+/**
+ * {@link DataSet} that merges a number of sorted "runs" of rows into a single
+ * sorted stream of rows. This is the merge phase of an external merge sort:
+ * runs that did not fit into memory are written to temporary files using
+ * {@link #writeRun(List)}, and only the current row of each run is held in
+ * memory while merging.
+ *
+ * Rows that compare as equal are returned in the order of the runs they
+ * originate from, so if the runs are consecutive chunks of the input, the
+ * merge is stable.
+ *
+ * To limit the number of open files, no more than a maximum number of runs
+ * (the "fan-in") are merged at once. If there are more runs than that,
+ * consecutive runs are first merged into fewer, larger runs, in as many passes
+ * as needed.
+ *
+ * The temporary files are deleted when the {@link DataSet} is exhausted or
+ * closed.
+ */
+public final class SortedRunsDataSet extends AbstractDataSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(SortedRunsDataSet.class);
+
+    /**
+     * The number of rows after which the object stream is reset, to avoid that
+     * the stream keeps references to all the values written.
+     */
+    private static final int RESET_INTERVAL = 1000;
+
+    /**
+     * The default maximum number of runs to merge at once.
+     */
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+
+    private final List<File> _runFiles;
+    private final List<Row> _memoryRun;
+    private final Comparator<? super Row> _comparator;
+    private final int _maxFanIn;
+    private final List<RunCursor> _cursors;
+    private PriorityQueue<RunCursor> _queue;
+    private Row _row;
+
+    /**
+     * Creates a {@link SortedRunsDataSet}.
+     *
+     * @param header
+     *            the header of the rows in the runs
+     * @param runFiles
+     *            the temporary files of the runs, as written by
+     *            {@link #writeRun(List)}
+     * @param memoryRun
+     *            an optional run that is kept in memory and is considered to
+     *            come after the runs in files, or null if there is none
+     * @param comparator
+     *            the comparator that the runs are sorted by
+     */
+    public SortedRunsDataSet(DataSetHeader header, List<File> runFiles, List<Row> memoryRun,
+            Comparator<? super Row> comparator) {
+        this(header, runFiles, memoryRun, comparator, DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * Creates a {@link SortedRunsDataSet}.
+     *
+     * @param header
+     *            the header of the rows in the runs
+     * @param runFiles
+     *            the temporary files of the runs, as written by
+     *            {@link #writeRun(List)}
+     * @param memoryRun
+     *            an optional run that is kept in memory and is considered to
+     *            come after the runs in files, or null if there is none
+     * @param comparator
+     *            the comparator that the runs are sorted by
+     * @param maxFanIn
+     *            the maximum number of runs to merge at once
+     */
+    public SortedRunsDataSet(DataSetHeader header, List<File> runFiles, List<Row> memoryRun,
+            Comparator<? super Row> comparator, int maxFanIn) {
+        super(header);
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("Max fan-in must be at least 2: " + maxFanIn);
+        }
+        _runFiles = new ArrayList<>(runFiles);
+        _memoryRun = memoryRun;
+        _comparator = comparator;
+        _maxFanIn = maxFanIn;
+        _cursors = new ArrayList<>(Math.min(runFiles.size(), maxFanIn) + 1);
+    }
+
+    /**
+     * Writes a sorted run of rows to a temporary file. The file is deleted by
+     * the {@link SortedRunsDataSet} that merges it, when it is exhausted or
+     * closed.
+     *
+     * @param sortedRows
+     *            the rows to write, in sorted order
+     * @return the temporary file
+     * @throws MetaModelException
+     *             if writing the file fails, eg. because the rows contain
+     *             values that cannot be serialized
+     */
+    public static File writeRun(List<Row> sortedRows) throws MetaModelException {
+        return writeRun(sortedRows.iterator());
+    }
+
+    private static File writeRun(Iterator<Row> sortedRows) throws MetaModelException {
+        final File file = FileHelper.createTempFile("metamodel_sort", ".run");
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(FileHelper.getOutputStream(file)));
+            int count = 0;
+            while (sortedRows.hasNext()) {
+                final Row row = sortedRows.next();
+                out.writeBoolean(true);
+                out.writeObject(row.getValues());
+                out.writeObject(row.getStyles());
+                if (++count % RESET_INTERVAL == 0) {
+                    out.reset();
+                }
+            }
+            out.writeBoolean(false);
+            out.flush();
+            return file;
+        } catch (NotSerializableException e) {
+            FileHelper.safeClose(out);
+            out = null;
+            deleteFile(file);
+            throw new MetaModelException("Could not write sorted run to temporary file, value of type "
+                    + e.getMessage() + " is not serializable", e);
+        } catch (IOException e) {
+            FileHelper.safeClose(out);
+            out = null;
+            deleteFile(file);
+            throw new MetaModelException("Could not write sorted run to temporary file: " + file, e);
+        } finally {
+            FileHelper.safeClose(out);
+        }
+    }
+
+    @Override
+    public boolean next() {
+        if (_queue == null) {
+            open();
+        }
+
+        final RunCursor cursor = _queue.poll();
+        if (cursor == null) {
+            _row = null;
+            cleanUp();
+            return false;
+        }
+
+        _row = cursor.getRow();
+        if (cursor.advance()) {
+            _queue.add(cursor);
+        }
+        return true;
+    }
+
+    private void open() {
+        final int maxRunFiles = _memoryRun == null || _memoryRun.isEmpty() ? _maxFanIn : _maxFanIn - 1;
+        while (_runFiles.size() > maxRunFiles) {
+            mergePass();
+        }
+
+        _queue = new PriorityQueue<>(_runFiles.size() + 1, (c1, c2) -> {
+            final int compare = _comparator.compare(c1.getRow(), c2.getRow());
+            if (compare != 0) {
+                return compare;
+            }
+            return Integer.compare(c1.getRunIndex(), c2.getRunIndex());
+        });
+
+        for (File runFile : _runFiles) {
+            addCursor(new FileRunCursor(_cursors.size(), runFile));
+        }
+        if (_memoryRun != null && !_memoryRun.isEmpty()) {
+            addCursor(new MemoryRunCursor(_cursors.size(), _memoryRun.iterator()));
+        }
+    }
+
+    /**
+     * Merges groups of consecutive runs into single runs, which keeps the merge
+     * stable.
+     */
+    private void mergePass() {
+        final List<File> mergedRunFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < _runFiles.size(); i += _maxFanIn) {
+                final List<File> group = _runFiles.subList(i, Math.min(i + _maxFanIn, _runFiles.size()));
+                if (group.size() == 1) {
+                    mergedRunFiles.add(group.get(0));
+                } else {
+                    // the merging dataset deletes the files of the group
+                    final SortedRunsDataSet merge = new SortedRunsDataSet(getHeader(), group, null, _comparator,
+                            _maxFanIn);
+                    try {
+                        mergedRunFiles.add(writeRun(merge.iterator()));
+                    } finally {
+                        merge.close();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            for (File file : mergedRunFiles) {
+                deleteFile(file);
+            }
+            throw e;
+        }
+        _runFiles.clear();
+        _runFiles.addAll(mergedRunFiles);
+    }
+
+    private void addCursor(RunCursor cursor) {
+        _cursors.add(cursor);
+        if (cursor.advance()) {
+            _queue.add(cursor);
+        }
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        cleanUp();
+    }
+
+    private void cleanUp() {
+        for (RunCursor cursor : _cursors) {
+            cursor.close();
+        }
+        _cursors.clear();
+        if (_queue != null) {
+            _queue.clear();
+        }
+        for (File file : _runFiles) {
+            deleteFile(file);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Could not delete temporary file: {}", file);
+        }
+    }
+
+    private abstract static class RunCursor {
+
+        private final int _runIndex;
+        private Row _row;
+
+        public RunCursor(int runIndex) {
+            _runIndex = runIndex;
+        }
+
+        public int getRunIndex() {
+            return _runIndex;
+        }
+
+        public Row getRow() {
+            return _row;
+        }
+
+        public boolean advance() {
+            _row = read();
+            return _row != null;
+        }
+
+        protected abstract Row read();
+
+        public void close() {
+        }
+    }
+
+    private static final class MemoryRunCursor extends RunCursor {
+
+        private final Iterator<Row> _iterator;
+
+        public MemoryRunCursor(int runIndex, Iterator<Row> iterator) {
+            super(runIndex);
+            _iterator = iterator;
+        }
+
+        @Override
+        protected Row read() {
+            if (_iterator.hasNext()) {
+                return _iterator.next();
+            }
+            return null;
+        }
+    }
+
+    private final class FileRunCursor extends RunCursor {
+
+        private final File _file;
+        private ObjectInputStream _in;
+
+        public FileRunCursor(int runIndex, File file) {
+            super(runIndex);
+            _file = file;
+        }
+
+        @Override
+        protected Row read() {
+            try {
+                if (_in == null) {
+                    _in = new ObjectInputStream(new BufferedInputStream(FileHelper.getInputStream(_file)));
+                }
+                if (!_in.readBoolean()) {
+                    close();
+                    return null;
+                }
+                final Object[] values = (Object[]) _in.readObject();
+                final Style[] styles = (Style[]) _in.readObject();
+                return new DefaultRow(getHeader(), values, styles);
+            } catch (EOFException e) {
+                throw new MetaModelException("Unexpected end of sorted run in temporary file: " + _file, e);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new MetaModelException("Could not read sorted run from temporary file: " + _file, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            FileHelper.safeClose(_in);
+            _in = null;
+        }
+    }
+}
@@ -29,6 +29,13 @@ public final class SubSelectionDataSet extends AbstractDataSet implements Wrappi
 
     private final DataSet _dataSet;
 
+    // state for reading batches, created on first use (per batch capacity)
+    private RowBatch _sourceBatch;
+    private int[] _sourceIndexes;
+    private int[] _fallbackIndexes;
+    private Object[] _values;
+    private Style[] _styles;
+
     public SubSelectionDataSet(SelectItem[] selectItemsArray, DataSet dataSet) {
         super(selectItemsArray);
         _dataSet = dataSet;
@@ -55,6 +62,60 @@ public final class SubSelectionDataSet extends AbstractDataSet implements Wrappi
         return _dataSet.getRow().getSubSelection(header);
     }
 
+    /**
+     * Reads a batch of rows of the wrapped {@link DataSet} into a reused batch
+     * and copies the subselected values from it, so that no {@link Row} is
+     * created per row.
+     */
+    @Override
+    public boolean nextBatch(RowBatch batch) {
+        if (_sourceBatch == null || _sourceBatch.getCapacity() != batch.getCapacity()) {
+            initBatchState(batch.getCapacity());
+        }
+        batch.clear();
+        if (!_dataSet.nextBatch(_sourceBatch)) {
+            return false;
+        }
+        final int size = _sourceBatch.size();
+        for (int row = 0; row < size; row++) {
+            for (int i = 0; i < _values.length; i++) {
+                int index = _sourceIndexes[i];
+                Object value = index == -1 ? null : _sourceBatch.getValue(row, index);
+                if (value == null && _fallbackIndexes[i] != -1) {
+                    // same semantics as AbstractRow.getSubSelection(...)
+                    index = _fallbackIndexes[i];
+                    value = _sourceBatch.getValue(row, index);
+                }
+                _values[i] = value;
+                _styles[i] = index == -1 ? Style.NO_STYLE : _sourceBatch.getStyle(row, index);
+            }
+            batch.addRow(_values, _styles);
+        }
+        return true;
+    }
+
+    private void initBatchState(int capacity) {
+        _sourceBatch = new RowBatch(_dataSet.getSelectItems(), capacity);
+        final DataSetHeader sourceHeader = _sourceBatch.getHeader();
+        final DataSetHeader header = getHeader();
+        final int size = header.size();
+        _sourceIndexes = new int[size];
+        _fallbackIndexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            final SelectItem selectItem = header.getSelectItem(i);
+            final SelectItem subQuerySelectItem = selectItem.getSubQuerySelectItem();
+            if (subQuerySelectItem != null) {
+                _sourceIndexes[i] = sourceHeader.indexOf(subQuerySelectItem);
+                _fallbackIndexes[i] = sourceHeader.indexOf(selectItem);
+            } else {
+                _sourceIndexes[i] = sourceHeader.indexOf(selectItem);
+                _fallbackIndexes[i] = -1;
+            }
+        }
+        _values = new Object[size];
+        _styles = new Style[size];
+    }
+
     @Override
     public void close() {
         super.close();
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * {@link DataSet} that returns the first N rows of another {@link DataSet},
+ * according to an ordering. The rows are found in a single pass using a
+ * bounded priority queue, so only N rows are held in memory regardless of the
+ * size of the wrapped {@link DataSet}.
+ *
+ * Rows that are equal according to the ordering are returned in the order
+ * they appear in the wrapped {@link DataSet}, like a stable sort would.
+ *
+ * The wrapped {@link DataSet} is consumed and closed on the first call to
+ * {@link #next()}.
+ */
+public final class TopNDataSet extends AbstractDataSet implements WrappingDataSet {
+
+    private final DataSet _dataSet;
+    private final Comparator<? super Row> _comparator;
+    private final int _n;
+    private Row[] _rows;
+    private int _rowIndex;
+
+    /**
+     * Creates a {@link TopNDataSet}.
+     *
+     * @param dataSet
+     *            the dataset to find the first rows of
+     * @param comparator
+     *            the comparator that defines the ordering of the rows
+     * @param n
+     *            the number of rows to return
+     */
+    public TopNDataSet(DataSet dataSet, Comparator<? super Row> comparator, int n) {
+        super(dataSet);
+        if (n < 1) {
+            throw new IllegalArgumentException("N must be a positive number: " + n);
+        }
+        _dataSet = dataSet;
+        _comparator = comparator;
+        _n = n;
+        _rowIndex = -1;
+    }
+
+    @Override
+    public DataSet getWrappedDataSet() {
+        return _dataSet;
+    }
+
+    @Override
+    public boolean next() {
+        if (_rows == null) {
+            _rows = findTopRows();
+        }
+        if (_rowIndex + 1 < _rows.length) {
+            _rowIndex++;
+            return true;
+        }
+        _rowIndex = _rows.length;
+        return false;
+    }
+
+    private Row[] findTopRows() {
+        // a max-heap holding the best rows seen so far, with the worst of them
+        // at the head. The sequence numbers of the rows are used as tie-breaker.
+        final PriorityQueue<SequencedRow> heap = new PriorityQueue<>((r1, r2) -> {
+            final int compare = _comparator.compare(r2._row, r1._row);
+            if (compare != 0) {
+                return compare;
+            }
+            return Long.compare(r2._sequence, r1._sequence);
+        });
+
+        long sequence = 0;
+        try {
+            while (_dataSet.next()) {
+                final Row row = _dataSet.getRow();
+                if (heap.size() < _n) {
+                    heap.add(new SequencedRow(row, sequence++));
+                } else if (_comparator.compare(row, heap.peek()._row) < 0) {
+                    // a row that is equal to the worst row comes after it, so
+                    // only strictly better rows replace it
+                    heap.poll();
+                    heap.add(new SequencedRow(row, sequence++));
+                }
+            }
+        } finally {
+            _dataSet.close();
+        }
+
+        final Row[] rows = new Row[heap.size()];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = heap.poll()._row;
+        }
+        return rows;
+    }
+
+    @Override
+    public Row getRow() {
+        if (_rows == null || _rowIndex < 0 || _rowIndex >= _rows.length) {
+            return null;
+        }
+        return _rows[_rowIndex];
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (_rows == null) {
+            // the wrapped dataset has not been consumed yet
+            _dataSet.close();
+        }
+        _rows = new Row[0];
+    }
+
+    private static final class SequencedRow {
+
+        private final Row _row;
+        private final long _sequence;
+
+        public SequencedRow(Row row, long sequence) {
+            _row = row;
+            _sequence = sequence;
+        }
+    }
+}
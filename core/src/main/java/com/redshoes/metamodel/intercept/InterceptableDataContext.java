@@ -51,6 +51,7 @@ public class InterceptableDataContext implements UpdateableDataContext {
     private final InterceptorList<RowDeletionBuilder> _rowDeletionInterceptors;
     private final InterceptorList<TableCreationBuilder> _tableCreationInterceptors;
     private final InterceptorList<TableDropBuilder> _tableDropInterceptors;
+    private volatile QueryResultCache _queryResultCache;
 
     protected InterceptableDataContext(DataContext delegate) {
         _delegate = delegate;
@@ -144,6 +145,35 @@ public class InterceptableDataContext implements UpdateableDataContext {
         return this;
     }
 
+    /**
+     * Sets a cache of query results for this DataContext. The cache is applied after the query interceptors and before
+     * the dataset interceptors. Only one cache can be set at a time.
+     * 
+     * @param queryResultCache the cache, or null to not cache query results
+     * @return
+     */
+    public InterceptableDataContext setQueryResultCache(QueryResultCache queryResultCache) {
+        final QueryResultCache previousCache = _queryResultCache;
+        if (previousCache != null) {
+            _rowInsertionInterceptors.remove(previousCache.getRowInsertionInterceptor());
+            _rowUpdationInterceptors.remove(previousCache.getRowUpdationInterceptor());
+            _rowDeletionInterceptors.remove(previousCache.getRowDeletionInterceptor());
+            _tableDropInterceptors.remove(previousCache.getTableDropInterceptor());
+        }
+        if (queryResultCache != null) {
+            _rowInsertionInterceptors.add(queryResultCache.getRowInsertionInterceptor());
+            _rowUpdationInterceptors.add(queryResultCache.getRowUpdationInterceptor());
+            _rowDeletionInterceptors.add(queryResultCache.getRowDeletionInterceptor());
+            _tableDropInterceptors.add(queryResultCache.getTableDropInterceptor());
+        }
+        _queryResultCache = queryResultCache;
+        return this;
+    }
+
+    public QueryResultCache getQueryResultCache() {
+        return _queryResultCache;
+    }
+
     public InterceptorList<DataSet> getDataSetInterceptors() {
         return _dataSetInterceptors;
     }
@@ -179,7 +209,13 @@ public class InterceptableDataContext implements UpdateableDataContext {
     @Override
     public DataSet executeQuery(Query query) throws MetaModelException {
         query = _queryInterceptors.interceptAll(query);
-        DataSet dataSet = _delegate.executeQuery(query);
+        final QueryResultCache queryResultCache = _queryResultCache;
+        DataSet dataSet;
+        if (queryResultCache == null) {
+            dataSet = _delegate.executeQuery(query);
+        } else {
+            dataSet = queryResultCache.executeQuery(_delegate, query, _delegate::executeQuery);
+        }
         dataSet = _dataSetInterceptors.interceptAll(dataSet);
         return dataSet;
     }
@@ -259,7 +295,17 @@ public class InterceptableDataContext implements UpdateableDataContext {
         final UpdateScript interceptableUpdateScript = new InterceptableUpdateScript(this, update,
                 _tableCreationInterceptors, _tableDropInterceptors, _rowInsertionInterceptors,
                 _rowUpdationInterceptors, _rowDeletionInterceptors);
-        return delegate.executeUpdate(interceptableUpdateScript);
+
+        final QueryResultCache queryResultCache = _queryResultCache;
+        if (queryResultCache == null) {
+            return delegate.executeUpdate(interceptableUpdateScript);
+        }
+        queryResultCache.updateStarted();
+        try {
+            return delegate.executeUpdate(interceptableUpdateScript);
+        } finally {
+            queryResultCache.updateFinished();
+        }
     }
 
     @Override
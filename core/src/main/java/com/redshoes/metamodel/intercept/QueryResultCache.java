@@ -0,0 +1,502 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.intercept;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.redshoes.metamodel.DataContext;
+import com.redshoes.metamodel.data.AbstractDataSet;
+import com.redshoes.metamodel.data.CachingDataSetHeader;
+import com.redshoes.metamodel.data.ColumnarRowList;
+import com.redshoes.metamodel.data.DataSet;
+import com.redshoes.metamodel.data.DataSetHeader;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.query.FromItem;
+import com.redshoes.metamodel.query.Query;
+import com.redshoes.metamodel.schema.Table;
+
+/**
+ * A cache of query results, which can be set on an {@link InterceptableDataContext} (see
+ * {@link InterceptableDataContext#setQueryResultCache(QueryResultCache)}).
+ *
+ * Results are cached by the SQL of the query (after any {@link QueryInterceptor}s have been applied) and the
+ * {@link DataContext} that executes it, and are held in compact, columnar form (see {@link ColumnarRowList}). Cached
+ * results expire after a time to live, and the least recently used results are evicted when the total estimated size
+ * of the cached results exceeds a maximum size. Results with more than a maximum number of rows are not cached.
+ *
+ * When rows of a table are inserted, updated or deleted, or the table is dropped, through
+ * {@link InterceptableDataContext#executeUpdate(com.redshoes.metamodel.UpdateScript)}, the cached results of queries
+ * on the table are invalidated. Updates that are made in other ways are only reflected once the cached results have
+ * expired.
+ *
+ * When several threads execute the same query while it is not cached, only one of them executes the query, while the
+ * others wait for its result.
+ */
+public final class QueryResultCache {
+
+    private static final int DEFAULT_MAX_ROWS_PER_RESULT = 10000;
+
+    private final long _maxSize;
+    private final long _timeToLiveNanos;
+    private final int _maxRowsPerResult;
+
+    // access ordered, so that the least recently used entry comes first
+    private final LinkedHashMap<CacheKey, CacheEntry> _entries;
+    private final ConcurrentMap<CacheKey, CompletableFuture<CacheEntry>> _loads;
+    private final AtomicLong _hitCount;
+    private final AtomicLong _missCount;
+    private final AtomicLong _evictionCount;
+    private final RowInsertionInterceptor _rowInsertionInterceptor;
+    private final RowUpdationInterceptor _rowUpdationInterceptor;
+    private final RowDeletionInterceptor _rowDeletionInterceptor;
+    private final TableDropInterceptor _tableDropInterceptor;
+
+    // guarded by _entries
+    private long _totalSize;
+    private long _generation;
+    private int _updatesInProgress;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum total estimated size, in bytes, of the cached results
+     * @param timeToLive the time that a result is cached for
+     * @param timeUnit the unit of the time to live
+     */
+    public QueryResultCache(long maxSize, long timeToLive, TimeUnit timeUnit) {
+        this(maxSize, timeToLive, timeUnit, DEFAULT_MAX_ROWS_PER_RESULT);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum total estimated size, in bytes, of the cached results
+     * @param timeToLive the time that a result is cached for
+     * @param timeUnit the unit of the time to live
+     * @param maxRowsPerResult the maximum number of rows of a result that is cached
+     */
+    public QueryResultCache(long maxSize, long timeToLive, TimeUnit timeUnit, int maxRowsPerResult) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be a positive number: " + maxSize);
+        }
+        if (timeToLive < 1) {
+            throw new IllegalArgumentException("Time to live must be a positive number: " + timeToLive);
+        }
+        if (maxRowsPerResult < 0) {
+            throw new IllegalArgumentException("Max rows per result cannot be negative: " + maxRowsPerResult);
+        }
+        _maxSize = maxSize;
+        _timeToLiveNanos = timeUnit.toNanos(timeToLive);
+        _maxRowsPerResult = maxRowsPerResult;
+        _entries = new LinkedHashMap<>(16, 0.75f, true);
+        _loads = new ConcurrentHashMap<>();
+        _hitCount = new AtomicLong();
+        _missCount = new AtomicLong();
+        _evictionCount = new AtomicLong();
+        _rowInsertionInterceptor = builder -> {
+            invalidate(builder.getTable());
+            return builder;
+        };
+        _rowUpdationInterceptor = builder -> {
+            invalidate(builder.getTable());
+            return builder;
+        };
+        _rowDeletionInterceptor = builder -> {
+            invalidate(builder.getTable());
+            return builder;
+        };
+        _tableDropInterceptor = builder -> {
+            invalidate(builder.getTable());
+            return builder;
+        };
+    }
+
+    /**
+     * Gets the number of queries that were answered by a cached result.
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return _hitCount.get();
+    }
+
+    /**
+     * Gets the number of cacheable queries that were not answered by a cached result.
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return _missCount.get();
+    }
+
+    /**
+     * Gets the number of cached results that were evicted because their time to live had passed or to keep the
+     * total size of the cache below its maximum size. Invalidated results are not counted.
+     *
+     * @return
+     */
+    public long getEvictionCount() {
+        return _evictionCount.get();
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (_entries) {
+            return _entries.size();
+        }
+    }
+
+    /**
+     * Gets the total estimated size, in bytes, of the cached results.
+     *
+     * @return
+     */
+    public long getTotalSize() {
+        synchronized (_entries) {
+            return _totalSize;
+        }
+    }
+
+    /**
+     * Invalidates the cached results of all queries on a table.
+     *
+     * @param table
+     */
+    public void invalidate(Table table) {
+        synchronized (_entries) {
+            _generation++;
+            final Iterator<CacheEntry> it = _entries.values().iterator();
+            while (it.hasNext()) {
+                final CacheEntry entry = it.next();
+                if (entry.tables.contains(table)) {
+                    it.remove();
+                    _totalSize -= entry.size;
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates all cached results.
+     */
+    public void invalidateAll() {
+        synchronized (_entries) {
+            _generation++;
+            _entries.clear();
+            _totalSize = 0;
+        }
+    }
+
+    /**
+     * Executes a query, using a cached result if possible.
+     *
+     * @param dataContext the DataContext that executes the query
+     * @param query the query to execute
+     * @param execution the function that executes the query on the DataContext
+     * @return
+     */
+    DataSet executeQuery(DataContext dataContext, Query query, Function<Query, DataSet> execution) {
+        final Set<Table> tables = new HashSet<>();
+        if (!addTables(tables, query)) {
+            // the query cannot be invalidated by table
+            return execution.apply(query);
+        }
+
+        final CacheKey key = new CacheKey(dataContext, query.toSql());
+        CacheEntry entry = getEntry(key);
+        if (entry != null) {
+            _hitCount.incrementAndGet();
+            return entry.createDataSet();
+        }
+        _missCount.incrementAndGet();
+
+        final CompletableFuture<CacheEntry> load = new CompletableFuture<>();
+        final CompletableFuture<CacheEntry> existingLoad = _loads.putIfAbsent(key, load);
+        if (existingLoad != null) {
+            // another thread is executing the same query, wait for its result
+            entry = existingLoad.join();
+            if (entry != null) {
+                return entry.createDataSet();
+            }
+            return execution.apply(query);
+        }
+
+        try {
+            final long generation = getLoadGeneration();
+            final DataSet dataSet = execution.apply(query);
+            final DataSetHeader header = new CachingDataSetHeader(dataSet.getSelectItems());
+            final ColumnarRowList rows = new ColumnarRowList(header);
+            boolean closeDataSet = true;
+            try {
+                while (dataSet.next()) {
+                    rows.add(dataSet.getRow());
+                    if (rows.size() > _maxRowsPerResult) {
+                        // too many rows to cache, continue with the rest of
+                        // the rows of the dataset
+                        load.complete(null);
+                        closeDataSet = false;
+                        return new CachedDataSet(header, rows, dataSet);
+                    }
+                }
+            } finally {
+                if (closeDataSet) {
+                    dataSet.close();
+                }
+            }
+
+            entry = new CacheEntry(header, rows, tables, System.nanoTime() + _timeToLiveNanos);
+            putEntry(key, entry, generation);
+            load.complete(entry);
+            return entry.createDataSet();
+        } finally {
+            // makes waiting threads execute the query themselves if it failed
+            load.complete(null);
+            _loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Invoked when an update script is started. Results of queries that are executed while an update script is in
+     * progress are not cached.
+     */
+    void updateStarted() {
+        synchronized (_entries) {
+            _generation++;
+            _updatesInProgress++;
+        }
+    }
+
+    /**
+     * Invoked when an update script has finished (successfully or not).
+     */
+    void updateFinished() {
+        synchronized (_entries) {
+            _generation++;
+            _updatesInProgress--;
+        }
+    }
+
+    // the interceptors that invalidate the cached results of tables when they
+    // are updated
+
+    RowInsertionInterceptor getRowInsertionInterceptor() {
+        return _rowInsertionInterceptor;
+    }
+
+    RowUpdationInterceptor getRowUpdationInterceptor() {
+        return _rowUpdationInterceptor;
+    }
+
+    RowDeletionInterceptor getRowDeletionInterceptor() {
+        return _rowDeletionInterceptor;
+    }
+
+    TableDropInterceptor getTableDropInterceptor() {
+        return _tableDropInterceptor;
+    }
+
+    private CacheEntry getEntry(CacheKey key) {
+        synchronized (_entries) {
+            final CacheEntry entry = _entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires - System.nanoTime() < 0) {
+                _entries.remove(key);
+                _totalSize -= entry.size;
+                _evictionCount.incrementAndGet();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Gets the generation of the cache when a query is executed, or -1 if its result should not be cached.
+     */
+    private long getLoadGeneration() {
+        synchronized (_entries) {
+            if (_updatesInProgress > 0) {
+                return -1;
+            }
+            return _generation;
+        }
+    }
+
+    private void putEntry(CacheKey key, CacheEntry entry, long generation) {
+        if (entry.size > _maxSize) {
+            return;
+        }
+        synchronized (_entries) {
+            if (generation != _generation) {
+                // tables may have been updated while the query was executed
+                return;
+            }
+            final CacheEntry previousEntry = _entries.put(key, entry);
+            if (previousEntry != null) {
+                _totalSize -= previousEntry.size;
+            }
+            _totalSize += entry.size;
+
+            final Iterator<CacheEntry> it = _entries.values().iterator();
+            while (_totalSize > _maxSize && it.hasNext()) {
+                final CacheEntry eldestEntry = it.next();
+                it.remove();
+                _totalSize -= eldestEntry.size;
+                _evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Adds the tables that a query selects from.
+     *
+     * @return false if not all of the from items of the query refer to tables
+     */
+    private static boolean addTables(Set<Table> tables, Query query) {
+        for (FromItem fromItem : query.getFromClause().getItems()) {
+            if (!addTables(tables, fromItem)) {
+                return false;
+            }
+        }
+        return !tables.isEmpty();
+    }
+
+    private static boolean addTables(Set<Table> tables, FromItem fromItem) {
+        if (fromItem.getTable() != null) {
+            tables.add(fromItem.getTable());
+            return true;
+        }
+        if (fromItem.getSubQuery() != null) {
+            return addTables(tables, fromItem.getSubQuery());
+        }
+        if (fromItem.getJoin() != null) {
+            return addTables(tables, fromItem.getLeftSide()) && addTables(tables, fromItem.getRightSide());
+        }
+        return false;
+    }
+
+    private static final class CacheKey {
+
+        private final DataContext dataContext;
+        private final String sql;
+
+        public CacheKey(DataContext dataContext, String sql) {
+            this.dataContext = dataContext;
+            this.sql = sql;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(dataContext) * 31 + sql.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return dataContext == other.dataContext && sql.equals(other.sql);
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final DataSetHeader header;
+        private final List<Row> rows;
+        private final Set<Table> tables;
+        private final long expires;
+        private final long size;
+
+        public CacheEntry(DataSetHeader header, ColumnarRowList rows, Set<Table> tables, long expires) {
+            this.header = header;
+            this.rows = rows;
+            this.tables = tables;
+            this.expires = expires;
+            this.size = 64 + rows.getEstimatedSize();
+        }
+
+        public DataSet createDataSet() {
+            return new CachedDataSet(header, rows, null);
+        }
+    }
+
+    /**
+     * A dataset of cached rows, optionally followed by the rest of the rows of the dataset that they were read from.
+     * The rows are never modified through the dataset, so that cached rows can be shared.
+     */
+    private static final class CachedDataSet extends AbstractDataSet {
+
+        private final List<Row> _rows;
+        private final DataSet _rest;
+        private int _rowNumber = -1;
+
+        public CachedDataSet(DataSetHeader header, List<Row> rows, DataSet rest) {
+            super(header);
+            _rows = Objects.requireNonNull(rows);
+            _rest = rest;
+        }
+
+        @Override
+        public boolean next() {
+            if (_rowNumber < _rows.size()) {
+                _rowNumber++;
+            }
+            if (_rowNumber < _rows.size()) {
+                return true;
+            }
+            return _rest != null && _rest.next();
+        }
+
+        @Override
+        public Row getRow() {
+            if (_rowNumber < 0) {
+                return null;
+            }
+            if (_rowNumber < _rows.size()) {
+                return _rows.get(_rowNumber);
+            }
+            return _rest == null ? null : _rest.getRow();
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (_rest != null) {
+                _rest.close();
+            }
+        }
+    }
+}
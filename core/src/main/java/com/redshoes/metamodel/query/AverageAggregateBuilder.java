@@ -19,11 +19,14 @@
 package com.redshoes.metamodel.query;
 
 import com.redshoes.metamodel.util.AbstractNumberAggregateBuilder;
+import com.redshoes.metamodel.util.AggregateBuilder;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
 /**
  * Aggregate builder for the {@link FunctionType#AVG} function
  */
-final class AverageAggregateBuilder extends AbstractNumberAggregateBuilder<Double> {
+final class AverageAggregateBuilder extends AbstractNumberAggregateBuilder<Double> implements
+		MergeableAggregateBuilder<Double> {
 
 	public double _average;
 	public int _numValues;
@@ -40,4 +43,14 @@ final class AverageAggregateBuilder extends AbstractNumberAggregateBuilder<Doubl
 		return _average;
 	}
 
+	@Override
+	public void merge(AggregateBuilder<?> other) {
+		final AverageAggregateBuilder otherBuilder = (AverageAggregateBuilder) other;
+		if (otherBuilder._numValues == 0) {
+			return;
+		}
+		double total = _average * _numValues + otherBuilder._average * otherBuilder._numValues;
+		_numValues += otherBuilder._numValues;
+		_average = total / _numValues;
+	}
 }
@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import com.redshoes.metamodel.data.DataSetHeader;
+import com.redshoes.metamodel.data.IRowFilter;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.schema.ColumnType;
+import com.redshoes.metamodel.util.ColumnTypeComparator;
+import com.redshoes.metamodel.util.WildcardPattern;
+
+/**
+ * A {@link FilterItem} that has been compiled against a {@link DataSetHeader},
+ * for repeated evaluation against rows with that header. Compared to
+ * {@link FilterItem#evaluate(Row)}, the positions of the values in the rows are
+ * resolved only once, LIKE patterns and IN value sets are prepared up front,
+ * and comparisons use a comparator chosen from the expected column type of the
+ * filtered select item.
+ *
+ * The result of evaluating a compiled filter item is always the same as
+ * evaluating the {@link FilterItem} itself.
+ */
+public final class CompiledFilterItem implements IRowFilter {
+
+    private final FilterItem _filterItem;
+    private final IRowFilter _filter;
+
+    public CompiledFilterItem(FilterItem filterItem, DataSetHeader header) {
+        _filterItem = filterItem;
+        _filter = compile(filterItem, header);
+    }
+
+    /**
+     * Compiles a number of filter items against the same header.
+     *
+     * @param filterItems
+     * @param header
+     * @return
+     */
+    public static List<CompiledFilterItem> compile(Collection<FilterItem> filterItems, DataSetHeader header) {
+        final List<CompiledFilterItem> result = new ArrayList<>(filterItems.size());
+        for (FilterItem filterItem : filterItems) {
+            result.add(new CompiledFilterItem(filterItem, header));
+        }
+        return result;
+    }
+
+    public FilterItem getFilterItem() {
+        return _filterItem;
+    }
+
+    @Override
+    public boolean accept(Row row) {
+        return _filter.accept(row);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFilterItem[" + _filterItem + "]";
+    }
+
+    private static IRowFilter compile(FilterItem filterItem, DataSetHeader header) {
+        if (filterItem.getExpression() != null) {
+            // cannot be evaluated, let the filter item itself report it
+            return filterItem::evaluate;
+        }
+
+        if (filterItem.isCompoundFilter()) {
+            final FilterItem[] childItems = filterItem.getChildItems();
+            final IRowFilter[] children = new IRowFilter[childItems.length];
+            for (int i = 0; i < childItems.length; i++) {
+                children[i] = compile(childItems[i], header);
+            }
+            if (filterItem.getLogicalOperator() == LogicalOperator.AND) {
+                return new AndFilter(children);
+            }
+            return new OrFilter(children);
+        }
+
+        final OperatorType operator = filterItem.getOperator();
+        final SelectItem selectItem = filterItem.getSelectItem();
+        final int index = header.indexOf(selectItem);
+        final Object operand = filterItem.getOperand();
+        final boolean operandIsSelectItem = operand instanceof SelectItem;
+        final int operandIndex = operandIsSelectItem ? header.indexOf((SelectItem) operand) : -1;
+
+        final ValuePredicate predicate;
+        if (operator == OperatorType.EQUALS_TO) {
+            final Comparator<Object> comparator = getComparator(selectItem);
+            predicate = (v, o) -> comparator.compare(v, o) == 0;
+        } else if (operator == OperatorType.DIFFERENT_FROM) {
+            final Comparator<Object> comparator = getComparator(selectItem);
+            predicate = (v, o) -> comparator.compare(v, o) != 0;
+        } else if (operator == OperatorType.GREATER_THAN) {
+            final Comparator<Object> comparator = getComparator(selectItem);
+            predicate = (v, o) -> comparator.compare(v, o) > 0;
+        } else if (operator == OperatorType.GREATER_THAN_OR_EQUAL) {
+            final Comparator<Object> comparator = getComparator(selectItem);
+            predicate = (v, o) -> comparator.compare(v, o) >= 0;
+        } else if (operator == OperatorType.LESS_THAN) {
+            final Comparator<Object> comparator = getComparator(selectItem);
+            predicate = (v, o) -> comparator.compare(v, o) < 0;
+        } else if (operator == OperatorType.LESS_THAN_OR_EQUAL) {
+            final Comparator<Object> comparator = getComparator(selectItem);
+            predicate = (v, o) -> comparator.compare(v, o) <= 0;
+        } else if (operator == OperatorType.LIKE) {
+            final LikeMatcher matcher = new LikeMatcher(operandIsSelectItem ? null : operand);
+            predicate = (v, o) -> matcher.matches(v, o);
+        } else if (operator == OperatorType.NOT_LIKE) {
+            final LikeMatcher matcher = new LikeMatcher(operandIsSelectItem ? null : operand);
+            predicate = (v, o) -> !matcher.matches(v, o);
+        } else if (operator == OperatorType.IN && operand != null && !operandIsSelectItem) {
+            final Set<?> inValues = filterItem.getInValues();
+            predicate = (v, o) -> inValues.contains(v);
+        } else if (operator == OperatorType.NOT_IN && operand != null && !operandIsSelectItem) {
+            final Set<?> inValues = filterItem.getInValues();
+            predicate = (v, o) -> !inValues.contains(v);
+        } else {
+            // unknown operator, let the filter item itself evaluate it
+            return filterItem::evaluate;
+        }
+
+        return new SingleFilter(operator, index, operandIsSelectItem, operandIndex, operand, predicate);
+    }
+
+    /**
+     * Gets a comparator for the values of a select item, chosen by its expected
+     * column type.
+     */
+    private static Comparator<Object> getComparator(SelectItem selectItem) {
+        final ColumnType columnType = selectItem == null ? null : selectItem.getExpectedColumnType();
+        return ColumnTypeComparator.getComparator(columnType);
+    }
+
+    /**
+     * Predicate for a pair of non-null values, the value of the filtered
+     * select item and the value of the operand.
+     */
+    private interface ValuePredicate {
+        public boolean test(Object value, Object operandValue);
+    }
+
+    private static final class SingleFilter implements IRowFilter {
+
+        private final OperatorType _operator;
+        private final int _index;
+        private final boolean _operandIsSelectItem;
+        private final int _operandIndex;
+        private final Object _operand;
+        private final ValuePredicate _predicate;
+
+        public SingleFilter(OperatorType operator, int index, boolean operandIsSelectItem, int operandIndex,
+                Object operand, ValuePredicate predicate) {
+            _operator = operator;
+            _index = index;
+            _operandIsSelectItem = operandIsSelectItem;
+            _operandIndex = operandIndex;
+            _operand = operand;
+            _predicate = predicate;
+        }
+
+        @Override
+        public boolean accept(Row row) {
+            final Object value = _index == -1 ? null : row.getValue(_index);
+            final Object operandValue;
+            if (_operandIsSelectItem) {
+                operandValue = _operandIndex == -1 ? null : row.getValue(_operandIndex);
+            } else {
+                operandValue = _operand;
+            }
+
+            if (operandValue == null) {
+                if (_operator == OperatorType.DIFFERENT_FROM) {
+                    return value != null;
+                } else if (_operator == OperatorType.EQUALS_TO) {
+                    return value == null;
+                } else {
+                    return false;
+                }
+            } else if (value == null) {
+                return _operator == OperatorType.DIFFERENT_FROM;
+            }
+            return _predicate.test(value, operandValue);
+        }
+    }
+
+    private static final class AndFilter implements IRowFilter {
+
+        private final IRowFilter[] _children;
+
+        public AndFilter(IRowFilter[] children) {
+            _children = children;
+        }
+
+        @Override
+        public boolean accept(Row row) {
+            for (IRowFilter child : _children) {
+                if (!child.accept(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class OrFilter implements IRowFilter {
+
+        private final IRowFilter[] _children;
+
+        public OrFilter(IRowFilter[] children) {
+            _children = children;
+        }
+
+        @Override
+        public boolean accept(Row row) {
+            for (IRowFilter child : _children) {
+                if (child.accept(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches values against a LIKE pattern. A constant pattern is prepared
+     * once, while patterns that come from the rows are prepared per row.
+     */
+    private static final class LikeMatcher {
+
+        private final String _patternString;
+        private final WildcardPattern _pattern;
+
+        public LikeMatcher(Object constantPattern) {
+            if (constantPattern instanceof String) {
+                _patternString = (String) constantPattern;
+                _pattern = new WildcardPattern(_patternString, '%');
+            } else {
+                _patternString = null;
+                _pattern = null;
+            }
+        }
+
+        public boolean matches(Object value, Object patternValue) {
+            final String patternString = (String) patternValue;
+            final WildcardPattern pattern;
+            if (_pattern != null && _patternString.equals(patternString)) {
+                pattern = _pattern;
+            } else {
+                pattern = new WildcardPattern(patternString, '%');
+            }
+            return pattern.matches((String) value);
+        }
+    }
+}
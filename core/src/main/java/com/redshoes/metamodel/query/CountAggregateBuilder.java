@@ -19,8 +19,9 @@
 package com.redshoes.metamodel.query;
 
 import com.redshoes.metamodel.util.AggregateBuilder;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
-final class CountAggregateBuilder implements AggregateBuilder<Long> {
+final class CountAggregateBuilder implements MergeableAggregateBuilder<Long> {
 
 	private long counter = 0;
 
@@ -36,4 +37,8 @@ final class CountAggregateBuilder implements AggregateBuilder<Long> {
 		return counter;
 	}
 
+	@Override
+	public void merge(AggregateBuilder<?> other) {
+		counter += ((CountAggregateBuilder) other).counter;
+	}
 }
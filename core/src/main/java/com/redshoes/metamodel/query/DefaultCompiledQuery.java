@@ -92,14 +92,30 @@ public class DefaultCompiledQuery implements CompiledQuery {
         }
     }
 
-    private FilterItem copyFilterItem(FilterItem item, Object[] values, AtomicInteger parameterIndex) {
+    /**
+     * Copies a filter item while replacing query parameters with corresponding
+     * values. Filter items without query parameters are not copied.
+     * 
+     * @param item
+     * @param values
+     * @param parameterIndex
+     *            the index of the value of the next query parameter, which is
+     *            incremented for each replaced query parameter
+     * @return
+     */
+    protected FilterItem copyFilterItem(FilterItem item, Object[] values, AtomicInteger parameterIndex) {
         if (item.isCompoundFilter()) {
             final FilterItem[] childItems = item.getChildItems();
             final FilterItem[] newChildItems = new FilterItem[childItems.length];
+            boolean changed = false;
             for (int i = 0; i < childItems.length; i++) {
                 final FilterItem childItem = childItems[i];
                 final FilterItem newChildItem = copyFilterItem(childItem, values, parameterIndex);
                 newChildItems[i] = newChildItem;
+                changed = changed || newChildItem != childItem;
+            }
+            if (!changed) {
+                return item;
             }
             final FilterItem newFilter = new FilterItem(item.getLogicalOperator(), newChildItems);
             return newFilter;
@@ -27,6 +27,7 @@ import java.util.Set;
 
 import com.redshoes.metamodel.schema.Column;
 import com.redshoes.metamodel.schema.ColumnType;
+import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.IRowFilter;
 import com.redshoes.metamodel.data.Row;
 import com.redshoes.metamodel.util.BaseObject;
@@ -389,12 +390,25 @@ public class FilterItem extends BaseObject implements QueryItem, Cloneable, IRow
         }
     }
 
+    /**
+     * Compiles this filter item against a {@link DataSetHeader}, for fast
+     * repeated evaluation against rows with that header.
+     *
+     * @param header
+     *            the header of the rows that the filter will be evaluated
+     *            against
+     * @return a compiled version of this filter item
+     */
+    public CompiledFilterItem compile(DataSetHeader header) {
+        return new CompiledFilterItem(this, header);
+    }
+
     /**
      * Lazy initializes a set (for fast searching) of IN values.
      *
      * @return a hash set appropriate for IN clause evaluation
      */
-    private Set<?> getInValues() {
+    Set<?> getInValues() {
         if (_inValues == null) {
             if (_operand instanceof Set) {
                 _inValues = (Set<?>) _operand;
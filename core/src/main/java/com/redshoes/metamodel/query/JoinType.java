@@ -25,5 +25,5 @@ package com.redshoes.metamodel.query;
  */
 public enum JoinType {
 
-	INNER, LEFT, RIGHT;
+	INNER, LEFT, RIGHT, FULL;
 }
@@ -19,8 +19,9 @@
 package com.redshoes.metamodel.query;
 
 import com.redshoes.metamodel.util.AggregateBuilder;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
-public class LastAggregateBuilder implements AggregateBuilder<Object> {
+public class LastAggregateBuilder implements MergeableAggregateBuilder<Object> {
 
     private Object _result;
 
@@ -40,4 +41,8 @@ public class LastAggregateBuilder implements AggregateBuilder<Object> {
         return _result;
     }
 
+    @Override
+    public void merge(AggregateBuilder<?> other) {
+        add(((LastAggregateBuilder) other)._result);
+    }
 }
@@ -20,8 +20,9 @@ package com.redshoes.metamodel.query;
 
 import com.redshoes.metamodel.util.AggregateBuilder;
 import com.redshoes.metamodel.util.ObjectComparator;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
-final class MaxAggregateBuilder implements AggregateBuilder<Object> {
+final class MaxAggregateBuilder implements MergeableAggregateBuilder<Object> {
 
 	private Object max;
 
@@ -45,4 +46,8 @@ final class MaxAggregateBuilder implements AggregateBuilder<Object> {
         return max;
 	}
 
+	@Override
+	public void merge(AggregateBuilder<?> other) {
+		add(((MaxAggregateBuilder) other).max);
+	}
 }
@@ -20,8 +20,9 @@ package com.redshoes.metamodel.query;
 
 import com.redshoes.metamodel.util.AggregateBuilder;
 import com.redshoes.metamodel.util.ObjectComparator;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
-final class MinAggregateBuilder implements AggregateBuilder<Object> {
+final class MinAggregateBuilder implements MergeableAggregateBuilder<Object> {
 
 	private Object min;
 
@@ -45,4 +46,8 @@ final class MinAggregateBuilder implements AggregateBuilder<Object> {
 		return min;
 	}
 
+	@Override
+	public void merge(AggregateBuilder<?> other) {
+		add(((MinAggregateBuilder) other).min);
+	}
 }
@@ -21,8 +21,9 @@ package com.redshoes.metamodel.query;
 import java.util.Random;
 
 import com.redshoes.metamodel.util.AggregateBuilder;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
-public class RandomAggregateBuilder implements AggregateBuilder<Object> {
+public class RandomAggregateBuilder implements MergeableAggregateBuilder<Object> {
 
     private Object _result;
     private long _count;
@@ -52,4 +53,19 @@ public class RandomAggregateBuilder implements AggregateBuilder<Object> {
         return _result;
     }
 
+    @Override
+    public void merge(AggregateBuilder<?> other) {
+        final RandomAggregateBuilder otherBuilder = (RandomAggregateBuilder) other;
+        if (otherBuilder._count == 0) {
+            return;
+        }
+
+        _count += otherBuilder._count;
+
+        // pick the other result with a probability proportional to the number
+        // of values it was picked from
+        if (_random.nextDouble() < ((double) otherBuilder._count / _count)) {
+            _result = otherBuilder._result;
+        }
+    }
 }
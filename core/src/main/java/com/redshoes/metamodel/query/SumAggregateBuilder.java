@@ -19,11 +19,14 @@
 package com.redshoes.metamodel.query;
 
 import com.redshoes.metamodel.util.AbstractNumberAggregateBuilder;
+import com.redshoes.metamodel.util.AggregateBuilder;
+import com.redshoes.metamodel.util.MergeableAggregateBuilder;
 
 /**
  * Aggregate builder for the {@link FunctionType#SUM} function
  */
-final class SumAggregateBuilder extends AbstractNumberAggregateBuilder<Double> {
+final class SumAggregateBuilder extends AbstractNumberAggregateBuilder<Double> implements
+        MergeableAggregateBuilder<Double> {
 
     private double sum;
 
@@ -37,4 +40,8 @@ final class SumAggregateBuilder extends AbstractNumberAggregateBuilder<Double> {
         return sum;
     }
 
+    @Override
+    public void merge(AggregateBuilder<?> other) {
+        sum += ((SumAggregateBuilder) other).sum;
+    }
 }
@@ -35,6 +35,10 @@ public interface TableFromBuilder extends
 	
 	public JoinFromBuilder rightJoin(String tableName);
 
+	public JoinFromBuilder fullJoin(Table table);
+
+	public JoinFromBuilder fullJoin(String tableName);
+
 	public TableFromBuilder as(String alias);
 
 }
\ No newline at end of file
@@ -76,6 +76,19 @@ final class TableFromBuilderImpl extends SatisfiedFromBuilderCallback implements
         return new JoinFromBuilderImpl(getQuery(), fromItem, table, JoinType.RIGHT, getDataContext());
     }
 
+    @Override
+    public JoinFromBuilder fullJoin(String tableName) {
+        return fullJoin(findTable(tableName));
+    }
+
+    @Override
+    public JoinFromBuilder fullJoin(Table table) {
+        if (table == null) {
+            throw new IllegalArgumentException("table cannot be null");
+        }
+        return new JoinFromBuilderImpl(getQuery(), fromItem, table, JoinType.FULL, getDataContext());
+    }
+
     @Override
     public TableFromBuilder as(String alias) {
         if (alias == null) {
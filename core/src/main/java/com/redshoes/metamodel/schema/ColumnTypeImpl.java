@@ -18,6 +18,7 @@
  */
 package com.redshoes.metamodel.schema;
 
+import java.io.ObjectStreamException;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -162,6 +163,27 @@ public class ColumnTypeImpl implements ColumnType {
         return _name;
     }
 
+    /**
+     * Called by the Java Serialization API to resolve deserialized column types to the constants in {@link ColumnType},
+     * since column types are frequently compared by identity.
+     */
+    protected Object readResolve() throws ObjectStreamException {
+        final Object constant;
+        try {
+            constant = ColumnType.class.getField(_name).get(null);
+        } catch (ReflectiveOperationException e) {
+            return this;
+        }
+        if (constant != null && constant.getClass() == getClass()) {
+            final ColumnTypeImpl other = (ColumnTypeImpl) constant;
+            if (_superColumnType == other._superColumnType && _javaType == other._javaType
+                    && _largeObject == other._largeObject) {
+                return other;
+            }
+        }
+        return this;
+    }
+
     /**
      * Finds the ColumnType enum corresponding to the incoming JDBC
      * type-constant
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.schema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.redshoes.metamodel.AbstractDataContext;
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.util.Resource;
+
+/**
+ * A serializable snapshot of the resolved schemas of a DataContext, including tables, columns, column types and
+ * relationships. Snapshots are written to and read from a {@link Resource} so that expensive schema discovery can be
+ * skipped when a DataContext is created again, see {@link AbstractDataContext#setSchemaSnapshotResource(Resource)}.
+ *
+ * Every snapshot carries a fingerprint of the datastore it was taken from. A snapshot should only be used if its
+ * fingerprint matches the one of the datastore at hand.
+ */
+public final class SchemaSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String _fingerprint;
+    private final List<String> _schemaNames;
+    private final List<ImmutableSchema> _schemas;
+
+    /**
+     * Creates a snapshot of a list of schemas.
+     *
+     * @param fingerprint the fingerprint of the datastore that the schemas were resolved from
+     * @param schemaNames the names of all schemas of the datastore
+     * @param schemas the resolved schemas
+     */
+    public SchemaSnapshot(String fingerprint, List<String> schemaNames, List<Schema> schemas) {
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("Fingerprint cannot be null");
+        }
+        _fingerprint = fingerprint;
+        _schemaNames = new ArrayList<>(schemaNames);
+        _schemas = new ArrayList<>(schemas.size());
+        for (Schema schema : schemas) {
+            _schemas.add(new ImmutableSchema(schema));
+        }
+    }
+
+    /**
+     * Reads a snapshot from a resource.
+     *
+     * @param resource the resource to read from
+     * @return the snapshot, or null if the resource does not exist or is empty
+     * @throws RuntimeException if the resource could not be read or does not contain a snapshot
+     */
+    public static SchemaSnapshot read(Resource resource) {
+        if (!resource.isExists() || resource.getSize() == 0) {
+            return null;
+        }
+        return resource.read(in -> {
+            final ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(in));
+            final Object object = objectInputStream.readObject();
+            if (!(object instanceof SchemaSnapshot)) {
+                throw new MetaModelException("Not a schema snapshot: " + resource.getQualifiedPath());
+            }
+            return (SchemaSnapshot) object;
+        });
+    }
+
+    /**
+     * Writes this snapshot to a resource, replacing any existing contents.
+     *
+     * @param resource the resource to write to
+     */
+    public void write(Resource resource) {
+        resource.write(out -> {
+            final ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(out));
+            objectOutputStream.writeObject(this);
+            objectOutputStream.flush();
+        });
+    }
+
+    public String getFingerprint() {
+        return _fingerprint;
+    }
+
+    public List<String> getSchemaNames() {
+        return Collections.unmodifiableList(_schemaNames);
+    }
+
+    public List<Schema> getSchemas() {
+        return Collections.unmodifiableList(_schemas);
+    }
+
+    /**
+     * Gets a schema of the snapshot by its exact name.
+     *
+     * @param name the name of the schema, may be null
+     * @return the schema, or null if the snapshot does not contain a schema with that name
+     */
+    public Schema getSchemaByName(String name) {
+        for (Schema schema : _schemas) {
+            if (Objects.equals(name, schema.getName())) {
+                return schema;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.Date;
+
+import com.redshoes.metamodel.schema.ColumnType;
+
+/**
+ * Provides comparators that are specialized for the values of a particular
+ * {@link ColumnType}. The comparators are meant to be selected once per column
+ * (eg. when a sort or a filter is prepared) and then used for all the values of
+ * that column.
+ *
+ * Each comparator has a fast path for the kind of values that the column type
+ * implies (long, double, String, Date or boolean values), and falls back to
+ * {@link ObjectComparator} for any other values, so the result of a comparison
+ * is always the same as that of {@link ObjectComparator}. Like
+ * {@link ObjectComparator}, null values are ordered before any other value.
+ */
+public final class ColumnTypeComparator {
+
+    private static final Comparator<Object> LONG_COMPARATOR = (o1, o2) -> {
+        if (o1 == null || o2 == null) {
+            return compareNulls(o1, o2);
+        }
+        if (isLongType(o1) && isLongType(o2)) {
+            return Long.compare(((Number) o1).longValue(), ((Number) o2).longValue());
+        }
+        return compareFallback(o1, o2);
+    };
+
+    private static final Comparator<Object> DOUBLE_COMPARATOR = (o1, o2) -> {
+        if (o1 == null || o2 == null) {
+            return compareNulls(o1, o2);
+        }
+        if (isDoubleType(o1) && isDoubleType(o2)) {
+            return Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
+        }
+        return compareFallback(o1, o2);
+    };
+
+    private static final Comparator<Object> STRING_COMPARATOR = (o1, o2) -> {
+        if (o1 == null || o2 == null) {
+            return compareNulls(o1, o2);
+        }
+        if (o1 instanceof String && o2 instanceof String) {
+            // strings like "true" and "false" are compared as booleans
+            if (!BooleanComparator.isBoolean(o1) || !BooleanComparator.isBoolean(o2)) {
+                return ((String) o1).compareTo((String) o2);
+            }
+        }
+        return compareFallback(o1, o2);
+    };
+
+    private static final Comparator<Object> DATE_COMPARATOR = (o1, o2) -> {
+        if (o1 == null || o2 == null) {
+            return compareNulls(o1, o2);
+        }
+        if (o1 instanceof Date && o2 instanceof Date) {
+            return ((Date) o1).compareTo((Date) o2);
+        }
+        return compareFallback(o1, o2);
+    };
+
+    private static final Comparator<Object> BOOLEAN_COMPARATOR = (o1, o2) -> {
+        if (o1 == null || o2 == null) {
+            return compareNulls(o1, o2);
+        }
+        if (o1 instanceof Boolean && o2 instanceof Boolean) {
+            return Boolean.compare((Boolean) o1, (Boolean) o2);
+        }
+        return compareFallback(o1, o2);
+    };
+
+    private ColumnTypeComparator() {
+        // prevent instantiation
+    }
+
+    /**
+     * Gets a comparator for the values of a column of a particular type.
+     *
+     * @param columnType
+     *            the type of the column, or null if it is unknown
+     * @return a comparator for the values of the column
+     */
+    public static Comparator<Object> getComparator(ColumnType columnType) {
+        if (columnType == null) {
+            return ObjectComparator.getComparator();
+        }
+        if (columnType.isNumber()) {
+            final Class<?> javaClass = columnType.getJavaEquivalentClass();
+            if (javaClass == Short.class || javaClass == Integer.class || javaClass == Long.class
+                    || javaClass == BigInteger.class) {
+                // BIGINT columns mostly hold long values, BigInteger values
+                // will take the fallback path
+                return LONG_COMPARATOR;
+            }
+            if (javaClass == Double.class || javaClass == Float.class) {
+                return DOUBLE_COMPARATOR;
+            }
+            return ObjectComparator.getComparator();
+        }
+        if (columnType.isLiteral()) {
+            return STRING_COMPARATOR;
+        }
+        if (columnType.isTimeBased()) {
+            return DATE_COMPARATOR;
+        }
+        if (columnType.isBoolean()) {
+            return BOOLEAN_COMPARATOR;
+        }
+        return ObjectComparator.getComparator();
+    }
+
+    private static boolean isLongType(Object o) {
+        return o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte;
+    }
+
+    private static boolean isDoubleType(Object o) {
+        return o instanceof Double || o instanceof Float;
+    }
+
+    private static int compareNulls(Object o1, Object o2) {
+        if (o1 == null) {
+            return o2 == null ? 0 : -1;
+        }
+        return 1;
+    }
+
+    private static int compareFallback(Object o1, Object o2) {
+        if (o1 instanceof Number) {
+            // ObjectComparator compares any number using the NumberComparator
+            return NumberComparator.getComparator().compare(o1, o2);
+        }
+        return ObjectComparator.getComparator().compare(o1, o2);
+    }
+}
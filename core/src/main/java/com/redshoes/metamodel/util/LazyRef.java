@@ -92,7 +92,7 @@ public abstract class LazyRef<E> implements Supplier<E> {
      */
     public void requestLoad(final Action<Throwable> errorAction) {
         if (!isFetched()) {
-            ExecutorService executorService = SharedExecutorService.get();
+            ExecutorService executorService = SharedExecutorService.get(SharedExecutorService.EXECUTOR_LAZY_LOAD);
             executorService.submit(new Runnable() {
                 @Override
                 public void run() {
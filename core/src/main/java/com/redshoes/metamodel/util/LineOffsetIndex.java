@@ -0,0 +1,485 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.redshoes.metamodel.MetaModelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the byte offsets of the lines of a text file, for seeking to a
+ * line without reading all the lines before it and for counting the lines
+ * without reading the file. Only non-empty lines are indexed and counted, and
+ * lines end with a line feed, a carriage return or both, like with
+ * {@link java.io.BufferedReader#readLine()}. Line breaks must be single bytes
+ * that cannot be part of another character, as in UTF-8 and single byte
+ * encodings.
+ * 
+ * Readers that stop at the first empty line can use
+ * {@link #getLineCountBeforeEmptyLine()} instead of {@link #getLineCount()}.
+ * 
+ * To keep the index small, only the offset of every {@link #getStride()}th
+ * line is stored. Seeking to a line is done by seeking to the closest line
+ * before it that has an offset in the index, see
+ * {@link #getCheckpointLine(long)} and {@link #getCheckpointOffset(long)}, and
+ * skipping the lines in between.
+ * 
+ * The index remembers the size and last modification time of the file, so
+ * that it can be verified to be up to date. Files that have only been
+ * appended to are indexed incrementally, see {@link #update(File)}. Indexes
+ * can be stored in a {@link Resource}, for instance in a sidecar file next to
+ * the indexed file.
+ * 
+ * Indexes are immutable, so they can be shared between threads.
+ */
+public final class LineOffsetIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = LoggerFactory.getLogger(LineOffsetIndex.class);
+
+    public static final int DEFAULT_STRIDE = 1024;
+
+    // the number of bytes before the indexed part of the file that are kept to
+    // detect that the file was changed in other ways than appending
+    private static final int TAIL_SIZE = 64;
+
+    private final long _dataOffset;
+    private final int _stride;
+
+    // only changed while the index is being built or updated
+    private long[] _checkpoints;
+    private int _checkpointCount;
+
+    // the number of complete lines and the offset after their line breaks
+    private long _lineCount;
+    private long _indexedLength;
+    private byte[] _tail;
+
+    // whether the file ends with a non-empty line without a line break
+    private boolean _trailingLine;
+
+    // whether the indexed part ends with a carriage return, which may be
+    // followed by the line feed of the same line break once appended to
+    private boolean _carriageReturn;
+
+    // whether there are empty lines and the number of lines before the first
+    private boolean _emptyLine;
+    private long _lineCountBeforeEmptyLine;
+
+    private long _fileSize;
+    private long _lastModified;
+
+    private LineOffsetIndex(long dataOffset, int stride) {
+        _dataOffset = dataOffset;
+        _stride = stride;
+        _checkpoints = new long[16];
+        _checkpointCount = 0;
+        _lineCount = 0;
+        _indexedLength = dataOffset;
+        _tail = new byte[0];
+        _trailingLine = false;
+    }
+
+    private LineOffsetIndex(LineOffsetIndex index) {
+        _dataOffset = index._dataOffset;
+        _stride = index._stride;
+        _checkpoints = index._checkpoints.clone();
+        _checkpointCount = index._checkpointCount;
+        _lineCount = index._lineCount;
+        _indexedLength = index._indexedLength;
+        _tail = index._tail;
+        _trailingLine = index._trailingLine;
+        _carriageReturn = index._carriageReturn;
+        _emptyLine = index._emptyLine;
+        _lineCountBeforeEmptyLine = index._lineCountBeforeEmptyLine;
+        _fileSize = index._fileSize;
+        _lastModified = index._lastModified;
+    }
+
+    /**
+     * Builds the index of a file.
+     * 
+     * @param file
+     *            the file to index
+     * @param dataOffset
+     *            the offset of the first line to index, for instance to skip
+     *            header lines
+     * @param stride
+     *            the number of lines per offset in the index
+     * @return the index
+     * @throws IOException
+     */
+    public static LineOffsetIndex build(File file, long dataOffset, int stride) throws IOException {
+        if (stride < 1) {
+            throw new IllegalArgumentException("Stride must be a positive number: " + stride);
+        }
+        final LineOffsetIndex index = new LineOffsetIndex(dataOffset, stride);
+        index.index(file);
+        return index;
+    }
+
+    /**
+     * Determines if files of a particular encoding can be indexed, ie. if line
+     * breaks are single bytes that cannot be part of another character.
+     * 
+     * @param charset
+     * @return true if the encoding is UTF-8 or a single byte encoding
+     */
+    public static boolean isSupported(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return true;
+        }
+        if (!charset.canEncode()) {
+            return false;
+        }
+        return charset.newEncoder().maxBytesPerChar() == 1.0f;
+    }
+
+    /**
+     * Finds the byte offset of a line, counting all lines including empty ones
+     * like {@link java.io.BufferedReader#readLine()} does, for instance to find
+     * the data offset of a file with header lines.
+     * 
+     * @param file
+     * @param offset
+     *            the offset of the line to start counting from
+     * @param lines
+     *            the number of lines to skip
+     * @return the byte offset, or -1 if the file has no more lines
+     * @throws IOException
+     */
+    public static long findLineOffset(File file, long offset, int lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            channel.position(offset);
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            long position = offset;
+            for (int i = 0; i < lines; i++) {
+                int b;
+                do {
+                    b = in.read();
+                    if (b == -1) {
+                        return -1;
+                    }
+                    position++;
+                } while (b != '\n' && b != '\r');
+                if (b == '\r') {
+                    // the line feed of a carriage return and line feed
+                    in.mark(1);
+                    if (in.read() == '\n') {
+                        position++;
+                    } else {
+                        in.reset();
+                    }
+                }
+            }
+            return position < fileSize ? position : -1;
+        }
+    }
+
+    /**
+     * Reads an index from a resource.
+     * 
+     * @param resource
+     *            the resource to read from
+     * @return the index, or null if the resource does not exist or is empty
+     * @throws RuntimeException
+     *             if the resource could not be read or does not contain an
+     *             index
+     */
+    public static LineOffsetIndex read(Resource resource) {
+        if (!resource.isExists() || resource.getSize() == 0) {
+            return null;
+        }
+        return resource.read(in -> {
+            final ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(in));
+            final Object object = objectInputStream.readObject();
+            if (!(object instanceof LineOffsetIndex)) {
+                throw new MetaModelException("Not a line offset index: " + resource.getQualifiedPath());
+            }
+            return (LineOffsetIndex) object;
+        });
+    }
+
+    /**
+     * Gets an up to date index of a file, using a cached index or the index
+     * stored in a resource if possible. An index that is not up to date is
+     * updated if the file has only been appended to, or else built again. A
+     * new or updated index is written to the resource.
+     * 
+     * @param file
+     *            the file to index
+     * @param dataOffset
+     *            the offset of the first line to index, see
+     *            {@link #build(File, long, int)}
+     * @param resource
+     *            the resource to store the index in
+     * @param cached
+     *            the index that was loaded before, or null to read the index
+     *            from the resource
+     * @return the index of the file
+     * @throws IOException
+     */
+    public static LineOffsetIndex load(File file, long dataOffset, Resource resource, LineOffsetIndex cached)
+            throws IOException {
+        LineOffsetIndex index = cached;
+        if (index == null) {
+            try {
+                index = read(resource);
+            } catch (RuntimeException e) {
+                logger.warn("Could not read line offset index from {}, building it again: {}", resource, e
+                        .getMessage());
+            }
+        }
+        if (index != null && index.getDataOffset() != dataOffset) {
+            index = null;
+        }
+
+        boolean changed = false;
+        if (index != null && !index.isUpToDate(file)) {
+            index = index.update(file);
+            changed = true;
+        }
+        if (index == null) {
+            logger.debug("Building line offset index of {}", file);
+            index = build(file, dataOffset, DEFAULT_STRIDE);
+            changed = true;
+        }
+        if (changed) {
+            try {
+                index.write(resource);
+            } catch (RuntimeException e) {
+                logger.warn("Could not write line offset index to {}: {}", resource, e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes this index to a resource, replacing any existing contents.
+     * 
+     * @param resource
+     *            the resource to write to
+     */
+    public void write(Resource resource) {
+        resource.write(out -> {
+            final ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(out));
+            objectOutputStream.writeObject(this);
+            objectOutputStream.flush();
+        });
+    }
+
+    /**
+     * Determines if the index is up to date with a file, based on the size
+     * and last modification time of the file.
+     * 
+     * @param file
+     * @return
+     */
+    public boolean isUpToDate(File file) {
+        return file.length() == _fileSize && file.lastModified() == _lastModified;
+    }
+
+    /**
+     * Brings the index up to date with a file that has been appended to since
+     * it was indexed, by only indexing the appended lines. This index is left
+     * as it is.
+     * 
+     * @param file
+     *            the indexed file
+     * @return this index if it is up to date, a new index that includes the
+     *         appended lines, or null if the file was changed in other ways
+     *         than appending, in which case the index must be built again
+     * @throws IOException
+     */
+    public LineOffsetIndex update(File file) throws IOException {
+        if (isUpToDate(file)) {
+            return this;
+        }
+        if (file.length() < _fileSize) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer tail = ByteBuffer.allocate(_tail.length);
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, _indexedLength - _tail.length + tail.position()) == -1) {
+                    return null;
+                }
+            }
+            if (!Arrays.equals(tail.array(), _tail)) {
+                return null;
+            }
+        }
+        final LineOffsetIndex index = new LineOffsetIndex(this);
+        index.index(file);
+        return index;
+    }
+
+    /**
+     * Indexes the lines of the file after the already indexed part.
+     */
+    private void index(File file) throws IOException {
+        // take the size and time first, so that an index of a file that is
+        // being appended to is never considered to be up to date
+        final long lastModified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+            long position = _indexedLength;
+            long lineStart = position;
+            boolean carriageReturn = _carriageReturn;
+            while (position < fileSize) {
+                buffer.clear();
+                final int read = channel.read(buffer, position);
+                if (read == -1) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    final byte b = buffer.get(i);
+                    final long offset = position + i;
+                    if (carriageReturn && b == '\n') {
+                        // the line feed of a carriage return and line feed
+                        lineStart = offset + 1;
+                        carriageReturn = false;
+                        continue;
+                    }
+                    carriageReturn = b == '\r';
+                    if (b == '\n' || b == '\r') {
+                        if (offset > lineStart) {
+                            addLine(lineStart);
+                        } else if (!_emptyLine) {
+                            _emptyLine = true;
+                            _lineCountBeforeEmptyLine = _lineCount;
+                        }
+                        lineStart = offset + 1;
+                    }
+                }
+                position += read;
+            }
+
+            _indexedLength = lineStart;
+            _trailingLine = fileSize > lineStart;
+            _carriageReturn = carriageReturn && lineStart == fileSize;
+            _tail = new byte[(int) Math.min(TAIL_SIZE, _indexedLength - _dataOffset)];
+            final ByteBuffer tail = ByteBuffer.wrap(_tail);
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, _indexedLength - _tail.length + tail.position()) == -1) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+            }
+            _fileSize = fileSize;
+            _lastModified = lastModified;
+        }
+        // don't keep (or store) the unused capacity
+        _checkpoints = Arrays.copyOf(_checkpoints, _checkpointCount);
+    }
+
+    private void addLine(long lineStart) {
+        if (_lineCount % _stride == 0) {
+            if (_checkpointCount == _checkpoints.length) {
+                _checkpoints = Arrays.copyOf(_checkpoints, Math.max(16, _checkpointCount * 2));
+            }
+            _checkpoints[_checkpointCount++] = lineStart;
+        }
+        _lineCount++;
+    }
+
+    /**
+     * @return the offset of the first indexed line, as given when the index
+     *         was built
+     */
+    public long getDataOffset() {
+        return _dataOffset;
+    }
+
+    public int getStride() {
+        return _stride;
+    }
+
+    /**
+     * @return the number of non-empty lines after the data offset
+     */
+    public long getLineCount() {
+        return _trailingLine ? _lineCount + 1 : _lineCount;
+    }
+
+    /**
+     * @return the number of non-empty lines after the data offset and before
+     *         the first empty line, or {@link #getLineCount()} if there are no
+     *         empty lines
+     */
+    public long getLineCountBeforeEmptyLine() {
+        if (_emptyLine) {
+            return _lineCountBeforeEmptyLine;
+        }
+        return getLineCount();
+    }
+
+    /**
+     * Gets the closest line at or before a line that has an offset in the
+     * index.
+     * 
+     * @param line
+     *            the (0-based) number of a line
+     * @return the (0-based) number of the line
+     */
+    public long getCheckpointLine(long line) {
+        return (long) getCheckpointIndex(line) * _stride;
+    }
+
+    /**
+     * Gets the offset of the line returned by {@link #getCheckpointLine(long)}
+     * .
+     * 
+     * @param line
+     *            the (0-based) number of a line
+     * @return the byte offset of the line in the file
+     */
+    public long getCheckpointOffset(long line) {
+        if (_checkpointCount == 0) {
+            return _dataOffset;
+        }
+        return _checkpoints[getCheckpointIndex(line)];
+    }
+
+    private int getCheckpointIndex(long line) {
+        if (_checkpointCount == 0) {
+            return 0;
+        }
+        return (int) Math.min(line / _stride, _checkpointCount - 1);
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A named {@link ExecutorService} that keeps track of the tasks submitted to
+ * it. The tasks are executed by one of the following kinds of executors:
+ * <ul>
+ * <li>{@link Mode#CACHED}: an unbounded pool of daemon threads that are reused
+ * when idle.</li>
+ * <li>{@link Mode#BOUNDED}: a fixed number of daemon threads with a bounded
+ * queue of waiting tasks. Tasks that do not fit into the queue are
+ * rejected.</li>
+ * <li>{@link Mode#VIRTUAL}: a virtual thread per task, which does not tie up an
+ * OS thread while the task is blocked. This requires JDK 21 or later, on older
+ * JDKs the {@link Mode#CACHED} mode is used instead.</li>
+ * </ul>
+ * 
+ * The metrics of the executor (active, queued, completed and rejected tasks)
+ * are available through getter methods.
+ */
+public final class ManagedExecutorService extends AbstractExecutorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManagedExecutorService.class);
+
+    public static enum Mode {
+        CACHED, BOUNDED, VIRTUAL
+    }
+
+    /**
+     * A thread factory that creates named daemon threads.
+     */
+    private static final class ThreadFactoryImpl implements ThreadFactory {
+
+        private final AtomicInteger _counter = new AtomicInteger(0);
+        private final ThreadGroup _threadGroup;
+        private final String _namePrefix;
+
+        public ThreadFactoryImpl(String namePrefix) {
+            final SecurityManager s = System.getSecurityManager();
+            _threadGroup = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
+            _namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(_threadGroup, r, _namePrefix + _counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY);
+            return thread;
+        }
+    }
+
+    private final String _name;
+    private final Mode _mode;
+    private final ExecutorService _executor;
+    private final AtomicInteger _queuedTasks;
+    private final AtomicInteger _activeTasks;
+    private final AtomicLong _completedTasks;
+    private final AtomicLong _rejectedTasks;
+
+    private ManagedExecutorService(String name, Mode mode, ExecutorService executor) {
+        _name = name;
+        _mode = mode;
+        _executor = executor;
+        _queuedTasks = new AtomicInteger();
+        _activeTasks = new AtomicInteger();
+        _completedTasks = new AtomicLong();
+        _rejectedTasks = new AtomicLong();
+    }
+
+    /**
+     * Creates a {@link ManagedExecutorService} with an unbounded pool of
+     * threads.
+     * 
+     * @param name
+     *            the name of the executor, used in thread names
+     * @return
+     */
+    public static ManagedExecutorService cached(String name) {
+        return new ManagedExecutorService(name, Mode.CACHED,
+                Executors.newCachedThreadPool(new ThreadFactoryImpl(getThreadNamePrefix(name))));
+    }
+
+    /**
+     * Creates a {@link ManagedExecutorService} with a fixed number of threads
+     * and a bounded queue of waiting tasks.
+     * 
+     * @param name
+     *            the name of the executor, used in thread names
+     * @param threads
+     *            the number of threads
+     * @param queueCapacity
+     *            the maximum number of tasks waiting for a thread
+     * @return
+     */
+    public static ManagedExecutorService bounded(String name, int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be a positive number: " + threads);
+        }
+        final BlockingQueue<Runnable> queue;
+        if (queueCapacity < 1) {
+            queue = new LinkedBlockingQueue<>();
+        } else {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new ThreadFactoryImpl(getThreadNamePrefix(name)));
+        executor.allowCoreThreadTimeOut(true);
+        return new ManagedExecutorService(name, Mode.BOUNDED, executor);
+    }
+
+    /**
+     * Creates a {@link ManagedExecutorService} that runs each task in a virtual
+     * thread. If virtual threads are not available in the running JDK, an
+     * executor with an unbounded pool of threads is created instead.
+     * 
+     * @param name
+     *            the name of the executor, used in thread names
+     * @return
+     */
+    public static ManagedExecutorService virtual(String name) {
+        try {
+            // Thread.ofVirtual().name(prefix, 1).factory(), using reflection
+            // to stay compatible with older JDKs
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder,
+                    getThreadNamePrefix(name), 1L);
+            final ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(
+                    namedBuilder);
+            final Method newThreadPerTaskExecutor =
+                    Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            final ExecutorService executor = (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+            return new ManagedExecutorService(name, Mode.VIRTUAL, executor);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Virtual threads are not available, using a cached thread pool for executor '{}': {}", name,
+                    e.toString());
+            return cached(name);
+        }
+    }
+
+    private static String getThreadNamePrefix(String name) {
+        return "MetaModel." + name + ".Thread.";
+    }
+
+    /**
+     * @return the name of this executor
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * @return the kind of executor that runs the tasks
+     */
+    public Mode getMode() {
+        return _mode;
+    }
+
+    /**
+     * @return the number of tasks that are currently running
+     */
+    public int getActiveTaskCount() {
+        return _activeTasks.get();
+    }
+
+    /**
+     * @return the number of tasks that have been accepted but are not running
+     *         yet
+     */
+    public int getQueuedTaskCount() {
+        return _queuedTasks.get();
+    }
+
+    /**
+     * @return the number of tasks that have finished running, successfully or
+     *         not
+     */
+    public long getCompletedTaskCount() {
+        return _completedTasks.get();
+    }
+
+    /**
+     * @return the number of tasks that have been rejected, eg. because the
+     *         queue of a {@link Mode#BOUNDED} executor was full
+     */
+    public long getRejectedTaskCount() {
+        return _rejectedTasks.get();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        _queuedTasks.incrementAndGet();
+        final Runnable task = () -> {
+            _queuedTasks.decrementAndGet();
+            _activeTasks.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                _activeTasks.decrementAndGet();
+                _completedTasks.incrementAndGet();
+            }
+        };
+        try {
+            _executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            _queuedTasks.decrementAndGet();
+            _rejectedTasks.incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        _executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> tasks = _executor.shutdownNow();
+        _queuedTasks.addAndGet(-tasks.size());
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return _executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return _executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return _executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "ManagedExecutorService[name=" + _name + ",mode=" + _mode + ",active=" + getActiveTaskCount()
+                + ",queued=" + getQueuedTaskCount() + ",completed=" + getCompletedTaskCount() + ",rejected="
+                + getRejectedTaskCount() + "]";
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+/**
+ * An {@link AggregateBuilder} that can be merged with other builders of the
+ * same kind. This allows the values of an aggregate to be added in separate
+ * partitions (eg. concurrently) and combined afterwards.
+ * 
+ * @param <E>
+ *            the aggregate result type
+ */
+public interface MergeableAggregateBuilder<E> extends AggregateBuilder<E> {
+
+	/**
+	 * Merges the state of another builder into this builder. The other builder
+	 * must be of the same kind as this builder, and the values added to it are
+	 * considered to come after the values added to this builder.
+	 * 
+	 * @param other
+	 *            the builder to merge into this builder
+	 */
+	public void merge(AggregateBuilder<?> other);
+}
@@ -18,59 +18,169 @@
  */
 package com.redshoes.metamodel.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * A shared {@link ExecutorService} for use on ad-hoc tasks that can be
+ * Shared {@link ExecutorService}s for use on ad-hoc tasks that can be
  * optimized by running operations in parallel.
  * 
- * Note that since this {@link ExecutorService} is shared, it is not recommended
- * to use it for dedicated tasks or daemon-like long-running tasks.
+ * Each subsystem of MetaModel uses its own named executor (see the
+ * <code>EXECUTOR_*</code> constants), which can be configured using system
+ * properties:
+ * <ul>
+ * <li><code>metamodel.executor.mode</code> or
+ * <code>metamodel.executor.&lt;name&gt;.mode</code>: one of
+ * <code>cached</code>, <code>bounded</code> or <code>virtual</code>, see
+ * {@link ManagedExecutorService.Mode}. Executors are bounded by default,
+ * except for the executors of tasks that block for a long time:
+ * {@link #EXECUTOR_ROW_PUBLISHER}, {@link #EXECUTOR_QUERY} and
+ * {@link #EXECUTOR_LAZY_LOAD} use virtual threads by default (or a cached
+ * thread pool on JDKs without virtual threads).</li>
+ * <li><code>metamodel.executor.&lt;name&gt;.threads</code>: the number of
+ * threads of a bounded executor. Defaults to the number of available
+ * processors.</li>
+ * <li><code>metamodel.executor.&lt;name&gt;.queue.size</code>: the maximum
+ * number of waiting tasks of a bounded executor. Defaults to 0, which means
+ * unbounded.</li>
+ * </ul>
+ * Alternatively an executor can be replaced programmatically using
+ * {@link #setExecutor(ManagedExecutorService)}.
+ * 
+ * Note that since these {@link ExecutorService}s are shared, it is not
+ * recommended to use them for dedicated tasks or daemon-like long-running
+ * tasks.
  */
 public final class SharedExecutorService {
 
+	private static final Logger logger = LoggerFactory.getLogger(SharedExecutorService.class);
+
+	public static final String SYSTEM_PROPERTY_PREFIX = "metamodel.executor.";
+
 	/**
-	 * A custom thread factory that creates daemon threads.
+	 * The executor for tasks that do not belong to a specific subsystem.
 	 */
-	private static final class ThreadFactoryImpl implements ThreadFactory {
+	public static final String EXECUTOR_DEFAULT = "default";
 
-		private static final AtomicInteger counter = new AtomicInteger(0);
+	/**
+	 * The executor for the producers of {@link com.redshoes.metamodel.data.RowPublisherDataSet}s.
+	 * A producer blocks while its consumer does not read, so with a fixed
+	 * number of threads the producers of DataSets that are read later could
+	 * wait forever for a thread. This executor is therefore never bounded by
+	 * the system properties. Don't replace it with a bounded executor using
+	 * {@link #setExecutor(ManagedExecutorService)} either.
+	 */
+	public static final String EXECUTOR_ROW_PUBLISHER = "rowpublisher";
 
-		private final ThreadGroup _threadGroup;
+	/**
+	 * The executor for background loading of {@link LazyRef}s.
+	 */
+	public static final String EXECUTOR_LAZY_LOAD = "lazyload";
 
-		public ThreadFactoryImpl() {
-			SecurityManager s = System.getSecurityManager();
-			_threadGroup = (s != null) ? s.getThreadGroup() : Thread
-					.currentThread().getThreadGroup();
-		}
+	/**
+	 * The executor for parallel execution of queries. The partitions of a
+	 * query result are read ahead by tasks that block while the result is not
+	 * read, so like {@link #EXECUTOR_ROW_PUBLISHER} this executor is never
+	 * bounded by the system properties, since an unread result would
+	 * otherwise hold threads that other queries wait for. Don't replace it
+	 * with a bounded executor using
+	 * {@link #setExecutor(ManagedExecutorService)} either. The number of
+	 * concurrent tasks of a query is limited by its parallelism.
+	 */
+	public static final String EXECUTOR_QUERY = "query";
 
-		@Override
-		public Thread newThread(Runnable r) {
-			Thread thread = new Thread(_threadGroup, r,
-					"MetaModel.SharedExecutorService.Thread."
-							+ counter.incrementAndGet());
-			thread.setDaemon(true);
-			thread.setPriority(Thread.NORM_PRIORITY);
-			return thread;
-		}
-	}
+	/**
+	 * The executor for parallel scans of data sources, eg. parsing the chunks
+	 * of a CSV file. Scan tasks never wait for other tasks.
+	 */
+	public static final String EXECUTOR_SCAN = "scan";
 
-	private static final ExecutorService executor = Executors
-			.newCachedThreadPool(new ThreadFactoryImpl());
+	private static final int DEFAULT_QUEUE_SIZE = 0;
+
+	private static final ConcurrentMap<String, ManagedExecutorService> executors = new ConcurrentHashMap<>();
 
 	private SharedExecutorService() {
 		// prevent instantiation
 	}
 
 	/**
-	 * Gets the shared {@link ExecutorService}.
+	 * Gets the shared {@link ExecutorService} for tasks that do not belong to
+	 * a specific subsystem.
 	 * 
 	 * @return an {@link ExecutorService} for shared usage.
 	 */
 	public static final ExecutorService get() {
+		return get(EXECUTOR_DEFAULT);
+	}
+
+	/**
+	 * Gets the shared {@link ExecutorService} of a subsystem. The executor is
+	 * created on first use, according to the system properties of its name.
+	 * 
+	 * @param name
+	 *            the name of the executor
+	 * @return a {@link ManagedExecutorService} for shared usage.
+	 */
+	public static ManagedExecutorService get(String name) {
+		return executors.computeIfAbsent(name, SharedExecutorService::createExecutor);
+	}
+
+	/**
+	 * Replaces the shared executor of the same name as the given executor. The
+	 * replaced executor (if any) is shut down after its tasks have finished.
+	 * 
+	 * @param executor
+	 */
+	public static void setExecutor(ManagedExecutorService executor) {
+		final ManagedExecutorService replaced = executors.put(executor.getName(), executor);
+		if (replaced != null && replaced != executor) {
+			replaced.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the shared executors that have been created so far, eg. for
+	 * monitoring their metrics.
+	 * 
+	 * @return
+	 */
+	public static Collection<ManagedExecutorService> getExecutors() {
+		return new ArrayList<>(executors.values());
+	}
+
+	static ManagedExecutorService createExecutor(String name) {
+		final String propertyPrefix = SYSTEM_PROPERTY_PREFIX + name + ".";
+		final boolean blocking = EXECUTOR_ROW_PUBLISHER.equals(name) || EXECUTOR_QUERY.equals(name);
+		final String defaultMode = blocking || EXECUTOR_LAZY_LOAD.equals(name) ? "virtual" : "bounded";
+		String mode = System.getProperty(propertyPrefix + "mode",
+				System.getProperty(SYSTEM_PROPERTY_PREFIX + "mode", defaultMode));
+		if (blocking && "bounded".equalsIgnoreCase(mode)) {
+			logger.warn("Executor '{}' cannot be bounded, since its tasks block until they are consumed. "
+					+ "Using virtual threads instead.", name);
+			mode = "virtual";
+		}
+
+		final ManagedExecutorService executor;
+		if ("bounded".equalsIgnoreCase(mode)) {
+			final int threads = Integer.getInteger(propertyPrefix + "threads", Runtime.getRuntime()
+					.availableProcessors());
+			final int queueSize = Integer.getInteger(propertyPrefix + "queue.size", DEFAULT_QUEUE_SIZE);
+			executor = ManagedExecutorService.bounded(name, threads, queueSize);
+		} else if ("virtual".equalsIgnoreCase(mode)) {
+			executor = ManagedExecutorService.virtual(name);
+		} else {
+			if (!"cached".equalsIgnoreCase(mode)) {
+				logger.warn("Unknown executor mode '{}' for executor '{}', using cached thread pool", mode, name);
+			}
+			executor = ManagedExecutorService.cached(name);
+		}
+		logger.debug("Created shared executor: {}", executor);
 		return executor;
 	}
 }
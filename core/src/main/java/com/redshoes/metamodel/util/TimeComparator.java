@@ -20,12 +20,14 @@ package com.redshoes.metamodel.util;
 
 import java.text.DateFormat;
 import java.text.DateFormatSymbols;
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +45,13 @@ public final class TimeComparator implements Comparator<Object> {
             "yyyy-MM-dd HH:mm", "HH:mm:ss.SSS", "yyyy-MM-dd", "dd-MM-yyyy", "yy-MM-dd", "MM-dd-yyyy", "HH:mm:ss",
             "HH:mm" };
 
+    private static final String[][] prototypePatternVariants = createPrototypePatternVariants();
+
+    private static final String DATE_TO_STRING_PATTERN = "EEE MMM dd HH:mm:ss zzz yyyy";
+
+    // date formats are not thread-safe, so they are cached per thread
+    private static final ThreadLocal<Map<String, DateFormat>> dateFormats = ThreadLocal.withInitial(HashMap::new);
+
     private static final Comparator<Object> _instance = new TimeComparator();
 
     public static Comparator<Object> getComparator() {
@@ -121,56 +130,70 @@ public final class TimeComparator implements Comparator<Object> {
     }
 
     private static Date convertFromString(final String value) {
-        try {
-            long longValue = Long.parseLong(value);
-            return convertFromNumber(longValue);
-        } catch (NumberFormatException e) {
-            // do nothing, proceed to dateFormat parsing
+        if (!value.isEmpty()) {
+            final char firstChar = value.charAt(0);
+            if (firstChar == '-' || firstChar == '+' || Character.isDigit(firstChar)) {
+                try {
+                    long longValue = Long.parseLong(value);
+                    return convertFromNumber(longValue);
+                } catch (NumberFormatException e) {
+                    // do nothing, proceed to dateFormat parsing
+                }
+            }
         }
 
         // try with Date.toString() date format first
-        try {
-            DateFormatSymbols dateFormatSymbols = DateFormatSymbols.getInstance(Locale.US);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", dateFormatSymbols);
-            return dateFormat.parse(value);
-        } catch (ParseException e) {
-            // do noting
+        final Date date = parse(DATE_TO_STRING_PATTERN, value);
+        if (date != null) {
+            return date;
         }
 
-        for (String prototypePattern : prototypePatterns) {
-            if (prototypePattern.length() == value.length()) {
-                DateFormat dateFormat;
-                try {
-                    dateFormat = DateUtils.createDateFormat(prototypePattern);
-                    return dateFormat.parse(value);
-                } catch (Exception e) {
-                    // proceed to next formatter
-                }
-
-                if (prototypePattern.indexOf('-') != -1) {
-                    // try with '.' in stead of '-'
-                    try {
-                        dateFormat = DateUtils.createDateFormat(prototypePattern.replaceAll("\\-", "\\."));
-                        return dateFormat.parse(value);
-                    } catch (Exception e) {
-                        // proceed to next formatter
-                    }
-
-                    // try with '/' in stead of '-'
-                    try {
-                        dateFormat = DateUtils.createDateFormat(prototypePattern.replaceAll("\\-", "\\/"));
-                        return dateFormat.parse(value);
-                    } catch (Exception e) {
-                        // proceed to next formatter
+        for (String[] variants : prototypePatternVariants) {
+            if (variants[0].length() == value.length()) {
+                // try the pattern, and with '.' or '/' in stead of '-'
+                for (String pattern : variants) {
+                    final Date result = parse(pattern, value);
+                    if (result != null) {
+                        return result;
                     }
                 }
             }
-
         }
 
         return null;
     }
 
+    private static Date parse(final String pattern, final String value) {
+        final Map<String, DateFormat> formats = dateFormats.get();
+        DateFormat dateFormat = formats.get(pattern);
+        if (dateFormat == null) {
+            if (DATE_TO_STRING_PATTERN.equals(pattern)) {
+                dateFormat = new SimpleDateFormat(pattern, DateFormatSymbols.getInstance(Locale.US));
+            } else {
+                dateFormat = DateUtils.createDateFormat(pattern);
+            }
+            formats.put(pattern, dateFormat);
+        }
+        try {
+            return dateFormat.parse(value, new ParsePosition(0));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String[][] createPrototypePatternVariants() {
+        final String[][] result = new String[prototypePatterns.length][];
+        for (int i = 0; i < prototypePatterns.length; i++) {
+            final String pattern = prototypePatterns[i];
+            if (pattern.indexOf('-') == -1) {
+                result[i] = new String[] { pattern };
+            } else {
+                result[i] = new String[] { pattern, pattern.replace('-', '.'), pattern.replace('-', '/') };
+            }
+        }
+        return result;
+    }
+
     private static Date convertFromNumber(Number value) {
         Number numberValue = (Number) value;
         long longValue = numberValue.longValue();
@@ -178,19 +201,17 @@ public final class TimeComparator implements Comparator<Object> {
         String stringValue = Long.toString(longValue);
         // test if the number is actually a format of the type yyyyMMdd
         if (stringValue.length() == 8 && (stringValue.startsWith("1") || stringValue.startsWith("2"))) {
-            try {
-                return DateUtils.createDateFormat("yyyyMMdd").parse(stringValue);
-            } catch (Exception e) {
-                // do nothing, proceed to next method of conversion
+            final Date date = parse("yyyyMMdd", stringValue);
+            if (date != null) {
+                return date;
             }
         }
 
         // test if the number is actually a format of the type yyMMdd
         if (stringValue.length() == 6) {
-            try {
-                return DateUtils.createDateFormat("yyMMdd").parse(stringValue);
-            } catch (Exception e) {
-                // do nothing, proceed to next method of conversion
+            final Date date = parse("yyMMdd", stringValue);
+            if (date != null) {
+                return date;
             }
         }
 
@@ -36,6 +36,7 @@ public final class WildcardPattern implements Serializable {
 	private final boolean _endsWithDelim;
 	private String _pattern;
 	private char _wildcard;
+	private transient String[] _tokens;
 
 	public WildcardPattern(String pattern, char wildcard) {
 		_pattern = pattern;
@@ -52,12 +53,10 @@ public final class WildcardPattern implements Serializable {
 		if (value == null) {
 			return false;
 		}
-		StringTokenizer st = new StringTokenizer(_pattern,
-				Character.toString(_wildcard));
+		String[] tokens = getTokens();
 		int charIndex = 0;
-		while (st.hasMoreTokens()) {
+		for (String token : tokens) {
 			int oldIndex = charIndex;
-			String token = st.nextToken();
 			charIndex = value.indexOf(token, charIndex);
 			if (charIndex == -1 || !_startsWithDelim && oldIndex == 0 && charIndex != 0) {
 				return false;
@@ -73,4 +72,23 @@ public final class WildcardPattern implements Serializable {
 		}
 		return true;
 	}
+
+	/**
+	 * Gets the parts of the pattern in between wildcards. These are
+	 * tokenized only once, since patterns are typically matched against many
+	 * values.
+	 */
+	private String[] getTokens() {
+		String[] tokens = _tokens;
+		if (tokens == null) {
+			StringTokenizer st = new StringTokenizer(_pattern,
+					Character.toString(_wildcard));
+			tokens = new String[st.countTokens()];
+			for (int i = 0; i < tokens.length; i++) {
+				tokens[i] = st.nextToken();
+			}
+			_tokens = tokens;
+		}
+		return tokens;
+	}
 }
\ No newline at end of file
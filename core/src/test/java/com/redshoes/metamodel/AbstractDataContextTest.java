@@ -25,11 +25,14 @@ import junit.framework.TestCase;
 import com.redshoes.metamodel.data.DataSet;
 import com.redshoes.metamodel.query.Query;
 import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.ColumnType;
 import com.redshoes.metamodel.schema.MutableColumn;
 import com.redshoes.metamodel.schema.MutableSchema;
 import com.redshoes.metamodel.schema.MutableTable;
 import com.redshoes.metamodel.schema.Schema;
+import com.redshoes.metamodel.schema.SchemaSnapshot;
 import com.redshoes.metamodel.schema.Table;
+import com.redshoes.metamodel.util.InMemoryResource;
 
 public class AbstractDataContextTest extends TestCase {
 
@@ -37,6 +40,7 @@ public class AbstractDataContextTest extends TestCase {
 
         private final Map<String, Schema> _schemas;
         private final String _defaultSchemaName;
+        private String _fingerprint;
 
         public MyDataContext() {
             this("foobar", createSchema("barfoo"), createSchema("foobar"), createSchema("foo.bar"));
@@ -65,6 +69,11 @@ public class AbstractDataContextTest extends TestCase {
             return _defaultSchemaName;
         }
 
+        @Override
+        protected String getSchemaSnapshotFingerprint() {
+            return _fingerprint;
+        }
+
         @Override
         protected Schema getSchemaByNameInternal(String name) {
             Schema schema = _schemas.get(name);
@@ -262,6 +271,87 @@ public class AbstractDataContextTest extends TestCase {
         assertEquals("col1", result.getName());
     }
 
+    public void testParseQueryIsCached() throws Exception {
+        final MyDataContext dc = new MyDataContext();
+        final String queryString = "SELECT * FROM foobar.table WHERE col1 = 'foo' ORDER BY col2";
+
+        final Query query1 = dc.parseQuery(queryString);
+        final Query query2 = dc.parseQuery(queryString);
+        assertNotSame(query1, query2);
+        assertEquals(query1.toSql(), query2.toSql());
+
+        // modifications of a parsed query do not affect the cache
+        query2.setMaxRows(10);
+        assertNull(dc.parseQuery(queryString).getMaxRows());
+
+        // the cached query is only reused until the schemas are refreshed
+        final MutableTable table = (MutableTable) dc.getTableByQualifiedLabel("foobar.table");
+        final MutableColumn col5 = new MutableColumn("col5", table);
+        table.addColumn(col5);
+        assertEquals(2, dc.parseQuery(queryString).getSelectClause().getItemCount());
+
+        dc.refreshSchemas();
+        assertEquals(3, dc.parseQuery(queryString).getSelectClause().getItemCount());
+
+        // ... or until an update clears the cache
+        final MutableTable refreshedTable = (MutableTable) dc.getTableByQualifiedLabel("foobar.table");
+        refreshedTable.addColumn(new MutableColumn("col6", refreshedTable));
+        assertEquals(3, dc.parseQuery(queryString).getSelectClause().getItemCount());
+        dc.clearParsedQueryCache();
+        assertEquals(4, dc.parseQuery(queryString).getSelectClause().getItemCount());
+    }
+
+    public void testSchemaSnapshot() throws Exception {
+        final InMemoryResource resource = new InMemoryResource("snapshot");
+        final MyDataContext dc1 = new MyDataContext();
+        final MutableTable table1 = (MutableTable) dc1.getTableByQualifiedLabel("foobar.table");
+        table1.addColumn(new MutableColumn("col5", ColumnType.VARCHAR, table1, 2, true));
+        dc1._fingerprint = "v1";
+        dc1.setSchemaSnapshotResource(resource);
+        dc1.writeSchemaSnapshot();
+
+        // a DataContext without any schemas of its own
+        final MyDataContext dc2 = new MyDataContext("foobar");
+        dc2._fingerprint = "v1";
+        dc2.setSchemaSnapshotResource(resource);
+        assertEquals("[barfoo, foo.bar, foobar]", dc2.getSchemaNames().toString());
+        final Table table2 = dc2.getTableByQualifiedLabel("foobar.table");
+        assertEquals("[col1, col2, col5]", table2.getColumnNames().toString());
+        assertSame(ColumnType.VARCHAR, table2.getColumnByName("col5").getType());
+
+        // refreshing the schemas bypasses the snapshot
+        dc2.refreshSchemas();
+        assertEquals("[]", dc2.getSchemaNames().toString());
+
+        // stale snapshots are ignored
+        final MyDataContext dc3 = new MyDataContext("foobar");
+        dc3._fingerprint = "v2";
+        dc3.setSchemaSnapshotResource(resource);
+        assertEquals("[]", dc3.getSchemaNames().toString());
+
+        // writing a snapshot discovers the schemas live instead of writing
+        // the old snapshot back
+        final MyDataContext dc4 = new MyDataContext("foobar");
+        dc4._fingerprint = "v1";
+        dc4.setSchemaSnapshotResource(resource);
+        assertEquals("[barfoo, foo.bar, foobar]", dc4.getSchemaNames().toString());
+        dc4.writeSchemaSnapshot();
+        final MyDataContext dc5 = new MyDataContext("foobar");
+        dc5._fingerprint = "v1";
+        dc5.setSchemaSnapshotResource(resource);
+        assertEquals("[]", dc5.getSchemaNames().toString());
+
+        // an empty resource is not a snapshot yet
+        assertNull(SchemaSnapshot.read(new InMemoryResource("empty")));
+
+        try {
+            new MyDataContext().writeSchemaSnapshot();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("No schema snapshot resource set", e.getMessage());
+        }
+    }
+
     private Schema createSchema(String name) {
         MutableSchema schema = new MutableSchema(name);
         MutableTable t1 = new MutableTable("table");
@@ -26,14 +26,20 @@ import com.google.common.collect.Lists;
 import com.redshoes.metamodel.data.DataSet;
 import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.DefaultRow;
+import com.redshoes.metamodel.data.DistinctDataSet;
 import com.redshoes.metamodel.data.EmptyDataSet;
+import com.redshoes.metamodel.data.HashJoinDataSet;
 import com.redshoes.metamodel.data.InMemoryDataSet;
+import com.redshoes.metamodel.data.MaxRowsDataSet;
 import com.redshoes.metamodel.data.Row;
 import com.redshoes.metamodel.data.SimpleDataSetHeader;
+import com.redshoes.metamodel.data.SortedRunsDataSet;
 import com.redshoes.metamodel.data.SubSelectionDataSet;
+import com.redshoes.metamodel.data.TopNDataSet;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.query.FromItem;
 import com.redshoes.metamodel.query.FunctionType;
+import com.redshoes.metamodel.query.GroupByItem;
 import com.redshoes.metamodel.query.JoinType;
 import com.redshoes.metamodel.query.OperatorType;
 import com.redshoes.metamodel.query.OrderByItem;
@@ -118,6 +124,41 @@ public class MetaModelHelperTest extends MetaModelTestCase {
         assertEquals(3, objectArrays.size());
     }
 
+    @Test
+    public void testFullJoin() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("person_id", ColumnType.INTEGER));
+        SelectItem si2 = new SelectItem(new MutableColumn("person_name", ColumnType.VARCHAR));
+        SelectItem si3 = new SelectItem(new MutableColumn("person_role_id", ColumnType.INTEGER));
+        SelectItem si4 = new SelectItem(new MutableColumn("role_id", ColumnType.INTEGER));
+        SelectItem si5 = new SelectItem(new MutableColumn("role_name", ColumnType.VARCHAR));
+        List<Object[]> data1 = new ArrayList<Object[]>();
+        data1.add(new Object[] { 1, "peter", 1 });
+        data1.add(new Object[] { 2, "tom", 2 });
+        data1.add(new Object[] { 3, "betty", 5 });
+        data1.add(new Object[] { 4, "barbara", 1 });
+
+        List<Object[]> data2 = new ArrayList<Object[]>();
+        data2.add(new Object[] { 1, "class president" });
+        data2.add(new Object[] { 2, "bad boy" });
+        data2.add(new Object[] { 4, "trying harder" });
+
+        DataSet ds1 = createDataSet(Lists.newArrayList(si1, si2, si3), data1);
+        DataSet ds2 = createDataSet(Lists.newArrayList(si4, si5), data2);
+        FilterItem[] onConditions = new FilterItem[1];
+        onConditions[0] = new FilterItem(si3, OperatorType.EQUALS_TO, si4);
+
+        DataSet result = MetaModelHelper.getFullJoin(ds1, ds2, onConditions);
+        assertEquals("[person_id, person_name, person_role_id, role_id, role_name]",
+                Arrays.toString(result.getSelectItems().toArray()));
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals("[1, peter, 1, 1, class president]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[2, tom, 2, 2, bad boy]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[3, betty, 5, null, null]", Arrays.toString(objectArrays.get(2)));
+        assertEquals("[4, barbara, 1, 1, class president]", Arrays.toString(objectArrays.get(3)));
+        assertEquals("[null, null, null, 4, trying harder]", Arrays.toString(objectArrays.get(4)));
+        assertEquals(5, objectArrays.size());
+    }
+
     @Test
     public void testSimpleCarthesianProduct() throws Exception {
         DataSet dataSet = MetaModelHelper.getCarthesianProduct(createDataSet1(), createDataSet2());
@@ -430,4 +471,175 @@ public class MetaModelHelperTest extends MetaModelTestCase {
 
         assertTrue(count == bigDataSetSize);
     }
+
+    @Test
+    public void testHashJoinWithResidualCondition() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("person_name", ColumnType.VARCHAR));
+        SelectItem si2 = new SelectItem(new MutableColumn("person_role_id", ColumnType.INTEGER));
+        SelectItem si3 = new SelectItem(new MutableColumn("person_age", ColumnType.INTEGER));
+        SelectItem si4 = new SelectItem(new MutableColumn("role_id", ColumnType.BIGINT));
+        SelectItem si5 = new SelectItem(new MutableColumn("role_min_age", ColumnType.INTEGER));
+
+        List<Object[]> data1 = new ArrayList<Object[]>();
+        data1.add(new Object[] { "peter", 1, 18 });
+        data1.add(new Object[] { "tom", 2, 19 });
+        data1.add(new Object[] { "betty", null, 19 });
+        data1.add(new Object[] { "susie", 1, 16 });
+
+        List<Object[]> data2 = new ArrayList<Object[]>();
+        data2.add(new Object[] { 1L, 17 });
+        data2.add(new Object[] { 2L, 21 });
+        data2.add(new Object[] { 1L, 15 });
+
+        DataSet ds1 = createDataSet(Lists.newArrayList(si1, si2, si3), data1);
+        DataSet ds2 = createDataSet(Lists.newArrayList(si4, si5), data2);
+
+        DataSet result = MetaModelHelper.hashJoin(ds2, ds1, Arrays.asList(
+                new FilterItem(si2, OperatorType.EQUALS_TO, si4),
+                new FilterItem(si3, OperatorType.GREATER_THAN, si5)));
+        // the probe side is streamed, not materialized
+        assertTrue(result instanceof HashJoinDataSet);
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals(3, objectArrays.size());
+        assertEquals("[peter, 1, 18, 1, 17]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[peter, 1, 18, 1, 15]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[susie, 1, 16, 1, 15]", Arrays.toString(objectArrays.get(2)));
+    }
+
+    @Test
+    public void testHashJoinWithMixedKeyTypes() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("foo", ColumnType.VARCHAR));
+        SelectItem si2 = new SelectItem(new MutableColumn("bar", ColumnType.INTEGER));
+
+        List<Object[]> data1 = new ArrayList<Object[]>();
+        data1.add(new Object[] { "1" });
+        data1.add(new Object[] { "2" });
+        data1.add(new Object[] { "TRUE" });
+
+        List<Object[]> data2 = new ArrayList<Object[]>();
+        data2.add(new Object[] { 2 });
+        data2.add(new Object[] { true });
+
+        DataSet ds1 = createDataSet(Lists.newArrayList(si1), data1);
+        DataSet ds2 = createDataSet(Lists.newArrayList(si2), data2);
+
+        // values of different kinds should be compared the same way as in a
+        // nested loop join
+        DataSet result = MetaModelHelper.getCarthesianProduct(new DataSet[] { ds1, ds2 },
+                new FilterItem(si1, OperatorType.EQUALS_TO, si2));
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals(2, objectArrays.size());
+        assertEquals("[2, 2]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[TRUE, true]", Arrays.toString(objectArrays.get(1)));
+    }
+
+    @Test
+    public void testGetGroupedWithMultipleAggregates() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("dept", ColumnType.VARCHAR));
+        MutableColumn salaryColumn = new MutableColumn("salary", ColumnType.INTEGER);
+        SelectItem si2 = new SelectItem(salaryColumn);
+
+        List<Object[]> data = new ArrayList<Object[]>();
+        data.add(new Object[] { "sales", 10 });
+        data.add(new Object[] { "dev", 20 });
+        data.add(new Object[] { null, 5 });
+        data.add(new Object[] { "sales", 30 });
+        data.add(new Object[] { "dev", null });
+        data.add(new Object[] { null, 7 });
+
+        DataSet dataSet = createDataSet(Lists.newArrayList(si1, si2), data);
+
+        SelectItem countItem = SelectItem.getCountAllItem();
+        SelectItem sumItem = new SelectItem(FunctionType.SUM, salaryColumn);
+        SelectItem maxItem = new SelectItem(FunctionType.MAX, salaryColumn);
+
+        DataSet result = MetaModelHelper.getGrouped(Lists.newArrayList(si1, countItem, sumItem, maxItem), dataSet,
+                Lists.newArrayList(new GroupByItem(si1)));
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals(3, objectArrays.size());
+        assertEquals("[sales, 2, 40.0, 30]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[dev, 2, 20.0, 20]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[null, 2, 12.0, 7]", Arrays.toString(objectArrays.get(2)));
+    }
+
+    @Test
+    public void testGetOrderedSpillingToDisk() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("name", ColumnType.VARCHAR));
+        SelectItem si2 = new SelectItem(new MutableColumn("score", ColumnType.INTEGER));
+
+        List<Object[]> data = new ArrayList<Object[]>();
+        for (int i = 0; i < 10; i++) {
+            data.add(new Object[] { "row" + i, i % 4 });
+        }
+
+        // wrap the dataset to avoid the in-memory shortcut
+        DataSet dataSet = new MaxRowsDataSet(createDataSet(Lists.newArrayList(si1, si2), data), 100);
+        OrderByItem orderByItem = new OrderByItem(si2, OrderByItem.Direction.DESC);
+
+        DataSet result = MetaModelHelper.getOrdered(dataSet, Arrays.asList(orderByItem), -1, 3);
+        assertTrue(result instanceof SortedRunsDataSet);
+
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals(10, objectArrays.size());
+        assertEquals("[row3, 3]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[row7, 3]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[row2, 2]", Arrays.toString(objectArrays.get(2)));
+        assertEquals("[row6, 2]", Arrays.toString(objectArrays.get(3)));
+        assertEquals("[row1, 1]", Arrays.toString(objectArrays.get(4)));
+        assertEquals("[row5, 1]", Arrays.toString(objectArrays.get(5)));
+        assertEquals("[row9, 1]", Arrays.toString(objectArrays.get(6)));
+        assertEquals("[row0, 0]", Arrays.toString(objectArrays.get(7)));
+        assertEquals("[row4, 0]", Arrays.toString(objectArrays.get(8)));
+        assertEquals("[row8, 0]", Arrays.toString(objectArrays.get(9)));
+    }
+
+    @Test
+    public void testGetOrderedTopRows() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("name", ColumnType.VARCHAR));
+        SelectItem si2 = new SelectItem(new MutableColumn("score", ColumnType.INTEGER));
+
+        List<Object[]> data = new ArrayList<Object[]>();
+        for (int i = 0; i < 10; i++) {
+            data.add(new Object[] { "row" + i, i % 4 });
+        }
+
+        DataSet dataSet = new MaxRowsDataSet(createDataSet(Lists.newArrayList(si1, si2), data), 100);
+        OrderByItem orderByItem = new OrderByItem(si2);
+
+        DataSet result = MetaModelHelper.getOrdered(dataSet, Arrays.asList(orderByItem), 4, 100);
+        assertTrue(result instanceof TopNDataSet);
+
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals(4, objectArrays.size());
+        assertEquals("[row0, 0]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[row4, 0]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[row8, 0]", Arrays.toString(objectArrays.get(2)));
+        assertEquals("[row1, 1]", Arrays.toString(objectArrays.get(3)));
+    }
+
+    public void testReadDataSetFullIsModifiable() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("name", ColumnType.VARCHAR));
+
+        List<Object[]> data = new ArrayList<Object[]>();
+        data.add(new Object[] { "foo" });
+        data.add(new Object[] { "bar" });
+
+        DataSet dataSet = new MaxRowsDataSet(createDataSet(Lists.newArrayList(si1), data), 100);
+        List<Row> rows = MetaModelHelper.readDataSetFull(dataSet);
+        assertEquals(2, rows.size());
+
+        Row row = rows.remove(0);
+        rows.set(0, row);
+        assertEquals("[Row[values=[foo]]]", rows.toString());
+
+        // ordered rows are read into a (read-only) ColumnarRowList
+        dataSet = MetaModelHelper.getOrdered(new DistinctDataSet(createDataSet(Lists.newArrayList(si1), data)),
+                new OrderByItem(si1));
+        rows = MetaModelHelper.readDataSetFull(dataSet);
+        assertEquals("[Row[values=[bar]], Row[values=[foo]]]", rows.toString());
+
+        row = rows.remove(0);
+        rows.set(0, row);
+        assertEquals("[Row[values=[bar]]]", rows.toString());
+    }
 }
@@ -22,6 +22,11 @@ import java.nio.channels.UnsupportedAddressTypeException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.swing.table.TableModel;
@@ -32,6 +37,7 @@ import com.redshoes.metamodel.data.DataSetTableModel;
 import com.redshoes.metamodel.data.DefaultRow;
 import com.redshoes.metamodel.data.EmptyDataSet;
 import com.redshoes.metamodel.data.InMemoryDataSet;
+import com.redshoes.metamodel.data.ReusableRowDataSet;
 import com.redshoes.metamodel.data.Row;
 import com.redshoes.metamodel.data.SimpleDataSetHeader;
 import com.redshoes.metamodel.query.CompiledQuery;
@@ -47,6 +53,7 @@ import com.redshoes.metamodel.query.Query;
 import com.redshoes.metamodel.query.QueryParameter;
 import com.redshoes.metamodel.query.SelectItem;
 import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.ColumnType;
 import com.redshoes.metamodel.schema.MutableColumn;
 import com.redshoes.metamodel.schema.MutableSchema;
 import com.redshoes.metamodel.schema.MutableTable;
@@ -732,6 +739,32 @@ public class QueryPostprocessDataContextTest extends MetaModelTestCase {
         }
     }
 
+    public void testCompiledQueryExecutedRepeatedlyWithGrouping() throws Exception {
+        final DataContext dc = getDataContext();
+        final QueryParameter param1 = new QueryParameter();
+        final QueryParameter param2 = new QueryParameter();
+        final Query query = dc.query().from(table1).select(COLUMN_CONTRIBUTOR_COUNTRY).selectCount()
+                .where(COLUMN_CONTRIBUTOR_COUNTRY).eq(param1).or(COLUMN_CONTRIBUTOR_NAME).eq(param2)
+                .groupBy(COLUMN_CONTRIBUTOR_COUNTRY).orderBy(COLUMN_CONTRIBUTOR_COUNTRY).toQuery();
+
+        final CompiledQuery compiledQuery = dc.compileQuery(query);
+        try {
+            assertEquals(2, compiledQuery.getParameters().size());
+
+            DataSet ds = dc.executeQuery(compiledQuery, "denmark", "daniel");
+            assertEquals("[[canada, 1], [denmark, 3]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+
+            ds = dc.executeQuery(compiledQuery, "canada", "kasper");
+            assertEquals("[[canada, 1], [denmark, 1]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+
+            // the query itself is left untouched
+            assertEquals(2, query.getWhereClause().getItem(0).getChildItems().length);
+            assertSame(param1, query.getWhereClause().getItem(0).getChildItems()[0].getOperand());
+        } finally {
+            compiledQuery.close();
+        }
+    }
+
     public void testCompiledQueryParameterInSubQuery() throws Exception {
         final DataContext dc = getDataContext();
 
@@ -871,6 +904,186 @@ public class QueryPostprocessDataContextTest extends MetaModelTestCase {
         data2.close();
     }
 
+    public void testOrderByWithPaging() throws Exception {
+        DataContext dc = getDataContext();
+        Column nameColumn = table1.getColumnByName(COLUMN_CONTRIBUTOR_NAME);
+        Column countryColumn = table1.getColumnByName(COLUMN_CONTRIBUTOR_COUNTRY);
+
+        List<Row> allRows = dc.query().from(table1).select(nameColumn).orderBy(countryColumn).desc().execute()
+                .toRows();
+        assertTrue(allRows.size() > 4);
+
+        DataSet dataSet = dc.query().from(table1).select(nameColumn).orderBy(countryColumn).desc().firstRow(2)
+                .maxRows(3).execute();
+        for (int i = 1; i < 4; i++) {
+            assertTrue(dataSet.next());
+            assertEquals(allRows.get(i).toString(), dataSet.getRow().toString());
+        }
+        assertFalse(dataSet.next());
+        dataSet.close();
+    }
+
+    public void testParallelExecution() throws Exception {
+        final AtomicInteger partitionedMaterializations = new AtomicInteger();
+        final QueryPostprocessDataContext serialDataContext = getPartitionableDataContext(1000, null);
+        final QueryPostprocessDataContext parallelDataContext =
+                getPartitionableDataContext(1000, partitionedMaterializations);
+        parallelDataContext.setParallelism(4);
+
+        final String[] queries = { "SELECT id, name FROM tab WHERE country = 'dk'",
+                "SELECT name FROM tab WHERE id > 990 ORDER BY name DESC",
+                "SELECT country, COUNT(*), SUM(id), AVG(id), MIN(name), MAX(name), FIRST(name), LAST(name) "
+                        + "FROM tab GROUP BY country",
+                "SELECT COUNT(*), MAX(id) FROM tab WHERE name LIKE '%7'",
+                "SELECT COUNT(*) FROM tab WHERE country = 'none'", "SELECT country, id FROM tab WHERE id < 5",
+                "SELECT DISTINCT country FROM tab",
+                "SELECT country, COUNT(*) FROM tab GROUP BY country HAVING COUNT(*) > 300",
+                // partial aggregates merged in the order that partitions finish
+                "SELECT country, COUNT(*), SUM(id), MIN(name) FROM tab GROUP BY country ORDER BY country" };
+        for (String sql : queries) {
+            final List<Row> expected = serialDataContext.executeQuery(sql).toRows();
+            final List<Row> actual = parallelDataContext.executeQuery(sql).toRows();
+            assertEquals(sql, expected.toString(), actual.toString());
+        }
+
+        assertEquals(queries.length, partitionedMaterializations.get());
+    }
+
+    public void testUnreadParallelQueryDoesNotBlockOtherQueries() throws Exception {
+        // more partitions than processors, each with more rows than are read ahead
+        final int parallelism = Runtime.getRuntime().availableProcessors() + 1;
+        final QueryPostprocessDataContext dataContext =
+                getPartitionableDataContext(parallelism * 2000, new AtomicInteger());
+        dataContext.setParallelism(parallelism);
+
+        final String sql = "SELECT id FROM tab WHERE id > -1";
+        try (DataSet unreadDataSet = dataContext.executeQuery(sql)) {
+            assertTrue(unreadDataSet.next());
+
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final Future<Integer> rowCount = executor.submit(() -> dataContext.executeQuery(sql).toRows().size());
+                assertEquals(parallelism * 2000, rowCount.get(30, TimeUnit.SECONDS).intValue());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    public void testReusableRows() throws Exception {
+        final QueryPostprocessDataContext dataContext = getPartitionableDataContext(1000, null);
+        final String sql = "SELECT id, name FROM tab WHERE country = 'dk'";
+        final List<String> expected = new ArrayList<>();
+        try (DataSet ds = dataContext.executeQuery(sql)) {
+            while (ds.next()) {
+                expected.add(Arrays.toString(ds.getRow().getValues()));
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        dataContext.setReusableRows(true);
+        final List<String> actual = new ArrayList<>();
+        try (DataSet ds = dataContext.executeQuery(sql)) {
+            Row firstRow = null;
+            while (ds.next()) {
+                if (firstRow == null) {
+                    firstRow = ds.getRow();
+                }
+                assertSame(firstRow, ds.getRow());
+                actual.add(Arrays.toString(ds.getRow().getValues()));
+            }
+        }
+        assertEquals(expected, actual);
+
+        // rows that are ordered are kept, and thus not reused
+        try (DataSet ds = dataContext.executeQuery("SELECT id FROM tab ORDER BY id DESC")) {
+            assertTrue(ds.next());
+            final Row firstRow = ds.getRow();
+            assertTrue(ds.next());
+            assertNotSame(firstRow, ds.getRow());
+            assertEquals("Row[values=[999]]", firstRow.toString());
+        }
+
+        // toRows() copies the rows
+        final List<Row> rows = dataContext.query().from("tab").select("id").where("id").lessThan(3).execute()
+                .toRows();
+        assertEquals("[Row[values=[0]], Row[values=[1]], Row[values=[2]]]", rows.toString());
+
+        // the outer query may keep the rows of sub-queries, so they are not reused
+        final Query subQuery = dataContext.query().from("tab").select("country").where("id").lessThan(10).toQuery();
+        final FromItem subQueryFromItem = new FromItem(subQuery);
+        final Query query = new Query().select(new SelectItem(subQuery.getSelectClause().getItem(0),
+                subQueryFromItem)).from(subQueryFromItem);
+        query.selectDistinct();
+        final List<Row> distinctRows = dataContext.executeQuery(query).toRows();
+        assertEquals(dataContext.executeQuery(new Query().from(subQuery.getFromClause().getItem(0).getTable())
+                .select("country").selectDistinct()).toRows().toString(), distinctRows.toString());
+        try (DataSet ds = dataContext.executeQuery(subQuery)) {
+            assertTrue(ds instanceof ReusableRowDataSet);
+        }
+        try (DataSet ds = dataContext.materializeFromItem(subQueryFromItem, query.getSelectClause().getItems())) {
+            assertFalse(ds instanceof ReusableRowDataSet);
+        }
+    }
+
+    private QueryPostprocessDataContext getPartitionableDataContext(final int rowCount,
+            final AtomicInteger partitionedMaterializations) {
+        final MutableSchema schema = new MutableSchema("sch");
+        final MutableTable table = new MutableTable("tab").setSchema(schema);
+        table.addColumn(new MutableColumn("id", ColumnType.INTEGER, table, 0, false));
+        table.addColumn(new MutableColumn("name", ColumnType.VARCHAR, table, 1, true));
+        table.addColumn(new MutableColumn("country", ColumnType.VARCHAR, table, 2, true));
+        schema.addTable(table);
+
+        final String[] countries = { "dk", "us", "se", null };
+        final List<Object[]> data = new ArrayList<Object[]>();
+        for (int i = 0; i < rowCount; i++) {
+            data.add(new Object[] { i, "name" + i, countries[i % countries.length] });
+        }
+
+        return new QueryPostprocessDataContext() {
+
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, List<Column> columns, int maxRows) {
+                return materialize(table, columns, data);
+            }
+
+            @Override
+            protected List<DataSet> materializeMainSchemaTablePartitions(Table table, List<Column> columns,
+                    int maxPartitions) {
+                if (partitionedMaterializations == null) {
+                    return null;
+                }
+                partitionedMaterializations.incrementAndGet();
+                final List<DataSet> partitions = new ArrayList<>();
+                final int partitionSize = (data.size() + maxPartitions - 1) / maxPartitions;
+                for (int i = 0; i < data.size(); i += partitionSize) {
+                    partitions.add(materialize(table, columns,
+                            data.subList(i, Math.min(data.size(), i + partitionSize))));
+                }
+                return partitions;
+            }
+
+            private DataSet materialize(Table table, List<Column> columns, List<Object[]> rows) {
+                final List<SelectItem> selectItems =
+                        table.getColumns().stream().map(SelectItem::new).collect(Collectors.toList());
+                final DataSet dataSet = createDataSet(selectItems, rows);
+                return MetaModelHelper.getSelection(columns.stream().map(SelectItem::new).collect(Collectors
+                        .toList()), dataSet);
+            }
+
+            @Override
+            protected String getMainSchemaName() throws MetaModelException {
+                return schema.getName();
+            }
+
+            @Override
+            protected Schema getMainSchema() throws MetaModelException {
+                return schema;
+            }
+        };
+    }
+
     public void testCarthesianProductWithWhere() throws Exception {
         DataContext dc = getDataContext();
 
@@ -24,9 +24,24 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class UpdateSummaryBuilderTest extends TestCase {
 
+    public void testRowsPerSecond() {
+        UpdateSummaryBuilder usb = new UpdateSummaryBuilder();
+        assertEquals(Optional.empty(), usb.build().getRowsPerSecond());
+
+        usb.addInserts(300).addDeletes(100).setElapsedTime(2, TimeUnit.SECONDS);
+        assertEquals(Optional.of(200d), usb.build().getRowsPerSecond());
+
+        usb.makeDeletesUnknown();
+        assertEquals(Optional.of(150d), usb.build().getRowsPerSecond());
+
+        usb.makeInsertsUnknown().makeUpdatesUnknown();
+        assertEquals(Optional.empty(), usb.build().getRowsPerSecond());
+    }
+
     public void testEmptyBuilder() {
         UpdateSummaryBuilder usb = new UpdateSummaryBuilder();
         UpdateSummary us = usb.build();
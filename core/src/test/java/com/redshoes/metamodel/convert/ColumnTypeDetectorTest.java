@@ -69,4 +69,18 @@ public class ColumnTypeDetectorTest extends TestCase {
 
 		assertNull(d.createConverter());
 	}
+
+	public void testExhausted() throws Exception {
+		ColumnTypeDetector d = new ColumnTypeDetector();
+		assertFalse(d.isExhausted());
+
+		d.registerValue("1.5");
+		assertFalse(d.isExhausted());
+
+		d.registerValue("abc");
+		assertTrue(d.isExhausted());
+
+		d.registerValue("2");
+		assertNull(d.createConverter());
+	}
 }
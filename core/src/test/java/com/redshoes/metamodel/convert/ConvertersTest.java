@@ -21,6 +21,7 @@ package com.redshoes.metamodel.convert;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
@@ -84,6 +85,17 @@ public class ConvertersTest extends TestCase {
         assertEquals(String.class, physicalRow[0].getClass());
     }
 
+    public void testAutoDetectConvertersOfColumnsWithTimeBudget() throws Exception {
+        final MockUpdateableDataContext dc = new MockUpdateableDataContext();
+        final Table table = dc.getDefaultSchema().getTables().get(0);
+        final Map<Column, TypeConverter<?, ?>> converters = Converters.autoDetectConverters(dc, table.getColumns(),
+                Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS);
+        assertEquals(
+                "[Column[name=foo,columnNumber=0,type=VARCHAR,nullable=null,nativeType=null,columnSize=null]]",
+                converters.keySet().toString());
+        assertEquals(StringToIntegerConverter.class, converters.values().iterator().next().getClass());
+    }
+
     public void testScenario() throws Exception {
         UpdateableDataContext dc = new MockUpdateableDataContext();
         List<Object[]> physicalValuesList = ((MockUpdateableDataContext) dc).getValues();
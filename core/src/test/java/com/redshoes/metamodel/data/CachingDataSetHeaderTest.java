@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.query.FromItem;
+import com.redshoes.metamodel.query.FunctionType;
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.MutableColumn;
+import com.redshoes.metamodel.schema.MutableTable;
+
+import junit.framework.TestCase;
+
+public class CachingDataSetHeaderTest extends TestCase {
+
+    private final MutableTable table = new MutableTable("tab");
+    private final MutableColumn col1 = new MutableColumn("col1", table);
+    private final MutableColumn col2 = new MutableColumn("col2", table);
+    private final MutableColumn col3 = new MutableColumn("col3", table);
+
+    public void testIndexOfSameAsSimpleDataSetHeader() throws Exception {
+        final List<SelectItem> items = Arrays.asList(new SelectItem(FunctionType.MAX, col1),
+                new SelectItem(col1).setAlias("c1"), new SelectItem(col2, new FromItem(table)), new SelectItem(col2),
+                new SelectItem(FunctionType.COUNT, col3));
+        final SimpleDataSetHeader simpleHeader = new SimpleDataSetHeader(items);
+        final CachingDataSetHeader cachingHeader = new CachingDataSetHeader(items);
+
+        final Column equalColumn = new MutableColumn("col1", table);
+        for (Column column : new Column[] { col1, col2, col3, equalColumn, new MutableColumn("foo", table) }) {
+            assertEquals(column.getName(), simpleHeader.indexOf(column), cachingHeader.indexOf(column));
+            // and again, now from the cache of other columns
+            assertEquals(column.getName(), simpleHeader.indexOf(column), cachingHeader.indexOf(column));
+        }
+        assertEquals(1, cachingHeader.indexOf(col1));
+        assertEquals(3, cachingHeader.indexOf(col2));
+        assertEquals(-1, cachingHeader.indexOf(col3));
+
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(i, cachingHeader.indexOf(items.get(i)));
+        }
+        final SelectItem equalItem = new SelectItem(col2);
+        assertEquals(simpleHeader.indexOf(equalItem), cachingHeader.indexOf(equalItem));
+        assertEquals(-1, cachingHeader.indexOf(new SelectItem(FunctionType.SUM, col1)));
+        assertEquals(-1, cachingHeader.indexOf((Column) null));
+        assertEquals(-1, cachingHeader.indexOf((SelectItem) null));
+    }
+
+    public void testIndexOfDistinguishesEqualItems() throws Exception {
+        final SelectItem item1 = new SelectItem(col1);
+        final SelectItem item2 = new SelectItem(col1);
+        final CachingDataSetHeader header = new CachingDataSetHeader(Arrays.asList(item1, item2));
+        assertEquals(0, header.indexOf(item1));
+        assertEquals(1, header.indexOf(item2));
+        assertEquals(0, header.indexOf(col1));
+    }
+
+    public void testSerialization() throws Exception {
+        final List<SelectItem> items = Arrays.asList(new SelectItem(col1), new SelectItem(col2));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new CachingDataSetHeader(items));
+        }
+        final CachingDataSetHeader header;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            header = (CachingDataSetHeader) in.readObject();
+        }
+        final SelectItem item = header.getSelectItem(1);
+        assertEquals(1, header.indexOf(item));
+        assertEquals(1, header.indexOf(item.getColumn()));
+        assertEquals(1, header.indexOf(col2));
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class ColumnarRowListTest extends TestCase {
+
+    private SelectItem[] items = new SelectItem[] { new SelectItem(new MutableColumn("foo")),
+            new SelectItem(new MutableColumn("bar")) };
+    private DataSetHeader header = new SimpleDataSetHeader(items);
+
+    public void testValuesOfDifferentTypes() throws Exception {
+        final Object[][] columnValues = new Object[][] { { null, 1, 2, null }, { 1L, null, Long.MAX_VALUE, 3L },
+                { 1.5d, -0.0d, null, Double.NaN }, { true, false, null, true }, { "a", "b", "a", null },
+                { new Date(1000), null, new Date(2000), new Date(0) }, { null, null, null, null },
+                { 1, 2L, "3", null }, { new Timestamp(1000), new Date(1000), null, 'c' } };
+
+        for (Object[] values : columnValues) {
+            final ColumnarRowList rows = new ColumnarRowList(new SimpleDataSetHeader(Arrays.copyOf(items, 1)));
+            for (Object value : values) {
+                rows.add(new DefaultRow(rows.getHeader(), new Object[] { value }));
+            }
+            assertEquals(values.length, rows.size());
+            for (int i = 0; i < values.length; i++) {
+                final Object value = rows.get(i).getValue(0);
+                assertEquals(values[i], value);
+                if (values[i] != null) {
+                    assertEquals(values[i].getClass(), value.getClass());
+                }
+            }
+        }
+    }
+
+    public void testManyRows() throws Exception {
+        final ColumnarRowList rows = new ColumnarRowList(header);
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new DefaultRow(header, new Object[] { i, "bar" + (i % 10) }));
+        }
+        assertEquals(1000, rows.size());
+        assertEquals("Row[values=[999, bar9]]", rows.get(999).toString());
+        assertEquals(500, rows.getValue(500, 0));
+
+        rows.clear();
+        assertTrue(rows.isEmpty());
+    }
+
+    public void testSortIsStable() throws Exception {
+        final ColumnarRowList rows = new ColumnarRowList(header);
+        rows.add(new DefaultRow(header, new Object[] { 2, "a" }));
+        rows.add(new DefaultRow(header, new Object[] { 1, "b" }));
+        rows.add(new DefaultRow(header, new Object[] { 2, "c" }));
+        rows.add(new DefaultRow(header, new Object[] { null, "d" }));
+
+        rows.sort((r1, r2) -> {
+            final Integer v1 = (Integer) r1.getValue(0);
+            final Integer v2 = (Integer) r2.getValue(0);
+            if (v1 == null || v2 == null) {
+                return v1 == null ? (v2 == null ? 0 : -1) : 1;
+            }
+            return v1.compareTo(v2);
+        });
+
+        final List<String> result = new ArrayList<>();
+        for (Row row : rows) {
+            result.add(Arrays.toString(row.getValues()));
+        }
+        assertEquals("[[null, d], [1, b], [2, a], [2, c]]", result.toString());
+    }
+
+    public void testStyles() throws Exception {
+        final Style style = new StyleBuilder().italic().create();
+        final ColumnarRowList rows = new ColumnarRowList(header);
+        rows.add(new DefaultRow(header, new Object[] { 1, "a" }));
+        rows.add(new DefaultRow(header, new Object[] { 2, "b" }, new Style[] { style, Style.NO_STYLE }));
+
+        assertEquals(Style.NO_STYLE, rows.get(0).getStyle(0));
+        assertEquals(style, rows.get(1).getStyle(0));
+        assertEquals(Style.NO_STYLE, rows.get(1).getStyle(1));
+
+        rows.sort((r1, r2) -> -((Integer) r1.getValue(0)).compareTo((Integer) r2.getValue(0)));
+        assertEquals(style, rows.get(0).getStyle(0));
+        assertEquals(Style.NO_STYLE, rows.get(1).getStyle(0));
+    }
+
+    public void testReadDataSet() throws Exception {
+        final List<Row> sourceRows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            sourceRows.add(new DefaultRow(header, new Object[] { i, i % 2 == 0 ? "even" : "odd" }));
+        }
+        final ColumnarRowList rows = ColumnarRowList.read(new InMemoryDataSet(header, sourceRows));
+        assertEquals(sourceRows, new ArrayList<>(toDefaultRows(rows)));
+
+        final DataSet dataSet = new InMemoryDataSet(header, rows);
+        assertTrue(dataSet.next());
+        assertEquals("Row[values=[0, even]]", dataSet.getRow().toString());
+        dataSet.close();
+    }
+
+    public void testSerializeRow() throws Exception {
+        final ColumnarRowList rows = new ColumnarRowList(header);
+        rows.add(new DefaultRow(header, new Object[] { 1, "a" }));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(rows.get(0));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Row row = (Row) in.readObject();
+            assertEquals(DefaultRow.class, row.getClass());
+            assertEquals("Row[values=[1, a]]", row.toString());
+        }
+    }
+
+    private List<Row> toDefaultRows(List<Row> rows) {
+        final List<Row> result = new ArrayList<>();
+        for (Row row : rows) {
+            result.add(new DefaultRow(header, row.getValues()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class DistinctDataSetTest extends TestCase {
+
+    private SelectItem[] items = new SelectItem[] { new SelectItem(new MutableColumn("foo")),
+            new SelectItem(new MutableColumn("bar")) };
+    private DataSetHeader header = new SimpleDataSetHeader(items);
+
+    public void testRemoveDuplicatesInOrder() throws Exception {
+        List<Row> rows = new ArrayList<Row>();
+        rows.add(new DefaultRow(header, new Object[] { "b", 1 }));
+        rows.add(new DefaultRow(header, new Object[] { "a", 1 }));
+        rows.add(new DefaultRow(header, new Object[] { "b", 1 }));
+        rows.add(new DefaultRow(header, new Object[] { "b", null }));
+        rows.add(new DefaultRow(header, new Object[] { "a", 1 }));
+        rows.add(new DefaultRow(header, new Object[] { "b", null }));
+
+        DistinctDataSet ds = new DistinctDataSet(new InMemoryDataSet(header, rows));
+        assertTrue(ds.next());
+        assertEquals("Row[values=[b, 1]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[a, 1]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[b, null]]", ds.getRow().toString());
+        assertFalse(ds.next());
+        assertNull(ds.getRow());
+
+        ds.close();
+    }
+
+    public void testEmpty() throws Exception {
+        DistinctDataSet ds = new DistinctDataSet(new EmptyDataSet(header));
+        assertFalse(ds.next());
+
+        ds.close();
+    }
+}
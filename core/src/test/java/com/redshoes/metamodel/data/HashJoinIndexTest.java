@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.Date;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class HashJoinIndexTest extends TestCase {
+
+    private DataSetHeader header = new SimpleDataSetHeader(new SelectItem[] {
+            new SelectItem(new MutableColumn("id")), new SelectItem(new MutableColumn("name")) });
+
+    public void testStringAndNumberKeysAreCoerced() throws Exception {
+        final HashJoinIndex index = new HashJoinIndex(header, new int[] { 0 });
+        index.add(new DefaultRow(header, new Object[] { 1, "one" }));
+        index.add(new DefaultRow(header, new Object[] { 2L, "two" }));
+        index.add(new DefaultRow(header, new Object[] { "abc", "letters" }));
+        index.add(new DefaultRow(header, new Object[] { true, "yes" }));
+        assertTrue(index.isHashable());
+
+        // eg. keys from a CSV file, probing keys from a database
+        assertEquals("[Row[values=[2, two]]]", lookup(index, " 2").toString());
+        assertEquals("[Row[values=[2, two]]]", lookup(index, "2.0").toString());
+        assertEquals("[Row[values=[abc, letters]]]", lookup(index, "abc").toString());
+        assertEquals("[Row[values=[1, one]], Row[values=[true, yes]]]", lookup(index, "1").toString());
+        assertEquals("[]", lookup(index, "3").toString());
+        assertEquals("[]", lookup(index, "Infinity").toString());
+    }
+
+    public void testDatesMixedWithOtherKeysAreNotHashed() throws Exception {
+        final HashJoinIndex index = new HashJoinIndex(header, new int[] { 0 });
+        index.add(new DefaultRow(header, new Object[] { new Date(0), "epoch" }));
+        assertTrue(index.isHashable());
+        assertEquals(1, lookup(index, new Date(0)).size());
+        assertEquals(1, lookup(index, "0").size());
+
+        index.add(new DefaultRow(header, new Object[] { 0, "zero" }));
+        assertFalse(index.isHashable());
+        assertEquals(2, lookup(index, "foo").size());
+    }
+
+    private List<Row> lookup(HashJoinIndex index, Object key) {
+        return index.lookup(new DefaultRow(header, new Object[] { key, null }), new int[] { 0 });
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+import com.redshoes.metamodel.util.SharedExecutorService;
+
+import junit.framework.TestCase;
+
+public class PartitionedDataSetTest extends TestCase {
+
+    private SelectItem[] items = new SelectItem[] { new SelectItem(new MutableColumn("foo")) };
+    private DataSetHeader header = new SimpleDataSetHeader(items);
+
+    public void testRowsInPartitionOrder() throws Exception {
+        final List<DataSet> partitions = new ArrayList<>();
+        int expected = 0;
+        for (int size : new int[] { 1000, 0, 1, 2500 }) {
+            partitions.add(createPartition(expected, size));
+            expected += size;
+        }
+
+        final PartitionedDataSet ds = new PartitionedDataSet(partitions, SharedExecutorService.get());
+        int i = 0;
+        while (ds.next()) {
+            assertEquals(i, ds.getRow().getValue(0));
+            i++;
+        }
+        assertEquals(expected, i);
+        assertNull(ds.getRow());
+        ds.close();
+    }
+
+    public void testCloseBeforeExhausted() throws Exception {
+        final PartitionedDataSet ds = new PartitionedDataSet(
+                Arrays.asList(createPartition(0, 5000), createPartition(5000, 5000)), SharedExecutorService.get());
+        assertTrue(ds.next());
+        assertEquals(0, ds.getRow().getValue(0));
+        ds.close();
+        assertFalse(ds.next());
+    }
+
+    public void testExceptionInPartition() throws Exception {
+        final DataSet failingPartition = new AbstractDataSet(header) {
+            @Override
+            public boolean next() {
+                throw new IllegalStateException("foobar");
+            }
+
+            @Override
+            public Row getRow() {
+                return null;
+            }
+        };
+
+        final PartitionedDataSet ds = new PartitionedDataSet(Arrays.asList(createPartition(0, 10), failingPartition),
+                SharedExecutorService.get());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ds.next());
+        }
+        try {
+            ds.next();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("foobar", e.getMessage());
+        }
+    }
+
+    private DataSet createPartition(int offset, int size) {
+        final List<Row> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(new DefaultRow(header, new Object[] { offset + i }));
+        }
+        if (rows.isEmpty()) {
+            return new EmptyDataSet(header);
+        }
+        return new InMemoryDataSet(header, rows);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class ReusableRowDataSetTest extends TestCase {
+
+    private final SelectItem fooItem = new SelectItem(new MutableColumn("foo"));
+    private final SelectItem barItem = new SelectItem(new MutableColumn("bar"));
+    private final DataSetHeader header = new SimpleDataSetHeader(Arrays.asList(fooItem, barItem));
+
+    private DataSet createDataSet(int rowCount) {
+        final List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(new DefaultRow(header, new Object[] { i, "bar" + i }));
+        }
+        return new InMemoryDataSet(header, rows);
+    }
+
+    public void testReusesRow() throws Exception {
+        final DataSet dataSet = new ReusableRowDataSet(createDataSet(7), 3);
+        assertNull(dataSet.getRow());
+
+        final List<Object[]> values = new ArrayList<>();
+        Row firstRow = null;
+        while (dataSet.next()) {
+            final Row row = dataSet.getRow();
+            if (firstRow == null) {
+                firstRow = row;
+            }
+            assertSame(firstRow, row);
+            assertEquals("bar" + values.size(), row.getValue(barItem));
+            values.add(row.getValues());
+        }
+        assertNull(dataSet.getRow());
+        dataSet.close();
+
+        assertEquals(7, values.size());
+        assertEquals("[6, bar6]", Arrays.toString(values.get(6)));
+    }
+
+    public void testToRows() throws Exception {
+        final DataSet dataSet = new ReusableRowDataSet(createDataSet(5), 2);
+        assertTrue(dataSet.next());
+
+        // the remaining rows are copied, so they are valid after closing
+        final List<Row> rows = dataSet.toRows();
+        assertEquals(4, rows.size());
+        assertNotSame(rows.get(0), rows.get(1));
+        assertEquals("[Row[values=[1, bar1]], Row[values=[2, bar2]], Row[values=[3, bar3]], "
+                + "Row[values=[4, bar4]]]", rows.toString());
+    }
+
+    public void testSubSelection() throws Exception {
+        final DataSet dataSet = new ReusableRowDataSet(new SubSelectionDataSet(Arrays.asList(barItem),
+                createDataSet(5)), 2);
+        final List<Object> values = new ArrayList<>();
+        while (dataSet.next()) {
+            assertEquals(1, dataSet.getRow().size());
+            values.add(dataSet.getRow().getValue(0));
+        }
+        dataSet.close();
+        assertEquals("[bar0, bar1, bar2, bar3, bar4]", values.toString());
+    }
+
+    public void testNextBatchAfterNext() throws Exception {
+        final DataSet dataSet = new ReusableRowDataSet(createDataSet(5), 2);
+        assertTrue(dataSet.next());
+        assertEquals(0, dataSet.getRow().getValue(0));
+
+        final RowBatch batch = new RowBatch(header, 10);
+        assertTrue(dataSet.nextBatch(batch));
+        assertEquals(4, batch.size());
+        assertEquals(1, batch.getValue(0, 0));
+        assertEquals(4, batch.getValue(3, 0));
+        assertFalse(dataSet.next());
+        dataSet.close();
+    }
+
+    public void testSerializeRow() throws Exception {
+        final DataSet dataSet = new ReusableRowDataSet(createDataSet(1));
+        assertTrue(dataSet.next());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(dataSet.getRow());
+        }
+        dataSet.close();
+
+        final Row row;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            row = (Row) in.readObject();
+        }
+        assertTrue(row instanceof DefaultRow);
+        assertEquals("Row[values=[0, bar0]]", row.toString());
+    }
+}
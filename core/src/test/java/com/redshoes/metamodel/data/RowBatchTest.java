@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class RowBatchTest extends TestCase {
+
+    private SelectItem[] items = new SelectItem[] { new SelectItem(new MutableColumn("foo")),
+            new SelectItem(new MutableColumn("bar")) };
+    private DataSetHeader header = new SimpleDataSetHeader(items);
+
+    public void testAddAndGetRows() throws Exception {
+        final RowBatch batch = new RowBatch(header, 3);
+        assertTrue(batch.isEmpty());
+
+        final Object[] values = new Object[2];
+        for (int i = 0; i < 3; i++) {
+            values[0] = i;
+            values[1] = "bar" + i;
+            batch.addRow(values);
+        }
+        assertEquals(3, batch.size());
+        assertTrue(batch.isFull());
+
+        assertEquals(1, batch.getValue(1, 0));
+        assertEquals("bar2", batch.getColumn(1)[2]);
+        assertEquals("Row[values=[0, bar0]]", batch.getRow(0).toString());
+        assertEquals(Style.NO_STYLE, batch.getStyle(0, 0));
+
+        try {
+            batch.addRow(values);
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Batch is full, capacity is 3", e.getMessage());
+        }
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertNull(batch.getColumn(0)[0]);
+        try {
+            batch.getValue(0, 0);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("Row index 0 is out of bounds, size is 0", e.getMessage());
+        }
+    }
+
+    public void testStyles() throws Exception {
+        final Style style = new StyleBuilder().bold().create();
+        final RowBatch batch = new RowBatch(header, 10);
+        batch.addRow(new DefaultRow(header, new Object[] { "a", "b" }));
+        batch.addRow(new DefaultRow(header, new Object[] { "c", "d" }, new Style[] { Style.NO_STYLE, style }));
+
+        assertEquals(Style.NO_STYLE, batch.getStyle(0, 1));
+        assertEquals(Style.NO_STYLE, batch.getStyle(1, 0));
+        assertEquals(style, batch.getStyle(1, 1));
+        assertEquals(style, batch.getRow(1).getStyle(1));
+    }
+
+    public void testNextBatchDefaultImplementation() throws Exception {
+        final List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            rows.add(new DefaultRow(header, new Object[] { i, "bar" + i }));
+        }
+        final DataSet dataSet = new InMemoryDataSet(header, rows);
+
+        final RowBatch batch = new RowBatch(dataSet.getSelectItems(), 10);
+        final List<Integer> batchSizes = new ArrayList<>();
+        int expected = 0;
+        while (dataSet.nextBatch(batch)) {
+            batchSizes.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(expected, batch.getValue(i, 0));
+                expected++;
+            }
+        }
+        assertEquals("[10, 10, 5]", batchSizes.toString());
+        assertTrue(batch.isEmpty());
+        dataSet.close();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.MutableColumn;
+import com.redshoes.metamodel.schema.MutableTable;
+
+/**
+ * JMH benchmark that measures the cost of accessing a single cell of a row by
+ * its {@link Column}, i.e. {@link Row#getValue(Column)}, which looks up the
+ * index of the column in the {@link DataSetHeader} of the row.
+ *
+ * Run it from the test classpath using the {@link #main(String[])} method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowGetValueBenchmark {
+
+    @Param({ "5", "50" })
+    public int columnCount;
+
+    private Column[] _columns;
+    private Row _row;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final MutableTable table = new MutableTable("table");
+        _columns = new Column[columnCount];
+        final List<SelectItem> selectItems = new ArrayList<>();
+        final Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            final MutableColumn column = new MutableColumn("col" + i, table);
+            table.addColumn(column);
+            _columns[i] = column;
+            selectItems.add(new SelectItem(column));
+            values[i] = i;
+        }
+        _row = new DefaultRow(new CachingDataSetHeader(selectItems), values);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(50)
+    public void getValueByColumn(Blackhole blackhole) {
+        // always 50 cells per invocation, so that results are per cell
+        for (int i = 0; i < 50; i++) {
+            blackhole.consume(_row.getValue(_columns[i % columnCount]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RowGetValueBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -18,6 +18,9 @@
  */
 package com.redshoes.metamodel.data;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.TestCase;
 
 import com.redshoes.metamodel.query.SelectItem;
@@ -86,4 +89,75 @@ public class RowPublisherDataSetTest extends TestCase {
 		    ds.close();
 		}
 	}
+
+	public void testErrorInAction() throws Exception {
+		SelectItem[] selectItems = new SelectItem[1];
+		selectItems[0] = new SelectItem(new MutableColumn("foos"));
+		DataSet ds = new RowPublisherDataSet(selectItems, -1,
+				new Action<RowPublisher>() {
+					@Override
+					public void run(RowPublisher publisher) throws Exception {
+						publisher.publish(new Object[] { "foo0" });
+						throw new StackOverflowError("foobar!");
+					}
+				});
+
+		assertTrue(ds.next());
+		assertEquals("Row[values=[foo0]]", ds.getRow().toString());
+
+		// the consumer must not wait forever for an ended publisher
+		try {
+			ds.next();
+			fail("Error expected");
+		} catch (StackOverflowError e) {
+			assertEquals("foobar!", e.getMessage());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testManyRowsInOrder() throws Exception {
+		SelectItem[] selectItems = new SelectItem[1];
+		selectItems[0] = new SelectItem(new MutableColumn("foos"));
+		final int rowCount = RowPublisherImpl.BUFFER_SIZE * 10 + 3;
+		DataSet ds = new RowPublisherDataSet(selectItems, 0,
+				new Action<RowPublisher>() {
+					@Override
+					public void run(RowPublisher publisher) throws Exception {
+						for (int i = 0; i < rowCount; i++) {
+							assertTrue(publisher.publish(new Object[] { i }));
+						}
+					}
+				});
+
+		for (int i = 0; i < rowCount; i++) {
+			assertTrue(ds.next());
+			assertEquals(i, ds.getRow().getValue(0));
+		}
+		assertFalse(ds.next());
+		ds.close();
+	}
+
+	public void testCloseWhilePublishing() throws Exception {
+		SelectItem[] selectItems = new SelectItem[1];
+		selectItems[0] = new SelectItem(new MutableColumn("foos"));
+		final CountDownLatch stopped = new CountDownLatch(1);
+		DataSet ds = new RowPublisherDataSet(selectItems, 0,
+				new Action<RowPublisher>() {
+					@Override
+					public void run(RowPublisher publisher) throws Exception {
+						int i = 0;
+						while (publisher.publish(new Object[] { i++ })) {
+							// publish until the consumer is no longer interested
+						}
+						stopped.countDown();
+					}
+				});
+
+		assertTrue(ds.next());
+		assertEquals(0, ds.getRow().getValue(0));
+		ds.close();
+
+		assertTrue(stopped.await(10, TimeUnit.SECONDS));
+	}
 }
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class SortedRunsDataSetTest extends TestCase {
+
+    private DataSetHeader header = new SimpleDataSetHeader(new SelectItem[] {
+            new SelectItem(new MutableColumn("key")), new SelectItem(new MutableColumn("run")) });
+
+    private Comparator<Row> comparator = (r1, r2) -> Integer.compare((Integer) r1.getValue(0),
+            (Integer) r2.getValue(0));
+
+    public void testMergeInPassesWithBoundedFanIn() throws Exception {
+        // 10 runs of keys 0-4, merged 3 at a time
+        final List<File> runFiles = new ArrayList<>();
+        for (int run = 0; run < 10; run++) {
+            final List<Row> rows = new ArrayList<>();
+            for (int key = 0; key < 5; key++) {
+                rows.add(new DefaultRow(header, new Object[] { key, run }));
+            }
+            runFiles.add(SortedRunsDataSet.writeRun(rows));
+        }
+        final List<Row> memoryRun = Arrays.<Row> asList(new DefaultRow(header, new Object[] { 2, 10 }));
+
+        final SortedRunsDataSet dataSet = new SortedRunsDataSet(header, runFiles, memoryRun, comparator, 3);
+        final List<Object[]> result = dataSet.toObjectArrays();
+        assertEquals(51, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            final Object[] values = result.get(i);
+            // the merge is stable, so equal keys come in the order of the runs
+            final int key = i < 10 ? 0 : i < 20 ? 1 : i < 31 ? 2 : i < 41 ? 3 : 4;
+            final int run = key < 2 ? i % 10 : key == 2 ? i - 20 : (i - 1) % 10;
+            assertEquals("Row " + i, key + ", " + run, values[0] + ", " + values[1]);
+        }
+
+        for (File runFile : runFiles) {
+            assertFalse(runFile.exists());
+        }
+    }
+
+    public void testRunFilesAreDeletedOnClose() throws Exception {
+        final File runFile = SortedRunsDataSet.writeRun(Arrays.<Row> asList(new DefaultRow(header, new Object[] {
+                1, 0 })));
+        assertTrue(runFile.exists());
+
+        final SortedRunsDataSet dataSet = new SortedRunsDataSet(header, Arrays.asList(runFile), null, comparator);
+        assertTrue(dataSet.next());
+        dataSet.close();
+        assertFalse(runFile.exists());
+    }
+
+    public void testWriteRunWithValueThatIsNotSerializable() throws Exception {
+        try {
+            SortedRunsDataSet.writeRun(Arrays.<Row> asList(new DefaultRow(header, new Object[] { 1, new Object() })));
+            fail("Exception expected");
+        } catch (MetaModelException e) {
+            assertEquals("Could not write sorted run to temporary file, value of type java.lang.Object is not "
+                    + "serializable", e.getMessage());
+        }
+    }
+}
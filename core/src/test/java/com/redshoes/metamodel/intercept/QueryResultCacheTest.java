@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.intercept;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.redshoes.metamodel.MockUpdateableDataContext;
+import com.redshoes.metamodel.data.DataSet;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.Table;
+
+import junit.framework.TestCase;
+
+public class QueryResultCacheTest extends TestCase {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final MockUpdateableDataContext delegateDataContext = new MockUpdateableDataContext() {
+        @Override
+        protected DataSet materializeMainSchemaTable(Table table, List<Column> columns, int maxRows) {
+            executions.incrementAndGet();
+            return super.materializeMainSchemaTable(table, columns, maxRows);
+        }
+    };
+    private final Table table = delegateDataContext.getTable();
+
+    public void testHitsAndInvalidation() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 1, TimeUnit.HOURS);
+        final InterceptableDataContext dc = Interceptors.intercept(delegateDataContext).setQueryResultCache(cache);
+
+        assertEquals("[[1, hello], [2, there], [3, world]]", toString(dc.query().from(table).selectAll().execute()));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        // changes made directly to the delegate are not seen
+        delegateDataContext.getValues().add(new Object[] { "4", "foo" });
+        assertEquals("[[1, hello], [2, there], [3, world]]", toString(dc.query().from(table).selectAll().execute()));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, executions.get());
+
+        // changes made through the intercepted DataContext invalidate the
+        // table
+        dc.executeUpdate(callback -> callback.insertInto(table).value("foo", "5").value("bar", "bar").execute());
+        assertEquals(0, cache.size());
+        assertEquals("[[1, hello], [2, there], [3, world], [4, foo], [5, bar]]",
+                toString(dc.query().from(table).selectAll().execute()));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, executions.get());
+
+        dc.setQueryResultCache(null);
+        dc.query().from(table).selectAll().execute().close();
+        assertEquals(3, executions.get());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    public void testEvictionBySize() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 1, TimeUnit.HOURS);
+        final InterceptableDataContext dc = Interceptors.intercept(delegateDataContext).setQueryResultCache(cache);
+        dc.query().from(table).select("foo").execute().close();
+        final long size = cache.getTotalSize();
+        assertTrue(size > 0);
+
+        final QueryResultCache smallCache = new QueryResultCache(size + 10, 1, TimeUnit.HOURS);
+        dc.setQueryResultCache(smallCache);
+        dc.query().from(table).select("foo").execute().close();
+        dc.query().from(table).select("foo").where("foo").isNotNull().execute().close();
+        assertEquals(1, smallCache.size());
+        assertEquals(1, smallCache.getEvictionCount());
+
+        // the least recently used result was evicted
+        dc.query().from(table).select("foo").where("foo").isNotNull().execute().close();
+        assertEquals(1, smallCache.getHitCount());
+        dc.query().from(table).select("foo").execute().close();
+        assertEquals(1, smallCache.getHitCount());
+    }
+
+    public void testEvictionByTimeToLive() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 1, TimeUnit.MILLISECONDS);
+        final InterceptableDataContext dc = Interceptors.intercept(delegateDataContext).setQueryResultCache(cache);
+        dc.query().from(table).selectAll().execute().close();
+        Thread.sleep(10);
+        dc.query().from(table).selectAll().execute().close();
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    public void testResultWithTooManyRowsIsNotCached() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 1, TimeUnit.HOURS, 2);
+        final InterceptableDataContext dc = Interceptors.intercept(delegateDataContext).setQueryResultCache(cache);
+
+        assertEquals("[[1, hello], [2, there], [3, world]]", toString(dc.query().from(table).selectAll().execute()));
+        assertEquals("[[1, hello], [2, there]]",
+                toString(dc.query().from(table).selectAll().where("foo").lessThan("3").execute()));
+        assertEquals(1, cache.size());
+    }
+
+    public void testConcurrentMissesExecuteQueryOnce() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 1, TimeUnit.HOURS);
+        final CyclicBarrier barrier = new CyclicBarrier(8);
+        final MockUpdateableDataContext slowDataContext = new MockUpdateableDataContext() {
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, List<Column> columns, int maxRows) {
+                executions.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.materializeMainSchemaTable(table, columns, maxRows);
+            }
+        };
+        final InterceptableDataContext dc = Interceptors.intercept(slowDataContext).setQueryResultCache(cache);
+        final Table slowTable = slowDataContext.getTable();
+
+        final List<String> results = new ArrayList<>();
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                final String result = QueryResultCacheTest.toString(dc.query().from(slowTable).selectAll().execute());
+                synchronized (results) {
+                    results.add(result);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8, results.size());
+        for (String result : results) {
+            assertEquals("[[1, hello], [2, there], [3, world]]", result);
+        }
+        assertEquals(1, executions.get());
+    }
+
+    private static String toString(DataSet dataSet) {
+        try {
+            final List<String> rows = new ArrayList<>();
+            while (dataSet.next()) {
+                rows.add(Arrays.toString(dataSet.getRow().getValues()));
+            }
+            return rows.toString();
+        } finally {
+            dataSet.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.data.DataSetHeader;
+import com.redshoes.metamodel.data.DefaultRow;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.SimpleDataSetHeader;
+import com.redshoes.metamodel.schema.ColumnType;
+import com.redshoes.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class CompiledFilterItemTest extends TestCase {
+
+    private final SelectItem numberItem = new SelectItem(new MutableColumn("num", ColumnType.INTEGER));
+    private final SelectItem stringItem = new SelectItem(new MutableColumn("str", ColumnType.VARCHAR));
+    private final SelectItem otherItem = new SelectItem(new MutableColumn("other"));
+    private final DataSetHeader header = new SimpleDataSetHeader(new SelectItem[] { numberItem, stringItem,
+            otherItem });
+
+    private final Object[][] values = new Object[][] { { 1, "foo", "foo" }, { 2L, "bar", null },
+            { 3.5, "TRUE", true }, { null, null, 1 }, { "4", "true", "4" }, { 10, "fool", 10.0 } };
+
+    public void testSameResultAsEvaluate() throws Exception {
+        final List<FilterItem> filterItems = new ArrayList<FilterItem>();
+        for (OperatorType operator : Arrays.asList(OperatorType.EQUALS_TO, OperatorType.DIFFERENT_FROM,
+                OperatorType.GREATER_THAN, OperatorType.GREATER_THAN_OR_EQUAL, OperatorType.LESS_THAN,
+                OperatorType.LESS_THAN_OR_EQUAL)) {
+            filterItems.add(new FilterItem(numberItem, operator, 2));
+            filterItems.add(new FilterItem(numberItem, operator, "3"));
+            if (operator == OperatorType.EQUALS_TO || operator == OperatorType.DIFFERENT_FROM) {
+                filterItems.add(new FilterItem(numberItem, operator, null));
+            }
+            filterItems.add(new FilterItem(stringItem, operator, "foo"));
+            filterItems.add(new FilterItem(stringItem, operator, "true"));
+            filterItems.add(new FilterItem(otherItem, operator, stringItem));
+        }
+        filterItems.add(new FilterItem(stringItem, OperatorType.LIKE, "fo%"));
+        filterItems.add(new FilterItem(stringItem, OperatorType.NOT_LIKE, "%o%"));
+        filterItems.add(new FilterItem(stringItem, OperatorType.IN, new String[] { "bar", "fool" }));
+        filterItems.add(new FilterItem(numberItem, OperatorType.NOT_IN, Arrays.asList(1, 10)));
+        filterItems.add(new FilterItem(LogicalOperator.OR, new FilterItem(numberItem, OperatorType.EQUALS_TO, 1),
+                new FilterItem(stringItem, OperatorType.EQUALS_TO, "bar")));
+        filterItems.add(new FilterItem(LogicalOperator.AND, new FilterItem(numberItem, OperatorType.GREATER_THAN,
+                1), new FilterItem(stringItem, OperatorType.LIKE, "%o%")));
+
+        for (FilterItem filterItem : filterItems) {
+            final CompiledFilterItem compiled = filterItem.compile(header);
+            for (Object[] rowValues : values) {
+                final Row row = new DefaultRow(header, rowValues);
+                assertEquals(filterItem + " on " + row, filterItem.evaluate(row), compiled.accept(row));
+            }
+        }
+    }
+
+    public void testSelectItemNotInHeader() throws Exception {
+        final SelectItem missingItem = new SelectItem(new MutableColumn("missing", ColumnType.VARCHAR));
+        final Row row = new DefaultRow(header, values[0]);
+
+        assertTrue(new FilterItem(missingItem, OperatorType.EQUALS_TO, null).compile(header).accept(row));
+        assertFalse(new FilterItem(missingItem, OperatorType.EQUALS_TO, "foo").compile(header).accept(row));
+    }
+}
@@ -261,6 +261,9 @@ public class QueryParserTest extends TestCase {
                 "SELECT COUNT(*) FROM sch.tbl a LEFT JOIN sch.tbl b ON a.foo = b.foo AND a.bar = b.baz");
         assertEquals("SELECT COUNT(*) FROM sch.tbl a LEFT JOIN sch.tbl b ON a.foo = b.foo AND a.bar = b.baz",
                 q.toSql());
+
+        q = MetaModelHelper.parseQuery(dc, "SELECT a.foo,b.bar FROM sch.tbl a FULL JOIN sch.tbl b ON a.foo = b.foo");
+        assertEquals("SELECT a.foo, b.bar FROM sch.tbl a FULL JOIN sch.tbl b ON a.foo = b.foo", q.toSql());
     }
 
     public void testSimpleSelectFromWhere() throws Exception {
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.redshoes.metamodel.schema.ColumnType;
+import com.redshoes.metamodel.schema.ColumnTypeImpl;
+
+/**
+ * JMH benchmark that compares sorting the values of a column using the
+ * {@link ColumnTypeComparator} of the column type with sorting them using the
+ * {@link ObjectComparator}.
+ *
+ * Run it from the test classpath using the {@link #main(String[])} method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnTypeComparatorBenchmark {
+
+    private static final int VALUE_COUNT = 10000;
+
+    @Param({ "INTEGER", "DOUBLE", "VARCHAR", "TIMESTAMP", "BOOLEAN" })
+    public String columnTypeName;
+
+    private Object[] _values;
+    private Object[] _workingCopy;
+    private Comparator<Object> _columnTypeComparator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final ColumnType columnType = ColumnTypeImpl.valueOf(columnTypeName);
+        _columnTypeComparator = ColumnTypeComparator.getComparator(columnType);
+
+        final Random random = new Random(0);
+        _values = new Object[VALUE_COUNT];
+        for (int i = 0; i < _values.length; i++) {
+            if (i % 100 == 0) {
+                _values[i] = null;
+            } else if (columnType.isNumber() && columnType.getJavaEquivalentClass() == Integer.class) {
+                _values[i] = random.nextInt();
+            } else if (columnType.isNumber()) {
+                _values[i] = random.nextDouble();
+            } else if (columnType.isLiteral()) {
+                _values[i] = Long.toString(random.nextLong(), 36);
+            } else if (columnType.isTimeBased()) {
+                _values[i] = new Date(random.nextInt() & Integer.MAX_VALUE);
+            } else {
+                _values[i] = random.nextBoolean();
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copyValues() {
+        _workingCopy = _values.clone();
+    }
+
+    @Benchmark
+    public Object[] sortWithObjectComparator() {
+        Arrays.sort(_workingCopy, ObjectComparator.getComparator());
+        return _workingCopy;
+    }
+
+    @Benchmark
+    public Object[] sortWithColumnTypeComparator() {
+        Arrays.sort(_workingCopy, _columnTypeComparator);
+        return _workingCopy;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ColumnTypeComparatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
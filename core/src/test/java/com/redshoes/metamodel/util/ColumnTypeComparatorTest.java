@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+
+import com.redshoes.metamodel.schema.ColumnType;
+
+import junit.framework.TestCase;
+
+public class ColumnTypeComparatorTest extends TestCase {
+
+    private static final List<Object> VALUES = Arrays.asList(null, 1, 2L, (short) 3, (byte) -1, 2.5d, 1.5f,
+            BigInteger.TEN, new BigDecimal("2.50"), "abc", "ABC", "TRUE", "false", "10", "", Boolean.TRUE,
+            Boolean.FALSE, DateUtils.get(2010, Month.SEPTEMBER, 27), new Timestamp(1285545600000L),
+            Calendar.getInstance());
+
+    public void testGetComparatorByColumnType() throws Exception {
+        assertSame(ObjectComparator.getComparator(), ColumnTypeComparator.getComparator(null));
+        assertSame(ObjectComparator.getComparator(), ColumnTypeComparator.getComparator(ColumnType.BLOB));
+
+        assertSame(ColumnTypeComparator.getComparator(ColumnType.INTEGER),
+                ColumnTypeComparator.getComparator(ColumnType.BIGINT));
+        assertSame(ColumnTypeComparator.getComparator(ColumnType.DOUBLE),
+                ColumnTypeComparator.getComparator(ColumnType.DECIMAL));
+        assertSame(ColumnTypeComparator.getComparator(ColumnType.VARCHAR),
+                ColumnTypeComparator.getComparator(ColumnType.CHAR));
+        assertSame(ColumnTypeComparator.getComparator(ColumnType.DATE),
+                ColumnTypeComparator.getComparator(ColumnType.TIMESTAMP));
+    }
+
+    public void testSameResultAsObjectComparator() throws Exception {
+        final ColumnType[] columnTypes = { ColumnType.INTEGER, ColumnType.BIGINT, ColumnType.SMALLINT,
+                ColumnType.DOUBLE, ColumnType.FLOAT, ColumnType.VARCHAR, ColumnType.DATE, ColumnType.TIMESTAMP,
+                ColumnType.BOOLEAN, ColumnType.BIT, ColumnType.OTHER };
+        for (ColumnType columnType : columnTypes) {
+            final Comparator<Object> comparator = ColumnTypeComparator.getComparator(columnType);
+            for (Object o1 : VALUES) {
+                for (Object o2 : VALUES) {
+                    assertEquals(columnType + ": " + o1 + " vs. " + o2, compare(ObjectComparator.getComparator(), o1,
+                            o2), compare(comparator, o1, o2));
+                }
+            }
+        }
+    }
+
+    public void testNullsFirst() throws Exception {
+        final Comparator<Object> comparator = ColumnTypeComparator.getComparator(ColumnType.INTEGER);
+        assertEquals(0, comparator.compare(null, null));
+        assertEquals(-1, comparator.compare(null, 1));
+        assertEquals(1, comparator.compare(1, null));
+    }
+
+    private static String compare(Comparator<Object> comparator, Object o1, Object o2) {
+        try {
+            return Integer.toString(Integer.signum(comparator.compare(o1, o2)));
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import junit.framework.TestCase;
+
+public class LineOffsetIndexTest extends TestCase {
+
+    private File createFile(String name, String content) throws Exception {
+        final File file = new File("target/" + name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String readLine(File file, long offset) throws Exception {
+        final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        return content.substring((int) offset).split("[\r\n]")[0];
+    }
+
+    public void testBuildAndSeek() throws Exception {
+        final File file = createFile("line_offset_index.txt", "header\nl0\r\nl1\n\nl2\rl3\r\n\r\nl4\nl5");
+        final LineOffsetIndex index = LineOffsetIndex.build(file, 7, 2);
+        assertTrue(index.isUpToDate(file));
+        assertEquals(6, index.getLineCount());
+
+        assertEquals(0, index.getCheckpointLine(1));
+        assertEquals("l0", readLine(file, index.getCheckpointOffset(1)));
+        assertEquals(2, index.getCheckpointLine(3));
+        assertEquals("l2", readLine(file, index.getCheckpointOffset(3)));
+        assertEquals(4, index.getCheckpointLine(5));
+        assertEquals("l4", readLine(file, index.getCheckpointOffset(5)));
+        assertEquals(4, index.getCheckpointLine(100));
+    }
+
+    public void testEmptyFile() throws Exception {
+        final File file = createFile("line_offset_index_empty.txt", "\n\n");
+        final LineOffsetIndex index = LineOffsetIndex.build(file, 0, 10);
+        assertEquals(0, index.getLineCount());
+        assertEquals(0, index.getCheckpointLine(5));
+        assertEquals(0, index.getCheckpointOffset(5));
+    }
+
+    public void testEmptyLines() throws Exception {
+        final File file = createFile("line_offset_index_empty_lines.txt", "l0\r\nl1\r");
+        final LineOffsetIndex index = LineOffsetIndex.build(file, 0, 2);
+        assertEquals(2, index.getLineCountBeforeEmptyLine());
+
+        // the line feed completes the line break of the carriage return
+        Files.write(file.toPath(), "\nl2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        file.setLastModified(file.lastModified() + 2000);
+        final LineOffsetIndex updatedIndex = index.update(file);
+        assertEquals(3, updatedIndex.getLineCount());
+        assertEquals(3, updatedIndex.getLineCountBeforeEmptyLine());
+
+        Files.write(file.toPath(), "\nl3\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        file.setLastModified(file.lastModified() + 2000);
+        final LineOffsetIndex updatedIndex2 = updatedIndex.update(file);
+        assertEquals(4, updatedIndex2.getLineCount());
+        assertEquals(3, updatedIndex2.getLineCountBeforeEmptyLine());
+    }
+
+    public void testFindLineOffsetAndIsSupported() throws Exception {
+        final File file = createFile("line_offset_index_find.txt", "h0\r\n\rh2\nl0\nl1");
+        assertEquals(0, LineOffsetIndex.findLineOffset(file, 0, 0));
+        assertEquals(4, LineOffsetIndex.findLineOffset(file, 0, 1));
+        assertEquals(5, LineOffsetIndex.findLineOffset(file, 0, 2));
+        assertEquals(8, LineOffsetIndex.findLineOffset(file, 0, 3));
+        assertEquals(11, LineOffsetIndex.findLineOffset(file, 8, 1));
+        assertEquals(-1, LineOffsetIndex.findLineOffset(file, 0, 5));
+
+        assertTrue(LineOffsetIndex.isSupported(StandardCharsets.UTF_8));
+        assertTrue(LineOffsetIndex.isSupported(StandardCharsets.ISO_8859_1));
+        assertFalse(LineOffsetIndex.isSupported(StandardCharsets.UTF_16));
+    }
+
+    public void testIncrementalUpdate() throws Exception {
+        final File file = createFile("line_offset_index_append.txt", "l0\nl1\nl2 is not compl");
+        final LineOffsetIndex index = LineOffsetIndex.build(file, 0, 2);
+        assertEquals(3, index.getLineCount());
+
+        Files.write(file.toPath(), "ete\r".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.write(file.toPath(), "\nl3\nl4\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        file.setLastModified(file.lastModified() + 2000);
+        assertFalse(index.isUpToDate(file));
+        final LineOffsetIndex updatedIndex = index.update(file);
+        assertTrue(updatedIndex.isUpToDate(file));
+        assertEquals(5, updatedIndex.getLineCount());
+        assertEquals("l2 is not complete", readLine(file, updatedIndex.getCheckpointOffset(2)));
+        assertEquals("l4", readLine(file, updatedIndex.getCheckpointOffset(4)));
+        assertSame(updatedIndex, updatedIndex.update(file));
+
+        // the original index is left as it was
+        assertFalse(index.isUpToDate(file));
+        assertEquals(3, index.getLineCount());
+        assertEquals(0, index.getCheckpointLine(4));
+
+        // changed contents before the appended lines
+        Files.write(file.toPath(), "l0\nl1\nL2 is not complete\r\nl3\nl4\nl5\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(file.lastModified() + 2000);
+        assertNull(updatedIndex.update(file));
+
+        Files.write(file.toPath(), "l0\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(updatedIndex.update(file));
+    }
+
+    public void testReadAndWrite() throws Exception {
+        final File file = createFile("line_offset_index_rw.txt", "l0\nl1\nl2\n");
+        final FileResource resource = new FileResource("target/line_offset_index_rw.txt.idx");
+        resource.getFile().delete();
+        assertNull(LineOffsetIndex.read(resource));
+        resource.write(out -> {
+        });
+        assertNull(LineOffsetIndex.read(resource));
+
+        LineOffsetIndex.build(file, 0, 2).write(resource);
+        final LineOffsetIndex index = LineOffsetIndex.read(resource);
+        assertTrue(index.isUpToDate(file));
+        assertEquals(3, index.getLineCount());
+        assertEquals("l2", readLine(file, index.getCheckpointOffset(2)));
+
+        Files.write(file.toPath(), "l3\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(4, index.update(file).getLineCount());
+    }
+
+    public void testLoad() throws Exception {
+        final File file = createFile("line_offset_index_load.txt", "header\nl0\nl1\n");
+        final InMemoryResource resource = new InMemoryResource("line_offset_index_load.txt.idx");
+
+        // built and written to the resource
+        final LineOffsetIndex index = LineOffsetIndex.load(file, 7, resource, null);
+        assertEquals(2, index.getLineCount());
+        assertTrue(resource.getSize() > 0);
+        assertEquals(2, LineOffsetIndex.read(resource).getLineCount());
+        assertSame(index, LineOffsetIndex.load(file, 7, resource, index));
+
+        // appended lines are indexed incrementally
+        Files.write(file.toPath(), "l2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        file.setLastModified(file.lastModified() + 2000);
+        final LineOffsetIndex updatedIndex = LineOffsetIndex.load(file, 7, resource, null);
+        assertEquals(3, updatedIndex.getLineCount());
+        assertEquals("l0", readLine(file, updatedIndex.getCheckpointOffset(0)));
+        assertEquals(3, LineOffsetIndex.read(resource).getLineCount());
+
+        // another data offset, or a resource without an index
+        assertEquals(4, LineOffsetIndex.load(file, 0, resource, updatedIndex).getLineCount());
+        resource.write(out -> out.write(new byte[] { 1, 2, 3 }));
+        assertEquals(3, LineOffsetIndex.load(file, 7, resource, null).getLineCount());
+        assertEquals(3, LineOffsetIndex.read(resource).getLineCount());
+    }
+}
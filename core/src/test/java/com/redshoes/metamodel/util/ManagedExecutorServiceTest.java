@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ManagedExecutorServiceTest extends TestCase {
+
+    public void testBoundedMetricsAndRejection() throws Exception {
+        final ManagedExecutorService executor = ManagedExecutorService.bounded("test", 1, 1);
+        assertEquals(ManagedExecutorService.Mode.BOUNDED, executor.getMode());
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.submit(() -> {
+        });
+
+        assertEquals(1, executor.getActiveTaskCount());
+        assertEquals(1, executor.getQueuedTaskCount());
+
+        try {
+            executor.submit(() -> {
+            });
+            fail("Exception expected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(1, executor.getRejectedTaskCount());
+        assertEquals(1, executor.getQueuedTaskCount());
+
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, executor.getActiveTaskCount());
+        assertEquals(0, executor.getQueuedTaskCount());
+        assertEquals(2, executor.getCompletedTaskCount());
+    }
+
+    public void testVirtualOrFallback() throws Exception {
+        final ManagedExecutorService executor = ManagedExecutorService.virtual("test");
+        final String threadName = executor.submit(() -> Thread.currentThread().getName()).get();
+        assertTrue(threadName, threadName.startsWith("MetaModel.test.Thread."));
+        executor.shutdown();
+    }
+
+    public void testSharedExecutorsByName() throws Exception {
+        final ManagedExecutorService executor = SharedExecutorService.get("foo");
+        assertSame(executor, SharedExecutorService.get("foo"));
+        assertEquals(ManagedExecutorService.Mode.BOUNDED, executor.getMode());
+        assertTrue(SharedExecutorService.getExecutors().contains(executor));
+
+        final ManagedExecutorService replacement = ManagedExecutorService.bounded("foo", 2, 0);
+        SharedExecutorService.setExecutor(replacement);
+        assertSame(replacement, SharedExecutorService.get("foo"));
+        assertTrue(executor.isShutdown());
+    }
+
+    public void testBlockingExecutorsAreNotBounded() throws Exception {
+        final ManagedExecutorService lazyLoadExecutor =
+                SharedExecutorService.createExecutor(SharedExecutorService.EXECUTOR_LAZY_LOAD);
+        assertFalse(lazyLoadExecutor.getMode() == ManagedExecutorService.Mode.BOUNDED);
+        lazyLoadExecutor.shutdown();
+
+        // row publishers and partition readers block until their rows are
+        // consumed, so a bounded pool could run out of threads for the ones
+        // that are read
+        final String property = SharedExecutorService.SYSTEM_PROPERTY_PREFIX + "mode";
+        System.setProperty(property, "bounded");
+        try {
+            final ManagedExecutorService rowPublisherExecutor =
+                    SharedExecutorService.createExecutor(SharedExecutorService.EXECUTOR_ROW_PUBLISHER);
+            assertFalse(rowPublisherExecutor.getMode() == ManagedExecutorService.Mode.BOUNDED);
+            rowPublisherExecutor.shutdown();
+
+            final ManagedExecutorService queryExecutor =
+                    SharedExecutorService.createExecutor(SharedExecutorService.EXECUTOR_QUERY);
+            assertFalse(queryExecutor.getMode() == ManagedExecutorService.Mode.BOUNDED);
+            queryExecutor.shutdown();
+
+            final ManagedExecutorService scanExecutor =
+                    SharedExecutorService.createExecutor(SharedExecutorService.EXECUTOR_SCAN);
+            assertEquals(ManagedExecutorService.Mode.BOUNDED, scanExecutor.getMode());
+            scanExecutor.shutdown();
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+}
@@ -178,6 +178,7 @@ public class CouchDbDataContext extends QueryPostprocessDataContext implements U
             script.run(callback);
         } finally {
             callback.close();
+            clearParsedQueryCache();
         }
         return callback.getUpdateSummary();
     }
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import com.redshoes.metamodel.util.FileResource;
+import com.redshoes.metamodel.util.Resource;
+
+/**
+ * Appends rows to a CSV file through a large direct buffer. Lines are built in
+ * a reused string builder and encoded straight into the buffer, so appending a
+ * row does not allocate a line string, a writer or an encoded byte array. The
+ * buffer is written to the file according to a {@link CsvFlushPolicy}.
+ * 
+ * Instances are not thread-safe.
+ */
+final class CsvAppender implements Closeable {
+
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    private final CsvWriter _csvWriter;
+    private final CsvFlushPolicy _flushPolicy;
+    private final WritableByteChannel _channel;
+    private final FileChannel _fileChannel;
+    private final CharsetEncoder _encoder;
+    private final ByteBuffer _buffer;
+    private final StringBuilder _line;
+    private final long _timeIntervalNanos;
+    private char[] _chars;
+    private CharBuffer _charBuffer;
+    private int _unflushedRows;
+    private long _lastFlush;
+
+    public CsvAppender(Resource resource, CsvConfiguration configuration, int bufferSize,
+            CsvFlushPolicy flushPolicy, boolean needsLineBreak) throws IOException {
+        _csvWriter = new CsvWriter(configuration);
+        _flushPolicy = flushPolicy;
+        _timeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushPolicy.getTimeIntervalMillis());
+        if (resource instanceof FileResource) {
+            _fileChannel = FileChannel.open(((FileResource) resource).getFile().toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            _channel = _fileChannel;
+        } else {
+            _fileChannel = null;
+            _channel = Channels.newChannel(resource.append());
+        }
+
+        // replace unmappable characters, like an OutputStreamWriter does
+        _encoder = Charset.forName(configuration.getEncoding()).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_BUFFER_SIZE));
+        _line = new StringBuilder(CsvWriter.INITIAL_STRING_SIZE);
+        _chars = new char[CsvWriter.INITIAL_STRING_SIZE];
+        _charBuffer = CharBuffer.wrap(_chars);
+        _lastFlush = System.nanoTime();
+
+        if (needsLineBreak) {
+            _line.append('\n');
+            encodeLine();
+        }
+    }
+
+    public void append(String[] values) throws IOException {
+        _line.setLength(0);
+        _csvWriter.appendLine(_line, values);
+        encodeLine();
+
+        _unflushedRows++;
+        if (isFlushNeeded()) {
+            flush();
+        }
+    }
+
+    private boolean isFlushNeeded() {
+        final int rowInterval = _flushPolicy.getRowInterval();
+        if (rowInterval > 0 && _unflushedRows >= rowInterval) {
+            return true;
+        }
+        return _timeIntervalNanos > 0 && System.nanoTime() - _lastFlush >= _timeIntervalNanos;
+    }
+
+    private void encodeLine() throws IOException {
+        final int length = _line.length();
+        if (length > _chars.length) {
+            _chars = new char[Math.max(length, _chars.length * 2)];
+            _charBuffer = CharBuffer.wrap(_chars);
+        }
+        _line.getChars(0, length, _chars, 0);
+        _charBuffer.clear();
+        _charBuffer.limit(length);
+        encode(_charBuffer, false);
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while (true) {
+            final CoderResult result = _encoder.encode(chars, _buffer, endOfInput);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+        _buffer.clear();
+    }
+
+    /**
+     * Writes the buffered rows to the file, and syncs the file if the flush
+     * policy says so.
+     * 
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        writeBuffer();
+        if (_flushPolicy.isSync() && _fileChannel != null) {
+            _fileChannel.force(false);
+        }
+        _unflushedRows = 0;
+        _lastFlush = System.nanoTime();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(CharBuffer.allocate(0), true);
+            while (_encoder.flush(_buffer).isOverflow()) {
+                writeBuffer();
+            }
+            flush();
+        } finally {
+            _channel.close();
+        }
+    }
+}
@@ -22,16 +22,20 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.redshoes.metamodel.data.DataSet;
 import com.redshoes.metamodel.data.EmptyDataSet;
+import com.redshoes.metamodel.data.FirstRowDataSet;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.schema.Column;
 import com.redshoes.metamodel.schema.Table;
@@ -42,6 +46,7 @@ import com.redshoes.metamodel.UpdateSummary;
 import com.redshoes.metamodel.UpdateableDataContext;
 import com.redshoes.metamodel.util.FileHelper;
 import com.redshoes.metamodel.util.FileResource;
+import com.redshoes.metamodel.util.LineOffsetIndex;
 import com.redshoes.metamodel.util.Resource;
 import com.redshoes.metamodel.util.ResourceUtils;
 import com.redshoes.metamodel.util.UrlResource;
@@ -58,11 +63,22 @@ public final class CsvDataContext extends QueryPostprocessDataContext implements
 
     private static final Logger logger = LoggerFactory.getLogger(CsvDataContext.class);
 
+    // the minimum number of bytes per partition, see
+    // materializeMainSchemaTablePartitions(...)
+    private static final long MIN_PARTITION_SIZE = 64 * 1024;
+
     private final Object WRITE_LOCK = new Object();
+    private final Object INDEX_LOCK = new Object();
 
     private final Resource _resource;
     private final CsvConfiguration _configuration;
     private final boolean _writable;
+    private volatile int _parallelScanThreads = 1;
+    private volatile boolean _memoryMappedScan = false;
+    private volatile Resource _lineOffsetIndexResource;
+    private volatile int _bulkAppendBufferSize = 0;
+    private volatile CsvFlushPolicy _bulkAppendFlushPolicy = CsvFlushPolicy.ON_CLOSE;
+    private LineOffsetIndex _lineOffsetIndex;
 
     /**
      * Constructs a CSV DataContext based on a file
@@ -132,6 +148,129 @@ public final class CsvDataContext extends QueryPostprocessDataContext implements
         _resource = new FileResource(file);
     }
 
+    /**
+     * Sets the number of threads to scan the CSV file with. When more than one
+     * thread is used, multiline values are disabled and the resource is a
+     * {@link FileResource}, full table scans split the file into chunks that
+     * are parsed by the shared executor named
+     * {@link com.redshoes.metamodel.util.SharedExecutorService#EXECUTOR_SCAN}.
+     * Rows are still returned in the order of the file. Scans with a max rows
+     * limit are always done on a single thread.
+     * 
+     * See {@link #setParallelism(int)} for also filtering and aggregating the
+     * rows of such chunks concurrently.
+     * 
+     * @param parallelScanThreads
+     *            the number of threads, 1 (the default) to disable parallel
+     *            scans
+     */
+    public void setParallelScanThreads(int parallelScanThreads) {
+        if (parallelScanThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be a positive number: "
+                    + parallelScanThreads);
+        }
+        _parallelScanThreads = parallelScanThreads;
+    }
+
+    public int getParallelScanThreads() {
+        return _parallelScanThreads;
+    }
+
+    /**
+     * Sets whether to scan the CSV file through memory mapped segments. When
+     * enabled, multiline values are disabled, the resource is a
+     * {@link FileResource} and the separator, quote and escape characters are
+     * ASCII characters, lines are split directly on the bytes of the file and
+     * only the values of the queried columns are decoded. This saves a lot of
+     * work and garbage when scanning a few columns of a wide file.
+     * 
+     * Note that a mapped segment of the file is only released once it is
+     * garbage collected, which on some platforms prevents the file from being
+     * modified or deleted until then.
+     * 
+     * @param memoryMappedScan
+     */
+    public void setMemoryMappedScan(boolean memoryMappedScan) {
+        _memoryMappedScan = memoryMappedScan;
+    }
+
+    public boolean isMemoryMappedScan() {
+        return _memoryMappedScan;
+    }
+
+    /**
+     * Sets a resource to keep a {@link LineOffsetIndex} of the CSV file in,
+     * typically a sidecar file next to it. With an index, queries with a first
+     * row seek close to that row instead of reading all the rows before it,
+     * and COUNT(*) queries without a WHERE clause are answered exactly without
+     * scanning the file.
+     * 
+     * The index is built on first use and refreshed when the size or last
+     * modification time of the file changes. When lines have only been
+     * appended to the file by others, only those lines are indexed. Updates
+     * done through this DataContext discard the index, so that it is built
+     * again on next use. An index is only
+     * used when multiline values are disabled, the resource is a
+     * {@link FileResource} and the encoding is UTF-8 or a single byte
+     * encoding.
+     * 
+     * @param lineOffsetIndexResource
+     *            the resource of the index, or null (the default) to not use
+     *            an index
+     */
+    public void setLineOffsetIndexResource(Resource lineOffsetIndexResource) {
+        synchronized (INDEX_LOCK) {
+            _lineOffsetIndexResource = lineOffsetIndexResource;
+            _lineOffsetIndex = null;
+        }
+    }
+
+    public Resource getLineOffsetIndexResource() {
+        return _lineOffsetIndexResource;
+    }
+
+    /**
+     * Sets the size of the buffer to append inserted rows in bulk with. When
+     * set, inserted rows are encoded directly into a buffer of this size, which
+     * is only written to the CSV file when it is full, when the update is done
+     * or when the {@link #setBulkAppendFlushPolicy(CsvFlushPolicy)} says so.
+     * Rows inserted in bulk only become visible to queries once the update is
+     * done. A buffer of a few megabytes is typically a good fit for large
+     * imports.
+     * 
+     * @param bulkAppendBufferSize
+     *            the buffer size in bytes, or 0 (the default) to write inserted
+     *            rows through a regular writer
+     */
+    public void setBulkAppendBufferSize(int bulkAppendBufferSize) {
+        if (bulkAppendBufferSize < 0) {
+            throw new IllegalArgumentException("Buffer size cannot be negative: " + bulkAppendBufferSize);
+        }
+        _bulkAppendBufferSize = bulkAppendBufferSize;
+    }
+
+    public int getBulkAppendBufferSize() {
+        return _bulkAppendBufferSize;
+    }
+
+    /**
+     * Sets the policy for writing (and syncing) rows appended in bulk to the
+     * CSV file. Only used when a bulk append buffer size is set.
+     * 
+     * @param bulkAppendFlushPolicy
+     *            the flush policy, {@link CsvFlushPolicy#ON_CLOSE} by default
+     */
+    public void setBulkAppendFlushPolicy(CsvFlushPolicy bulkAppendFlushPolicy) {
+        if (bulkAppendFlushPolicy == null) {
+            throw new IllegalArgumentException("Flush policy cannot be null");
+        }
+        _bulkAppendFlushPolicy = bulkAppendFlushPolicy;
+    }
+
+    public CsvFlushPolicy getBulkAppendFlushPolicy() {
+        return _bulkAppendFlushPolicy;
+    }
+
     /**
      * Gets the CSV configuration used
      * 
@@ -193,6 +332,13 @@ public final class CsvDataContext extends QueryPostprocessDataContext implements
 
     @Override
     protected Number executeCountQuery(Table table, List<FilterItem> whereItems, boolean functionApproximationAllowed) {
+        if (whereItems == null || whereItems.isEmpty()) {
+            final LineOffsetIndex index = getLineOffsetIndex();
+            if (index != null) {
+                return index.getLineCount();
+            }
+        }
+
         if (!functionApproximationAllowed) {
             return null;
         }
@@ -267,11 +413,111 @@ public final class CsvDataContext extends QueryPostprocessDataContext implements
         }
     }
 
+    @Override
+    protected DataSet materializeMainSchemaTable(Table table, List<Column> columns, int firstRow, int maxRows) {
+        if (firstRow > 1) {
+            final LineOffsetIndex index = getLineOffsetIndex();
+            if (index != null) {
+                return materializeMainSchemaTable(index, columns, table.getColumnCount(), firstRow - 1, maxRows);
+            }
+        }
+        return super.materializeMainSchemaTable(table, columns, firstRow, maxRows);
+    }
+
+    private DataSet materializeMainSchemaTable(LineOffsetIndex index, List<Column> columns, int columnCount,
+            long line, int maxRows) {
+        if (line >= index.getLineCount()) {
+            return EmptyDataSet.fromColumns(columns);
+        }
+
+        // seek to the closest indexed line and skip the lines after it
+        final long offset = index.getCheckpointOffset(line);
+        final int linesToSkip = (int) (line - index.getCheckpointLine(line));
+        final Integer maxRowsOrNull = (maxRows > 0 ? (int) Math.min(Integer.MAX_VALUE, (long) maxRows
+                + linesToSkip) : null);
+
+        final File file = ((FileResource) _resource).getFile();
+        final Charset charset = Charset.forName(_configuration.getEncoding());
+        DataSet dataSet;
+        if (_memoryMappedScan && MappedCsvDataSet.isSupported(_configuration)) {
+            dataSet = new MappedCsvDataSet(file, charset, offset, columns, maxRowsOrNull, columnCount,
+                    _configuration);
+        } else {
+            FileInputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(file);
+                inputStream.getChannel().position(offset);
+            } catch (IOException e) {
+                FileHelper.safeClose(inputStream);
+                throw new MetaModelException("IOException occurred while reading from CSV resource: " + _resource,
+                        e);
+            }
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, charset));
+            dataSet = new SingleLineCsvDataSet(reader, columns, maxRowsOrNull, columnCount, _configuration);
+        }
+        if (linesToSkip > 0) {
+            dataSet = new FirstRowDataSet(dataSet, linesToSkip + 1);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Gets the line offset index of the CSV file, building or refreshing it if
+     * necessary.
+     * 
+     * @return the index, or null if no index should be used
+     */
+    private LineOffsetIndex getLineOffsetIndex() {
+        final Resource indexResource = _lineOffsetIndexResource;
+        if (indexResource == null || _configuration.isMultilineValues() || !(_resource instanceof FileResource)) {
+            return null;
+        }
+        final Charset charset;
+        try {
+            charset = Charset.forName(_configuration.getEncoding());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final File file = ((FileResource) _resource).getFile();
+        if (!ParallelSingleLineCsvDataSet.isSupported(charset) || !file.exists()) {
+            return null;
+        }
+
+        synchronized (INDEX_LOCK) {
+            try {
+                final long dataOffset = ParallelSingleLineCsvDataSet.getDataOffset(file, charset,
+                        _configuration.getColumnNameLineNumber());
+                if (dataOffset == -1) {
+                    return null;
+                }
+
+                final LineOffsetIndex index = LineOffsetIndex.load(file, dataOffset, indexResource,
+                        _lineOffsetIndex);
+                _lineOffsetIndex = index;
+                return index;
+            } catch (IOException e) {
+                throw new MetaModelException("IOException occurred while indexing CSV resource: " + _resource, e);
+            }
+        }
+    }
+
     @Override
     public DataSet materializeMainSchemaTable(Table table, List<Column> columns, int maxRows) {
         final int lineNumber = _configuration.getColumnNameLineNumber();
         final int columnCount = table.getColumnCount();
 
+        if (maxRows <= 0) {
+            final DataSet dataSet = createParallelDataSet(columns, lineNumber, columnCount);
+            if (dataSet != null) {
+                return dataSet;
+            }
+        }
+
+        final DataSet mappedDataSet = createMappedDataSet(columns, maxRows, lineNumber, columnCount);
+        if (mappedDataSet != null) {
+            return mappedDataSet;
+        }
+
         final BufferedReader reader = FileHelper.getBufferedReader(_resource.read(), _configuration.getEncoding());
 
         try {
@@ -300,6 +546,113 @@ public final class CsvDataContext extends QueryPostprocessDataContext implements
         return new SingleLineCsvDataSet(reader, columns, maxRowsOrNull, columnCount, _configuration);
     }
 
+    private DataSet createParallelDataSet(List<Column> columns, int lineNumber, int columnCount) {
+        final int threads = _parallelScanThreads;
+        if (threads < 2) {
+            return null;
+        }
+
+        final long dataOffset = getSplittableDataOffset(lineNumber);
+        final File file = ((FileResource) _resource).getFile();
+        if (dataOffset == -1 || file.length() - dataOffset <= ParallelSingleLineCsvDataSet.DEFAULT_CHUNK_SIZE) {
+            // nothing to gain from splitting the file
+            return null;
+        }
+
+        final Charset charset = Charset.forName(_configuration.getEncoding());
+        return new ParallelSingleLineCsvDataSet(file, charset, dataOffset, -1, columns, columnCount,
+                _configuration, threads, ParallelSingleLineCsvDataSet.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Splits the CSV file into byte ranges that are aligned to line
+     * boundaries, and reads each range with a
+     * {@link ParallelSingleLineCsvDataSet}. The same restrictions as for
+     * {@link #setParallelScanThreads(int)} apply.
+     */
+    @Override
+    protected List<DataSet> materializeMainSchemaTablePartitions(Table table, List<Column> columns,
+            int maxPartitions) {
+        final long dataOffset = getSplittableDataOffset(_configuration.getColumnNameLineNumber());
+        if (dataOffset == -1) {
+            return null;
+        }
+
+        final File file = ((FileResource) _resource).getFile();
+        final long[] offsets;
+        try {
+            offsets = ParallelSingleLineCsvDataSet.split(file, dataOffset, maxPartitions, MIN_PARTITION_SIZE);
+        } catch (IOException e) {
+            throw new MetaModelException("IOException occurred while reading from CSV resource: " + _resource, e);
+        }
+        if (offsets.length < 3) {
+            return null;
+        }
+
+        final Charset charset = Charset.forName(_configuration.getEncoding());
+        final List<DataSet> partitions = new ArrayList<>(offsets.length - 1);
+        for (int i = 0; i < offsets.length - 1; i++) {
+            // parse the next chunk while the rows of a chunk are handled
+            partitions.add(new ParallelSingleLineCsvDataSet(file, charset, offsets[i], offsets[i + 1], columns,
+                    table.getColumnCount(), _configuration, 2, ParallelSingleLineCsvDataSet.DEFAULT_CHUNK_SIZE));
+        }
+        return partitions;
+    }
+
+    /**
+     * Gets the byte offset of the first line with data, if the CSV file can
+     * be split into chunks by looking for line break bytes.
+     * 
+     * @param lineNumber
+     *            the number of header lines
+     * @return the byte offset, or -1 if the file cannot be split
+     */
+    private long getSplittableDataOffset(int lineNumber) {
+        if (_configuration.isMultilineValues() || !(_resource instanceof FileResource)) {
+            return -1;
+        }
+
+        final Charset charset;
+        try {
+            charset = Charset.forName(_configuration.getEncoding());
+        } catch (IllegalArgumentException e) {
+            // let the single threaded scan report the encoding problem
+            return -1;
+        }
+        if (!ParallelSingleLineCsvDataSet.isSupported(charset)) {
+            return -1;
+        }
+
+        final File file = ((FileResource) _resource).getFile();
+        try {
+            return ParallelSingleLineCsvDataSet.getDataOffset(file, charset, lineNumber);
+        } catch (IOException e) {
+            throw new MetaModelException("IOException occurred while reading from CSV resource: " + _resource, e);
+        }
+    }
+
+    private DataSet createMappedDataSet(List<Column> columns, int maxRows, int lineNumber, int columnCount) {
+        if (!_memoryMappedScan || !(_resource instanceof FileResource)
+                || !MappedCsvDataSet.isSupported(_configuration)) {
+            return null;
+        }
+
+        final File file = ((FileResource) _resource).getFile();
+        final Charset charset = Charset.forName(_configuration.getEncoding());
+        final long dataOffset;
+        try {
+            dataOffset = ParallelSingleLineCsvDataSet.getDataOffset(file, charset, lineNumber);
+        } catch (IOException e) {
+            throw new MetaModelException("IOException occurred while reading from CSV resource: " + _resource, e);
+        }
+        if (dataOffset == -1) {
+            return null;
+        }
+
+        final Integer maxRowsOrNull = (maxRows > 0 ? maxRows : null);
+        return new MappedCsvDataSet(file, charset, dataOffset, columns, maxRowsOrNull, columnCount, _configuration);
+    }
+
     private ICSVParser createParser() {
         return new CsvParserBuilder(_configuration).build();
     }
@@ -345,11 +698,55 @@ public final class CsvDataContext extends QueryPostprocessDataContext implements
         final CsvUpdateCallback callback = new CsvUpdateCallback(this);
         synchronized (WRITE_LOCK) {
             try {
+                callback.start();
                 update.run(callback);
             } finally {
                 callback.close();
+                clearParsedQueryCache();
+                if (!callback.isAppendOnly()) {
+                    invalidateLineOffsetIndex();
+                }
             }
         }
         return callback.getUpdateSummary();
     }
+
+    /**
+     * Discards the line offset index after an update that did more than
+     * appending rows. The size and last modification time of the file are not
+     * enough to tell that it changed, since an update may keep the size and
+     * happen within the resolution of the modification time. Appended rows are
+     * indexed incrementally instead, see {@link LineOffsetIndex#update(File)}.
+     */
+    private void invalidateLineOffsetIndex() {
+        synchronized (INDEX_LOCK) {
+            _lineOffsetIndex = null;
+            final Resource indexResource = _lineOffsetIndexResource;
+            if (indexResource != null && indexResource.isExists()) {
+                try {
+                    // an empty index resource is rebuilt on next use
+                    indexResource.write(out -> {
+                    });
+                } catch (RuntimeException e) {
+                    logger.warn("Could not invalidate line offset index in {}: {}", indexResource, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of rows to a table. This is a shortcut for inserting the
+     * rows one by one in an {@link UpdateScript}, without building an insert
+     * per row. Combine it with {@link #setBulkAppendBufferSize(int)} for large
+     * imports.
+     * 
+     * @param table
+     *            the table to append to
+     * @param rows
+     *            the values of the rows, in the order of the table's columns
+     * @return a summary of the update
+     */
+    public UpdateSummary appendRows(Table table, Iterable<Object[]> rows) {
+        return executeUpdate(callback -> ((CsvUpdateCallback) callback).insertRows(table, rows));
+    }
 }
\ No newline at end of file
@@ -47,6 +47,26 @@ final class CsvDeleteBuilder extends AbstractRowDeletionBuilder {
 
     @Override
     public void execute() throws MetaModelException {
+        if (CsvRewriter.isSupported(_updateCallback.getConfiguration())) {
+            final CsvRewriter rewriter = new CsvRewriter(_updateCallback, getTable());
+            if (isTruncateTableOperation()) {
+                rewriter.truncate();
+                _updateCallback.getUpdateSummaryBuilder().makeDeletesUnknown();
+            } else {
+                final int deletes = rewriter.rewrite(this::deleteRow, row -> null);
+                _updateCallback.getUpdateSummaryBuilder().addDeletes(deletes);
+            }
+        } else {
+            executeWithCopy();
+            _updateCallback.getUpdateSummaryBuilder().makeDeletesUnknown();
+        }
+    }
+
+    /**
+     * Deletes rows by inserting the rows to keep into a copy of the CSV file,
+     * for encodings that {@link CsvRewriter} does not support.
+     */
+    private void executeWithCopy() {
         final File tempFile = FileHelper.createTempFile("metamodel_deletion", "csv");
 
         final CsvConfiguration configuration = _updateCallback.getConfiguration();
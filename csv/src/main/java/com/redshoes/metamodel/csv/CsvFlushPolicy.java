@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.Serializable;
+
+/**
+ * Determines how often rows appended in bulk (see
+ * {@link CsvDataContext#setBulkAppendBufferSize(int)}) are written from the
+ * append buffer to the CSV file, and whether they are then also synced to the
+ * storage device.
+ * 
+ * The buffer is always written when it is full and when the update is done.
+ * On top of that it is written every N rows and/or every T milliseconds.
+ */
+public final class CsvFlushPolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A policy that only writes the buffer when it is full and when the update
+     * is done, without syncing. This is the default.
+     */
+    public static final CsvFlushPolicy ON_CLOSE = new CsvFlushPolicy(0, 0, false);
+
+    private final int _rowInterval;
+    private final long _timeIntervalMillis;
+    private final boolean _sync;
+
+    /**
+     * Creates a flush policy
+     * 
+     * @param rowInterval
+     *            the number of rows to flush after, or 0 to not flush by
+     *            number of rows
+     * @param timeIntervalMillis
+     *            the number of milliseconds to flush after, or 0 to not flush
+     *            by time
+     * @param sync
+     *            whether to sync the file to the storage device (fsync) after
+     *            every flush and when the update is done
+     */
+    public CsvFlushPolicy(int rowInterval, long timeIntervalMillis, boolean sync) {
+        if (rowInterval < 0) {
+            throw new IllegalArgumentException("Row interval cannot be negative: " + rowInterval);
+        }
+        if (timeIntervalMillis < 0) {
+            throw new IllegalArgumentException("Time interval cannot be negative: " + timeIntervalMillis);
+        }
+        _rowInterval = rowInterval;
+        _timeIntervalMillis = timeIntervalMillis;
+        _sync = sync;
+    }
+
+    public int getRowInterval() {
+        return _rowInterval;
+    }
+
+    public long getTimeIntervalMillis() {
+        return _timeIntervalMillis;
+    }
+
+    public boolean isSync() {
+        return _sync;
+    }
+
+    @Override
+    public String toString() {
+        return "CsvFlushPolicy[rowInterval=" + _rowInterval + ", timeIntervalMillis=" + _timeIntervalMillis
+                + ", sync=" + _sync + "]";
+    }
+}
@@ -34,7 +34,7 @@ final class CsvInsertBuilder extends AbstractRowInsertionBuilder<CsvUpdateCallba
 		for (int i = 0; i < stringValues.length; i++) {
 			stringValues[i] = values[i] == null ? "" : values[i].toString();
 		}
-		getUpdateCallback().writeRow(stringValues, true);
+		getUpdateCallback().insertRow(stringValues);
 	}
 
 }
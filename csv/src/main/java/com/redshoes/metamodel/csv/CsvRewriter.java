@@ -0,0 +1,421 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.data.CachingDataSetHeader;
+import com.redshoes.metamodel.data.DataSetHeader;
+import com.redshoes.metamodel.data.DefaultRow;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.Table;
+import com.redshoes.metamodel.util.FileHelper;
+import com.redshoes.metamodel.util.FileResource;
+import com.redshoes.metamodel.util.Resource;
+
+import com.opencsv.ICSVParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites a CSV file in a single pass, for DELETE and UPDATE operations. The
+ * lines of rows that are not affected are copied as they are, byte by byte,
+ * and only the rows that are updated are encoded again. The rewritten file is
+ * written next to the original and moved in its place with an atomic rename
+ * if the resource is a {@link FileResource}, or else copied to the resource.
+ * 
+ * Finding lines on the bytes of the file requires an encoding where the line
+ * breaks are single bytes that cannot be part of another character, see
+ * {@link #isSupported(CsvConfiguration)}.
+ */
+final class CsvRewriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvRewriter.class);
+
+    private final CsvUpdateCallback _updateCallback;
+    private final CsvConfiguration _configuration;
+    private final Charset _charset;
+    private final Column[] _columns;
+    private final DataSetHeader _header;
+
+    public CsvRewriter(CsvUpdateCallback updateCallback, Table table) {
+        _updateCallback = updateCallback;
+        _configuration = updateCallback.getConfiguration();
+        _charset = Charset.forName(_configuration.getEncoding());
+        final List<Column> columns = table.getColumns();
+        _columns = columns.toArray(new Column[columns.size()]);
+        _header = new CachingDataSetHeader(columns.stream().map(SelectItem::new).collect(Collectors.toList()));
+    }
+
+    /**
+     * Determines if files with a particular configuration can be rewritten.
+     * 
+     * @param configuration
+     * @return true if the encoding is UTF-8 or a single byte encoding
+     */
+    public static boolean isSupported(CsvConfiguration configuration) {
+        try {
+            return ParallelSingleLineCsvDataSet.isSupported(Charset.forName(configuration.getEncoding()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the CSV file.
+     * 
+     * @param predicate
+     *            determines the rows to rewrite
+     * @param rewrite
+     *            gives the new values of a row to rewrite, or null to delete
+     *            the row
+     * @return the number of rewritten (updated or deleted) rows
+     */
+    public int rewrite(Predicate<Row> predicate, Function<Row, String[]> rewrite) {
+        return rewriteFile((in, out) -> rewrite(in, out, predicate, rewrite));
+    }
+
+    /**
+     * Deletes all rows of the CSV file, keeping the header lines. Unlike
+     * deleting all rows with {@link #rewrite(Predicate, Function)}, the rows are
+     * not read, so this also works for files with inconsistent rows.
+     */
+    public void truncate() {
+        rewriteFile((in, out) -> {
+            final LineReader reader = new LineReader(in);
+            for (int i = 0; i < _configuration.getColumnNameLineNumber() && reader.next(); i++) {
+                reader.writeTo(out);
+            }
+            // the file is always replaced, since the number of rows is unknown
+            return 1;
+        });
+    }
+
+    private interface Rewrite {
+        /**
+         * @return the number of rewritten rows
+         */
+        int run(InputStream in, OutputStream out) throws IOException;
+    }
+
+    private int rewriteFile(Rewrite rewrite) {
+        // make sure that pending inserts are written first
+        _updateCallback.close();
+
+        final Resource resource = _updateCallback.getResource();
+        if (!resource.isExists()) {
+            return 0;
+        }
+
+        final File file = resource instanceof FileResource ? ((FileResource) resource).getFile() : null;
+        final File tempFile = createTempFile(file);
+        try {
+            final int rewritten;
+            try (InputStream in = resource.read();
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                rewritten = rewrite.run(in, out);
+            }
+            if (rewritten > 0) {
+                replace(resource, file, tempFile);
+            }
+            return rewritten;
+        } catch (IOException e) {
+            throw new MetaModelException("IOException occurred while rewriting CSV resource: " + resource, e);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                logger.warn("Could not delete temporary file: {}", tempFile);
+            }
+        }
+    }
+
+    private File createTempFile(File file) {
+        if (file != null) {
+            // in the same directory, so that it can be renamed atomically
+            final File directory = file.getAbsoluteFile().getParentFile();
+            try {
+                return File.createTempFile("metamodel_" + file.getName(), ".tmp", directory);
+            } catch (IOException e) {
+                logger.debug("Could not create temporary file in {}, using the temp directory", directory, e);
+            }
+        }
+        return FileHelper.createTempFile("metamodel_rewrite", "csv");
+    }
+
+    private void replace(Resource resource, File file, File tempFile) throws IOException {
+        if (file != null && tempFile.getParentFile().equals(file.getAbsoluteFile().getParentFile())) {
+            try {
+                Files.setPosixFilePermissions(tempFile.toPath(), Files.getPosixFilePermissions(file.toPath()));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else {
+            resource.write(out -> Files.copy(tempFile.toPath(), out));
+        }
+    }
+
+    private int rewrite(InputStream in, OutputStream out, Predicate<Row> predicate, Function<Row, String[]> rewrite)
+            throws IOException {
+        final LineReader reader = new LineReader(in);
+
+        // header lines are copied as they are
+        final int headerLines = _configuration.getColumnNameLineNumber();
+        for (int i = 0; i < headerLines; i++) {
+            if (!reader.next()) {
+                return 0;
+            }
+            reader.writeTo(out);
+        }
+
+        final boolean multilineValues = _configuration.isMultilineValues();
+        final ICSVParser parser = new CsvParserBuilder(_configuration).build();
+        final CsvWriter csvWriter = new CsvWriter(_configuration);
+        // the lines and values of a (multiline) row that is being read
+        final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+        final List<String> rowValues = new ArrayList<>();
+
+        boolean firstLine = headerLines == 0;
+        int rowNumber = 0;
+        int rewritten = 0;
+        while (reader.next()) {
+            final String line = reader.decode(_charset, firstLine);
+            firstLine = false;
+
+            final String[] csvValues;
+            if (multilineValues) {
+                reader.writeTo(rowBytes);
+                try {
+                    // the parser only returns the values that end on this line
+                    rowValues.addAll(Arrays.asList(parser.parseLineMulti(line)));
+                } catch (IOException e) {
+                    throw new MetaModelException("Failed to parse CSV line no. " + (rowNumber + 1) + ": " + line, e);
+                }
+                if (parser.isPending()) {
+                    continue;
+                }
+                csvValues = rowValues.toArray(new String[rowValues.size()]);
+                rowValues.clear();
+                if (csvValues.length == 1 && "".equals(csvValues[0])) {
+                    // blank line - not a row
+                    rowBytes.writeTo(out);
+                    rowBytes.reset();
+                    continue;
+                }
+            } else {
+                if ("".equals(line)) {
+                    // blank line - not a row
+                    reader.writeTo(out);
+                    continue;
+                }
+                csvValues = parseLine(parser, line, rowNumber + 1);
+            }
+
+            rowNumber++;
+            if (_configuration.isFailOnInconsistentRowLength() && csvValues.length != _columns.length) {
+                throw new InconsistentRowLengthException(_columns.length, toRow(csvValues), csvValues, rowNumber);
+            }
+
+            final Row row = toRow(csvValues);
+            if (predicate.test(row)) {
+                rewritten++;
+                final String[] newValues = rewrite.apply(row);
+                if (newValues != null) {
+                    // keep the line break of the original line
+                    final String newLine = csvWriter.buildLine(newValues);
+                    out.write(newLine.substring(0, newLine.length() - 1).getBytes(_charset));
+                    reader.writeLineBreakTo(out);
+                }
+            } else if (multilineValues) {
+                rowBytes.writeTo(out);
+            } else {
+                reader.writeTo(out);
+            }
+            rowBytes.reset();
+        }
+
+        // an incomplete multiline value at the end of the file
+        rowBytes.writeTo(out);
+        return rewritten;
+    }
+
+    /**
+     * Parses a line with the same error handling as
+     * {@link SingleLineCsvDataSet}.
+     */
+    private String[] parseLine(ICSVParser parser, String line, int rowNumber) {
+        try {
+            return parser.parseLine(line);
+        } catch (IOException e) {
+            if (_configuration.isFailOnInconsistentRowLength()) {
+                throw new MetaModelException("Failed to parse CSV line no. " + rowNumber + ": " + line, e);
+            }
+            final String[] csvValues = new String[_columns.length];
+            csvValues[0] = line;
+            return csvValues;
+        }
+    }
+
+    private Row toRow(String[] csvValues) {
+        final Object[] values = new Object[_columns.length];
+        for (int i = 0; i < values.length; i++) {
+            final int columnNumber = _columns[i].getColumnNumber();
+            // Ticket #125: Missing values should be interpreted as null.
+            values[i] = columnNumber < csvValues.length ? csvValues[columnNumber] : null;
+        }
+        return new DefaultRow(_header, values);
+    }
+
+    /**
+     * Reads the lines of a stream as bytes, including their line breaks. Lines
+     * end with a line feed, a carriage return or both, like with
+     * {@link java.io.BufferedReader#readLine()}.
+     */
+    private static final class LineReader {
+
+        private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+        private final InputStream _in;
+        private final byte[] _buffer;
+        private int _bufferPosition;
+        private int _bufferLimit;
+
+        // the bytes of the current line, and the length without line break
+        private byte[] _line;
+        private int _length;
+        private int _contentLength;
+
+        public LineReader(InputStream in) {
+            _in = in;
+            _buffer = new byte[64 * 1024];
+            _line = new byte[1024];
+        }
+
+        /**
+         * Reads the next line.
+         * 
+         * @return false if there are no more lines
+         * @throws IOException
+         */
+        public boolean next() throws IOException {
+            _length = 0;
+            _contentLength = -1;
+            while (true) {
+                if (_bufferPosition == _bufferLimit) {
+                    _bufferLimit = _in.read(_buffer);
+                    _bufferPosition = 0;
+                    if (_bufferLimit <= 0) {
+                        _bufferLimit = 0;
+                        if (_length == 0) {
+                            return false;
+                        }
+                        if (_contentLength == -1) {
+                            _contentLength = _length;
+                        }
+                        return true;
+                    }
+                }
+
+                final byte b = _buffer[_bufferPosition++];
+                if (_contentLength != -1) {
+                    // after a carriage return, which may be followed by a
+                    // line feed
+                    if (b == '\n') {
+                        append(b);
+                    } else {
+                        _bufferPosition--;
+                    }
+                    return true;
+                }
+                if (b == '\n' || b == '\r') {
+                    _contentLength = _length;
+                    append(b);
+                    if (b == '\n') {
+                        return true;
+                    }
+                } else {
+                    append(b);
+                }
+            }
+        }
+
+        private void append(byte b) {
+            if (_length == _line.length) {
+                _line = Arrays.copyOf(_line, _length * 2);
+            }
+            _line[_length++] = b;
+        }
+
+        /**
+         * Decodes the current line, without line break.
+         * 
+         * @param charset
+         * @param skipBom
+         *            whether to skip a UTF-8 byte order mark, like
+         *            {@link FileHelper} does
+         * @return
+         */
+        public String decode(Charset charset, boolean skipBom) {
+            int start = 0;
+            if (skipBom && StandardCharsets.UTF_8.equals(charset) && _contentLength >= UTF8_BOM.length
+                    && _line[0] == UTF8_BOM[0] && _line[1] == UTF8_BOM[1] && _line[2] == UTF8_BOM[2]) {
+                start = UTF8_BOM.length;
+            }
+            return new String(_line, start, _contentLength - start, charset);
+        }
+
+        /**
+         * Writes the bytes of the current line, including its line break.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(_line, 0, _length);
+        }
+
+        /**
+         * Writes the line break of the current line, if any.
+         */
+        public void writeLineBreakTo(OutputStream out) throws IOException {
+            out.write(_line, _contentLength, _length - _contentLength);
+        }
+    }
+}
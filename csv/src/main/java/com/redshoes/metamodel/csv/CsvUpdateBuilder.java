@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.query.FilterItem;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.Table;
+import com.redshoes.metamodel.update.AbstractRowUpdationBuilder;
+
+/**
+ * Updates rows of a CSV file in place, see {@link CsvRewriter}.
+ */
+final class CsvUpdateBuilder extends AbstractRowUpdationBuilder {
+
+    private final CsvUpdateCallback _updateCallback;
+
+    public CsvUpdateBuilder(CsvUpdateCallback updateCallback, Table table) {
+        super(table);
+        _updateCallback = updateCallback;
+    }
+
+    @Override
+    public void execute() throws MetaModelException {
+        final Column[] columns = getColumns();
+        final Object[] values = getValues();
+        final int updates = new CsvRewriter(_updateCallback, getTable()).rewrite(this::updateRow, row -> {
+            final String[] stringValues = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                final Object value = isSet(columns[i]) ? values[i] : row.getValue(i);
+                stringValues[i] = value == null ? "" : value.toString();
+            }
+            return stringValues;
+        });
+        _updateCallback.getUpdateSummaryBuilder().addUpdates(updates);
+    }
+
+    private boolean updateRow(Row row) {
+        for (FilterItem filterItem : getWhereItems()) {
+            if (!filterItem.evaluate(row)) {
+                // filter items are ANDed
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -26,11 +26,14 @@ import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
 import com.redshoes.metamodel.AbstractUpdateCallback;
 import com.redshoes.metamodel.MetaModelException;
 import com.redshoes.metamodel.MetaModelHelper;
 import com.redshoes.metamodel.UpdateCallback;
+import com.redshoes.metamodel.UpdateSummary;
+import com.redshoes.metamodel.UpdateSummaryBuilder;
 import com.redshoes.metamodel.create.TableCreationBuilder;
 import com.redshoes.metamodel.delete.RowDeletionBuilder;
 import com.redshoes.metamodel.drop.TableDropBuilder;
@@ -52,12 +55,33 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
 
     private final CsvConfiguration _configuration;
     private final Resource _resource;
+    private final CsvWriter _csvWriter;
+    private final int _bulkAppendBufferSize;
+    private final CsvFlushPolicy _bulkAppendFlushPolicy;
+    private final UpdateSummaryBuilder _updateSummaryBuilder;
+    private long _startTime;
     private Writer _writer;
+    private CsvAppender _appender;
+    private volatile boolean _appendOnly;
 
     public CsvUpdateCallback(CsvDataContext dataContext) {
         super(dataContext);
         _resource = dataContext.getResource();
         _configuration = dataContext.getConfiguration();
+        _csvWriter = new CsvWriter(_configuration);
+        _bulkAppendBufferSize = dataContext.getBulkAppendBufferSize();
+        _bulkAppendFlushPolicy = dataContext.getBulkAppendFlushPolicy();
+        _updateSummaryBuilder = new UpdateSummaryBuilder();
+        _appendOnly = true;
+    }
+
+    /**
+     * Starts the clock of the rows per second reported in the update summary.
+     * Called once the update script is about to run, so that waiting for the
+     * write lock is not counted.
+     */
+    protected void start() {
+        _startTime = System.nanoTime();
     }
 
     @Override
@@ -86,9 +110,55 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
         }
     }
 
+    /**
+     * Callback method used by {@link CsvInsertBuilder} when execute is called
+     */
+    protected synchronized void insertRow(final String[] stringValues) {
+        writeRow(stringValues, true);
+        _updateSummaryBuilder.addInsert();
+    }
+
+    /**
+     * Appends a batch of rows to the table, holding the lock of this callback
+     * only once for the whole batch.
+     * 
+     * @param table
+     *            the table to insert into
+     * @param rows
+     *            the values of the rows, in the order of the table's columns
+     */
+    protected synchronized void insertRows(final Table table, final Iterable<Object[]> rows) {
+        validateTable(table);
+        final int columnCount = table.getColumnCount();
+        final String[] stringValues = new String[columnCount];
+        for (Object[] values : rows) {
+            if (values.length != columnCount) {
+                throw new IllegalArgumentException("Row has " + values.length + " values, but table " + table
+                        + " has " + columnCount + " columns");
+            }
+            for (int i = 0; i < columnCount; i++) {
+                stringValues[i] = values[i] == null ? "" : values[i].toString();
+            }
+            writeRow(stringValues, true);
+            _updateSummaryBuilder.addInsert();
+        }
+    }
+
     protected synchronized void writeRow(final String[] stringValues, final boolean append) {
-        final CsvWriter csvWriter = new CsvWriter(_configuration);
-        final String line = csvWriter.buildLine(stringValues);
+        if (append && _bulkAppendBufferSize > 0) {
+            try {
+                getAppender().append(stringValues);
+            } catch (IOException e) {
+                throw new MetaModelException("Failed to append row to CSV file: " + _resource, e);
+            }
+            return;
+        }
+
+        closeAppender();
+        if (!append) {
+            _appendOnly = false;
+        }
+        final String line = _csvWriter.buildLine(stringValues);
         final Writer writer = getWriter(append);
         try {
             writer.write(line);
@@ -97,6 +167,36 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
         }
     }
 
+    private CsvAppender getAppender() throws IOException {
+        if (_appender == null) {
+            // keep lines written through the writer (eg. a header) first
+            closeWriter();
+            final boolean needsLineBreak = needsLineBreak(_resource, _configuration);
+            _appender = new CsvAppender(_resource, _configuration, _bulkAppendBufferSize, _bulkAppendFlushPolicy,
+                    needsLineBreak);
+        }
+        return _appender;
+    }
+
+    /**
+     * Determines if the update has only appended rows to the file, so that
+     * the existing contents of the file are unchanged.
+     * 
+     * @return false if the file was (possibly) changed in other ways
+     */
+    protected boolean isAppendOnly() {
+        return _appendOnly;
+    }
+
+    protected UpdateSummaryBuilder getUpdateSummaryBuilder() {
+        return _updateSummaryBuilder;
+    }
+
+    @Override
+    public UpdateSummary getUpdateSummary() {
+        return _updateSummaryBuilder.setElapsedTime(System.nanoTime() - _startTime, TimeUnit.NANOSECONDS).build();
+    }
+
     private Writer getWriter(boolean append) {
         if (_writer == null || !append) {
             final boolean needsLineBreak = needsLineBreak(_resource, _configuration);
@@ -178,6 +278,23 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
      * Closes all open handles
      */
     protected void close() {
+        closeAppender();
+        closeWriter();
+    }
+
+    private void closeAppender() {
+        if (_appender != null) {
+            try {
+                _appender.close();
+            } catch (IOException e) {
+                throw new MetaModelException("Failed to write appended rows to CSV file: " + _resource, e);
+            } finally {
+                _appender = null;
+            }
+        }
+    }
+
+    private void closeWriter() {
         if (_writer != null) {
             try {
                 _writer.flush();
@@ -197,6 +314,13 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
     @Override
     public RowUpdationBuilder update(Table table) throws IllegalArgumentException, IllegalStateException {
         close();
+        _appendOnly = false;
+        if (CsvRewriter.isSupported(_configuration)) {
+            validateTable(table);
+            return new CsvUpdateBuilder(this, table);
+        }
+        // updates are done as deletes and inserts that are not counted apart
+        _updateSummaryBuilder.makeInsertsUnknown().makeUpdatesUnknown().makeDeletesUnknown();
         return super.update(table);
     }
 
@@ -217,6 +341,7 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
      */
     protected void dropTable() {
         close();
+        _appendOnly = false;
         if (_resource instanceof FileResource) {
             final File file = ((FileResource) _resource).getFile();
             final boolean success = file.delete();
@@ -241,6 +366,7 @@ final class CsvUpdateCallback extends AbstractUpdateCallback implements UpdateCa
     @Override
     public RowDeletionBuilder deleteFrom(Table table) {
         validateTable(table);
+        _appendOnly = false;
         return new CsvDeleteBuilder(this, table);
     }
 }
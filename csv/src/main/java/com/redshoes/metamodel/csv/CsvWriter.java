@@ -44,6 +44,20 @@ public final class CsvWriter {
      */
     public String buildLine(String[] nextLine) {
         final StringBuilder sb = new StringBuilder(INITIAL_STRING_SIZE);
+        appendLine(sb, nextLine);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a line for the CSV file output to a (reusable) string builder
+     * 
+     * @param sb
+     *            the string builder to append to
+     * @param nextLine
+     *            a string array with each comma-separated element as a separate
+     *            entry.
+     */
+    public void appendLine(StringBuilder sb, String[] nextLine) {
         for (int i = 0; i < nextLine.length; i++) {
 
             if (i != 0) {
@@ -67,8 +81,6 @@ public final class CsvWriter {
         }
 
         sb.append('\n');
-        return sb.toString();
-
     }
 
     private boolean valueNeedsEscaping(String line) {
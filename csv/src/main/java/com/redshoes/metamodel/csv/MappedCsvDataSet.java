@@ -0,0 +1,378 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.data.AbstractDataSet;
+import com.redshoes.metamodel.data.DefaultRow;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.util.FileHelper;
+
+import com.opencsv.ICSVParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A DataSet implementation for the CSV module that reads a CSV file through
+ * memory mapped segments, for when multiline values are disabled. Lines are
+ * found and split on separators directly on the bytes of the file, and only
+ * the values of the selected columns are decoded into strings.
+ * 
+ * Lines that contain a quote or escape character are decoded as a whole and
+ * parsed with the regular CSV parser, so values are the same as with
+ * {@link SingleLineCsvDataSet}. This requires an encoding where the line
+ * breaks, separator, quote and escape characters are single bytes that cannot
+ * be part of another character, see {@link #isSupported(CsvConfiguration)}.
+ */
+final class MappedCsvDataSet extends AbstractDataSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedCsvDataSet.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    // a value that no byte is equal to
+    private static final int NO_BYTE = 256;
+
+    private final Charset _charset;
+    private final FileChannel _channel;
+    private final long _length;
+    private final int _segmentSize;
+    private final int _columnsInTable;
+    private final boolean _failOnInconsistentRowLength;
+    private final int[] _columnNumbers;
+    private final ICSVParser _csvParser;
+    private final byte _separator;
+    private final int _quote;
+    private final int _escape;
+
+    // the current segment of the file and the position in it
+    private ByteBuffer _segment;
+    private long _segmentStart;
+    private int _position;
+
+    // the bounds of the current line and its fields, within the segment
+    private int _lineStart;
+    private int _lineEnd;
+    private int[] _separatorIndexes;
+    private byte[] _bytes;
+
+    private Integer _rowsRemaining;
+    private int _rowNumber;
+    private Row _row;
+    private boolean _closed;
+
+    public MappedCsvDataSet(final File file, final Charset charset, final long dataOffset, final List<Column> columns,
+            final Integer maxRows, final int columnsInTable, final CsvConfiguration csvConfiguration) {
+        this(file, charset, dataOffset, columns, maxRows, columnsInTable, csvConfiguration, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedCsvDataSet(final File file, final Charset charset, final long dataOffset, final List<Column> columns,
+            final Integer maxRows, final int columnsInTable, final CsvConfiguration csvConfiguration,
+            final int segmentSize) {
+        super(columns.stream().map(SelectItem::new).collect(Collectors.toList()));
+        _charset = charset;
+        try {
+            _channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            _length = _channel.size();
+        } catch (IOException e) {
+            throw new MetaModelException("IOException occurred while opening CSV file: " + file, e);
+        }
+        _segmentSize = segmentSize;
+        _columnsInTable = columnsInTable;
+        _failOnInconsistentRowLength = csvConfiguration.isFailOnInconsistentRowLength();
+        _columnNumbers = columns.stream().mapToInt(Column::getColumnNumber).toArray();
+        _csvParser = new CsvParserBuilder(csvConfiguration).build();
+        _separator = (byte) csvConfiguration.getSeparatorChar();
+        _quote = toByte(csvConfiguration.getQuoteChar());
+        _escape = toByte(csvConfiguration.getEscapeChar());
+
+        _segmentStart = dataOffset;
+        _segment = ByteBuffer.allocate(0);
+        _position = 0;
+        _separatorIndexes = new int[Math.max(columnsInTable, 1)];
+        _bytes = new byte[256];
+        _rowsRemaining = maxRows;
+        _rowNumber = 0;
+    }
+
+    private static int toByte(char c) {
+        return c == CsvConfiguration.NOT_A_CHAR ? NO_BYTE : c;
+    }
+
+    /**
+     * Determines if files with a particular configuration can be read by
+     * this data set.
+     * 
+     * @param csvConfiguration
+     * @return true if multiline values are disabled, the encoding supports
+     *         splitting on bytes and the separator, quote and escape
+     *         characters are ASCII characters
+     */
+    public static boolean isSupported(CsvConfiguration csvConfiguration) {
+        if (csvConfiguration.isMultilineValues()) {
+            return false;
+        }
+        if (!isAscii(csvConfiguration.getSeparatorChar()) || !isAsciiOrNone(csvConfiguration.getQuoteChar())
+                || !isAsciiOrNone(csvConfiguration.getEscapeChar())) {
+            return false;
+        }
+        try {
+            return ParallelSingleLineCsvDataSet.isSupported(Charset.forName(csvConfiguration.getEncoding()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isAscii(char c) {
+        return c < 128 && c != '\n' && c != '\r';
+    }
+
+    private static boolean isAsciiOrNone(char c) {
+        return c == CsvConfiguration.NOT_A_CHAR || isAscii(c);
+    }
+
+    @Override
+    public boolean next() {
+        final Object[] values = nextValues();
+        if (values == null) {
+            _row = null;
+            return false;
+        }
+        _row = new DefaultRow(getHeader(), values);
+        return true;
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public boolean nextBatch(RowBatch batch) {
+        batch.clear();
+        _row = null;
+        while (!batch.isFull()) {
+            final Object[] values = nextValues();
+            if (values == null) {
+                break;
+            }
+            batch.addRow(values);
+        }
+        return !batch.isEmpty();
+    }
+
+    private Object[] nextValues() {
+        if (_closed) {
+            return null;
+        }
+        if (_rowsRemaining != null) {
+            if (_rowsRemaining <= 0) {
+                return null;
+            }
+            _rowsRemaining--;
+        }
+
+        try {
+            do {
+                if (!nextLine()) {
+                    close();
+                    return null;
+                }
+                // blank lines are skipped
+            } while (_lineStart == _lineEnd);
+        } catch (IOException e) {
+            close();
+            throw new MetaModelException("IOException occurred while reading next line of CSV resource", e);
+        }
+
+        _rowNumber++;
+        return readValues();
+    }
+
+    /**
+     * Moves to the next line of the file, mapping the next segment of the
+     * file when the line is not entirely in the current segment. Lines end
+     * with a line feed, a carriage return or both, like with
+     * {@link java.io.BufferedReader#readLine()}.
+     * 
+     * @return false if there are no more lines
+     * @throws IOException
+     */
+    private boolean nextLine() throws IOException {
+        while (true) {
+            final int limit = _segment.limit();
+            final boolean lastSegment = _segmentStart + limit >= _length;
+            if (_position >= limit && lastSegment) {
+                return false;
+            }
+
+            for (int i = _position; i < limit; i++) {
+                final byte b = _segment.get(i);
+                if (b == '\n' || b == '\r') {
+                    int next = i + 1;
+                    if (b == '\r') {
+                        if (next == limit && !lastSegment) {
+                            // the line feed may be in the next segment
+                            break;
+                        }
+                        if (next < limit && _segment.get(next) == '\n') {
+                            next++;
+                        }
+                    }
+                    _lineStart = _position;
+                    _lineEnd = i;
+                    _position = next;
+                    return true;
+                }
+            }
+
+            if (lastSegment) {
+                _lineStart = _position;
+                _lineEnd = limit;
+                _position = limit;
+                return true;
+            }
+
+            // map a new segment, starting with the current line
+            final int lineLength = limit - _position;
+            final long size = Math.max(_segmentSize, lineLength * 2L);
+            _segmentStart += _position;
+            _segment = _channel.map(FileChannel.MapMode.READ_ONLY, _segmentStart,
+                    Math.min(Math.min(size, Integer.MAX_VALUE), _length - _segmentStart));
+            _position = 0;
+        }
+    }
+
+    private Object[] readValues() {
+        int separators = 0;
+        for (int i = _lineStart; i < _lineEnd; i++) {
+            final byte b = _segment.get(i);
+            if (b == _separator) {
+                if (separators == _separatorIndexes.length) {
+                    _separatorIndexes = Arrays.copyOf(_separatorIndexes, separators * 2);
+                }
+                _separatorIndexes[separators++] = i;
+            } else if (b == _quote || b == _escape) {
+                return readValuesWithParser();
+            }
+        }
+
+        final int fieldCount = separators + 1;
+        if (_failOnInconsistentRowLength && _columnsInTable != fieldCount) {
+            final String[] csvValues = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                csvValues[i] = decodeField(i, separators);
+            }
+            throw createInconsistentRowLengthException(csvValues);
+        }
+
+        final Object[] values = new Object[_columnNumbers.length];
+        for (int i = 0; i < values.length; i++) {
+            final int columnNumber = _columnNumbers[i];
+            // Ticket #125: Missing values should be interpreted as null.
+            values[i] = columnNumber < fieldCount ? decodeField(columnNumber, separators) : null;
+        }
+        return values;
+    }
+
+    private String decodeField(int fieldIndex, int separators) {
+        final int start = fieldIndex == 0 ? _lineStart : _separatorIndexes[fieldIndex - 1] + 1;
+        final int end = fieldIndex == separators ? _lineEnd : _separatorIndexes[fieldIndex];
+        return decode(start, end);
+    }
+
+    private String decode(int start, int end) {
+        final int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (_bytes.length < length) {
+            _bytes = new byte[Math.max(length, _bytes.length * 2)];
+        }
+        final ByteBuffer segment = _segment.duplicate();
+        segment.position(start);
+        segment.get(_bytes, 0, length);
+        return new String(_bytes, 0, length, _charset);
+    }
+
+    /**
+     * Reads the values of a line that has quoted or escaped values with the
+     * regular CSV parser, with the same error handling as
+     * {@link SingleLineCsvDataSet}.
+     */
+    private Object[] readValuesWithParser() {
+        final String line = decode(_lineStart, _lineEnd);
+        String[] csvValues;
+        try {
+            csvValues = _csvParser.parseLine(line);
+        } catch (IOException e) {
+            if (_failOnInconsistentRowLength) {
+                throw new MetaModelException("Failed to parse CSV line no. " + _rowNumber + ": " + line, e);
+            }
+            logger.warn(
+                    "Encountered unparseable line no. {}, returning line as a single value with trailing nulls: {}",
+                    _rowNumber, line);
+            csvValues = new String[_columnsInTable];
+            csvValues[0] = line;
+        }
+        if (_failOnInconsistentRowLength && _columnsInTable != csvValues.length) {
+            throw createInconsistentRowLengthException(csvValues);
+        }
+        return toRowValues(csvValues);
+    }
+
+    private InconsistentRowLengthException createInconsistentRowLengthException(String[] csvValues) {
+        final Row row = new DefaultRow(getHeader(), toRowValues(csvValues));
+        return new InconsistentRowLengthException(_columnsInTable, row, csvValues, _rowNumber);
+    }
+
+    private Object[] toRowValues(String[] csvValues) {
+        final Object[] values = new Object[_columnNumbers.length];
+        for (int i = 0; i < values.length; i++) {
+            final int columnNumber = _columnNumbers[i];
+            values[i] = columnNumber < csvValues.length ? csvValues[columnNumber] : null;
+        }
+        return values;
+    }
+
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        _row = null;
+        // the mapped segment is released when it is garbage collected
+        _segment = null;
+        FileHelper.safeClose(_channel);
+    }
+}
@@ -0,0 +1,464 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import com.redshoes.metamodel.MetaModelException;
+import com.redshoes.metamodel.data.AbstractDataSet;
+import com.redshoes.metamodel.data.DefaultRow;
+import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
+import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.util.FileHelper;
+import com.redshoes.metamodel.util.LineOffsetIndex;
+import com.redshoes.metamodel.util.SharedExecutorService;
+
+import com.opencsv.ICSVParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A DataSet implementation for the CSV module that scans a CSV file with
+ * multiple threads. Like {@link SingleLineCsvDataSet} it is only applicable
+ * when multiline values are disabled, since the file is split into chunks of
+ * bytes that are aligned to line boundaries. The chunks are parsed by the
+ * shared executor named {@link SharedExecutorService#EXECUTOR_SCAN}, with a
+ * reused parser per thread, and the rows are returned in the order of the
+ * file.
+ * 
+ * A data set can also scan a byte range of the file only, see
+ * {@link #split(File, long, int, long)}, so that the ranges can be read as the
+ * partitions of a table.
+ * 
+ * Splitting on line boundaries requires an encoding where a line break is
+ * always a single byte that cannot be part of another character, see
+ * {@link #isSupported(Charset)}.
+ */
+final class ParallelSingleLineCsvDataSet extends AbstractDataSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSingleLineCsvDataSet.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final File _file;
+    private final Charset _charset;
+    private final FileChannel _channel;
+    private final long _end;
+    private final int _chunkSize;
+    private final int _columnsInTable;
+    private final boolean _failOnInconsistentRowLength;
+    private final int[] _columnNumbers;
+    private final ThreadLocal<ICSVParser> _csvParser;
+    private final ExecutorService _executor;
+    private final Deque<Future<Chunk>> _pendingChunks;
+    private final int _maxPendingChunks;
+
+    private long _position;
+    private Chunk _chunk;
+    private int _chunkRowIndex;
+    private int _rowNumber;
+    private Row _row;
+    private volatile boolean _closed;
+
+    /**
+     * Creates a parallel data set.
+     * 
+     * @param file
+     *            the CSV file
+     * @param charset
+     *            the encoding of the file, which must be supported
+     * @param start
+     *            the byte offset of the first line to read, see
+     *            {@link #getDataOffset(File, Charset, int)}
+     * @param end
+     *            the byte offset after the last line to read, or -1 to read to
+     *            the end of the file
+     * @param columns
+     *            the columns to read
+     * @param columnsInTable
+     *            the number of columns of the table
+     * @param csvConfiguration
+     *            the CSV configuration
+     * @param parallelism
+     *            the maximum number of chunks to parse concurrently
+     * @param chunkSize
+     *            the approximate number of bytes per chunk
+     */
+    public ParallelSingleLineCsvDataSet(final File file, final Charset charset, final long start, final long end,
+            final List<Column> columns, final int columnsInTable, final CsvConfiguration csvConfiguration,
+            final int parallelism, final int chunkSize) {
+        super(columns.stream().map(SelectItem::new).collect(Collectors.toList()));
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be a positive number: " + parallelism);
+        }
+        _file = file;
+        _charset = charset;
+        try {
+            _channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            _end = end == -1 ? _channel.size() : end;
+        } catch (IOException e) {
+            throw new MetaModelException("IOException occurred while opening CSV file: " + file, e);
+        }
+        _chunkSize = chunkSize;
+        _columnsInTable = columnsInTable;
+        _failOnInconsistentRowLength = csvConfiguration.isFailOnInconsistentRowLength();
+        _columnNumbers = columns.stream().mapToInt(Column::getColumnNumber).toArray();
+
+        final CsvParserBuilder csvParserBuilder = new CsvParserBuilder(csvConfiguration);
+        _csvParser = ThreadLocal.withInitial(csvParserBuilder::build);
+
+        _executor = SharedExecutorService.get(SharedExecutorService.EXECUTOR_SCAN);
+        _pendingChunks = new ArrayDeque<>();
+        _maxPendingChunks = parallelism;
+
+        _position = start;
+        _rowNumber = 0;
+    }
+
+    /**
+     * Determines if files of a particular encoding can be split into chunks
+     * by looking for line break bytes.
+     * 
+     * @param charset
+     * @return true if the encoding is UTF-8 or a single byte encoding
+     */
+    public static boolean isSupported(Charset charset) {
+        return LineOffsetIndex.isSupported(charset);
+    }
+
+    /**
+     * Gets the byte offset of the first line after a number of header lines,
+     * skipping a UTF-8 byte order mark like {@link FileHelper} does.
+     * 
+     * @param file
+     * @param charset
+     * @param headerLines
+     *            the number of lines to skip
+     * @return the byte offset, or -1 if the file has no more lines than the
+     *         header lines
+     * @throws IOException
+     */
+    public static long getDataOffset(File file, Charset charset, int headerLines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long length = channel.size();
+            long position = 0;
+            if (StandardCharsets.UTF_8.equals(charset) && length >= 3) {
+                final ByteBuffer bom = ByteBuffer.allocate(3);
+                readFully(channel, bom, 0);
+                if (bom.get(0) == (byte) 0xEF && bom.get(1) == (byte) 0xBB && bom.get(2) == (byte) 0xBF) {
+                    position = 3;
+                }
+            }
+            for (int i = 0; i < headerLines; i++) {
+                if (position >= length) {
+                    return -1;
+                }
+                position = findNextLine(channel, position, length);
+            }
+            return position < length ? position : -1;
+        }
+    }
+
+    /**
+     * Splits a file into byte ranges that are aligned to line boundaries, for
+     * reading the ranges as partitions of a table.
+     * 
+     * @param file
+     * @param dataOffset
+     *            the byte offset of the first line with data
+     * @param maxRanges
+     *            the maximum number of ranges
+     * @param minRangeSize
+     *            the minimum number of bytes per range
+     * @return the offsets of the ranges, followed by the length of the file
+     * @throws IOException
+     */
+    public static long[] split(File file, long dataOffset, int maxRanges, long minRangeSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long length = channel.size();
+            final long ranges = Math.max(1, Math.min(maxRanges, (length - dataOffset) / Math.max(1, minRangeSize)));
+            final long rangeSize = (length - dataOffset) / ranges;
+            final List<Long> offsets = new ArrayList<>();
+            long position = dataOffset;
+            offsets.add(position);
+            for (int i = 1; i < ranges; i++) {
+                position = findNextLine(channel, Math.max(position, dataOffset + i * rangeSize - 1), length);
+                if (position >= length) {
+                    break;
+                }
+                offsets.add(position);
+            }
+            offsets.add(length);
+            return offsets.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * Finds the start of the line after the one that contains a position.
+     * Lines end with a line feed, a carriage return or both, like with
+     * {@link BufferedReader#readLine()}.
+     * 
+     * @param channel
+     * @param position
+     * @param length
+     * @return the position of the next line, or the length of the file if
+     *         there is no next line
+     * @throws IOException
+     */
+    private static long findNextLine(FileChannel channel, long position, long length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        boolean carriageReturn = false;
+        while (position < length) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if (read == -1) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                final byte b = buffer.get(i);
+                if (carriageReturn) {
+                    // a carriage return, optionally followed by a line feed
+                    return b == '\n' ? position + i + 1 : position + i;
+                }
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    carriageReturn = true;
+                }
+            }
+            position += read;
+        }
+        return length;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + buffer.position());
+            if (read == -1) {
+                throw new EOFException("Unexpected end of file at position " + (position + buffer.position()));
+            }
+        }
+    }
+
+    @Override
+    public boolean next() {
+        final Object[] values = nextValues();
+        if (values == null) {
+            _row = null;
+            return false;
+        }
+        _row = new DefaultRow(getHeader(), values);
+        return true;
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public boolean nextBatch(RowBatch batch) {
+        batch.clear();
+        _row = null;
+        while (!batch.isFull()) {
+            final Object[] values = nextValues();
+            if (values == null) {
+                break;
+            }
+            batch.addRow(values);
+        }
+        return !batch.isEmpty();
+    }
+
+    private Object[] nextValues() {
+        while (!_closed) {
+            if (_chunk != null) {
+                if (_chunkRowIndex < _chunk.rows.size()) {
+                    _rowNumber++;
+                    return _chunk.rows.get(_chunkRowIndex++);
+                }
+                if (_chunk.failedLine != null) {
+                    final Chunk chunk = _chunk;
+                    close();
+                    throw createException(chunk, _rowNumber + 1);
+                }
+            }
+            _chunk = nextChunk();
+            _chunkRowIndex = 0;
+            if (_chunk == null) {
+                close();
+            }
+        }
+        return null;
+    }
+
+    private RuntimeException createException(Chunk chunk, int rowNumber) {
+        if (chunk.failedLineValues == null) {
+            return new MetaModelException("Failed to parse CSV line no. " + rowNumber + ": " + chunk.failedLine,
+                    chunk.failure);
+        }
+        final Row row = new DefaultRow(getHeader(), toRowValues(chunk.failedLineValues));
+        return new InconsistentRowLengthException(_columnsInTable, row, chunk.failedLineValues, rowNumber);
+    }
+
+    private Chunk nextChunk() {
+        try {
+            submitChunks();
+            final Future<Chunk> future = _pendingChunks.poll();
+            if (future == null) {
+                return null;
+            }
+            submitChunks();
+            return future.get();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new MetaModelException("Interrupted while reading CSV file: " + _file, e);
+        } catch (ExecutionException e) {
+            close();
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // chunks are only read with checked IOExceptions
+            throw new MetaModelException("IOException occurred while reading CSV file: " + _file, (Exception) cause);
+        } catch (IOException e) {
+            close();
+            throw new MetaModelException("IOException occurred while reading CSV file: " + _file, e);
+        }
+    }
+
+    private void submitChunks() throws IOException {
+        while (_pendingChunks.size() < _maxPendingChunks && _position < _end) {
+            final long start = _position;
+            final long end = findNextLine(_channel, Math.min(start + _chunkSize, _end) - 1, _end);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new MetaModelException("Line at byte offset " + start + " of CSV file is too long: " + _file);
+            }
+            _pendingChunks.add(_executor.submit(() -> readChunk(start, end)));
+            _position = end;
+        }
+    }
+
+    private Chunk readChunk(long start, long end) throws IOException {
+        final byte[] bytes = new byte[(int) (end - start)];
+        readFully(_channel, ByteBuffer.wrap(bytes), start);
+
+        final ICSVParser parser = _csvParser.get();
+        final Chunk chunk = new Chunk();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                _charset))) {
+            String line;
+            while ((line = reader.readLine()) != null && !_closed) {
+                if ("".equals(line)) {
+                    // blank line - move to next line
+                    continue;
+                }
+
+                String[] csvValues;
+                try {
+                    csvValues = parser.parseLine(line);
+                } catch (IOException e) {
+                    if (_failOnInconsistentRowLength) {
+                        chunk.fail(line, null, e);
+                        break;
+                    }
+                    logger.warn(
+                            "Encountered unparseable line, returning line as a single value with trailing nulls: {}",
+                            line);
+                    csvValues = new String[_columnsInTable];
+                    csvValues[0] = line;
+                }
+                if (_failOnInconsistentRowLength && _columnsInTable != csvValues.length) {
+                    chunk.fail(line, csvValues, null);
+                    break;
+                }
+                chunk.rows.add(toRowValues(csvValues));
+            }
+        }
+        return chunk;
+    }
+
+    private Object[] toRowValues(String[] csvValues) {
+        final Object[] values = new Object[_columnNumbers.length];
+        for (int i = 0; i < values.length; i++) {
+            final int columnNumber = _columnNumbers[i];
+            // Ticket #125: Missing values should be interpreted as null.
+            values[i] = columnNumber < csvValues.length ? csvValues[columnNumber] : null;
+        }
+        return values;
+    }
+
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        _row = null;
+        _chunk = null;
+        for (Future<Chunk> future : _pendingChunks) {
+            future.cancel(false);
+        }
+        _pendingChunks.clear();
+        FileHelper.safeClose(_channel);
+    }
+
+    /**
+     * The parsed rows of a chunk of the file. If a line of the chunk could
+     * not be read, the chunk contains the rows before that line.
+     */
+    private static final class Chunk {
+
+        private final List<Object[]> rows = new ArrayList<>();
+        private String failedLine;
+        private String[] failedLineValues;
+        private IOException failure;
+
+        public void fail(String line, String[] lineValues, IOException e) {
+            failedLine = line;
+            failedLineValues = lineValues;
+            failure = e;
+        }
+    }
+}
@@ -27,11 +27,14 @@ import com.redshoes.metamodel.MetaModelException;
 import com.redshoes.metamodel.data.AbstractDataSet;
 import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
 import com.redshoes.metamodel.query.SelectItem;
 import com.redshoes.metamodel.schema.Column;
 import com.redshoes.metamodel.util.FileHelper;
 
 import com.opencsv.ICSVParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A specialized DataSet implementation for the CSV module under circumstances
@@ -40,14 +43,18 @@ import com.opencsv.ICSVParser;
  */
 final class SingleLineCsvDataSet extends AbstractDataSet {
 
+    private static final Logger logger = LoggerFactory.getLogger(SingleLineCsvDataSet.class);
+
     private final BufferedReader _reader;
     private final int _columnsInTable;
     private final boolean _failOnInconsistentRowLength;
-    private final CsvParserBuilder _csvParserBuilder;
+    private final ThreadLocal<ICSVParser> _csvParser;
+    private final int[] _columnNumbers;
     
     private volatile int _rowNumber;
     private volatile Integer _rowsRemaining;
     private volatile Row _row;
+    private volatile boolean _closed;
 
     public SingleLineCsvDataSet(final BufferedReader reader, final List<Column> columns, final Integer maxRows,
                                 final int columnsInTable, final CsvConfiguration csvConfiguration) {
@@ -57,7 +64,11 @@ final class SingleLineCsvDataSet extends AbstractDataSet {
         _failOnInconsistentRowLength = csvConfiguration.isFailOnInconsistentRowLength();
         _rowNumber = 0;
         _rowsRemaining = maxRows;
-        _csvParserBuilder = new CsvParserBuilder(csvConfiguration);
+        // rows are parsed lazily, possibly on other threads, so parsers are
+        // reused per thread
+        final CsvParserBuilder csvParserBuilder = new CsvParserBuilder(csvConfiguration);
+        _csvParser = ThreadLocal.withInitial(csvParserBuilder::build);
+        _columnNumbers = columns.stream().mapToInt(Column::getColumnNumber).toArray();
     }
 
     @Override
@@ -65,6 +76,7 @@ final class SingleLineCsvDataSet extends AbstractDataSet {
         FileHelper.safeClose(_reader);
         _row = null;
         _rowsRemaining = null;
+        _closed = true;
     }
 
     @Override
@@ -95,7 +107,83 @@ final class SingleLineCsvDataSet extends AbstractDataSet {
     }
 
     protected ICSVParser getCsvParser() {
-        return _csvParserBuilder.build();
+        return _csvParser.get();
+    }
+
+    /**
+     * Reads a batch of lines, parsing them right away with a single parser
+     * instead of creating a lazily parsed row per line.
+     */
+    @Override
+    public boolean nextBatch(RowBatch batch) {
+        batch.clear();
+        _row = null;
+        if (_reader == null || _closed) {
+            return false;
+        }
+
+        final ICSVParser parser = getCsvParser();
+        final Object[] values = new Object[_columnNumbers.length];
+        try {
+            while (!batch.isFull()) {
+                if (_rowsRemaining != null) {
+                    if (_rowsRemaining <= 0) {
+                        break;
+                    }
+                    _rowsRemaining--;
+                }
+
+                String line = _reader.readLine();
+                while ("".equals(line)) {
+                    // blank line - move to next line
+                    line = _reader.readLine();
+                }
+                if (line == null) {
+                    close();
+                    break;
+                }
+
+                _rowNumber++;
+                final String[] csvValues = parseLine(parser, line, _rowNumber);
+                if (_failOnInconsistentRowLength && _columnsInTable != csvValues.length) {
+                    final Row row = new SingleLineCsvRow(this, line, _columnsInTable, _failOnInconsistentRowLength,
+                            _rowNumber);
+                    throw new InconsistentRowLengthException(_columnsInTable, row, csvValues, _rowNumber);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    final int columnNumber = _columnNumbers[i];
+                    // Ticket #125: Missing values should be interpreted as null.
+                    values[i] = columnNumber < csvValues.length ? csvValues[columnNumber] : null;
+                }
+                batch.addRow(values);
+            }
+        } catch (IOException e) {
+            close();
+            throw new MetaModelException("IOException occurred while reading next line of CSV resource", e);
+        }
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Parses a line of the CSV resource. If the line cannot be parsed and
+     * inconsistent row lengths are allowed, the line is returned as a single
+     * value followed by nulls.
+     */
+    protected String[] parseLine(ICSVParser parser, String line, int rowNumber) {
+        try {
+            return parser.parseLine(line);
+        } catch (IOException e) {
+            if (_failOnInconsistentRowLength) {
+                throw new MetaModelException("Failed to parse CSV line no. " + rowNumber + ": " + line, e);
+            } else {
+                logger.warn(
+                        "Encountered unparseable line no. {}, returning line as a single value with trailing nulls: {}",
+                        rowNumber, line);
+                String[] csvValues = new String[_columnsInTable];
+                csvValues[0] = line;
+                return csvValues;
+            }
+        }
     }
 
     public boolean nextInternal() {
@@ -21,13 +21,10 @@ package com.redshoes.metamodel.csv;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 
-import com.redshoes.metamodel.MetaModelException;
 import com.redshoes.metamodel.data.AbstractRow;
 import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.Style;
 import com.redshoes.metamodel.schema.Column;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Specialized row implementation for single-line CSV values
@@ -36,8 +33,6 @@ final class SingleLineCsvRow extends AbstractRow {
 
     private static final long serialVersionUID = 1L;
 
-    private static final Logger logger = LoggerFactory.getLogger(SingleLineCsvRow.class);
-
     private final transient SingleLineCsvDataSet _dataSet;
 
     private final String _line;
@@ -98,20 +93,7 @@ final class SingleLineCsvRow extends AbstractRow {
     }
 
     private String[] parseLine() {
-        try {
-            return _dataSet.getCsvParser().parseLine(_line);
-        } catch (IOException e) {
-            if (_failOnInconsistentRowLength) {
-                throw new MetaModelException("Failed to parse CSV line no. " + _rowNumber + ": " + _line, e);
-            } else {
-                logger.warn(
-                        "Encountered unparseable line no. {}, returning line as a single value with trailing nulls: {}",
-                        _rowNumber, _line);
-                String[] csvValues = new String[_columnsInTable];
-                csvValues[0] = _line;
-                return csvValues;
-            }
-        }
+        return _dataSet.parseLine(_dataSet.getCsvParser(), _line, _rowNumber);
     }
 
     @Override
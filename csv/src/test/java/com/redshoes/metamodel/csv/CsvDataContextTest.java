@@ -20,9 +20,14 @@ package com.redshoes.metamodel.csv;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import javax.swing.table.TableModel;
 
@@ -30,6 +35,7 @@ import com.redshoes.metamodel.DataContext;
 import com.redshoes.metamodel.QueryPostprocessDataContext;
 import com.redshoes.metamodel.UpdateCallback;
 import com.redshoes.metamodel.UpdateScript;
+import com.redshoes.metamodel.UpdateSummary;
 import com.redshoes.metamodel.convert.Converters;
 import com.redshoes.metamodel.convert.StringToBooleanConverter;
 import com.redshoes.metamodel.convert.StringToIntegerConverter;
@@ -43,6 +49,8 @@ import com.redshoes.metamodel.schema.Schema;
 import com.redshoes.metamodel.schema.Table;
 import com.redshoes.metamodel.schema.naming.CustomColumnNamingStrategy;
 import com.redshoes.metamodel.util.FileHelper;
+import com.redshoes.metamodel.util.FileResource;
+import com.redshoes.metamodel.util.InMemoryResource;
 import com.redshoes.metamodel.util.MutableRef;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.query.FunctionType;
@@ -698,11 +706,12 @@ public class CsvDataContextTest extends TestCase {
             }
         });
 
+        // rows are updated in place, so their order is kept
         ds = dc.executeQuery(query);
         assertTrue(ds.next());
-        assertEquals("Row[values=[world, universe]]", ds.getRow().toString());
-        assertTrue(ds.next());
         assertEquals("Row[values=[c, universe]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[world, universe]]", ds.getRow().toString());
         assertFalse(ds.next());
         ds.close();
 
@@ -848,4 +857,257 @@ public class CsvDataContextTest extends TestCase {
         assertNotNull(table.getColumnByName(thirdColumnName));
         assertNotNull(table.getColumnByName(fourthColumnName));
     }
-}
\ No newline at end of file
+
+    public void testLineOffsetIndex() throws Exception {
+        final File file = new File("target/csv_line_offset_index.csv");
+        final StringBuilder sb = new StringBuilder("id,name\n");
+        for (int i = 0; i < 3000; i++) {
+            sb.append(i).append(",name ").append(i).append(i % 100 == 0 ? "\n\n" : "\r\n");
+        }
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        final FileResource indexResource = new FileResource("target/csv_line_offset_index.csv.idx");
+        indexResource.getFile().delete();
+
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(1, false, false));
+        dc.setLineOffsetIndexResource(indexResource);
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        assertEquals(3000, ((Number) dc.query().from(table).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+        assertTrue(indexResource.isExists());
+
+        for (boolean memoryMappedScan : new boolean[] { false, true }) {
+            dc.setMemoryMappedScan(memoryMappedScan);
+            final DataSet dataSet = dc.query().from(table).select("name", "id").firstRow(2500).maxRows(3).execute();
+            assertEquals("[[name 2499, 2499], [name 2500, 2500], [name 2501, 2501]]",
+                    toString(dataSet.toObjectArrays()));
+            assertEquals(1, dc.query().from(table).select("id").firstRow(3000).execute().toObjectArrays().size());
+            assertEquals(0, dc.query().from(table).select("id").firstRow(3001).execute().toObjectArrays().size());
+        }
+        dc.setMemoryMappedScan(false);
+
+        // appended lines are indexed by a new DataContext reading the index
+        Files.write(file.toPath(), "3000,name 3000\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        file.setLastModified(file.lastModified() + 2000);
+        final CsvDataContext dc2 = new CsvDataContext(file, new CsvConfiguration(1, false, false));
+        dc2.setLineOffsetIndexResource(indexResource);
+        final Table table2 = dc2.getDefaultSchema().getTable(0);
+        assertEquals(3001, ((Number) dc2.query().from(table2).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+        assertEquals("[[3000]]", toString(dc2.query().from(table2).select("id").firstRow(3001).execute()
+                .toObjectArrays()));
+
+        // updates through the DataContext discard the index, even when the
+        // size and modification time of the file would not tell
+        dc2.executeUpdate(callback -> callback.deleteFrom(table2).where("id").eq("0").execute());
+        assertEquals(0, indexResource.getSize());
+        assertEquals(3000, ((Number) dc2.query().from(table2).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+        assertEquals("[[1]]", toString(dc2.query().from(table2).select("id").firstRow(1).maxRows(1).execute()
+                .toObjectArrays()));
+        assertEquals("[[2500]]", toString(dc2.query().from(table2).select("id").firstRow(2500).maxRows(1)
+                .execute().toObjectArrays()));
+        assertTrue(indexResource.getSize() > 0);
+
+        // updates that only append rows keep the index, which is then updated
+        // incrementally
+        final long indexSize = indexResource.getSize();
+        dc2.executeUpdate(callback -> callback.insertInto(table2).value("id", "3001").value("name", "name 3001")
+                .execute());
+        dc2.appendRows(table2, Arrays.<Object[]> asList(new Object[] { 3002, "name 3002" }));
+        assertEquals(indexSize, indexResource.getSize());
+        assertEquals(3002, ((Number) dc2.query().from(table2).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+        assertEquals("[[3001], [3002]]", toString(dc2.query().from(table2).select("id").firstRow(3001).execute()
+                .toObjectArrays()));
+    }
+
+    public void testBulkAppend() throws Exception {
+        final File file = new File("target/csv_bulk_append.csv");
+        // no line break after the header, so one must be inserted first
+        Files.write(file.toPath(), "id,name".getBytes(StandardCharsets.UTF_8));
+
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(1, false, false));
+        dc.setBulkAppendBufferSize(1024);
+        dc.setBulkAppendFlushPolicy(new CsvFlushPolicy(100, 0, true));
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        final List<Object[]> rows = new ArrayList<>();
+        final StringBuilder expected = new StringBuilder("id,name\n");
+        for (int i = 0; i < 5000; i++) {
+            rows.add(new Object[] { i, i % 10 == 0 ? null : "n\u00e6vn \"" + i + "\"" });
+            expected.append('"').append(i).append("\",\"");
+            if (i % 10 != 0) {
+                expected.append("n\u00e6vn \\\"").append(i).append("\\\"");
+            }
+            expected.append("\"\n");
+        }
+
+        UpdateSummary summary = dc.appendRows(table, rows);
+        assertEquals(Optional.of(5000), summary.getInsertedRows());
+        assertTrue(summary.getRowsPerSecond().isPresent());
+        assertEquals(expected.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        // rows are written to the file every 100 rows, before the update is done
+        summary = dc.executeUpdate(callback -> {
+            final long length = file.length();
+            for (int i = 0; i < 100; i++) {
+                callback.insertInto(table).value("id", 5000 + i).value("name", "last").execute();
+            }
+            assertTrue(file.length() > length);
+            callback.update(table).value("name", "first").where("id").eq("0").execute();
+        });
+        assertEquals(Optional.of(100), summary.getInsertedRows());
+        assertEquals(Optional.of(1), summary.getUpdatedRows());
+        assertEquals(5100, ((Number) dc.query().from(table).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+        assertEquals("[[0, first], [5099, last]]", toString(dc.query().from(table).select("id", "name").where("id")
+                .in("0", "5099").execute().toObjectArrays()));
+
+        try {
+            dc.appendRows(table, Arrays.<Object[]> asList(new Object[] { 1 }));
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Row has 1 values, but table " + table + " has 2 columns", e.getMessage());
+        }
+    }
+
+    public void testRewriteKeepsLineBreaksAndByteOrderMark() throws Exception {
+        final File file = new File("target/csv_rewrite_line_breaks.csv");
+        final byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+        writeBytes(file, bom, "id,name\r\n1,a\n2,b\r\n3,c\r4,d");
+
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(1, false, false));
+        final Table table = dc.getDefaultSchema().getTable(0);
+        assertEquals("[id, name]", table.getColumnNames().toString());
+
+        UpdateSummary summary = dc.executeUpdate(callback -> callback.deleteFrom(table).where("id").eq("2")
+                .execute());
+        assertEquals(Optional.of(1), summary.getDeletedRows());
+        assertEquals(toHex(bom, "id,name\r\n1,a\n3,c\r4,d"), toHex(Files.readAllBytes(file.toPath())));
+
+        summary = dc.executeUpdate(callback -> {
+            callback.update(table).value("name", "x").where("id").eq("3").execute();
+            callback.update(table).value("name", "y").where("id").eq("4").execute();
+        });
+        assertEquals(Optional.of(2), summary.getUpdatedRows());
+        assertEquals(toHex(bom, "id,name\r\n1,a\n\"3\",\"x\"\r\"4\",\"y\""), toHex(Files.readAllBytes(file
+                .toPath())));
+
+        // nothing to delete, so the file is left as it is
+        final long lastModified = file.lastModified();
+        Thread.sleep(10);
+        dc.executeUpdate(callback -> callback.deleteFrom(table).where("id").eq("5").execute());
+        assertEquals(lastModified, file.lastModified());
+
+        assertEquals("[[1, a], [3, x], [4, y]]", toString(dc.query().from(table).select("id", "name").execute()
+                .toObjectArrays()));
+    }
+
+    public void testRewriteQuotedAndMultilineValues() throws Exception {
+        final File file = new File("target/csv_rewrite_multiline.csv");
+        writeBytes(file, new byte[0], "id,name\n1,\"multi\nline\"\n2,\"say \"\"hi\"\"\"\n3,\"x\\\"y\"\n4,plain\n");
+
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(1, "UTF-8", ',', '"', '\\', false,
+                true));
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        dc.executeUpdate(callback -> callback.deleteFrom(table).where("id").eq("2").execute());
+        assertEquals("id,name\n1,\"multi\nline\"\n3,\"x\\\"y\"\n4,plain\n", readFile(file));
+
+        dc.executeUpdate(callback -> callback.update(table).value("name", "new\nline, \"quoted\"").where("id").eq(
+                "1").execute());
+        assertEquals("id,name\n\"1\",\"new\nline, \\\"quoted\\\"\"\n3,\"x\\\"y\"\n4,plain\n", readFile(file));
+
+        assertEquals("[[1, new\nline, \"quoted\"], [3, x\"y], [4, plain]]", toString(dc.query().from(table).select(
+                "id", "name").execute().toObjectArrays()));
+    }
+
+    public void testTruncateKeepsHeaderLines() throws Exception {
+        final File file = new File("target/csv_rewrite_truncate.csv");
+        writeBytes(file, new byte[0], "# comment\r\nid,name\r\n1,a\r\n2,b,inconsistent\r\n");
+
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(2, "UTF-8", ',', '"', '\\', true));
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        final UpdateSummary summary = dc.executeUpdate(callback -> callback.deleteFrom(table).execute());
+        assertFalse(summary.getDeletedRows().isPresent());
+        assertEquals("# comment\r\nid,name\r\n", readFile(file));
+        assertEquals("[id, name]", dc.getDefaultSchema().getTable(0).getColumnNames().toString());
+        assertEquals(0, ((Number) dc.query().from(table).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+    }
+
+    public void testRewriteInMemoryResource() throws Exception {
+        final InMemoryResource resource = new InMemoryResource("rewrite.csv", "id,name\r\n1,a\r\n2,b\n3,c\r\n"
+                .getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+
+        final CsvDataContext dc = new CsvDataContext(resource, new CsvConfiguration(1, false, false));
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        dc.executeUpdate(callback -> {
+            callback.deleteFrom(table).where("id").eq("1").execute();
+            callback.update(table).value("name", "x").where("id").eq("3").execute();
+        });
+        assertEquals("id,name\r\n2,b\n\"3\",\"x\"\r\n", new String(resource.read(FileHelper::readAsBytes),
+                StandardCharsets.UTF_8));
+    }
+
+    public void testRewriteUnsupportedEncoding() throws Exception {
+        final File file = new File("target/csv_rewrite_utf16.csv");
+        Files.write(file.toPath(), "id,name\n1,a\n2,b\n3,c\n".getBytes(StandardCharsets.UTF_16LE));
+
+        final CsvConfiguration configuration = new CsvConfiguration(1, "UTF-16LE", ',', '"', '\\', false, false);
+        assertFalse(CsvRewriter.isSupported(configuration));
+
+        final CsvDataContext dc = new CsvDataContext(file, configuration);
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        final UpdateSummary summary = dc.executeUpdate(callback -> {
+            callback.deleteFrom(table).where("id").eq("1").execute();
+            callback.update(table).value("name", "x").where("id").eq("2").execute();
+        });
+        assertFalse(summary.getDeletedRows().isPresent());
+
+        // the copy based update deletes and inserts the updated rows
+        assertEquals("[[3, c], [2, x]]", toString(dc.query().from(table).select("id", "name").execute()
+                .toObjectArrays()));
+    }
+
+    private static void writeBytes(File file, byte[] prefix, String contents) throws Exception {
+        Files.write(file.toPath(), prefix);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static String readFile(File file) throws Exception {
+        // not FileHelper.readFileAsString(...), which replaces line breaks
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String toHex(byte[] prefix, String contents) {
+        final byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        final byte[] all = Arrays.copyOf(prefix, prefix.length + bytes.length);
+        System.arraycopy(bytes, 0, all, prefix.length, bytes.length);
+        return toHex(all);
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static String toString(List<Object[]> rows) {
+        final StringBuilder sb = new StringBuilder("[");
+        for (Object[] row : rows) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(Arrays.toString(row));
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.data.DataSet;
+import com.redshoes.metamodel.data.RowBatch;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.Table;
+
+import junit.framework.TestCase;
+
+public class MappedCsvDataSetTest extends TestCase {
+
+    private File createFile(String name, String content) throws Exception {
+        final File file = new File("target/" + name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String createContent(int rows, String lineBreak) {
+        final StringBuilder sb = new StringBuilder("\uFEFFid,name,city,note" + lineBreak);
+        for (int i = 0; i < rows; i++) {
+            switch (i % 5) {
+            case 0:
+                sb.append(i).append(",name ").append(i).append(",børge,");
+                break;
+            case 1:
+                sb.append(i).append(",\"name, ").append(i).append("\",\"københavn\",\"a \\\"note\\\"\"");
+                break;
+            case 2:
+                // missing values
+                sb.append(i).append(",name ").append(i);
+                break;
+            case 3:
+                sb.append(i).append(",").append(new String(new char[200]).replace('\0', 'x')).append(",,");
+                // blank lines are skipped
+                sb.append(lineBreak);
+                break;
+            default:
+                sb.append(i).append(",name ").append(i).append(",東京,").append(i % 7);
+            }
+            sb.append(lineBreak);
+        }
+        return sb.toString();
+    }
+
+    private MappedCsvDataSet createDataSet(File file, CsvConfiguration configuration, Integer maxRows,
+            int segmentSize) throws Exception {
+        final CsvDataContext dc = new CsvDataContext(file, configuration);
+        final Table table = dc.getDefaultSchema().getTable(0);
+        final List<Column> columns = Arrays.asList(table.getColumnByName("note"), table.getColumnByName("name"),
+                table.getColumnByName("id"));
+        final Charset charset = Charset.forName(configuration.getEncoding());
+        final long dataOffset = ParallelSingleLineCsvDataSet.getDataOffset(file, charset,
+                configuration.getColumnNameLineNumber());
+        return new MappedCsvDataSet(file, charset, dataOffset, columns, maxRows, table.getColumnCount(),
+                configuration, segmentSize);
+    }
+
+    public void testSameRowsAsSingleLineScan() throws Exception {
+        for (String lineBreak : new String[] { "\n", "\r\n", "\r" }) {
+            final File file = createFile("mapped_scan.csv", createContent(500, lineBreak));
+            final CsvConfiguration configuration = new CsvConfiguration(1, false, false);
+
+            final CsvDataContext dc = new CsvDataContext(file, configuration);
+            final DataSet expected = dc.query().from(dc.getDefaultSchema().getTable(0)).select("note", "name", "id")
+                    .execute();
+            assertTrue(expected instanceof SingleLineCsvDataSet);
+            final List<Object[]> expectedRows = expected.toObjectArrays();
+            assertEquals(500, expectedRows.size());
+            assertEquals("[a \"note\", name, 1, 1]", Arrays.toString(expectedRows.get(1)));
+
+            // small segments, so that lines span segments and are longer than
+            // a segment
+            final DataSet dataSet = createDataSet(file, configuration, null, 64);
+            final List<Object[]> rows = new ArrayList<>();
+            while (dataSet.next()) {
+                rows.add(dataSet.getRow().getValues());
+            }
+            dataSet.close();
+
+            assertEquals(expectedRows.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(Arrays.toString(expectedRows.get(i)), Arrays.toString(rows.get(i)));
+            }
+        }
+    }
+
+    public void testNextBatchAndMaxRows() throws Exception {
+        final File file = createFile("mapped_scan_batch.csv", createContent(50, "\n"));
+        final DataSet dataSet = createDataSet(file, new CsvConfiguration(1, false, false), 12, 1024);
+        final RowBatch batch = new RowBatch(dataSet.getSelectItems(), 10);
+        assertTrue(dataSet.nextBatch(batch));
+        assertEquals(10, batch.size());
+        assertEquals("name 0", batch.getValue(0, 1));
+        assertEquals("", batch.getValue(0, 0));
+        assertNull(batch.getValue(2, 0));
+        assertTrue(dataSet.nextBatch(batch));
+        assertEquals(2, batch.size());
+        assertEquals("11", batch.getValue(1, 2));
+        assertFalse(dataSet.nextBatch(batch));
+        dataSet.close();
+    }
+
+    public void testInconsistentRowLength() throws Exception {
+        final File file = createFile("mapped_scan_inconsistent.csv",
+                "id,name,city,note\n1,foo,bar,baz\n\n2,foo,bar\n3,foo,bar,baz\n");
+        final DataSet dataSet = createDataSet(file, new CsvConfiguration(1, true, false), null, 1024);
+        assertTrue(dataSet.next());
+        try {
+            dataSet.next();
+            fail("Exception expected");
+        } catch (InconsistentRowLengthException e) {
+            assertEquals("Inconsistent length of row no. 2. Expected 4 columns but found 3.", e.getMessage());
+            assertEquals("[2, foo, bar]", Arrays.toString(e.getSourceLine()));
+            assertEquals("Row[values=[null, foo, 2]]", e.getProposedRow().toString());
+        }
+        dataSet.close();
+    }
+
+    public void testUsedByDataContext() throws Exception {
+        final File file = createFile("mapped_scan_dc.csv", createContent(20, "\n"));
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(1, false, false));
+        assertFalse(dc.isMemoryMappedScan());
+        dc.setMemoryMappedScan(true);
+
+        final DataSet dataSet = dc.query().from(dc.getDefaultSchema().getTable(0)).select("id").limit(5)
+                .execute();
+        assertTrue(dataSet instanceof MappedCsvDataSet);
+        assertEquals(5, dataSet.toObjectArrays().size());
+
+        // multiline values need the regular parser
+        final CsvDataContext multilineDc = new CsvDataContext(file, new CsvConfiguration(1, false, true));
+        multilineDc.setMemoryMappedScan(true);
+        final DataSet multilineDataSet = multilineDc.query().from(multilineDc.getDefaultSchema().getTable(0))
+                .select("id").execute();
+        assertTrue(multilineDataSet instanceof CsvDataSet);
+        multilineDataSet.close();
+    }
+}
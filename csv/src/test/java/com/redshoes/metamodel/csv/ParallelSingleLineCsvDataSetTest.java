@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.redshoes.metamodel.csv;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.redshoes.metamodel.data.DataSet;
+import com.redshoes.metamodel.data.RowBatch;
+import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.Table;
+
+import junit.framework.TestCase;
+
+public class ParallelSingleLineCsvDataSetTest extends TestCase {
+
+    private File createFile(String name, String content) throws Exception {
+        final File file = new File("target/" + name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String createContent(int rows, String lineBreak) {
+        final StringBuilder sb = new StringBuilder("\uFEFFid,name,city" + lineBreak);
+        for (int i = 0; i < rows; i++) {
+            sb.append(i).append(",\"name ").append(i).append("\",børge").append(lineBreak);
+            if (i % 10 == 0) {
+                // blank lines are skipped
+                sb.append(lineBreak);
+            }
+        }
+        return sb.toString();
+    }
+
+    private ParallelSingleLineCsvDataSet createDataSet(File file, CsvConfiguration configuration, int chunkSize)
+            throws Exception {
+        final CsvDataContext dc = new CsvDataContext(file, configuration);
+        final Table table = dc.getDefaultSchema().getTable(0);
+        final List<Column> columns = Arrays.asList(table.getColumnByName("name"), table.getColumnByName("id"));
+        final Charset charset = Charset.forName(configuration.getEncoding());
+        final long dataOffset = ParallelSingleLineCsvDataSet.getDataOffset(file, charset,
+                configuration.getColumnNameLineNumber());
+        return new ParallelSingleLineCsvDataSet(file, charset, dataOffset, -1, columns, table.getColumnCount(),
+                configuration, 3, chunkSize);
+    }
+
+    public void testSameRowsAsSingleThreadedScan() throws Exception {
+        for (String lineBreak : new String[] { "\n", "\r\n", "\r" }) {
+            final File file = createFile("parallel_scan.csv", createContent(1000, lineBreak));
+            final CsvConfiguration configuration = new CsvConfiguration(1, true, false);
+
+            final CsvDataContext dc = new CsvDataContext(file, configuration);
+            final DataSet expected = dc.query().from(dc.getDefaultSchema().getTable(0)).select("name", "id")
+                    .execute();
+            assertTrue(expected instanceof SingleLineCsvDataSet);
+            final List<Object[]> expectedRows = expected.toObjectArrays();
+            assertEquals(1000, expectedRows.size());
+            assertEquals("[name 0, 0]", Arrays.toString(expectedRows.get(0)));
+
+            // small chunks, so that lines are split across many chunks
+            final DataSet dataSet = createDataSet(file, configuration, 100);
+            final List<Object[]> rows = new ArrayList<>();
+            while (dataSet.next()) {
+                rows.add(dataSet.getRow().getValues());
+            }
+            dataSet.close();
+
+            assertEquals(expectedRows.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(Arrays.toString(expectedRows.get(i)), Arrays.toString(rows.get(i)));
+            }
+        }
+    }
+
+    public void testNextBatch() throws Exception {
+        final File file = createFile("parallel_scan_batch.csv", createContent(250, "\n"));
+        final DataSet dataSet = createDataSet(file, new CsvConfiguration(1, true, false), 64);
+        final RowBatch batch = new RowBatch(dataSet.getSelectItems(), 100);
+        int rows = 0;
+        while (dataSet.nextBatch(batch)) {
+            assertEquals("name " + rows, batch.getValue(0, 0));
+            rows += batch.size();
+        }
+        dataSet.close();
+        assertEquals(250, rows);
+    }
+
+    public void testInconsistentRowLength() throws Exception {
+        final File file = createFile("parallel_scan_inconsistent.csv", "id,name,city\n1,foo,bar\n\n2,foo\n3,foo,bar\n");
+        final DataSet dataSet = createDataSet(file, new CsvConfiguration(1, true, false), 8);
+        assertTrue(dataSet.next());
+        try {
+            dataSet.next();
+            fail("Exception expected");
+        } catch (InconsistentRowLengthException e) {
+            assertEquals("Inconsistent length of row no. 2. Expected 3 columns but found 2.", e.getMessage());
+            assertEquals("Row[values=[foo, 2]]", e.getProposedRow().toString());
+        }
+        assertFalse(dataSet.next());
+    }
+
+    public void testDataOffset() throws Exception {
+        final File file = createFile("parallel_scan_offset.csv", "\uFEFFa\r\nb\rc\nd");
+        assertEquals(3, ParallelSingleLineCsvDataSet.getDataOffset(file, StandardCharsets.UTF_8, 0));
+        assertEquals(6, ParallelSingleLineCsvDataSet.getDataOffset(file, StandardCharsets.UTF_8, 1));
+        assertEquals(8, ParallelSingleLineCsvDataSet.getDataOffset(file, StandardCharsets.UTF_8, 2));
+        assertEquals(10, ParallelSingleLineCsvDataSet.getDataOffset(file, StandardCharsets.UTF_8, 3));
+        assertEquals(-1, ParallelSingleLineCsvDataSet.getDataOffset(file, StandardCharsets.UTF_8, 4));
+    }
+
+    public void testIsSupported() throws Exception {
+        assertTrue(ParallelSingleLineCsvDataSet.isSupported(StandardCharsets.UTF_8));
+        assertTrue(ParallelSingleLineCsvDataSet.isSupported(StandardCharsets.ISO_8859_1));
+        assertFalse(ParallelSingleLineCsvDataSet.isSupported(StandardCharsets.UTF_16));
+    }
+
+    public void testUsedByDataContext() throws Exception {
+        final File file = createFile("parallel_scan_big.csv",
+                createContent(ParallelSingleLineCsvDataSet.DEFAULT_CHUNK_SIZE / 20, "\n"));
+        final CsvDataContext dc = new CsvDataContext(file, new CsvConfiguration(1, true, false));
+        dc.setParallelScanThreads(4);
+
+        final DataSet dataSet = dc.query().from(dc.getDefaultSchema().getTable(0)).select("id").execute();
+        assertTrue(dataSet instanceof ParallelSingleLineCsvDataSet);
+        int rows = 0;
+        while (dataSet.next()) {
+            assertEquals(Integer.toString(rows), dataSet.getRow().getValue(0));
+            rows++;
+        }
+        dataSet.close();
+        assertEquals(ParallelSingleLineCsvDataSet.DEFAULT_CHUNK_SIZE / 20, rows);
+
+        final DataSet limitedDataSet = dc.query().from(dc.getDefaultSchema().getTable(0)).select("id").limit(10)
+                .execute();
+        assertTrue(limitedDataSet instanceof SingleLineCsvDataSet);
+        limitedDataSet.close();
+    }
+
+    public void testSplit() throws Exception {
+        final File file = createFile("parallel_scan_split.csv", "id\n0\n1\n2\n3\n4\n5\n6\n7\n8\n9\n");
+        assertEquals("[3, 9, 15, 23]", Arrays.toString(ParallelSingleLineCsvDataSet.split(file, 3, 3, 1)));
+        assertEquals("[3, 13, 23]", Arrays.toString(ParallelSingleLineCsvDataSet.split(file, 3, 3, 8)));
+        assertEquals("[3, 23]", Arrays.toString(ParallelSingleLineCsvDataSet.split(file, 3, 3, 100)));
+
+        // a carriage return on its own is a line break as well
+        final File crFile = createFile("parallel_scan_split_cr.csv", "id\r0\r1\r2\r3\r4\r5\r6\r7\r8\r9\r");
+        assertEquals("[3, 9, 15, 23]", Arrays.toString(ParallelSingleLineCsvDataSet.split(crFile, 3, 3, 1)));
+        final File crLfFile = createFile("parallel_scan_split_crlf.csv", "id\r\n0\r\n1\r\n2\r\n3\r\n");
+        assertEquals("[4, 10, 16]", Arrays.toString(ParallelSingleLineCsvDataSet.split(crLfFile, 4, 2, 1)));
+    }
+
+    public void testPartitionsOfParallelQueries() throws Exception {
+        final File file = createFile("parallel_scan_partitions.csv", createContent(20000, "\r\n"));
+        final CsvDataContext serialDataContext = new CsvDataContext(file, new CsvConfiguration(1, true, false));
+        final CsvDataContext parallelDataContext = new CsvDataContext(file, new CsvConfiguration(1, true, false));
+        parallelDataContext.setParallelism(4);
+
+        final Table table = parallelDataContext.getDefaultSchema().getTable(0);
+        final List<DataSet> partitions = parallelDataContext.materializeMainSchemaTablePartitions(table, table
+                .getColumns(), 4);
+        assertEquals(4, partitions.size());
+        int rows = 0;
+        for (DataSet partition : partitions) {
+            rows += partition.toObjectArrays().size();
+        }
+        assertEquals(20000, rows);
+
+        final String[] queries = { "SELECT id, name FROM parallel_scan_partitions.csv WHERE id LIKE '%99'",
+                "SELECT COUNT(*), MAX(name) FROM parallel_scan_partitions.csv",
+                "SELECT city, COUNT(*), FIRST(id), LAST(id) FROM parallel_scan_partitions.csv GROUP BY city" };
+        for (String sql : queries) {
+            final List<Object[]> expected = serialDataContext.executeQuery(sql).toObjectArrays();
+            final List<Object[]> actual = parallelDataContext.executeQuery(sql).toObjectArrays();
+            assertEquals(sql, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(sql, Arrays.toString(expected.get(i)), Arrays.toString(actual.get(i)));
+            }
+        }
+    }
+}
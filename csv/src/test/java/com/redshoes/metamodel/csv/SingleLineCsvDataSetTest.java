@@ -19,9 +19,12 @@
 package com.redshoes.metamodel.csv;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import com.redshoes.metamodel.data.DataSet;
+import com.redshoes.metamodel.data.RowBatch;
 import com.redshoes.metamodel.schema.Table;
 
 import junit.framework.TestCase;
@@ -64,4 +67,26 @@ public class SingleLineCsvDataSetTest extends TestCase {
         assertFalse(ds.next());
         ds.close();
     }
+
+    public void testNextBatch() throws Exception {
+        CsvConfiguration configuration = new CsvConfiguration(1, true, false);
+        CsvDataContext dc = new CsvDataContext(new File("src/test/resources/csv_people.csv"), configuration);
+
+        DataSet dataSet = dc.query().from("csv_people.csv").select("age", "name").execute();
+        RowBatch batch = new RowBatch(dataSet.getSelectItems(), 3);
+
+        assertTrue(dataSet.nextBatch(batch));
+        assertEquals(3, batch.size());
+        assertEquals("Row[values=[18, mike]]", batch.getRow(0).toString());
+        assertEquals("Row[values=[18, peter]]", batch.getRow(2).toString());
+
+        List<Object> names = new ArrayList<>();
+        while (dataSet.nextBatch(batch)) {
+            names.addAll(Arrays.asList(batch.getColumn(1)).subList(0, batch.size()));
+        }
+        assertEquals("[bob, barbara, barb, charlotte, hillary, vera, carrie]", names.toString());
+        assertFalse(dataSet.nextBatch(batch));
+
+        dataSet.close();
+    }
 }
\ No newline at end of file
@@ -298,6 +298,7 @@ public class DynamoDbDataContext extends QueryPostprocessDataContext implements
         try {
             update.run(callback);
         } finally {
+            clearParsedQueryCache();
             if (callback.isInterrupted()) {
                 Thread.currentThread().interrupt();
             }
@@ -277,8 +277,12 @@ public class ElasticSearchDataContext extends AbstractElasticSearchDataContext {
     @Override
     public UpdateSummary executeUpdate(UpdateScript update) {
         final ElasticSearchUpdateCallback callback = new ElasticSearchUpdateCallback(this);
-        update.run(callback);
-        callback.onExecuteUpdateFinished();
+        try {
+            update.run(callback);
+            callback.onExecuteUpdateFinished();
+        } finally {
+            clearParsedQueryCache();
+        }
         return callback.getUpdateSummary();
     }
 
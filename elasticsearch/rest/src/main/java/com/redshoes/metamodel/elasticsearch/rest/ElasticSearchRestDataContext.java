@@ -307,8 +307,12 @@ public class ElasticSearchRestDataContext extends AbstractElasticSearchDataConte
     public UpdateSummary executeUpdate(UpdateScript update) {
         final boolean isBatch = update instanceof BatchUpdateScript;
         final ElasticSearchRestUpdateCallback callback = new ElasticSearchRestUpdateCallback(this, isBatch);
-        update.run(callback);
-        callback.onExecuteUpdateFinished();
+        try {
+            update.run(callback);
+            callback.onExecuteUpdateFinished();
+        } finally {
+            clearParsedQueryCache();
+        }
         return callback.getUpdateSummary();
     }
 
@@ -217,6 +217,7 @@ public final class ExcelDataContext extends QueryPostprocessDataContext implemen
                 update.run(updateCallback);
             } finally {
                 updateCallback.close();
+                clearParsedQueryCache();
             }
         }
         return updateCallback.getUpdateSummary();
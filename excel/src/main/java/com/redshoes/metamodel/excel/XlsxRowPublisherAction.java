@@ -94,10 +94,12 @@ class XlsxRowPublisherAction implements Action<RowPublisher> {
 			logger.debug("Parsing stop signal thrown");
 		} catch (Exception e) {
 			logger.warn("Unexpected error occurred while parsing", e);
+			// not finishing the publisher here, the error is handed over to
+			// the consumer after the rows published so far
 			throw e;
 		} finally {
-			publisher.finished();
 			FileHelper.safeClose(sheetData);
 		}
+		publisher.finished();
 	}
 }
\ No newline at end of file
@@ -20,17 +20,25 @@ package com.redshoes.metamodel.fixedwidth;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.redshoes.metamodel.MetaModelException;
 import com.redshoes.metamodel.QueryPostprocessDataContext;
 import com.redshoes.metamodel.data.DataSet;
+import com.redshoes.metamodel.data.EmptyDataSet;
+import com.redshoes.metamodel.data.FirstRowDataSet;
+import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.schema.naming.ColumnNamingContextImpl;
 import com.redshoes.metamodel.schema.naming.ColumnNamingSession;
 import com.redshoes.metamodel.schema.naming.ColumnNamingStrategy;
 import com.redshoes.metamodel.util.FileHelper;
 import com.redshoes.metamodel.util.FileResource;
+import com.redshoes.metamodel.util.LineOffsetIndex;
 import com.redshoes.metamodel.util.Resource;
 import com.redshoes.metamodel.util.ResourceUtils;
 import com.redshoes.metamodel.schema.Column;
@@ -47,8 +55,12 @@ import com.redshoes.metamodel.schema.TableType;
  */
 public class FixedWidthDataContext extends QueryPostprocessDataContext {
 
+    private final Object INDEX_LOCK = new Object();
+
     private final Resource _resource;
     private final FixedWidthConfiguration _configuration;
+    private volatile Resource _lineOffsetIndexResource;
+    private LineOffsetIndex _lineOffsetIndex;
 
     public FixedWidthDataContext(File file, FixedWidthConfiguration configuration) {
         super(true);
@@ -80,6 +92,35 @@ public class FixedWidthDataContext extends QueryPostprocessDataContext {
         return _resource;
     }
 
+    /**
+     * Sets a resource to keep a {@link LineOffsetIndex} of the file in,
+     * typically a sidecar file next to it. With an index, queries with a first
+     * row seek close to that row instead of reading all the rows before it,
+     * and COUNT(*) queries without a WHERE clause are answered without
+     * scanning the file. The index is also used to split the file into
+     * partitions for parallel queries, see {@link #setParallelism(int)}.
+     * 
+     * The index is built on first use and refreshed when the size or last
+     * modification time of the file changes. An index is only used with line
+     * based (non-EBCDIC) configurations, when the resource is a
+     * {@link FileResource} and the encoding is UTF-8 or a single byte
+     * encoding.
+     * 
+     * @param lineOffsetIndexResource
+     *            the resource of the index, or null (the default) to not use
+     *            an index
+     */
+    public void setLineOffsetIndexResource(Resource lineOffsetIndexResource) {
+        synchronized (INDEX_LOCK) {
+            _lineOffsetIndexResource = lineOffsetIndexResource;
+            _lineOffsetIndex = null;
+        }
+    }
+
+    public Resource getLineOffsetIndexResource() {
+        return _lineOffsetIndexResource;
+    }
+
     @Override
     protected Schema getMainSchema() throws MetaModelException {
         final String schemaName = getDefaultSchemaName();
@@ -150,8 +191,150 @@ public class FixedWidthDataContext extends QueryPostprocessDataContext {
         }
     }
 
+    @Override
+    protected Number executeCountQuery(Table table, List<FilterItem> whereItems, boolean functionApproximationAllowed) {
+        if (whereItems == null || whereItems.isEmpty()) {
+            final LineOffsetIndex index = getLineOffsetIndex();
+            if (index != null) {
+                // the reader stops at the first empty line
+                return index.getLineCountBeforeEmptyLine();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected DataSet materializeMainSchemaTable(Table table, List<Column> columns, int firstRow, int maxRows) {
+        if (firstRow > 1) {
+            final LineOffsetIndex index = getLineOffsetIndex();
+            if (index != null) {
+                return materializeMainSchemaTable(index, columns, firstRow - 1, maxRows);
+            }
+        }
+        return super.materializeMainSchemaTable(table, columns, firstRow, maxRows);
+    }
+
+    private DataSet materializeMainSchemaTable(LineOffsetIndex index, List<Column> columns, long line, int maxRows) {
+        if (line >= index.getLineCountBeforeEmptyLine()) {
+            return EmptyDataSet.fromColumns(columns);
+        }
+
+        // seek to the closest indexed line and skip the lines after it
+        final long offset = index.getCheckpointOffset(line);
+        final int linesToSkip = (int) (line - index.getCheckpointLine(line));
+        final Integer maxRowsOrNull = (maxRows > 0 ? (int) Math.min(Integer.MAX_VALUE, (long) maxRows
+                + linesToSkip) : null);
+
+        DataSet dataSet = new FixedWidthDataSet(createReader(offset), columns, maxRowsOrNull);
+        if (linesToSkip > 0) {
+            dataSet = new FirstRowDataSet(dataSet, linesToSkip + 1);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Splits the file into ranges of lines that start at lines with an offset
+     * in the line offset index, so partitions are only available when an index
+     * is used, see {@link #setLineOffsetIndexResource(Resource)}.
+     */
+    @Override
+    protected List<DataSet> materializeMainSchemaTablePartitions(Table table, List<Column> columns,
+            int maxPartitions) {
+        final LineOffsetIndex index = getLineOffsetIndex();
+        if (index == null) {
+            return null;
+        }
+
+        final long lines = index.getLineCountBeforeEmptyLine();
+        final int stride = index.getStride();
+        final long checkpoints = (lines + stride - 1) / stride;
+        final long partitionCount = Math.min(maxPartitions, checkpoints);
+        if (partitionCount < 2) {
+            return null;
+        }
+        final long linesPerPartition = ((checkpoints + partitionCount - 1) / partitionCount) * stride;
+
+        final List<Long> firstLines = new ArrayList<>();
+        for (long line = 0; line < lines; line += linesPerPartition) {
+            if (index.getCheckpointLine(line) != line) {
+                // a trailing line without a line break has no offset
+                break;
+            }
+            firstLines.add(line);
+        }
+        if (firstLines.size() < 2) {
+            return null;
+        }
+
+        final List<DataSet> partitions = new ArrayList<>(firstLines.size());
+        for (int i = 0; i < firstLines.size(); i++) {
+            final long firstLine = firstLines.get(i);
+            final long endLine = i + 1 < firstLines.size() ? firstLines.get(i + 1) : lines;
+            final FixedWidthReader reader = createReader(index.getCheckpointOffset(firstLine));
+            partitions.add(new FixedWidthDataSet(reader, columns, (int) (endLine - firstLine)));
+        }
+        return partitions;
+    }
+
+    private FixedWidthReader createReader(long offset) {
+        final File file = ((FileResource) _resource).getFile();
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            inputStream.getChannel().position(offset);
+        } catch (IOException e) {
+            FileHelper.safeClose(inputStream);
+            throw new MetaModelException("IOException occurred while reading from resource: " + _resource, e);
+        }
+        return createReader(inputStream);
+    }
+
+    /**
+     * Gets the line offset index of the file, building or refreshing it if
+     * necessary.
+     * 
+     * @return the index, or null if no index should be used
+     */
+    private LineOffsetIndex getLineOffsetIndex() {
+        final Resource indexResource = _lineOffsetIndexResource;
+        if (indexResource == null || _configuration instanceof EbcdicConfiguration
+                || !(_resource instanceof FileResource)) {
+            return null;
+        }
+        final Charset charset;
+        try {
+            charset = Charset.forName(_configuration.getEncoding());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final File file = ((FileResource) _resource).getFile();
+        if (!LineOffsetIndex.isSupported(charset) || !file.exists()) {
+            return null;
+        }
+
+        synchronized (INDEX_LOCK) {
+            try {
+                final long dataOffset = LineOffsetIndex.findLineOffset(file, 0, _configuration
+                        .getColumnNameLineNumber());
+                if (dataOffset == -1) {
+                    return null;
+                }
+
+                final LineOffsetIndex index = LineOffsetIndex.load(file, dataOffset, indexResource,
+                        _lineOffsetIndex);
+                _lineOffsetIndex = index;
+                return index;
+            } catch (IOException e) {
+                throw new MetaModelException("IOException occurred while indexing resource: " + _resource, e);
+            }
+        }
+    }
+
     private FixedWidthReader createReader() {
-        final InputStream inputStream = _resource.read();
+        return createReader(_resource.read());
+    }
+
+    private FixedWidthReader createReader(InputStream inputStream) {
         final FixedWidthReader reader;
 
         if (_configuration instanceof EbcdicConfiguration) {
@@ -21,6 +21,7 @@ package com.redshoes.metamodel.fixedwidth;
 import com.redshoes.metamodel.data.AbstractDataSet;
 import com.redshoes.metamodel.data.DefaultRow;
 import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
 import com.redshoes.metamodel.query.SelectItem;
 import com.redshoes.metamodel.schema.Column;
 import com.redshoes.metamodel.util.FileHelper;
@@ -34,13 +35,16 @@ import java.util.stream.Collectors;
 class FixedWidthDataSet extends AbstractDataSet {
 
 	private final FixedWidthReader _reader;
+	private final int[] _columnNumbers;
 	private volatile Integer _rowsRemaining;
 	private volatile Row _row;
+	private volatile boolean _closed;
 
 	public FixedWidthDataSet(FixedWidthReader reader, List<Column> columns,
 			Integer maxRows) {
 		super(columns.stream().map(SelectItem::new).collect(Collectors.toList()));
 		_reader = reader;
+		_columnNumbers = columns.stream().mapToInt(Column::getColumnNumber).toArray();
 		_rowsRemaining = maxRows;
 	}
 
@@ -49,6 +53,7 @@ class FixedWidthDataSet extends AbstractDataSet {
 		FileHelper.safeClose(_reader);
 		_row = null;
 		_rowsRemaining = null;
+		_closed = true;
 	}
 
 	@Override
@@ -75,7 +80,7 @@ class FixedWidthDataSet extends AbstractDataSet {
 	}
 
 	private boolean nextInternal() {
-		if (_reader == null) {
+		if (_reader == null || _closed) {
 			return false;
 		}
 
@@ -93,11 +98,63 @@ class FixedWidthDataSet extends AbstractDataSet {
 			return false;
 		}
 		
-		final int size = getHeader().size();
-        Object[] rowValues = new Object[size];
-		for (int i = 0; i < size; i++) {
-			Column column = getHeader().getSelectItem(i).getColumn();
-			int columnNumber = column.getColumnNumber();
+		Object[] rowValues = new Object[_columnNumbers.length];
+		toRowValues(stringValues, rowValues);
+		_row = new DefaultRow(getHeader(), rowValues);
+
+		if (exception != null) {
+			throw new InconsistentValueWidthException(_row, exception);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a batch of lines, without creating a row per line.
+	 */
+	@Override
+	public boolean nextBatch(RowBatch batch) {
+		batch.clear();
+		_row = null;
+		if (_reader == null || _closed) {
+			return false;
+		}
+
+		final Object[] rowValues = new Object[_columnNumbers.length];
+		while (!batch.isFull()) {
+			if (_rowsRemaining != null) {
+				if (_rowsRemaining <= 0) {
+					break;
+				}
+				_rowsRemaining--;
+			}
+
+			InconsistentValueWidthException exception;
+			String[] stringValues;
+			try {
+				stringValues = _reader.readLine();
+				exception = null;
+			} catch (InconsistentValueWidthException e) {
+				stringValues = e.getSourceResult();
+				exception = e;
+			}
+			if (stringValues == null) {
+				close();
+				break;
+			}
+
+			toRowValues(stringValues, rowValues);
+			if (exception != null) {
+				final Row row = new DefaultRow(getHeader(), rowValues.clone());
+				throw new InconsistentValueWidthException(row, exception);
+			}
+			batch.addRow(rowValues);
+		}
+		return !batch.isEmpty();
+	}
+
+	private void toRowValues(String[] stringValues, Object[] rowValues) {
+		for (int i = 0; i < rowValues.length; i++) {
+			int columnNumber = _columnNumbers[i];
 			if (columnNumber < stringValues.length) {
 				rowValues[i] = stringValues[columnNumber];
 			} else {
@@ -105,11 +162,5 @@ class FixedWidthDataSet extends AbstractDataSet {
 				rowValues[i] = null;
 			}
 		}
-		_row = new DefaultRow(getHeader(), rowValues);
-
-		if (exception != null) {
-			throw new InconsistentValueWidthException(_row, exception);
-		}
-		return true;
 	}
 }
\ No newline at end of file
@@ -23,7 +23,11 @@ import java.io.File;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import com.redshoes.metamodel.DataContext;
 import com.redshoes.metamodel.data.DataSet;
@@ -31,6 +35,7 @@ import com.redshoes.metamodel.query.Query;
 import com.redshoes.metamodel.schema.Schema;
 import com.redshoes.metamodel.schema.Table;
 import com.redshoes.metamodel.schema.naming.CustomColumnNamingStrategy;
+import com.redshoes.metamodel.util.FileResource;
 import com.redshoes.metamodel.util.UrlResource;
 
 import junit.framework.TestCase;
@@ -244,6 +249,86 @@ public class FixedWidthDataContextTest extends TestCase {
         assertNotNull(table.getColumnByName(secondColumnName));
     }
 
+    public void testLineOffsetIndex() throws Exception {
+        final File file = new File("target/fixed_width_line_offset_index.txt");
+        final StringBuilder sb = new StringBuilder("id    name  \r\n");
+        for (int i = 0; i < 3000; i++) {
+            sb.append(String.format("%-6d%-6s", i, "n" + i)).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        // the reader stops at the first empty line
+        sb.append("\n3000  n3000 \n");
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        final FileResource indexResource = new FileResource("target/fixed_width_line_offset_index.txt.idx");
+        indexResource.getFile().delete();
+
+        final FixedWidthDataContext dc = new FixedWidthDataContext(file, new FixedWidthConfiguration(6));
+        dc.setLineOffsetIndexResource(indexResource);
+        final Table table = dc.getDefaultSchema().getTable(0);
+
+        assertEquals(3000, ((Number) dc.query().from(table).selectCount().execute().toObjectArrays().get(0)[0])
+                .intValue());
+        assertTrue(indexResource.isExists());
+
+        try (DataSet dataSet = dc.query().from(table).select("name", "id").firstRow(2500).maxRows(3).execute()) {
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[n2499, 2499]]", dataSet.getRow().toString());
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[n2500, 2500]]", dataSet.getRow().toString());
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[n2501, 2501]]", dataSet.getRow().toString());
+            assertFalse(dataSet.next());
+        }
+        assertEquals(1, dc.query().from(table).select("id").firstRow(3000).execute().toObjectArrays().size());
+        assertEquals(0, dc.query().from(table).select("id").firstRow(3001).execute().toObjectArrays().size());
+    }
+
+    public void testPartitionsOfParallelQueries() throws Exception {
+        final File file = new File("target/fixed_width_partitions.txt");
+        final StringBuilder sb = new StringBuilder("id    grp   \n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append(String.format("%-6d%-6s", i, "g" + (i % 7))).append("\n");
+        }
+        // the last line has no line break, and thus no offset in the index
+        sb.append(String.format("%-6d%-6s", 5000, "g0"));
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        final FileResource indexResource = new FileResource("target/fixed_width_partitions.txt.idx");
+        indexResource.getFile().delete();
+
+        final FixedWidthDataContext serial = new FixedWidthDataContext(file, new FixedWidthConfiguration(6));
+        final FixedWidthDataContext parallel = new FixedWidthDataContext(file, new FixedWidthConfiguration(6));
+        final Table table = parallel.getDefaultSchema().getTable(0);
+
+        // without an index the file is not partitioned
+        assertNull(parallel.materializeMainSchemaTablePartitions(table, table.getColumns(), 4));
+
+        parallel.setLineOffsetIndexResource(indexResource);
+        parallel.setParallelism(4);
+
+        final List<DataSet> partitions = parallel.materializeMainSchemaTablePartitions(table, table.getColumns(), 4);
+        assertEquals(3, partitions.size());
+        int rows = 0;
+        for (DataSet partition : partitions) {
+            try (DataSet dataSet = partition) {
+                while (dataSet.next()) {
+                    assertEquals(String.valueOf(rows), dataSet.getRow().getValue(0));
+                    rows++;
+                }
+            }
+        }
+        assertEquals(5001, rows);
+
+        final String[] queries = { "SELECT COUNT(*) FROM fixed_width_partitions.txt WHERE grp = 'g3'",
+                "SELECT grp, COUNT(*), MAX(id) FROM fixed_width_partitions.txt GROUP BY grp ORDER BY grp",
+                "SELECT id FROM fixed_width_partitions.txt WHERE grp = 'g0'" };
+        for (String query : queries) {
+            assertEquals(query, serial.executeQuery(query).toObjectArrays().stream().map(Arrays::toString)
+                    .collect(Collectors.toList()), parallel.executeQuery(query).toObjectArrays().stream().map(
+                            Arrays::toString).collect(Collectors.toList()));
+        }
+    }
+
     public void testUrlResource() throws MalformedURLException {
         final URL url = new URL("http://localhost:8080/fixed-width.txt");
         final DataContext dataContext = new FixedWidthDataContext(new ByteUrlResource(url),
@@ -254,7 +254,11 @@ public class HBaseDataContext extends QueryPostprocessDataContext implements Upd
     @Override
     public UpdateSummary executeUpdate(UpdateScript update) {
         final HBaseUpdateCallback callback = new HBaseUpdateCallback(this);
-        update.run(callback);
+        try {
+            update.run(callback);
+        } finally {
+            clearParsedQueryCache();
+        }
 
         return callback.getUpdateSummary();
     }
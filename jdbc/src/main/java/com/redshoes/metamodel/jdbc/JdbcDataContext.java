@@ -25,6 +25,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -884,6 +885,48 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * The fingerprint identifies the database, user and metadata settings of this DataContext as well as the list of
+     * tables, so that snapshots become stale when tables are created, dropped or renamed. Changes within a table, such
+     * as added or altered columns, are not detected. After such changes a snapshot must be written again (see
+     * {@link #writeSchemaSnapshot()}), or {@link #refreshSchemas()} used to bypass the snapshot.
+     */
+    @Override
+    protected String getSchemaSnapshotFingerprint() {
+        final Connection connection = getConnection();
+        try {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            return metaData.getURL() + '|' + metaData.getUserName() + '|' + _databaseProductName + '|'
+                    + _databaseVersion + '|' + _catalogName + '|' + Arrays.toString(_tableTypes) + '|'
+                    + _usesCatalogsAsSchemas + '|' + getQueryRewriter().getClass().getName() + '|'
+                    + System.getProperty(SYSTEM_PROPERTY_CONVERT_LOBS) + '|' + getTableListFingerprint(metaData);
+        } catch (SQLException e) {
+            logger.debug("Failed to create schema snapshot fingerprint", e);
+            return null;
+        } finally {
+            closeIfNecessary(connection);
+        }
+    }
+
+    private String getTableListFingerprint(DatabaseMetaData metaData) throws SQLException {
+        final List<String> tableNames = new ArrayList<>();
+        try (ResultSet tables = metaData.getTables(_catalogName, null, null, JdbcUtils.getTableTypesAsStrings(
+                _tableTypes))) {
+            while (tables.next()) {
+                tableNames.add(tables.getString(SCHEMA_NAME_IDENTIFIER) + '.' + tables.getString("TABLE_NAME"));
+            }
+        }
+        Collections.sort(tableNames);
+        return tableNames.size() + ":" + Integer.toHexString(tableNames.hashCode());
+    }
+
+    @Override
+    protected Schema restoreSchemaSnapshot(Schema schema) {
+        return _metadataLoader.restoreSchema(schema);
+    }
+
     @Override
     protected Schema getSchemaByNameInternal(String name) {
         final JdbcSchema schema = new JdbcSchema(name, _metadataLoader);
@@ -934,6 +977,9 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
         } catch (RuntimeException e) {
             updateCallback.close(false);
             throw e;
+        } finally {
+            // the update may have created or dropped tables
+            clearParsedQueryCache();
         }
 
         return updateCallback.getUpdateSummary();
@@ -27,6 +27,7 @@ import com.redshoes.metamodel.MetaModelException;
 import com.redshoes.metamodel.data.AbstractDataSet;
 import com.redshoes.metamodel.data.DefaultRow;
 import com.redshoes.metamodel.data.Row;
+import com.redshoes.metamodel.data.RowBatch;
 import com.redshoes.metamodel.jdbc.dialects.DefaultQueryRewriter;
 import com.redshoes.metamodel.jdbc.dialects.IQueryRewriter;
 import com.redshoes.metamodel.query.Query;
@@ -52,6 +53,7 @@ final class JdbcDataSet extends AbstractDataSet {
     private final boolean _closeConnectionOnCloseDataSet;
     private Row _row;
     private boolean _closed;
+    private boolean _exhausted;
 
     /**
      * Constructor used for regular query execution.
@@ -120,22 +122,7 @@ final class JdbcDataSet extends AbstractDataSet {
             boolean result = _resultSet.next();
             if (result) {
                 Object[] values = new Object[getHeader().size()];
-                for (int i = 0; i < values.length; i++) {
-
-                    values[i] = getValue(_resultSet, i);
-
-                    try {
-                        // some drivers return boxed primitive types in stead of
-                        // nulls (such as false in stead of null for a Boolean
-                        // column)
-                        if (_resultSet.wasNull()) {
-                            values[i] = null;
-                        }
-                    } catch (Exception e) {
-                        logger.debug("Could not invoke wasNull() method on resultset, error message: {}", e
-                                .getMessage());
-                    }
-                }
+                readValues(values);
                 _row = new DefaultRow(getHeader(), values);
             } else {
                 _row = null;
@@ -146,6 +133,55 @@ final class JdbcDataSet extends AbstractDataSet {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * The values of the resultset are read straight into the batch, without
+     * creating a row per record.
+     */
+    @Override
+    public boolean nextBatch(RowBatch batch) throws MetaModelException {
+        batch.clear();
+        _row = null;
+        if (_closed || _exhausted) {
+            return false;
+        }
+        try {
+            final Object[] values = new Object[getHeader().size()];
+            while (!batch.isFull()) {
+                if (!_resultSet.next()) {
+                    // some drivers do not allow moving past the end twice
+                    _exhausted = true;
+                    break;
+                }
+                readValues(values);
+                batch.addRow(values);
+            }
+        } catch (SQLException e) {
+            throw JdbcUtils.wrapException(e, "get next record in resultset", JdbcUtils.JdbcActionType.QUERY);
+        }
+        return !batch.isEmpty();
+    }
+
+    private void readValues(Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+
+            values[i] = getValue(_resultSet, i);
+
+            try {
+                // some drivers return boxed primitive types in stead of
+                // nulls (such as false in stead of null for a Boolean
+                // column)
+                if (_resultSet.wasNull()) {
+                    values[i] = null;
+                }
+            } catch (Exception e) {
+                logger.debug("Could not invoke wasNull() method on resultset, error message: {}", e
+                        .getMessage());
+            }
+        }
+    }
+
     private Object getValue(ResultSet resultSet, int i) throws SQLException {
         final SelectItem selectItem = getHeader().getSelectItem(i);
         final int columnIndex = i + 1;
@@ -38,6 +38,7 @@ import com.redshoes.metamodel.schema.Column;
 import com.redshoes.metamodel.schema.ColumnType;
 import com.redshoes.metamodel.schema.MutableColumn;
 import com.redshoes.metamodel.schema.MutableRelationship;
+import com.redshoes.metamodel.schema.Relationship;
 import com.redshoes.metamodel.schema.Schema;
 import com.redshoes.metamodel.schema.Table;
 import com.redshoes.metamodel.schema.TableType;
@@ -309,6 +310,75 @@ final class JdbcMetadataLoader implements MetadataLoader {
         }
     }
 
+    /**
+     * Creates a {@link JdbcSchema} from a schema snapshot. All tables, columns, indexes, primary keys and relationships
+     * are taken from the snapshot and are marked as loaded, so that no metadata is queried for them.
+     */
+    @Override
+    public JdbcSchema restoreSchema(Schema schemaSnapshot) {
+        final JdbcSchema schema = new JdbcSchema(schemaSnapshot.getName(), this);
+        for (Table tableSnapshot : schemaSnapshot.getTables()) {
+            final JdbcTable table = new JdbcTable(tableSnapshot.getName(), tableSnapshot.getType(), schema, this);
+            final int identity = System.identityHashCode(table);
+            _loadedColumns.add(identity);
+            _loadedIndexes.add(identity);
+            _loadedPrimaryKeys.add(identity);
+
+            table.setRemarks(tableSnapshot.getRemarks());
+            table.setQuote(tableSnapshot.getQuote());
+            for (Column columnSnapshot : tableSnapshot.getColumns()) {
+                final JdbcColumn column = new JdbcColumn(columnSnapshot.getName(),
+                        restoreColumnType(columnSnapshot.getType()), table, columnSnapshot.getColumnNumber(),
+                        columnSnapshot.isNullable());
+                column.setRemarks(columnSnapshot.getRemarks());
+                column.setNativeType(columnSnapshot.getNativeType());
+                column.setColumnSize(columnSnapshot.getColumnSize());
+                column.setDecimalDigits(columnSnapshot.getDecimalDigits());
+                column.setIndexed(columnSnapshot.isIndexed());
+                column.setPrimaryKey(columnSnapshot.isPrimaryKey());
+                column.setQuote(columnSnapshot.getQuote());
+                table.addColumn(column);
+            }
+            schema.addTable(table);
+        }
+
+        _loadedRelations.add(System.identityHashCode(schema));
+        for (Relationship relationshipSnapshot : schemaSnapshot.getRelationships()) {
+            final List<Column> primaryColumns = restoreColumns(schema, relationshipSnapshot.getPrimaryColumns());
+            final List<Column> foreignColumns = restoreColumns(schema, relationshipSnapshot.getForeignColumns());
+            if (primaryColumns != null && foreignColumns != null) {
+                MutableRelationship.createRelationship(primaryColumns, foreignColumns);
+            }
+        }
+        return schema;
+    }
+
+    private List<Column> restoreColumns(JdbcSchema schema, List<Column> columnSnapshots) {
+        final List<Column> columns = new ArrayList<>(columnSnapshots.size());
+        for (Column columnSnapshot : columnSnapshots) {
+            final Table table = schema.getTableByName(columnSnapshot.getTable().getName());
+            if (table == null) {
+                // relationship to a table in another schema
+                return null;
+            }
+            columns.add(table.getColumnByName(columnSnapshot.getName()));
+        }
+        return columns;
+    }
+
+    private ColumnType restoreColumnType(ColumnType columnType) {
+        // the LOB conversion types are not constants of ColumnType and are
+        // compared by identity
+        for (ColumnType lobType : new ColumnType[] { JdbcDataContext.COLUMN_TYPE_CLOB_AS_STRING,
+                JdbcDataContext.COLUMN_TYPE_BLOB_AS_BYTES }) {
+            if (lobType.getName().equals(columnType.getName())
+                    && lobType.getJavaEquivalentClass() == columnType.getJavaEquivalentClass()) {
+                return lobType;
+            }
+        }
+        return columnType;
+    }
+
     private boolean isLobConversionEnabled() {
         final String systemProperty = System.getProperty(JdbcDataContext.SYSTEM_PROPERTY_CONVERT_LOBS);
         return "true".equals(systemProperty);
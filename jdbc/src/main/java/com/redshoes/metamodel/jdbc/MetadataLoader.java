@@ -20,6 +20,8 @@ package com.redshoes.metamodel.jdbc;
 
 import java.sql.Connection;
 
+import com.redshoes.metamodel.schema.Schema;
+
 /**
  * Defines the interface for a component capable of loading schema-model
  * metadata.
@@ -45,4 +47,6 @@ interface MetadataLoader {
     public void loadIndexes(JdbcTable jdbcTable, Connection connection);
 
     public void loadPrimaryKeys(JdbcTable jdbcTable, Connection connection);
+
+    public JdbcSchema restoreSchema(Schema schemaSnapshot);
 }
@@ -19,6 +19,7 @@
 package com.redshoes.metamodel.jdbc;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -44,7 +45,10 @@ import com.redshoes.metamodel.data.Row;
 import com.redshoes.metamodel.jdbc.dialects.DefaultQueryRewriter;
 import com.redshoes.metamodel.jdbc.dialects.IQueryRewriter;
 import com.redshoes.metamodel.schema.Column;
+import com.redshoes.metamodel.schema.MutableSchema;
+import com.redshoes.metamodel.schema.MutableTable;
 import com.redshoes.metamodel.schema.Schema;
+import com.redshoes.metamodel.schema.SchemaSnapshot;
 import com.redshoes.metamodel.schema.Table;
 import com.redshoes.metamodel.schema.TableType;
 import org.apache.commons.dbcp.BasicDataSource;
@@ -56,6 +60,7 @@ import com.redshoes.metamodel.query.OrderByItem;
 import com.redshoes.metamodel.query.Query;
 import com.redshoes.metamodel.query.QueryParameter;
 import com.redshoes.metamodel.query.SelectItem;
+import com.redshoes.metamodel.util.InMemoryResource;
 import org.easymock.EasyMock;
 
 public class JdbcDataContextTest extends JdbcTestCase {
@@ -444,6 +449,67 @@ public class JdbcDataContextTest extends JdbcTestCase {
         connection.close();
     }
 
+    public void testSchemaSnapshot() throws Exception {
+        final Connection connection = getTestDbConnection();
+        final InMemoryResource resource = new InMemoryResource("snapshot");
+        final JdbcDataContext dc1 = new JdbcDataContext(connection, new TableType[] { TableType.TABLE }, null);
+        dc1.setSchemaSnapshotResource(resource);
+        dc1.writeSchemaSnapshot();
+
+        final JdbcDataContext dc2 = new JdbcDataContext(connection, new TableType[] { TableType.TABLE }, null);
+        dc2.setSchemaSnapshotResource(resource);
+        final Table productsTable = dc2.getDefaultSchema().getTableByName("PRODUCTS");
+        assertTrue(productsTable instanceof JdbcTable);
+        assertEquals("[Relationship[primaryTable=PRODUCTS,primaryColumns=[PRODUCTCODE],foreignTable=ORDERFACT,"
+                + "foreignColumns=[PRODUCTCODE]]]", Arrays.toString(productsTable.getRelationships().toArray()));
+        assertEquals(
+                "[Column[name=PRODUCTCODE,columnNumber=0,type=VARCHAR,nullable=false,nativeType=VARCHAR,columnSize=50]]",
+                Arrays.toString(productsTable.getIndexedColumns().toArray()));
+        assertEquals(dc1.getDefaultSchema().getTableByName("CUSTOMERS").getColumns().toString(),
+                dc2.getDefaultSchema().getTableByName("CUSTOMERS").getColumns().toString());
+
+        try (DataSet dataSet = dc2.query().from(productsTable).selectCount().execute()) {
+            assertTrue(dataSet.next());
+            assertEquals(110, ((Number) dataSet.getRow().getValue(0)).intValue());
+        }
+
+        // the snapshot is used instead of the database metadata as long as
+        // the fingerprint matches
+        final MutableSchema fakeSchema = new MutableSchema(dc1.getDefaultSchemaName());
+        fakeSchema.addTable(new MutableTable("FOO", TableType.TABLE, fakeSchema));
+        new SchemaSnapshot(dc1.getSchemaSnapshotFingerprint(), dc1.getSchemaNames(), Arrays.asList(fakeSchema))
+                .write(resource);
+        final JdbcDataContext dc3 = new JdbcDataContext(connection, new TableType[] { TableType.TABLE }, null);
+        dc3.setSchemaSnapshotResource(resource);
+        assertEquals("[FOO]", dc3.getDefaultSchema().getTableNames().toString());
+
+        final JdbcDataContext dc4 = new JdbcDataContext(connection, new TableType[] { TableType.VIEW }, null);
+        dc4.setSchemaSnapshotResource(resource);
+        assertFalse(dc4.getDefaultSchema().getTableNames().contains("FOO"));
+    }
+
+    public void testSchemaSnapshotFingerprintReflectsTableList() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:snapshot_fingerprint")) {
+            final JdbcDataContext dc = new JdbcDataContext(connection);
+            try (Statement st = connection.createStatement()) {
+                st.execute("CREATE TABLE foo (id INTEGER)");
+            }
+            final String fingerprint1 = dc.getSchemaSnapshotFingerprint();
+            assertEquals(fingerprint1, dc.getSchemaSnapshotFingerprint());
+
+            try (Statement st = connection.createStatement()) {
+                st.execute("CREATE TABLE bar (id INTEGER)");
+            }
+            final String fingerprint2 = dc.getSchemaSnapshotFingerprint();
+            assertFalse(fingerprint1.equals(fingerprint2));
+
+            try (Statement st = connection.createStatement()) {
+                st.execute("DROP TABLE bar");
+            }
+            assertEquals(fingerprint1, dc.getSchemaSnapshotFingerprint());
+        }
+    }
+
     public void testGetCatalogNames() throws Exception {
         Connection connection = getTestDbConnection();
         JdbcDataContext strategy = new JdbcDataContext(connection);
@@ -41,6 +41,8 @@ import com.redshoes.metamodel.data.DataSetHeader;
 import com.redshoes.metamodel.data.InMemoryDataSet;
 import com.redshoes.metamodel.data.Row;
 import com.redshoes.metamodel.data.SimpleDataSetHeader;
+import com.redshoes.metamodel.query.CompiledQuery;
+import com.redshoes.metamodel.query.DefaultCompiledQuery;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.query.FromItem;
 import com.redshoes.metamodel.query.OperatorType;
@@ -256,92 +258,88 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
     public DataSet executeQuery(Query query) {
         // Check for queries containing only simple selects and where clauses,
         // or if it is a COUNT(*) query.
-
-        // if from clause only contains a main schema table
-        List<FromItem> fromItems = query.getFromClause().getItems();
-        if (fromItems.size() == 1 && fromItems.get(0).getTable() != null
-                && fromItems.get(0).getTable().getSchema() == _schema) {
-            final Table table = fromItems.get(0).getTable();
-
-            // if GROUP BY, HAVING and ORDER BY clauses are not specified
-            if (query.getGroupByClause().isEmpty() && query.getHavingClause().isEmpty()
-                    && query.getOrderByClause().isEmpty()) {
-
-                final List<FilterItem> whereItems = query.getWhereClause().getItems();
-
-                // if all of the select items are "pure" column selection
-                boolean allSelectItemsAreColumns = true;
-                List<SelectItem> selectItems = query.getSelectClause().getItems();
-
-                // if it is a
-                // "SELECT [columns] FROM [table] WHERE [conditions]"
-                // query.
-                for (SelectItem selectItem : selectItems) {
-                    if (selectItem.hasFunction() || selectItem.getColumn() == null) {
-                        allSelectItemsAreColumns = false;
-                        break;
-                    }
-                }
-
-                if (allSelectItemsAreColumns) {
-                    logger.debug("Query can be expressed in full MongoDB, no post processing needed.");
-
-                    // prepare for a non-post-processed query
-
-
-                    // checking if the query is a primary key lookup query
-                    if (whereItems.size() == 1) {
-                        final FilterItem whereItem = whereItems.get(0);
-                        final SelectItem selectItem = whereItem.getSelectItem();
-                        if (!whereItem.isCompoundFilter() && selectItem != null && selectItem.getColumn() != null) {
-                            final Column column = selectItem.getColumn();
-                            if (column.isPrimaryKey() && OperatorType.EQUALS_TO.equals(whereItem.getOperator())) {
-                                logger.debug("Query is a primary key lookup query. Trying executePrimaryKeyLookupQuery(...)");
-                                final Object operand = whereItem.getOperand();
-                                final Row row = executePrimaryKeyLookupQuery(table, selectItems, column, operand);
-                                if (row == null) {
-                                    logger.debug("DataContext did not return any primary key lookup query results. Proceeding "
-                                            + "with manual lookup.");
-                                } else {
-                                    final DataSetHeader header = new SimpleDataSetHeader(selectItems);
-                                    return new InMemoryDataSet(header, row);
-                                }
-                            }
+        if (isExpressibleInMongoDb(query)) {
+            logger.debug("Query can be expressed in full MongoDB, no post processing needed.");
+
+            // prepare for a non-post-processed query
+            final Table table = query.getFromClause().getItem(0).getTable();
+            final List<FilterItem> whereItems = query.getWhereClause().getItems();
+            final List<SelectItem> selectItems = query.getSelectClause().getItems();
+
+            // checking if the query is a primary key lookup query
+            if (whereItems.size() == 1) {
+                final FilterItem whereItem = whereItems.get(0);
+                final SelectItem selectItem = whereItem.getSelectItem();
+                if (!whereItem.isCompoundFilter() && selectItem != null && selectItem.getColumn() != null) {
+                    final Column column = selectItem.getColumn();
+                    if (column.isPrimaryKey() && OperatorType.EQUALS_TO.equals(whereItem.getOperator())) {
+                        logger.debug("Query is a primary key lookup query. Trying executePrimaryKeyLookupQuery(...)");
+                        final Object operand = whereItem.getOperand();
+                        final Row row = executePrimaryKeyLookupQuery(table, selectItems, column, operand);
+                        if (row == null) {
+                            logger.debug("DataContext did not return any primary key lookup query results. Proceeding "
+                                    + "with manual lookup.");
+                        } else {
+                            final DataSetHeader header = new SimpleDataSetHeader(selectItems);
+                            return new InMemoryDataSet(header, row);
                         }
                     }
-
-                    int firstRow = (query.getFirstRow() == null ? 1 : query.getFirstRow());
-                    int maxRows = (query.getMaxRows() == null ? -1 : query.getMaxRows());
-                    boolean thereIsAtLeastOneAlias = false;
-
-                    for (SelectItem selectItem : selectItems) {
-                        if (selectItem.getAlias() != null) {
-                            thereIsAtLeastOneAlias = true;
-                            break;
-                        }
-                    }
-
-                    if (thereIsAtLeastOneAlias) {
-                        final DataSet dataSet = materializeMainSchemaTableInternal(
-                                table,
-                                selectItems,
-                                whereItems,
-                                firstRow,
-                                maxRows, false);
-                        return dataSet;
-                    } else {
-                        final DataSet dataSet = materializeMainSchemaTableInternal(table, selectItems, whereItems, firstRow,
-                                maxRows, false);
-                        return dataSet;
-                    }
                 }
             }
+
+            final int firstRow = (query.getFirstRow() == null ? 1 : query.getFirstRow());
+            final int maxRows = (query.getMaxRows() == null ? -1 : query.getMaxRows());
+
+            final DataSet dataSet =
+                    materializeMainSchemaTableInternal(table, selectItems, whereItems, firstRow, maxRows, false);
+            return dataSet;
         }
 
         logger.debug("Query will be simplified for MongoDB and post processed.");
         return super.executeQuery(query);
     }
 
+    @Override
+    public CompiledQuery compileQuery(Query query) {
+        if (isExpressibleInMongoDb(query)) {
+            // such queries are not planned by the post processing, see
+            // executeQuery(Query)
+            return new DefaultCompiledQuery(query);
+        }
+        return super.compileQuery(query);
+    }
+
+    /**
+     * Determines if a query can be expressed in full MongoDB, ie. if it is a
+     * "SELECT [columns] FROM [table] WHERE [conditions]" query on a single
+     * main schema table.
+     * 
+     * @param query
+     * @return
+     */
+    private boolean isExpressibleInMongoDb(Query query) {
+        // if from clause only contains a main schema table
+        final List<FromItem> fromItems = query.getFromClause().getItems();
+        if (fromItems.size() != 1 || fromItems.get(0).getTable() == null
+                || fromItems.get(0).getTable().getSchema() != _schema) {
+            return false;
+        }
+
+        // if GROUP BY, HAVING and ORDER BY clauses are not specified
+        if (!query.getGroupByClause().isEmpty() || !query.getHavingClause().isEmpty()
+                || !query.getOrderByClause().isEmpty()) {
+            return false;
+        }
+
+        // if all of the select items are "pure" column selection
+        for (SelectItem selectItem : query.getSelectClause().getItems()) {
+            if (selectItem.hasFunction() || selectItem.getColumn() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 
 
     private DataSet materializeMainSchemaTableInternal(Table table, List<SelectItem> selectItems,
@@ -500,6 +498,7 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
             update.run(callback);
         } finally {
             callback.close();
+            clearParsedQueryCache();
         }
         return callback.getUpdateSummary();
     }
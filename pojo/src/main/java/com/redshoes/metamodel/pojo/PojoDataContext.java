@@ -147,7 +147,11 @@ public class PojoDataContext extends QueryPostprocessDataContext implements Upda
     public UpdateSummary executeUpdate(UpdateScript update) {
         final PojoUpdateCallback updateCallback = new PojoUpdateCallback(this);
         synchronized (this) {
-            update.run(updateCallback);
+            try {
+                update.run(updateCallback);
+            } finally {
+                clearParsedQueryCache();
+            }
         }
         return updateCallback.getUpdateSummary();
     }
@@ -32,6 +32,8 @@ import com.redshoes.metamodel.QueryPostprocessDataContext;
 import com.redshoes.metamodel.UpdateScript;
 import com.redshoes.metamodel.UpdateSummary;
 import com.redshoes.metamodel.UpdateableDataContext;
+import com.redshoes.metamodel.query.CompiledQuery;
+import com.redshoes.metamodel.query.DefaultCompiledQuery;
 import com.redshoes.metamodel.query.FilterItem;
 import com.redshoes.metamodel.query.FromItem;
 import com.redshoes.metamodel.query.OperatorType;
@@ -139,6 +141,19 @@ public class SalesforceDataContext extends QueryPostprocessDataContext implement
         return "Salesforce";
     }
 
+    @Override
+    public CompiledQuery compileQuery(Query query) {
+        final List<FromItem> fromItems = query.getFromClause().getItems();
+        if (fromItems.size() == 1 && fromItems.get(0).getTable() != null && query.getGroupByClause().isEmpty()
+                && query.getHavingClause().isEmpty()) {
+            // such queries are executed as SOQL queries when possible, which
+            // are not planned by the query post processing, see
+            // executeQuery(Query)
+            return new DefaultCompiledQuery(query);
+        }
+        return super.compileQuery(query);
+    }
+
     @Override
     public DataSet executeQuery(Query query) {
         final List<FromItem> fromItems = query.getFromClause().getItems();
@@ -42,8 +42,8 @@ class XmlSaxContentHandler extends DefaultHandler {
 	private final RowPublisher _rowPublisher;
 	private final Map<String, Integer> _indexIndexes;
 	private final Map<String, AtomicInteger> _indexCounters;
-	private volatile Object[] _rowValues;
-	private volatile int _xpathIndex;
+	private Object[] _rowValues;
+	private int _xpathIndex;
 
 	public XmlSaxContentHandler(String rowXpath, RowPublisher rowPublisher,
 			String... valueXpaths) {
@@ -242,10 +242,11 @@ public class XmlSaxDataContext extends QueryPostprocessDataContext {
                     logger.debug("Parsing stop signal thrown");
                 } catch (Exception e) {
                     logger.warn("Unexpected error occurred while parsing", e);
+                    // not finishing the publisher here, the error is handed
+                    // over to the consumer after the rows published so far
                     throw e;
-                } finally {
-                    rowPublisher.finished();
                 }
+                rowPublisher.finished();
             }
         };
         return new RowPublisherDataSet(selectItems, maxRows, rowPublisherAction);